@@ -0,0 +1,427 @@
+package com.foo.bar;
+
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.function.LongConsumer;
+import java.util.logging.Logger;
+
+/**
+ * The JDBC driver, which wraps the driver of the actual database and reports every round trip to
+ * {@link SqlCostTracker}. It is enabled by prefixing the connection URL of the repository with
+ * {@code jdbc:accounting:}, e.g. {@code jdbc:accounting:jdbc:h2:file:./target/h2/test}, and by
+ * using this class as the driver. The delegate driver has to be registered with
+ * {@link DriverManager}.
+ * <p>
+ * The following is accounted:
+ * <ul>
+ *   <li>statement executions, commits and rollbacks, as round trips along with their durations</li>
+ *   <li>update counts and the rows iterated over, as rows</li>
+ *   <li>the size of the string and binary parameters and column values, as bytes, the streams, the
+ *       readers, the blobs and the clobs included, the ones of the column values once read</li>
+ * </ul>
+ * The connection metadata is not wrapped, so ModeShape detects the type of the delegate database.
+ */
+public class AccountingDriver implements Driver {
+    
+    public static final String URL_PREFIX = "jdbc:accounting:";
+    
+    static {
+        try {
+            DriverManager.registerDriver(new AccountingDriver());
+        
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        
+        Connection connection = DriverManager.getConnection(url.substring(URL_PREFIX.length()), info);
+        return wrap(Connection.class, new ConnectionHandler(connection));
+    }
+    
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(URL_PREFIX);
+    }
+    
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) throws SQLException {
+        return DriverManager.getDriver(url.substring(URL_PREFIX.length())).getPropertyInfo(
+                url.substring(URL_PREFIX.length()), info);
+    }
+    
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+    
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+    
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+    
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+    
+    private static <T> T wrap(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(AccountingDriver.class.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+    
+    private static Object invoke(Object delegate, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(delegate, args);
+        
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+    
+    private static long sizeOf(Object value) {
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        
+        if (value instanceof String) {
+            return ((String) value).length();
+        }
+        
+        return 0;
+    }
+    
+    /**
+     * Counts the size of the given column value, the streams and the large objects being counted
+     * once read.
+     */
+    private static Object accountResult(Object value) {
+        LongConsumer counter = bytes -> SqlCostTracker.recordTraffic(0, bytes);
+        
+        if (value instanceof InputStream) {
+            return new CountingInputStream((InputStream) value, counter);
+        }
+        
+        if (value instanceof Reader) {
+            return new CountingReader((Reader) value, counter);
+        }
+        
+        if (value instanceof NClob) {
+            return wrap(NClob.class, new LobHandler(value));
+        }
+        
+        if (value instanceof Clob) {
+            return wrap(Clob.class, new LobHandler(value));
+        }
+        
+        if (value instanceof Blob) {
+            return wrap(Blob.class, new LobHandler(value));
+        }
+        
+        counter.accept(sizeOf(value));
+        return value;
+    }
+    
+    private static class ConnectionHandler implements InvocationHandler {
+        
+        private final Connection delegate;
+        
+        ConnectionHandler(Connection delegate) {
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "commit":
+                case "rollback":
+                    long start = System.nanoTime();
+                    
+                    try {
+                        return AccountingDriver.invoke(delegate, method, args);
+                    
+                    } finally {
+                        SqlCostTracker.recordStatement(System.nanoTime() - start, 0, 0);
+                    }
+                
+                case "createStatement":
+                    Statement statement = (Statement) AccountingDriver.invoke(delegate, method, args);
+                    return wrap(Statement.class, new StatementHandler(statement));
+                
+                case "prepareStatement":
+                    PreparedStatement preparedStatement = (PreparedStatement) AccountingDriver.invoke(delegate, method, args);
+                    return wrap(PreparedStatement.class, new StatementHandler(preparedStatement));
+                
+                case "prepareCall":
+                    CallableStatement callableStatement = (CallableStatement) AccountingDriver.invoke(delegate, method, args);
+                    return wrap(CallableStatement.class, new StatementHandler(callableStatement));
+                
+                case "unwrap":
+                    return ((Class<?>) args[0]).isInstance(proxy) ? proxy : delegate.unwrap((Class<?>) args[0]);
+                
+                case "isWrapperFor":
+                    return ((Class<?>) args[0]).isInstance(proxy) || delegate.isWrapperFor((Class<?>) args[0]);
+                
+                default:
+                    return AccountingDriver.invoke(delegate, method, args);
+            }
+        }
+    }
+    
+    private static class StatementHandler implements InvocationHandler {
+        
+        private final Statement delegate;
+        
+        // the parameters of a prepared statement are sent with the next execution
+        private long parameterBytes;
+        
+        StatementHandler(Statement delegate) {
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            
+            // the parameters are set by their index or, for the callable statements, by their name
+            if (name.startsWith("set") && args != null && args.length >= 2
+                    && (args[0] instanceof Integer || args[0] instanceof String)) {
+                
+                args[1] = accountParameter(args[1]);
+                return AccountingDriver.invoke(delegate, method, args);
+            }
+            
+            if (name.startsWith("execute")) {
+                long start = System.nanoTime();
+                Object result = null;
+                
+                try {
+                    result = AccountingDriver.invoke(delegate, method, args);
+                    return result instanceof ResultSet ? wrapResultSet((ResultSet) result) : result;
+                
+                } finally {
+                    SqlCostTracker.recordStatement(System.nanoTime() - start, getUpdatedRows(result), parameterBytes);
+                    parameterBytes = 0;
+                }
+            }
+            
+            if ("getResultSet".equals(name) || "getGeneratedKeys".equals(name)) {
+                ResultSet resultSet = (ResultSet) AccountingDriver.invoke(delegate, method, args);
+                return resultSet == null ? null : wrapResultSet(resultSet);
+            }
+            
+            return AccountingDriver.invoke(delegate, method, args);
+        }
+        
+        /**
+         * Counts the size of the given parameter, the streams being counted as the driver reads
+         * them. The large objects are not wrapped, as the drivers may expect their own ones.
+         */
+        private Object accountParameter(Object value) throws SQLException {
+            if (value instanceof InputStream) {
+                return new CountingInputStream((InputStream) value, bytes -> parameterBytes += bytes);
+            }
+            
+            if (value instanceof Reader) {
+                return new CountingReader((Reader) value, bytes -> parameterBytes += bytes);
+            }
+            
+            if (value instanceof Blob) {
+                parameterBytes += ((Blob) value).length();
+            
+            } else if (value instanceof Clob) {
+                parameterBytes += ((Clob) value).length();
+            
+            } else {
+                parameterBytes += sizeOf(value);
+            }
+            
+            return value;
+        }
+        
+        private static ResultSet wrapResultSet(ResultSet resultSet) {
+            return wrap(ResultSet.class, new ResultSetHandler(resultSet));
+        }
+        
+        private static long getUpdatedRows(Object result) {
+            if (result instanceof Integer) {
+                return Math.max(0, (Integer) result);
+            }
+            
+            if (result instanceof Long) {
+                return Math.max(0, (Long) result);
+            }
+            
+            long rows = 0;
+            
+            if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    rows += Math.max(0, count);
+                }
+            
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    rows += Math.max(0, count);
+                }
+            }
+            
+            return rows;
+        }
+    }
+    
+    private static class ResultSetHandler implements InvocationHandler {
+        
+        private final ResultSet delegate;
+        
+        ResultSetHandler(ResultSet delegate) {
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = AccountingDriver.invoke(delegate, method, args);
+            
+            switch (method.getName()) {
+                case "next":
+                    if (Boolean.TRUE.equals(result)) {
+                        SqlCostTracker.recordTraffic(1, 0);
+                    }
+                    
+                    break;
+                
+                default:
+                    // the column values are read by their index or by their label
+                    if (method.getName().startsWith("get") && args != null) {
+                        return accountResult(result);
+                    }
+                    
+                    break;
+            }
+            
+            return result;
+        }
+    }
+    
+    /**
+     * Counts the content of a blob or a clob of a result set as it is read.
+     */
+    private static class LobHandler implements InvocationHandler {
+        
+        private final Object delegate;
+        
+        LobHandler(Object delegate) {
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = AccountingDriver.invoke(delegate, method, args);
+            
+            switch (method.getName()) {
+                case "getBytes":
+                case "getSubString":
+                case "getBinaryStream":
+                case "getAsciiStream":
+                case "getCharacterStream":
+                    return accountResult(result);
+                
+                default:
+                    return result;
+            }
+        }
+    }
+    
+    private static class CountingInputStream extends FilterInputStream {
+        
+        private final LongConsumer counter;
+        
+        CountingInputStream(InputStream delegate, LongConsumer counter) {
+            super(delegate);
+            this.counter = counter;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            
+            if (result >= 0) {
+                counter.accept(1);
+            }
+            
+            return result;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int result = super.read(buffer, offset, length);
+            
+            if (result > 0) {
+                counter.accept(result);
+            }
+            
+            return result;
+        }
+    }
+    
+    private static class CountingReader extends FilterReader {
+        
+        private final LongConsumer counter;
+        
+        CountingReader(Reader delegate, LongConsumer counter) {
+            super(delegate);
+            this.counter = counter;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            
+            if (result >= 0) {
+                counter.accept(1);
+            }
+            
+            return result;
+        }
+        
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int result = super.read(buffer, offset, length);
+            
+            if (result > 0) {
+                counter.accept(result);
+            }
+            
+            return result;
+        }
+    }
+}
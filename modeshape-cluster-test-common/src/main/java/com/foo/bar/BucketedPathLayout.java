@@ -0,0 +1,259 @@
+package com.foo.bar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import javax.jcr.ItemExistsException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+/**
+ * Spreads the logical children of a single parent node over a fixed-depth hierarchy of hashed
+ * buckets, e.g. {@code /parentNode/3f/a2/name} instead of {@code /parentNode/name}, so that no node
+ * ends up with a huge child list and the locks are taken on the buckets rather than on the parent.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code layout.bucket.levels} - the number of bucket levels, each of them having up to {@code 256} children, defaults to {@code 2}</li>
+ * </ul>
+ */
+public class BucketedPathLayout {
+    
+    public static final String BUCKET_LEVELS_PROPERTY = "layout.bucket.levels";
+    
+    private static final int DEFAULT_BUCKET_LEVELS = Integer.parseInt(System.getProperty(BUCKET_LEVELS_PROPERTY, "2"));
+    private static final int MAX_BUCKET_LEVELS = 4;
+    private static final String MIXIN_LOCKABLE = "mix:lockable";
+    private static final String BUCKET_NAME_PATTERN = "[0-9a-f]{2}";
+    
+    private final String parentAbsolutePath;
+    private final int levels;
+    
+    public BucketedPathLayout(String parentAbsolutePath) {
+        this(parentAbsolutePath, DEFAULT_BUCKET_LEVELS);
+    }
+    
+    public BucketedPathLayout(String parentAbsolutePath, int levels) {
+        if (levels < 1 || levels > MAX_BUCKET_LEVELS) {
+            throw new IllegalArgumentException(String.format(
+                    "The number of bucket levels must be between 1 and %s [levels=%s]", MAX_BUCKET_LEVELS, levels));
+        }
+        
+        this.parentAbsolutePath = parentAbsolutePath;
+        this.levels = levels;
+    }
+    
+    public String getParentAbsolutePath() {
+        return parentAbsolutePath;
+    }
+    
+    public int getLevels() {
+        return levels;
+    }
+    
+    /**
+     * Returns the absolute path of the bucket, which holds the child with the given name.
+     *
+     * @param childName
+     *            the logical name of the child
+     *
+     * @return the absolute bucket path, e.g. {@code /parentNode/3f/a2}
+     */
+    public String getBucketAbsolutePath(String childName) {
+        StringBuilder builder = new StringBuilder(parentAbsolutePath);
+        int hash = hash(childName);
+        
+        for (int i = 0; i < levels; i++) {
+            builder.append('/').append(String.format("%02x", (hash >>> (i * 8)) & 0xff));
+        }
+        
+        return builder.toString();
+    }
+    
+    /**
+     * Returns the absolute path of the child with the given name.
+     *
+     * @param childName
+     *            the logical name of the child
+     *
+     * @return the absolute child path, e.g. {@code /parentNode/3f/a2/name}
+     */
+    public String getChildAbsolutePath(String childName) {
+        return getBucketAbsolutePath(childName) + "/" + childName;
+    }
+    
+    /**
+     * Resolves the logical name of the child back from its absolute path.
+     *
+     * @param childAbsolutePath
+     *            the absolute child path, as returned by {@link #getChildAbsolutePath(String)}
+     *
+     * @return the logical name of the child
+     *
+     * @throws IllegalArgumentException
+     *             if the path does not belong to this layout
+     */
+    public String getChildName(String childAbsolutePath) {
+        String childName = childAbsolutePath.substring(childAbsolutePath.lastIndexOf('/') + 1);
+        
+        if (!getChildAbsolutePath(childName).equals(childAbsolutePath)) {
+            throw new IllegalArgumentException(String.format(
+                    "The path does not belong to the layout [path=%s, parent=%s, levels=%s]",
+                    childAbsolutePath, parentAbsolutePath, levels));
+        }
+        
+        return childName;
+    }
+    
+    /**
+     * Returns the bucket for the child with the given name, creating the missing buckets on the
+     * way. Every missing bucket is created in a transaction of its own, whose save locks the
+     * document of the parent until the transaction ends. If the parent turns out to hold a
+     * same-name sibling once saved, i.e. a concurrent writer, possibly running on a different
+     * cluster member, has committed the same bucket first, the transaction is rolled back and the
+     * bucket of that writer is used instead. Unlike locking the parent, this does not make the
+     * first writers of the buckets under the same parent fail or wait for each other. Must be
+     * called before any other change is made in the session and outside of a transaction, because
+     * the session is refreshed and the bucket is committed.
+     *
+     * @param session
+     *            the session to use, which must not have any pending changes
+     * @param childName
+     *            the logical name of the child
+     *
+     * @return the bucket node, never {@code null}
+     *
+     * @throws IllegalStateException
+     *             if the session has pending changes
+     * @throws RepositoryException
+     *             if an error occurred
+     */
+    public Node getOrCreateBucket(Session session, String childName) throws RepositoryException {
+        String bucketPath = getBucketAbsolutePath(childName);
+        
+        if (session.nodeExists(bucketPath)) {
+            return session.getNode(bucketPath);
+        }
+        
+        if (session.hasPendingChanges()) {
+            throw new IllegalStateException(String.format("The bucket cannot be created in a session with pending "
+                    + "changes, as they would be discarded [bucket=%s]", bucketPath));
+        }
+        
+        Node current = session.getNode(parentAbsolutePath);
+        
+        for (String segment : bucketPath.substring(parentAbsolutePath.length() + 1).split("/")) {
+            if (!current.hasNode(segment)) {
+                createBucket(session, current, segment);
+            }
+            
+            current = current.getNode(segment);
+        }
+        
+        return current;
+    }
+    
+    /**
+     * Looks the child with the given name up.
+     *
+     * @param session
+     *            the session to use
+     * @param childName
+     *            the logical name of the child
+     *
+     * @return the child node, if it exists
+     *
+     * @throws RepositoryException
+     *             if an error occurred
+     */
+    public Optional<Node> findChild(Session session, String childName) throws RepositoryException {
+        String childPath = getChildAbsolutePath(childName);
+        
+        return session.nodeExists(childPath) ? Optional.of(session.getNode(childPath)) : Optional.empty();
+    }
+    
+    /**
+     * Collects all the logical children by walking the bucket hierarchy. The order of the
+     * children is the order of the buckets, not the order of the creation. Nodes added directly
+     * under the parent, i.e. not via this layout, are skipped.
+     *
+     * @param session
+     *            the session to use
+     *
+     * @return the child nodes
+     *
+     * @throws RepositoryException
+     *             if an error occurred
+     */
+    public List<Node> getChildren(Session session) throws RepositoryException {
+        List<Node> children = new ArrayList<>();
+        collectChildren(session.getNode(parentAbsolutePath), 0, children);
+        
+        return children;
+    }
+    
+    private void collectChildren(Node node, int level, List<Node> children) throws RepositoryException {
+        NodeIterator iterator = node.getNodes();
+        
+        while (iterator.hasNext()) {
+            Node child = iterator.nextNode();
+            
+            if (level == levels) {
+                children.add(child);
+            
+            } else if (child.getName().matches(BUCKET_NAME_PATTERN)) {
+                collectChildren(child, level + 1, children);
+            }
+        }
+    }
+    
+    private static void createBucket(Session session, Node parent, String segment) throws RepositoryException {
+        session.refresh(false);
+        
+        if (parent.hasNode(segment)) {
+            return;
+        }
+        
+        try {
+            TransactionExecutor.runInTransaction(() -> {
+                parent.addNode(segment).addMixin(MIXIN_LOCKABLE);
+                
+                // the save locks the document of the parent until the transaction ends and refreshes it
+                session.save();
+                
+                if (parent.getNodes(segment).getSize() > 1) {
+                    throw new ItemExistsException(String.format("The bucket has been created concurrently "
+                            + "[parent=%s, bucket=%s]", parent.getPath(), segment));
+                }
+                
+                return null;
+            });
+        
+        } catch (RuntimeException e) {
+            if (!(e.getCause() instanceof ItemExistsException)) {
+                throw e;
+            }
+            
+            session.refresh(false);
+        }
+    }
+    
+    /**
+     * Spreads {@link String#hashCode()}, which is stable across JVMs, so that similar names, e.g.
+     * {@code node-1} and {@code node-2}, land in different buckets.
+     */
+    private static int hash(String childName) {
+        int hash = childName.hashCode();
+        
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        
+        return hash;
+    }
+}
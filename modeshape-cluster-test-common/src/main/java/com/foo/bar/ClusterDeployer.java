@@ -0,0 +1,289 @@
+package com.foo.bar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jcr.Repository;
+import javax.jcr.Session;
+
+import org.modeshape.jcr.JcrRepository;
+import org.modeshape.jcr.ModeShapeEngine;
+import org.modeshape.jcr.RepositoryConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deploys and starts the cluster members concurrently and records how long every member spends in
+ * each startup phase:
+ * <ul>
+ *   <li>{@code parse} - resolving and parsing the configuration</li>
+ *   <li>{@code deploy} - validating and registering the configuration with the engine</li>
+ *   <li>{@code join} - starting the repository, which includes connecting to the DB and joining the cluster</li>
+ *   <li>{@code login} - the first login and logout</li>
+ * </ul>
+ * The first member is started on its own, so that it creates the cluster view and initializes the
+ * shared content, which the other members then join concurrently. All the members have to start
+ * before a single deadline. If any of them fails or does not start in time, the members started so
+ * far, the first one included, are undeployed again, so that no half-started cluster is left behind.
+ */
+public class ClusterDeployer {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterDeployer.class);
+    
+    private static final String WORKSPACE_NAME = "default";
+    
+    private final ModeShapeEngine engine;
+    private final long timeoutNanos;
+    
+    /**
+     * @param engine
+     *            the engine to deploy the members with
+     * @param timeout
+     *            the time to start all the members within
+     * @param unit
+     *            the unit of the timeout
+     */
+    public ClusterDeployer(ModeShapeEngine engine, long timeout, TimeUnit unit) {
+        this.engine = engine;
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+    
+    /**
+     * Deploys and starts a member per configuration.
+     *
+     * @param configurations
+     *            the configurations of the members, every one of them is invoked in the thread
+     *            deploying the member
+     *
+     * @return the started members, in the order of the configurations
+     *
+     * @throws TimeoutException
+     *             if the members did not start before the deadline, in which case the started ones
+     *             are undeployed
+     * @throws Exception
+     *             if a member failed to start, in which case the started ones are undeployed
+     */
+    public List<Member> deploy(List<Callable<RepositoryConfiguration>> configurations) throws Exception {
+        if (configurations.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        long start = System.nanoTime();
+        long deadline = start + timeoutNanos;
+        
+        List<Member> members = new ArrayList<>(configurations.size());
+        members.add(deploy(0, configurations.get(0), deadline));
+        
+        if (configurations.size() > 1) {
+            AtomicInteger threadIndex = new AtomicInteger();
+            ExecutorService executorService = Executors.newFixedThreadPool(configurations.size() - 1, runnable -> {
+                Thread thread = new Thread(runnable, "cluster-deployer-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                
+                return thread;
+            });
+            
+            List<Future<Member>> futures = new ArrayList<>(configurations.size() - 1);
+            
+            try {
+                for (int i = 1; i < configurations.size(); i++) {
+                    int index = i;
+                    futures.add(executorService.submit(() -> deploy(index, configurations.get(index), deadline)));
+                }
+                
+                for (Future<Member> future : futures) {
+                    members.add(future.get(getRemainingNanos(deadline), TimeUnit.NANOSECONDS));
+                }
+            
+            } catch (Exception e) {
+                undeploy(members.get(0), futures, executorService);
+                
+                if (e instanceof ExecutionException && e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                
+                throw e;
+            
+            } finally {
+                executorService.shutdownNow();
+            }
+        }
+        
+        LOGGER.info("Cluster deployed [memberCount={}, took={} ms]:{}", members.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), getReport(members));
+        
+        return members;
+    }
+    
+    /**
+     * Renders the startup phases of the given members as a table.
+     *
+     * @param members
+     *            the members
+     *
+     * @return the report
+     */
+    public static String getReport(List<Member> members) {
+        String format = "%-7s %10s %10s %10s %10s %10s%n";
+        StringBuilder report = new StringBuilder(String.format("%n" + format,
+                "member", "parse ms", "deploy ms", "join ms", "login ms", "total ms"));
+        
+        for (Member member : members) {
+            report.append(String.format(format,
+                    member.getIndex(),
+                    TimeUnit.NANOSECONDS.toMillis(member.getParseNanos()),
+                    TimeUnit.NANOSECONDS.toMillis(member.getDeployNanos()),
+                    TimeUnit.NANOSECONDS.toMillis(member.getJoinNanos()),
+                    TimeUnit.NANOSECONDS.toMillis(member.getLoginNanos()),
+                    TimeUnit.NANOSECONDS.toMillis(member.getTotalNanos())));
+        }
+        
+        return report.toString();
+    }
+    
+    /**
+     * Deploys and starts a single member, which is undeployed again if it fails to start.
+     */
+    private Member deploy(int index, Callable<RepositoryConfiguration> configuration, long deadline)
+            throws Exception {
+        
+        long parseStart = System.nanoTime();
+        RepositoryConfiguration resolvedConfiguration = configuration.call();
+        
+        long deployStart = System.nanoTime();
+        JcrRepository repository = engine.deploy(resolvedConfiguration);
+        
+        try {
+            long joinStart = System.nanoTime();
+            try {
+                engine.startRepository(repository.getName()).get(getRemainingNanos(deadline), TimeUnit.NANOSECONDS);
+            
+            } catch (TimeoutException e) {
+                throw new IllegalStateException(String.format("The cluster member did not start in time "
+                        + "[index=%s, name=%s]", index, repository.getName()), e);
+            }
+            
+            long loginStart = System.nanoTime();
+            Session session = repository.login(WORKSPACE_NAME);
+            session.logout();
+            
+            long end = System.nanoTime();
+            return new Member(index, repository, deployStart - parseStart, joinStart - deployStart,
+                    loginStart - joinStart, end - loginStart);
+        
+        } catch (Exception e) {
+            undeploy(repository.getName());
+            throw e;
+        }
+    }
+    
+    /**
+     * Undeploys the first member and the other ones started so far. The members still starting
+     * are interrupted and undeploy themselves.
+     */
+    private void undeploy(Member firstMember, List<Future<Member>> futures, ExecutorService executorService)
+            throws InterruptedException {
+        
+        executorService.shutdownNow();
+        
+        if (!executorService.awaitTermination(timeoutNanos, TimeUnit.NANOSECONDS)) {
+            LOGGER.warn("The cluster members are still starting, they may not be undeployed");
+        }
+        
+        List<Member> startedMembers = new ArrayList<>(futures.size() + 1);
+        startedMembers.add(firstMember);
+        
+        for (Future<Member> future : futures) {
+            if (future.isDone() && !future.isCancelled()) {
+                try {
+                    startedMembers.add(future.get());
+                
+                } catch (ExecutionException e) {
+                    // the member has undeployed itself
+                }
+            }
+        }
+        
+        for (Member member : startedMembers) {
+            undeploy(((JcrRepository) member.getRepository()).getName());
+        }
+        
+        LOGGER.info("Undeployed the started cluster members [memberCount={}]", startedMembers.size());
+    }
+    
+    private void undeploy(String repositoryName) {
+        try {
+            engine.undeploy(repositoryName).get(timeoutNanos, TimeUnit.NANOSECONDS);
+        
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while undeploying the cluster member [name={}]", repositoryName, e);
+        
+        } catch (Exception e) {
+            LOGGER.warn("Failed to undeploy the cluster member [name={}]", repositoryName, e);
+        }
+    }
+    
+    private static long getRemainingNanos(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+    
+    /**
+     * The started member along with its startup phases.
+     */
+    public static class Member {
+        
+        private final int index;
+        private final Repository repository;
+        private final long parseNanos;
+        private final long deployNanos;
+        private final long joinNanos;
+        private final long loginNanos;
+        
+        private Member(int index, Repository repository, long parseNanos, long deployNanos, long joinNanos, long loginNanos) {
+            this.index = index;
+            this.repository = repository;
+            this.parseNanos = parseNanos;
+            this.deployNanos = deployNanos;
+            this.joinNanos = joinNanos;
+            this.loginNanos = loginNanos;
+        }
+        
+        public int getIndex() {
+            return index;
+        }
+        
+        public Repository getRepository() {
+            return repository;
+        }
+        
+        public long getParseNanos() {
+            return parseNanos;
+        }
+        
+        public long getDeployNanos() {
+            return deployNanos;
+        }
+        
+        public long getJoinNanos() {
+            return joinNanos;
+        }
+        
+        public long getLoginNanos() {
+            return loginNanos;
+        }
+        
+        public long getTotalNanos() {
+            return parseNanos + deployNanos + joinNanos + loginNanos;
+        }
+    }
+}
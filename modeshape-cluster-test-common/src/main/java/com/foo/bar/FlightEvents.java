@@ -0,0 +1,172 @@
+package com.foo.bar;
+
+import java.nio.file.Path;
+
+import javax.jcr.Repository;
+import javax.jcr.Session;
+
+import org.modeshape.jcr.JcrRepository;
+
+/**
+ * Emits the Java Flight Recorder events of the repository operations, the lock acquisitions and
+ * the transactions, so that the CPU and the blocking time of a recording can be mapped back to
+ * them. The events are defined in the {@code com.foo.bar} namespace and cost next to nothing
+ * unless they are enabled in a running recording, e.g. the one started by
+ * {@link #startRecording(Path)} or by {@code -XX:StartFlightRecording}.
+ * <p>
+ * The Flight Recorder API is available on Java 8u262+ and Java 11+ only. Only the event classes,
+ * {@code FlightRecording} and {@code FlightRecorderEvents} are compiled against it. The latter is
+ * loaded reflectively, so that these classes are never loaded on the older runtimes, where the
+ * events are not emitted at all, and can be left out of the build, see the {@code no-jfr} profile.
+ */
+public class FlightEvents {
+    
+    public static final String OUTCOME_SUCCEEDED = "succeeded";
+    public static final String OUTCOME_FAILED = "failed";
+    
+    private static final String RECORDER_CLASS = "com.foo.bar.FlightRecorderEvents";
+    
+    private static final Recorder RECORDER = loadRecorder();
+    private static final boolean AVAILABLE = RECORDER != null;
+    
+    /**
+     * The noop scope used when the Flight Recorder is not available.
+     */
+    private static final Scope NOOP = outcome -> {};
+    
+    /**
+     * Begins the event of the repository operation.
+     *
+     * @param operation
+     *            the name of the operation, e.g. {@code update}
+     * @param session
+     *            the session performing the operation
+     * @param absolutePath
+     *            the path of the node the operation is applied to
+     *
+     * @return the scope of the event, to be ended once the operation is over
+     */
+    public static Scope beginOperation(String operation, Session session, String absolutePath) {
+        return AVAILABLE ? RECORDER.beginOperation(operation, session, absolutePath) : NOOP;
+    }
+    
+    /**
+     * Begins the event of the lock acquisition.
+     *
+     * @param session
+     *            the session acquiring the lock
+     * @param absolutePath
+     *            the path of the node to be locked
+     *
+     * @return the scope of the event, to be ended once the lock is acquired or not
+     */
+    public static Scope beginLockAcquisition(Session session, String absolutePath) {
+        return AVAILABLE ? RECORDER.beginLockAcquisition(session, absolutePath) : NOOP;
+    }
+    
+    /**
+     * Begins the event of the user transaction.
+     *
+     * @return the scope of the event, to be ended once the transaction is over
+     */
+    public static Scope beginTransaction() {
+        return AVAILABLE ? RECORDER.beginTransaction() : NOOP;
+    }
+    
+    /**
+     * Performs the repository operation within its event, whose outcome is
+     * {@link #OUTCOME_FAILED} if the operation throws an exception.
+     */
+    public static <T, E extends Exception> T recordOperation(String operation, Session session,
+            String absolutePath, Action<T, E> action) throws E {
+        
+        Scope scope = beginOperation(operation, session, absolutePath);
+        String outcome = OUTCOME_FAILED;
+        
+        try {
+            T result = action.run();
+            outcome = OUTCOME_SUCCEEDED;
+            
+            return result;
+        
+        } finally {
+            scope.end(outcome);
+        }
+    }
+    
+    /**
+     * Starts the recording, which is written to the given file once closed. The recording uses
+     * the {@code profile} settings of the JDK and enables all the events of this class.
+     *
+     * @param file
+     *            the file to write the recording to
+     *
+     * @return the started recording
+     *
+     * @throws IllegalStateException
+     *             if the Flight Recorder is not available or the recording could not be started
+     */
+    public static AutoCloseable startRecording(Path file) {
+        if (!AVAILABLE) {
+            throw new IllegalStateException("The Flight Recorder is not available, Java 8u262+ or 11+ is required "
+                    + "and the build must not use the no-jfr profile");
+        }
+        
+        return RECORDER.startRecording(file);
+    }
+    
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+    
+    static String getRepositoryName(Session session) {
+        Repository repository = session.getRepository();
+        
+        return repository instanceof JcrRepository ? ((JcrRepository) repository).getName() : String.valueOf(repository);
+    }
+    
+    private static Recorder loadRecorder() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return (Recorder) Class.forName(RECORDER_CLASS).getDeclaredConstructor().newInstance();
+        
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+    
+    private FlightEvents() {}
+    
+    /**
+     * The started event, which is committed once ended, provided that it is enabled and meets the
+     * threshold of the recording.
+     */
+    @FunctionalInterface
+    public interface Scope {
+        
+        void end(String outcome);
+    }
+    
+    /**
+     * Begins the events and starts the recordings, see {@code FlightRecorderEvents}.
+     */
+    interface Recorder {
+        
+        Scope beginOperation(String operation, Session session, String absolutePath);
+        
+        Scope beginLockAcquisition(Session session, String absolutePath);
+        
+        Scope beginTransaction();
+        
+        AutoCloseable startRecording(Path file);
+    }
+    
+    /**
+     * The action performed within an event.
+     */
+    @FunctionalInterface
+    public interface Action<T, E extends Exception> {
+        
+        T run() throws E;
+    }
+}
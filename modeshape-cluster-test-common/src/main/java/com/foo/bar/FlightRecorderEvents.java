@@ -0,0 +1,32 @@
+package com.foo.bar;
+
+import java.nio.file.Path;
+
+import javax.jcr.Session;
+
+/**
+ * The {@link FlightEvents.Recorder} backed by the Flight Recorder API, which is loaded by
+ * {@link FlightEvents} only if the API is available.
+ */
+class FlightRecorderEvents implements FlightEvents.Recorder {
+    
+    @Override
+    public FlightEvents.Scope beginOperation(String operation, Session session, String absolutePath) {
+        return RepositoryOperationEvent.start(operation, session, absolutePath);
+    }
+    
+    @Override
+    public FlightEvents.Scope beginLockAcquisition(Session session, String absolutePath) {
+        return LockAcquisitionEvent.start(session, absolutePath);
+    }
+    
+    @Override
+    public FlightEvents.Scope beginTransaction() {
+        return TransactionEvent.start();
+    }
+    
+    @Override
+    public AutoCloseable startRecording(Path file) {
+        return FlightRecording.start(file);
+    }
+}
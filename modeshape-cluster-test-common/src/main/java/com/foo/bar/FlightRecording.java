@@ -0,0 +1,59 @@
+package com.foo.bar;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * The Flight Recorder recording, which is written to the file once closed, see
+ * {@link FlightEvents#startRecording(Path)}.
+ */
+class FlightRecording implements AutoCloseable {
+    
+    private static final String SETTINGS = "profile";
+    
+    private final Recording recording;
+    
+    private FlightRecording(Recording recording) {
+        this.recording = recording;
+    }
+    
+    static FlightRecording start(Path file) {
+        try {
+            Recording recording = new Recording(Configuration.getConfiguration(SETTINGS));
+            
+            recording.enable(RepositoryOperationEvent.class);
+            recording.enable(LockAcquisitionEvent.class);
+            recording.enable(TransactionEvent.class);
+            
+            recording.setName(file.getFileName().toString());
+            recording.setDestination(file);
+            recording.start();
+            
+            return new FlightRecording(recording);
+        
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        
+        } catch (ParseException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Stops the recording, which writes it to the destination file.
+     */
+    @Override
+    public void close() {
+        try {
+            recording.stop();
+        
+        } finally {
+            recording.close();
+        }
+    }
+}
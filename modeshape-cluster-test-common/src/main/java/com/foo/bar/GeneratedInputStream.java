@@ -0,0 +1,89 @@
+package com.foo.bar;
+
+import java.io.InputStream;
+
+/**
+ * The stream of pseudo-random bytes, which are generated on the fly, so that a payload of any size
+ * can be uploaded without buffering it in the heap. The content is determined by the seed, i.e.
+ * two streams with the same seed and size produce the same bytes, which allows to verify a
+ * downloaded payload by generating it once more.
+ */
+public class GeneratedInputStream extends InputStream {
+    
+    private final long size;
+    private long position;
+    private long state;
+    private long word;
+    
+    public GeneratedInputStream(long seed, long size) {
+        if (size < 0) {
+            throw new IllegalArgumentException(String.format("The size must not be negative [size=%s]", size));
+        }
+        
+        this.size = size;
+        this.state = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+    }
+    
+    public long getSize() {
+        return size;
+    }
+    
+    @Override
+    public int read() {
+        if (position >= size) {
+            return -1;
+        }
+        
+        return nextByte() & 0xFF;
+    }
+    
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        
+        if (position >= size) {
+            return -1;
+        }
+        
+        int count = (int) Math.min(length, size - position);
+        for (int i = 0; i < count; i++) {
+            buffer[offset + i] = nextByte();
+        }
+        
+        return count;
+    }
+    
+    @Override
+    public long skip(long count) {
+        long skipped = Math.max(0, Math.min(count, size - position));
+        for (long i = 0; i < skipped; i++) {
+            nextByte();
+        }
+        
+        return skipped;
+    }
+    
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, size - position);
+    }
+    
+    private byte nextByte() {
+        // every 8 bytes come from a single xorshift step
+        if ((position & 7) == 0) {
+            state ^= state << 13;
+            state ^= state >>> 7;
+            state ^= state << 17;
+            word = state;
+        }
+        
+        position++;
+        
+        byte value = (byte) word;
+        word >>>= 8;
+        
+        return value;
+    }
+}
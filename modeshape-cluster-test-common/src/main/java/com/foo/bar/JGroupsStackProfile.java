@@ -0,0 +1,200 @@
+package com.foo.bar;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * The named JGroups stacks, which can be used instead of the hand-written {@code *-jgroups.xml}
+ * files. Every profile is rendered into a file, because ModeShape accepts either a classpath
+ * resource or a file path as the channel configuration.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code jgroups.profile} - the profile to use, e.g. {@code low-latency}; if absent, the configured {@code jgroups.location} is used as is</li>
+ *   <li>{@code jgroups.profile.dir} - the directory to render the profiles into, defaults to {@code ./target/jgroups}</li>
+ * </ul>
+ */
+public enum JGroupsStackProfile {
+    
+    /**
+     * The same stack as the bundled {@code test-jgroups.xml}: no transport thread pools, so every
+     * message is delivered on the receiver thread, 64K bundles and 2M of flow-control credits.
+     */
+    DEFAULT(
+            transport("TCP",
+                    "max_bundle_size", "64K",
+                    "max_bundle_timeout", "30",
+                    "thread_pool.enabled", "false",
+                    "oob_thread_pool.enabled", "false"),
+            "2M",
+            "60K"),
+    
+    /**
+     * Sends as soon as possible: tiny bundles and a short bundle timeout, the transport thread
+     * pools are enabled, so that a slow consumer does not delay the delivery of other messages.
+     */
+    LOW_LATENCY(
+            transport("TCP",
+                    "max_bundle_size", "8K",
+                    "max_bundle_timeout", "1",
+                    "bundler_type", "sender-sends-with-timer",
+                    "tcp_nodelay", "true",
+                    "thread_pool.enabled", "true",
+                    "thread_pool.min_threads", "2",
+                    "thread_pool.max_threads", "8",
+                    "oob_thread_pool.enabled", "true",
+                    "oob_thread_pool.min_threads", "2",
+                    "oob_thread_pool.max_threads", "8"),
+            "2M",
+            "6K"),
+    
+    /**
+     * Trades latency for fewer and larger writes: big bundles, a longer bundle timeout, larger
+     * socket buffers and more flow-control credits.
+     */
+    HIGH_THROUGHPUT(
+            transport("TCP",
+                    "max_bundle_size", "64K",
+                    "max_bundle_timeout", "50",
+                    "bundler_type", "transfer-queue",
+                    "recv_buf_size", "20M",
+                    "send_buf_size", "20M",
+                    "thread_pool.enabled", "true",
+                    "thread_pool.min_threads", "4",
+                    "thread_pool.max_threads", "16",
+                    "oob_thread_pool.enabled", "true",
+                    "oob_thread_pool.min_threads", "2",
+                    "oob_thread_pool.max_threads", "8"),
+            "8M",
+            "60K"),
+    
+    /**
+     * Passes the messages between the channels of the same JVM without touching the network. Only
+     * meaningful when all the cluster members are deployed in a single JVM.
+     */
+    LOOPBACK(
+            "    <SHARED_LOOPBACK />\n"
+                    + "    <SHARED_LOOPBACK_PING />\n",
+            "2M",
+            "60K");
+    
+    public static final String PROFILE_PROPERTY = "jgroups.profile";
+    public static final String PROFILE_DIR_PROPERTY = "jgroups.profile.dir";
+    
+    private static final String DEFAULT_PROFILE_DIR = "./target/jgroups";
+    private static final int BIND_PORT = 7800;
+    private static final int PORT_RANGE = 15;
+    
+    private final String transport;
+    private final String flowControlCredits;
+    private final String fragmentSize;
+    
+    private JGroupsStackProfile(String transport, String flowControlCredits, String fragmentSize) {
+        this.transport = transport;
+        this.flowControlCredits = flowControlCredits;
+        this.fragmentSize = fragmentSize;
+    }
+    
+    /**
+     * Returns the profile name as used on the command line, e.g. {@code low-latency}.
+     */
+    public String getProfileName() {
+        return name().toLowerCase(Locale.US).replace('_', '-');
+    }
+    
+    public static JGroupsStackProfile fromProfileName(String profileName) {
+        for (JGroupsStackProfile profile : values()) {
+            if (profile.getProfileName().equalsIgnoreCase(profileName) || profile.name().equalsIgnoreCase(profileName)) {
+                return profile;
+            }
+        }
+        
+        throw new IllegalArgumentException(String.format("Unknown JGroups stack profile [%s]", profileName));
+    }
+    
+    /**
+     * Resolves the channel configuration to use, i.e. the rendered {@code jgroups.profile}, if
+     * specified, or the given location otherwise.
+     *
+     * @param defaultLocation
+     *            the classpath resource or the file to use, if no profile has been selected
+     *
+     * @return the classpath resource or the file path
+     */
+    public static String resolveLocation(String defaultLocation) {
+        String profileName = System.getProperty(PROFILE_PROPERTY);
+        
+        return profileName == null || profileName.trim().isEmpty()
+                ? defaultLocation
+                : fromProfileName(profileName.trim()).writeConfiguration();
+    }
+    
+    /**
+     * Renders the profile into {@code jgroups.profile.dir}.
+     *
+     * @return the absolute path of the rendered file
+     */
+    public String writeConfiguration() {
+        Path file = Paths.get(System.getProperty(PROFILE_DIR_PROPERTY, DEFAULT_PROFILE_DIR))
+                .resolve(String.format("jgroups-%s.xml", getProfileName()))
+                .toAbsolutePath();
+        
+        try {
+            Files.createDirectories(file.getParent());
+            Files.write(file, toXml().getBytes(StandardCharsets.UTF_8));
+        
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        
+        return file.toString();
+    }
+    
+    public String toXml() {
+        return "<config xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n"
+                + "        xmlns=\"urn:org:jgroups\"\n"
+                + "        xsi:schemaLocation=\"urn:org:jgroups http://www.jgroups.org/schema/jgroups.xsd\">\n"
+                + transport
+                + "    <MERGE3 min_interval=\"10000\" max_interval=\"30000\" />\n"
+                + "    <FD timeout=\"3000\" max_tries=\"3\" />\n"
+                + "    <VERIFY_SUSPECT timeout=\"1500\" />\n"
+                + "    <BARRIER />\n"
+                + "    <pbcast.NAKACK2 use_mcast_xmit=\"false\" discard_delivered_msgs=\"true\" />\n"
+                + "    <UNICAST3 />\n"
+                + "    <pbcast.STABLE stability_delay=\"1000\" desired_avg_gossip=\"50000\" max_bytes=\"4M\" />\n"
+                + "    <pbcast.GMS join_timeout=\"3000\" view_bundling=\"true\" />\n"
+                + String.format("    <MFC max_credits=\"%s\" min_threshold=\"0.4\" />\n", flowControlCredits)
+                + String.format("    <FRAG2 frag_size=\"%s\" />\n", fragmentSize)
+                + "    <pbcast.STATE_TRANSFER />\n"
+                + "</config>\n";
+    }
+    
+    private static String transport(String protocol, String... attributes) {
+        StringBuilder builder = new StringBuilder()
+                .append("    <").append(protocol)
+                .append(String.format(" bind_port=\"%s\" bind_addr=\"127.0.0.1\" port_range=\"%s\"", BIND_PORT, PORT_RANGE))
+                .append(" sock_conn_timeout=\"3000\" timer_type=\"new3\"")
+                .append(" timer.min_threads=\"4\" timer.max_threads=\"10\"")
+                .append(" timer.keep_alive_time=\"3000\" timer.queue_max_size=\"500\"");
+        
+        boolean customBuffers = false;
+        for (int i = 0; i < attributes.length; i += 2) {
+            builder.append(String.format(" %s=\"%s\"", attributes[i], attributes[i + 1]));
+            customBuffers |= attributes[i].endsWith("_buf_size");
+        }
+        
+        if (!customBuffers) {
+            builder.append(" recv_buf_size=\"${tcp.recv_buf_size:5M}\" send_buf_size=\"${tcp.send_buf_size:5M}\"");
+        }
+        
+        return builder.append(" />\n")
+                .append(String.format("    <TCPPING initial_hosts=\"${jgroups.tcpping.initial_hosts:127.0.0.1[%s]}\" port_range=\"%s\" />\n",
+                        BIND_PORT, PORT_RANGE))
+                .toString();
+    }
+}
@@ -0,0 +1,114 @@
+package com.foo.bar;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The histogram of durations with fixed upper bounds, expressed in seconds, in the way Prometheus
+ * expects them to be exposed.
+ */
+public class LatencyHistogram {
+    
+    private static final double[] DEFAULT_BOUNDS = {
+            0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 180 };
+    
+    private final double[] bounds;
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    
+    public LatencyHistogram() {
+        this.bounds = DEFAULT_BOUNDS.clone();
+        this.buckets = new LongAdder[bounds.length + 1];
+        
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+    
+    public void record(long durationNanos) {
+        double seconds = (double) durationNanos / TimeUnit.SECONDS.toNanos(1);
+        int index = 0;
+        
+        while (index < bounds.length && seconds > bounds[index]) {
+            index++;
+        }
+        
+        buckets[index].increment();
+        count.increment();
+        sum.add(seconds);
+        maxNanos.accumulate(durationNanos);
+    }
+    
+    /**
+     * Returns the upper bounds of the buckets, excluding the implicit {@code +Inf} one.
+     *
+     * @return the upper bounds in seconds
+     */
+    public double[] getBounds() {
+        return bounds.clone();
+    }
+    
+    /**
+     * Returns the cumulative number of observations per bucket. The last element corresponds to
+     * the {@code +Inf} bucket.
+     *
+     * @return the cumulative counts, one more than {@link #getBounds()}
+     */
+    public long[] getCumulativeCounts() {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        
+        for (int i = 0; i < buckets.length; i++) {
+            total += buckets[i].sum();
+            counts[i] = total;
+        }
+        
+        return counts;
+    }
+    
+    public long getCount() {
+        return count.sum();
+    }
+    
+    public double getSumSeconds() {
+        return sum.sum();
+    }
+    
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+    
+    /**
+     * Returns the upper bound of the bucket the given percentage of observations falls into, using
+     * the nearest-rank method, capped by the longest observation. Unlike the exact percentiles of
+     * {@link LatencyRecorder}, the memory taken does not grow with the number of observations.
+     *
+     * @param percentile
+     *            the percentile, between {@code 0} (exclusive) and {@code 100} (inclusive)
+     *
+     * @return the duration in nanoseconds, or {@code 0} if nothing has been recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] counts = getCumulativeCounts();
+        long total = counts[counts.length - 1];
+        
+        if (total == 0) {
+            return 0;
+        }
+        
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long max = getMaxNanos();
+        
+        for (int i = 0; i < bounds.length; i++) {
+            if (counts[i] >= rank) {
+                return Math.min(max, (long) (bounds[i] * TimeUnit.SECONDS.toNanos(1)));
+            }
+        }
+        
+        return max;
+    }
+}
@@ -0,0 +1,89 @@
+package com.foo.bar;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps every recorded duration, so that exact percentiles can be reported at the end of a
+ * benchmark run. Unlike {@link LatencyHistogram}, this class is meant for bounded runs only.
+ */
+public class LatencyRecorder {
+    
+    private long[] samples = new long[1024];
+    private int size;
+    private boolean sorted = true;
+    
+    public synchronized void record(long durationNanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        
+        samples[size++] = durationNanos;
+        sorted = false;
+    }
+    
+    public synchronized int getCount() {
+        return size;
+    }
+    
+    /**
+     * Returns the duration below which the given percentage of samples falls, using the
+     * nearest-rank method.
+     *
+     * @param percentile
+     *            the percentile, between {@code 0} (exclusive) and {@code 100} (inclusive)
+     *
+     * @return the duration in nanoseconds, or {@code 0} if nothing has been recorded
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        
+        if (!sorted) {
+            Arrays.sort(samples, 0, size);
+            sorted = true;
+        }
+        
+        int rank = (int) Math.ceil(percentile / 100 * size);
+        return samples[Math.max(0, Math.min(rank, size) - 1)];
+    }
+    
+    public synchronized long getMax() {
+        return getPercentile(100);
+    }
+    
+    public synchronized long getMean() {
+        if (size == 0) {
+            return 0;
+        }
+        
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += samples[i];
+        }
+        
+        return total / size;
+    }
+    
+    public synchronized void reset() {
+        size = 0;
+        sorted = true;
+    }
+    
+    /**
+     * Calculates the number of recorded operations per second.
+     *
+     * @param elapsedNanos
+     *            the wall-clock time the operations took
+     *
+     * @return the throughput, or {@code 0} if the elapsed time is not positive
+     */
+    public synchronized double getThroughput(long elapsedNanos) {
+        return elapsedNanos <= 0 ? 0 : size * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+    
+    public static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,56 @@
+package com.foo.bar;
+
+import javax.jcr.Session;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The Flight Recorder event of a lock acquisition, see {@link FlightEvents}. Unlike the other
+ * events, it keeps the stack trace, which tells the operation waiting for the lock.
+ */
+@Name("com.foo.bar.LockAcquisition")
+@Label("Lock Acquisition")
+@Category({ "ModeShape Cluster Test", "Locking" })
+@Description("An attempt to acquire a JCR lock")
+class LockAcquisitionEvent extends Event implements FlightEvents.Scope {
+    
+    @Label("Path")
+    String path;
+    
+    @Label("Repository")
+    String repository;
+    
+    @Label("Outcome")
+    String outcome;
+    
+    private transient Session session;
+    
+    static FlightEvents.Scope start(Session session, String absolutePath) {
+        LockAcquisitionEvent event = new LockAcquisitionEvent();
+        
+        if (!event.isEnabled()) {
+            return ignored -> {};
+        }
+        
+        event.path = absolutePath;
+        event.session = session;
+        event.begin();
+        
+        return event;
+    }
+    
+    @Override
+    public void end(String outcome) {
+        end();
+        
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            this.repository = FlightEvents.getRepositoryName(session);
+            commit();
+        }
+    }
+}
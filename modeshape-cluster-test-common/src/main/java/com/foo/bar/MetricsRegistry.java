@@ -0,0 +1,89 @@
+package com.foo.bar;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The JVM-wide registry of histograms, counters and gauges. A metric is identified by its name
+ * and a label set, which is kept in the Prometheus text notation, e.g. {@code outcome="commit"}.
+ */
+public class MetricsRegistry {
+    
+    public static final String LOCK_WAIT_METRIC = "jcr_lock_wait_seconds";
+    public static final String LOCK_HOLD_METRIC = "jcr_lock_hold_seconds";
+    public static final String TRANSACTION_METRIC = "jcr_transactions_total";
+    public static final String OPTIMISTIC_UPDATE_METRIC = "jcr_optimistic_updates_total";
+    public static final String LOCK_CONFLICT_METRIC = "jcr_lock_conflicts_total";
+    public static final String WRITE_BEHIND_UPDATE_METRIC = "jcr_write_behind_updates_total";
+    public static final String WRITE_BEHIND_FLUSH_METRIC = "jcr_write_behind_flush_seconds";
+    public static final String WRITE_BEHIND_PENDING_METRIC = "jcr_write_behind_pending_updates";
+    
+    private static final ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> HISTOGRAMS = new ConcurrentSkipListMap<>();
+    private static final ConcurrentMap<String, ConcurrentMap<String, LongAdder>> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final ConcurrentMap<String, LongSupplier> GAUGES = new ConcurrentSkipListMap<>();
+    private static final ConcurrentMap<String, String> DESCRIPTIONS = new ConcurrentHashMap<>();
+    
+    static {
+        describe(LOCK_WAIT_METRIC, "Time spent acquiring JCR locks via NodeLockHelper");
+        describe(LOCK_HOLD_METRIC, "Time JCR locks acquired via NodeLockHelper were held");
+        describe(TRANSACTION_METRIC, "User transactions completed via TransactionExecutor");
+        describe(OPTIMISTIC_UPDATE_METRIC, "Attempts of the optimistic node updates, by outcome");
+        describe(LOCK_CONFLICT_METRIC, "Attempts of the locked node updates finding the node locked by another session");
+        describe(WRITE_BEHIND_UPDATE_METRIC, "Updates of the write-behind queue, by outcome (submitted/coalesced/written/failed)");
+        describe(WRITE_BEHIND_FLUSH_METRIC, "Time spent flushing the write-behind queue, by trigger");
+        describe(WRITE_BEHIND_PENDING_METRIC, "Updates waiting in the write-behind queue");
+    }
+    
+    public static LatencyHistogram histogram(String name, String labels) {
+        return HISTOGRAMS.computeIfAbsent(name, key -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(labels, key -> new LatencyHistogram());
+    }
+    
+    public static LongAdder counter(String name, String labels) {
+        return COUNTERS.computeIfAbsent(name, key -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(labels, key -> new LongAdder());
+    }
+    
+    public static void gauge(String name, LongSupplier supplier) {
+        GAUGES.put(name, supplier);
+    }
+    
+    /**
+     * Removes the gauge, unless it has been replaced by another supplier in the meantime.
+     */
+    public static void removeGauge(String name, LongSupplier supplier) {
+        GAUGES.remove(name, supplier);
+    }
+    
+    public static void describe(String name, String help) {
+        DESCRIPTIONS.put(name, help);
+    }
+    
+    public static String label(String name, String value) {
+        return String.format("%s=\"%s\"", name,
+                value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"));
+    }
+    
+    public static Map<String, ? extends Map<String, LatencyHistogram>> getHistograms() {
+        return Collections.unmodifiableMap(HISTOGRAMS);
+    }
+    
+    public static Map<String, ? extends Map<String, LongAdder>> getCounters() {
+        return Collections.unmodifiableMap(COUNTERS);
+    }
+    
+    public static Map<String, LongSupplier> getGauges() {
+        return Collections.unmodifiableMap(GAUGES);
+    }
+    
+    public static String getDescription(String name) {
+        return DESCRIPTIONS.getOrDefault(name, name);
+    }
+    
+    private MetricsRegistry() {}
+}
@@ -1,5 +1,7 @@
 package com.foo.bar;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -9,6 +11,7 @@ import java.util.concurrent.TimeUnit;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.lock.Lock;
 
 import org.modeshape.jcr.JcrLexicon;
 
@@ -16,16 +19,52 @@ public class NodeLockHelper {
 
     public static final String LOCK_HOLD_TIMEOUT_PROPERTY = "lock.hold.timeout";
     private static final String LOCK_HOLD_TIMEOUT = System.getProperty(LOCK_HOLD_TIMEOUT_PROPERTY, "180");
+    // keyed by the repository and the path, as the members of a cluster may lock the same path
+    private static final ConcurrentMap<String, Long> LOCK_ACQUISITION_TIMES = new ConcurrentHashMap<>();
     
     public static void lockNode(Node node) {
+        long start = System.nanoTime();
+        FlightEvents.Scope event = beginLockAcquisition(node);
+        boolean acquired = false;
+        
+        try {
+            TransactionExecutor.forceRunInTransaction(() -> {
+                Lock lock = node.getSession().getWorkspace().getLockManager().lock(
+                        node.getPath(),
+                        false,
+                        false,
+                        TimeUnit.SECONDS.toSeconds(Integer.parseInt(LOCK_HOLD_TIMEOUT)),
+                        null);
+                
+                LOCK_ACQUISITION_TIMES.put(getLockKey(node), System.nanoTime());
+                return lock;
+            });
+            
+            acquired = true;
+        
+        } finally {
+            MetricsRegistry.histogram(MetricsRegistry.LOCK_WAIT_METRIC,
+                    MetricsRegistry.label("outcome", acquired ? "acquired" : "failed"))
+                    .record(System.nanoTime() - start);
+            
+            event.end(acquired ? "acquired" : FlightEvents.OUTCOME_FAILED);
+        }
+    }
+    
+    public static void unlockNode(Node node) throws RepositoryException {
+        Session session = node.getSession();
+        
+        if (session.hasPendingChanges()) {
+            session.refresh(false);
+        }
+        
         TransactionExecutor.forceRunInTransaction(() -> {
-            return node.getSession().getWorkspace().getLockManager().lock(
-                    node.getPath(),
-                    false,
-                    false,
-                    TimeUnit.SECONDS.toSeconds(Integer.parseInt(LOCK_HOLD_TIMEOUT)),
-                    null);
+            session.getWorkspace().getLockManager().unlock(node.getPath());
+            
+            return null;
         });
+        
+        recordLockRelease(node);
     }
     
     public static void unlockSuspendNotActive(Node node) throws RepositoryException {
@@ -37,6 +76,8 @@ public class NodeLockHelper {
             
             return null;
         });
+        
+        recordLockRelease(node);
     }
     
     public static void unlockInNewThread(Node node) throws RepositoryException {
@@ -58,6 +99,8 @@ public class NodeLockHelper {
         } catch (InterruptedException | ExecutionException e) {
             throw new RuntimeException(e);
         }
+        
+        recordLockRelease(node);
     }
     
     public static boolean isNodeCorrupted(Node node) throws RepositoryException {
@@ -65,5 +108,27 @@ public class NodeLockHelper {
                 || node.hasProperty(JcrLexicon.IS_DEEP.toString()));
     }
     
+    private static FlightEvents.Scope beginLockAcquisition(Node node) {
+        try {
+            return FlightEvents.beginLockAcquisition(node.getSession(), node.getPath());
+        
+        } catch (RepositoryException e) {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    private static void recordLockRelease(Node node) throws RepositoryException {
+        Long acquisitionTime = LOCK_ACQUISITION_TIMES.remove(getLockKey(node));
+        
+        if (acquisitionTime != null) {
+            MetricsRegistry.histogram(MetricsRegistry.LOCK_HOLD_METRIC, "")
+                    .record(System.nanoTime() - acquisitionTime);
+        }
+    }
+    
+    private static String getLockKey(Node node) throws RepositoryException {
+        return FlightEvents.getRepositoryName(node.getSession()) + ":" + node.getPath();
+    }
+    
     private NodeLockHelper() {}
 }
@@ -0,0 +1,227 @@
+package com.foo.bar;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+import org.modeshape.jcr.RepositoryConfiguration;
+import org.modeshape.jcr.RepositoryConfiguration.FieldName;
+import org.modeshape.schematic.Schematic;
+import org.modeshape.schematic.document.Document;
+import org.modeshape.schematic.document.EditableDocument;
+import org.modeshape.schematic.document.Editor;
+
+/**
+ * Produces the variants of a repository configuration, which differ in the way the documents and
+ * the binaries are stored. The base configuration, e.g. {@code main-repository.json}, is expected
+ * to use the {@code db} persistence, whose connection settings are reused by the {@code database}
+ * binary storage, unless the base configuration defines one already. The default variant leaves
+ * the base configuration as is.
+ * <p>
+ * The {@code file} persistence cannot be shared by several repositories, so the clustering is
+ * removed from such variants and every repository gets its own directory. The {@code file} binary
+ * storage is shared by all the repositories using the same storage directory.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code repository.persistence} - the {@link Persistence} type, defaults to {@code db}</li>
+ *   <li>{@code repository.binary.storage} - the {@link BinaryStorage} type, defaults to {@code database}</li>
+ *   <li>{@code repository.cache.size} - the number of nodes cached per workspace, defaults to the ModeShape default</li>
+ *   <li>{@code repository.storage.dir} - the directory of the file-based storages, defaults to {@code target/storage}</li>
+ * </ul>
+ */
+public class RepositoryConfigurationGenerator {
+    
+    public static final String PERSISTENCE_PROPERTY = "repository.persistence";
+    public static final String BINARY_STORAGE_PROPERTY = "repository.binary.storage";
+    public static final String CACHE_SIZE_PROPERTY = "repository.cache.size";
+    public static final String STORAGE_DIR_PROPERTY = "repository.storage.dir";
+    
+    private static final String DEFAULT_STORAGE_DIR = "target/storage";
+    
+    private final Persistence persistence;
+    private final BinaryStorage binaryStorage;
+    private final Optional<Integer> cacheSize;
+    private final Path storageDirectory;
+    
+    public RepositoryConfigurationGenerator(Persistence persistence, BinaryStorage binaryStorage,
+            Optional<Integer> cacheSize, Path storageDirectory) {
+        
+        this.persistence = persistence;
+        this.binaryStorage = binaryStorage;
+        this.cacheSize = cacheSize;
+        this.storageDirectory = storageDirectory.toAbsolutePath();
+    }
+    
+    public static RepositoryConfigurationGenerator fromSystemProperties() {
+        String cacheSize = System.getProperty(CACHE_SIZE_PROPERTY, "").trim();
+        
+        return new RepositoryConfigurationGenerator(
+                Persistence.fromTypeName(System.getProperty(PERSISTENCE_PROPERTY, Persistence.DB.getTypeName())),
+                BinaryStorage.fromTypeName(System.getProperty(BINARY_STORAGE_PROPERTY, BinaryStorage.DATABASE.getTypeName())),
+                cacheSize.isEmpty() ? Optional.empty() : Optional.of(Integer.valueOf(cacheSize)),
+                Paths.get(System.getProperty(STORAGE_DIR_PROPERTY, DEFAULT_STORAGE_DIR)));
+    }
+    
+    public Persistence getPersistence() {
+        return persistence;
+    }
+    
+    public BinaryStorage getBinaryStorage() {
+        return binaryStorage;
+    }
+    
+    public Optional<Integer> getCacheSize() {
+        return cacheSize;
+    }
+    
+    public Path getStorageDirectory() {
+        return storageDirectory;
+    }
+    
+    /**
+     * Tells whether several repositories using this variant can form a cluster, i.e. whether they
+     * share both the documents and the binaries.
+     *
+     * @return {@code true} if the variant can be clustered
+     */
+    public boolean isClusterable() {
+        return persistence == Persistence.DB && binaryStorage != BinaryStorage.TRANSIENT;
+    }
+    
+    /**
+     * Returns the short name of the variant, e.g. {@code db/file/cache-1000}.
+     *
+     * @return the name
+     */
+    public String getVariantName() {
+        return persistence.getTypeName() + "/" + binaryStorage.getTypeName()
+                + (cacheSize.isPresent() ? "/cache-" + cacheSize.get() : "");
+    }
+    
+    /**
+     * Applies the variant to the given configuration.
+     *
+     * @param baseConfiguration
+     *            the configuration to start with, its variables must have been resolved already
+     *
+     * @return the new configuration, the given one is left intact
+     */
+    public RepositoryConfiguration generate(RepositoryConfiguration baseConfiguration) {
+        Editor editor = baseConfiguration.edit();
+        EditableDocument storage = editor.getOrCreateDocument(FieldName.STORAGE);
+        Document dbPersistence = baseConfiguration.getPersistenceConfiguration();
+        
+        if (!Persistence.DB.getTypeName().equals(dbPersistence.getString(FieldName.TYPE))) {
+            throw new IllegalStateException(String.format("The base configuration must use the [%s] persistence "
+                    + "[repository=%s]", Persistence.DB.getTypeName(), baseConfiguration.getName()));
+        }
+        
+        if (persistence == Persistence.FILE) {
+            storage.setDocument(FieldName.PERSISTENCE, Schematic.newDocument(
+                    FieldName.TYPE, persistence.getTypeName(),
+                    "path", storageDirectory.resolve(baseConfiguration.getName()).resolve("persistence").toString()));
+            
+            editor.remove(FieldName.CLUSTERING);
+        }
+        
+        switch (binaryStorage) {
+            case DATABASE:
+                Document baseBinaryStorage = storage.getDocument(FieldName.BINARY_STORAGE);
+                
+                // the base configuration knows better, e.g. the credentials
+                if (baseBinaryStorage != null
+                        && binaryStorage.getTypeName().equals(baseBinaryStorage.getString(FieldName.TYPE))) {
+                    
+                    break;
+                }
+                
+                storage.setDocument(FieldName.BINARY_STORAGE, Schematic.newDocument(
+                        FieldName.TYPE, binaryStorage.getTypeName(),
+                        FieldName.JDBC_DRIVER_CLASS, dbPersistence.getString("driver"),
+                        FieldName.CONNECTION_URL, dbPersistence.getString("connectionUrl"),
+                        FieldName.USER_NAME, dbPersistence.getString(FieldName.USER_NAME, "sa"))
+                        .set(FieldName.USER_PASSWORD, dbPersistence.getString(FieldName.USER_PASSWORD, "")));
+                break;
+            
+            case FILE:
+                storage.setDocument(FieldName.BINARY_STORAGE, Schematic.newDocument(
+                        FieldName.TYPE, binaryStorage.getTypeName(),
+                        FieldName.DIRECTORY, storageDirectory.resolve("binaries").toString()));
+                break;
+            
+            case TRANSIENT:
+                storage.setDocument(FieldName.BINARY_STORAGE, Schematic.newDocument(
+                        FieldName.TYPE, binaryStorage.getTypeName()));
+                break;
+            
+            default:
+                throw new IllegalStateException(String.format("Unsupported binary storage [%s]", binaryStorage));
+        }
+        
+        if (cacheSize.isPresent()) {
+            editor.getOrCreateDocument(FieldName.WORKSPACES).setNumber(FieldName.WORKSPACE_CACHE_SIZE, cacheSize.get());
+        }
+        
+        return new RepositoryConfiguration(editor, baseConfiguration.getName());
+    }
+    
+    /**
+     * The supported document storages.
+     */
+    public enum Persistence {
+        
+        DB("db"),
+        FILE("file");
+        
+        private final String typeName;
+        
+        private Persistence(String typeName) {
+            this.typeName = typeName;
+        }
+        
+        public String getTypeName() {
+            return typeName;
+        }
+        
+        public static Persistence fromTypeName(String typeName) {
+            for (Persistence persistence : values()) {
+                if (persistence.getTypeName().equalsIgnoreCase(typeName) || persistence.name().equalsIgnoreCase(typeName)) {
+                    return persistence;
+                }
+            }
+            
+            throw new IllegalArgumentException(String.format("Unknown persistence [%s]", typeName));
+        }
+    }
+    
+    /**
+     * The supported binary storages.
+     */
+    public enum BinaryStorage {
+        
+        DATABASE("database"),
+        FILE("file"),
+        TRANSIENT("transient");
+        
+        private final String typeName;
+        
+        private BinaryStorage(String typeName) {
+            this.typeName = typeName;
+        }
+        
+        public String getTypeName() {
+            return typeName;
+        }
+        
+        public static BinaryStorage fromTypeName(String typeName) {
+            for (BinaryStorage binaryStorage : values()) {
+                if (binaryStorage.getTypeName().equalsIgnoreCase(typeName) || binaryStorage.name().equalsIgnoreCase(typeName)) {
+                    return binaryStorage;
+                }
+            }
+            
+            throw new IllegalArgumentException(String.format("Unknown binary storage [%s]", typeName));
+        }
+    }
+}
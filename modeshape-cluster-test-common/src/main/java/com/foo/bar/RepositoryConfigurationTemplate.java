@@ -0,0 +1,111 @@
+package com.foo.bar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.modeshape.jcr.RepositoryConfiguration;
+import org.modeshape.schematic.document.Json;
+import org.modeshape.schematic.document.ParsingException;
+
+/**
+ * The repository configuration, whose {@code ${...}} variables are resolved per repository rather
+ * than via the global system properties, so that several repositories can be configured at the
+ * same time. A variable is resolved from the given values first, then from the system properties,
+ * then from its default, i.e. the part after {@code :}, e.g. {@code ${db.username:sa}}. Just like
+ * ModeShape does, several comma-separated names can be listed and an unresolved variable is left
+ * as is.
+ */
+public class RepositoryConfigurationTemplate {
+    
+    private static final Pattern VARIABLE = Pattern.compile("\\$\\{([^}:]+)(?::([^}]*))?\\}");
+    
+    private final String content;
+    private final String name;
+    
+    private RepositoryConfigurationTemplate(String content, String name) {
+        this.content = content;
+        this.name = name;
+    }
+    
+    public static RepositoryConfigurationTemplate read(URL url) throws IOException {
+        try (InputStream stream = url.openStream()) {
+            return read(stream, new File(url.getPath()).getName());
+        }
+    }
+    
+    public static RepositoryConfigurationTemplate read(File file) throws IOException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getAbsolutePath());
+        }
+        
+        try (InputStream stream = new FileInputStream(file)) {
+            return read(stream, file.getName());
+        }
+    }
+    
+    public static RepositoryConfigurationTemplate read(InputStream stream, String name) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        
+        for (int read = stream.read(buffer); read != -1; read = stream.read(buffer)) {
+            content.write(buffer, 0, read);
+        }
+        
+        return new RepositoryConfigurationTemplate(new String(content.toByteArray(), StandardCharsets.UTF_8),
+                name.replaceFirst("\\.json$", ""));
+    }
+    
+    /**
+     * Resolves the variables and parses the result.
+     *
+     * @param variables
+     *            the values of the variables specific to the repository
+     *
+     * @return the configuration
+     *
+     * @throws ParsingException
+     *             if the resolved configuration is not a valid JSON document
+     */
+    public RepositoryConfiguration resolve(Map<String, String> variables) throws ParsingException {
+        Matcher matcher = VARIABLE.matcher(content);
+        StringBuffer resolved = new StringBuffer(content.length());
+        
+        while (matcher.find()) {
+            String value = null;
+            
+            for (String variable : matcher.group(1).split(",")) {
+                value = variables.containsKey(variable.trim())
+                        ? variables.get(variable.trim())
+                        : System.getProperty(variable.trim());
+                
+                if (value != null) {
+                    break;
+                }
+            }
+            
+            if (value == null) {
+                value = matcher.group(2);
+            }
+            
+            matcher.appendReplacement(resolved, Matcher.quoteReplacement(value == null ? matcher.group() : escape(value)));
+        }
+        
+        matcher.appendTail(resolved);
+        
+        return new RepositoryConfiguration(Json.read(resolved.toString()), name);
+    }
+    
+    private static String escape(String value) {
+        // the variables are always placed within JSON strings
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -1,6 +1,11 @@
 package com.foo.bar;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 import javax.jcr.Repository;
@@ -9,7 +14,6 @@ import javax.jcr.Session;
 
 import org.modeshape.jcr.ConfigurationException;
 import org.modeshape.jcr.ModeShapeEngine;
-import org.modeshape.jcr.RepositoryConfiguration;
 import org.modeshape.schematic.document.ParsingException;
 
 /**
@@ -27,15 +31,38 @@ public class RepositoryHelper {
     public static Repository createRepository(ModeShapeEngine engine, String dbUrl)
             throws ConfigurationException, ParsingException, RepositoryException {
         
-        System.setProperty("db.url", dbUrl);
-        System.setProperty("repository.uuid", UUID.randomUUID().toString());
-        System.setProperty("cluster.name", CLUSTER_NAME);
-        System.setProperty("jgroups.location", JGROUPS_LOCATION);
-        System.setProperty("transaction.manager.lookup", ArjunaTransactionManagerLookup.class.getCanonicalName());
+        return createRepository(engine, dbUrl, Optional.empty());
+    }
+    
+    public static Repository createRepository(ModeShapeEngine engine, String dbUrl,
+            Optional<JGroupsStackProfile> jgroupsProfile)
+            throws ConfigurationException, ParsingException, RepositoryException {
+        
+        return createRepository(engine, dbUrl, jgroupsProfile, RepositoryConfigurationGenerator.fromSystemProperties());
+    }
+    
+    public static Repository createRepository(ModeShapeEngine engine, String dbUrl,
+            Optional<JGroupsStackProfile> jgroupsProfile, RepositoryConfigurationGenerator configurationGenerator)
+            throws ConfigurationException, ParsingException, RepositoryException {
+        
+        Map<String, String> variables = new HashMap<>();
+        variables.put("db.url", dbUrl);
+        variables.put("repository.uuid", UUID.randomUUID().toString());
+        variables.put("cluster.name", CLUSTER_NAME);
+        variables.put("jgroups.location", jgroupsProfile.isPresent()
+                ? jgroupsProfile.get().writeConfiguration()
+                : JGroupsStackProfile.resolveLocation(JGROUPS_LOCATION));
+        variables.put("transaction.manager.lookup", ArjunaTransactionManagerLookup.class.getCanonicalName());
         
         URL configurationFile = RepositoryHelper.class.getResource(REPOSITORY_CONFIGURATION_FILE);
         
-        return engine.deploy(RepositoryConfiguration.read(configurationFile)); 
+        try {
+            return engine.deploy(configurationGenerator.generate(
+                    RepositoryConfigurationTemplate.read(configurationFile).resolve(variables)));
+        
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
     
     public static Session createSession(Repository repository) throws RepositoryException {
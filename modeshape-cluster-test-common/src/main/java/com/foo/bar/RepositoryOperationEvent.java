@@ -0,0 +1,61 @@
+package com.foo.bar;
+
+import javax.jcr.Session;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Flight Recorder event of a repository operation, see {@link FlightEvents}.
+ */
+@Name("com.foo.bar.RepositoryOperation")
+@Label("Repository Operation")
+@Category({ "ModeShape Cluster Test", "Repository" })
+@Description("A node operation performed via NodeHelper")
+@StackTrace(false)
+class RepositoryOperationEvent extends Event implements FlightEvents.Scope {
+    
+    @Label("Operation")
+    String operation;
+    
+    @Label("Path")
+    String path;
+    
+    @Label("Repository")
+    String repository;
+    
+    @Label("Outcome")
+    String outcome;
+    
+    private transient Session session;
+    
+    static FlightEvents.Scope start(String operation, Session session, String absolutePath) {
+        RepositoryOperationEvent event = new RepositoryOperationEvent();
+        
+        if (!event.isEnabled()) {
+            return ignored -> {};
+        }
+        
+        event.operation = operation;
+        event.path = absolutePath;
+        event.session = session;
+        event.begin();
+        
+        return event;
+    }
+    
+    @Override
+    public void end(String outcome) {
+        end();
+        
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            this.repository = FlightEvents.getRepositoryName(session);
+            commit();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.foo.bar;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Attributes the SQL work recorded by {@link AccountingDriver} to the high-level operation the
+ * current thread is performing, e.g. {@code updateNode}. The statements executed outside of any
+ * operation, e.g. by the ModeShape background threads, are attributed to {@link #UNTAGGED}.
+ */
+public class SqlCostTracker {
+    
+    public static final String UNTAGGED = "untagged";
+    public static final String STATEMENT_METRIC = "jdbc_statement_duration_seconds";
+    
+    private static final ThreadLocal<String> CURRENT_OPERATION = new ThreadLocal<>();
+    private static final ConcurrentMap<String, OperationCost> COSTS = new ConcurrentSkipListMap<>();
+    
+    static {
+        MetricsRegistry.describe(STATEMENT_METRIC, "JDBC round trips made via AccountingDriver");
+    }
+    
+    /**
+     * Runs the callable with the given operation tag. The calls can be nested, the innermost tag
+     * wins until the nested call completes.
+     *
+     * @param operation
+     *            the operation tag
+     * @param callable
+     *            the work to do
+     *
+     * @return the result of the callable
+     *
+     * @throws Exception
+     *             if the callable failed
+     */
+    public static <T> T track(String operation, Callable<T> callable) throws Exception {
+        String previousOperation = CURRENT_OPERATION.get();
+        CURRENT_OPERATION.set(operation);
+        
+        try {
+            COSTS.computeIfAbsent(operation, key -> new OperationCost()).invocations.increment();
+            return callable.call();
+        
+        } finally {
+            if (previousOperation == null) {
+                CURRENT_OPERATION.remove();
+            
+            } else {
+                CURRENT_OPERATION.set(previousOperation);
+            }
+        }
+    }
+    
+    public static String getCurrentOperation() {
+        String operation = CURRENT_OPERATION.get();
+        return operation == null ? UNTAGGED : operation;
+    }
+    
+    public static Map<String, OperationCost> getCosts() {
+        return Collections.unmodifiableMap(COSTS);
+    }
+    
+    public static void reset() {
+        COSTS.clear();
+    }
+    
+    /**
+     * Renders the costs as a table, one row per operation, the averages being per invocation.
+     *
+     * @return the report
+     */
+    public static String getReport() {
+        StringBuilder builder = new StringBuilder(String.format("%n%-24s %8s %10s %10s %10s %12s %12s %10s%n",
+                "operation", "calls", "stmts", "stmts/call", "rows/call", "bytes/call", "sql ms/call", "p99 ms"));
+        
+        for (Map.Entry<String, OperationCost> entry : COSTS.entrySet()) {
+            OperationCost cost = entry.getValue();
+            double invocations = Math.max(1, cost.getInvocations());
+            
+            builder.append(String.format("%-24s %8s %10s %10.1f %10.1f %12.0f %12.2f %10.2f%n",
+                    entry.getKey(),
+                    cost.getInvocations(),
+                    cost.getStatements(),
+                    cost.getStatements() / invocations,
+                    cost.getRows() / invocations,
+                    cost.getBytes() / invocations,
+                    LatencyRecorder.toMillis(cost.getLatencies().getMean() * cost.getLatencies().getCount()) / invocations,
+                    LatencyRecorder.toMillis(cost.getLatencies().getPercentile(99))));
+        }
+        
+        return builder.toString();
+    }
+    
+    static void recordStatement(long durationNanos, long rows, long bytes) {
+        String operation = getCurrentOperation();
+        OperationCost cost = COSTS.computeIfAbsent(operation, key -> new OperationCost());
+        
+        cost.statements.increment();
+        cost.rows.add(rows);
+        cost.bytes.add(bytes);
+        cost.latencies.record(durationNanos);
+        
+        MetricsRegistry.histogram(STATEMENT_METRIC, MetricsRegistry.label("operation", operation)).record(durationNanos);
+    }
+    
+    static void recordTraffic(long rows, long bytes) {
+        OperationCost cost = COSTS.computeIfAbsent(getCurrentOperation(), key -> new OperationCost());
+        
+        cost.rows.add(rows);
+        cost.bytes.add(bytes);
+    }
+    
+    private SqlCostTracker() {}
+    
+    /**
+     * The SQL cost accumulated by a single operation.
+     */
+    public static class OperationCost {
+        
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LatencyRecorder latencies = new LatencyRecorder();
+        
+        public long getInvocations() {
+            return invocations.sum();
+        }
+        
+        /**
+         * Returns the number of round trips, i.e. statement executions, commits and rollbacks.
+         */
+        public long getStatements() {
+            return statements.sum();
+        }
+        
+        /**
+         * Returns the number of rows read and written.
+         */
+        public long getRows() {
+            return rows.sum();
+        }
+        
+        /**
+         * Returns the approximate number of bytes sent as parameters and read from the result sets.
+         */
+        public long getBytes() {
+            return bytes.sum();
+        }
+        
+        public LatencyRecorder getLatencies() {
+            return latencies;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.foo.bar;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Flight Recorder event of a user transaction run via {@link TransactionExecutor}, see
+ * {@link FlightEvents}. The transaction is not bound to a node or a repository, so the event
+ * carries the outcome only, i.e. {@code commit}, {@code rollback}, {@code aborted} or
+ * {@code joined} for the transactions joining an active one.
+ */
+@Name("com.foo.bar.Transaction")
+@Label("Transaction")
+@Category({ "ModeShape Cluster Test", "Transactions" })
+@Description("A user transaction run via TransactionExecutor")
+@StackTrace(false)
+class TransactionEvent extends Event implements FlightEvents.Scope {
+    
+    @Label("Outcome")
+    String outcome;
+    
+    static FlightEvents.Scope start() {
+        TransactionEvent event = new TransactionEvent();
+        
+        if (!event.isEnabled()) {
+            return ignored -> {};
+        }
+        
+        event.begin();
+        return event;
+    }
+    
+    @Override
+    public void end(String outcome) {
+        end();
+        
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
@@ -30,6 +30,8 @@ public class TransactionExecutor {
     }
     
     public static <T> T runInTransaction(Callable<T> callable) {
+        FlightEvents.Scope event = FlightEvents.beginTransaction();
+        String outcome = FlightEvents.OUTCOME_FAILED;
         boolean commit = true;
 
         try {
@@ -37,17 +39,25 @@ public class TransactionExecutor {
                 MANAGER.begin();
             } else {
                 commit = false;
+                outcome = "joined";
             }
 
             T result = callable.call();
             
             if (!isActive()) {
+                MetricsRegistry.counter(MetricsRegistry.TRANSACTION_METRIC,
+                        MetricsRegistry.label("outcome", "aborted")).increment();
+                outcome = "aborted";
+                
                 throw new RuntimeException(String.format("The transaction is no longer active [toString=%s]",
                         MANAGER.getTransaction()));
             }
             
             if (isActive() && commit) {
                 MANAGER.commit();
+                MetricsRegistry.counter(MetricsRegistry.TRANSACTION_METRIC,
+                        MetricsRegistry.label("outcome", "commit")).increment();
+                outcome = "commit";
             }
 
             return result;
@@ -62,9 +72,14 @@ public class TransactionExecutor {
             try {
                 if (isActive() && commit) {
                     MANAGER.rollback();
+                    MetricsRegistry.counter(MetricsRegistry.TRANSACTION_METRIC,
+                            MetricsRegistry.label("outcome", "rollback")).increment();
+                    outcome = "rollback";
                 }
             } catch (Exception e) {
                 throw new RuntimeException(e);
+            } finally {
+                event.end(outcome);
             }
         }
     }
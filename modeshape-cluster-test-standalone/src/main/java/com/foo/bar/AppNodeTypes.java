@@ -0,0 +1,204 @@
+package com.foo.bar;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.modeshape.jcr.api.nodetype.NodeTypeManager;
+
+/**
+ * The utility class to work with the lean node types of {@code app-node-types.cnd}. Unlike the
+ * {@code nt:unstructured} nodes created by {@link NodeHelper}, every one of which is versionable
+ * and lockable, these nodes get the mixins only where the {@link MixinPolicy} requires them.
+ */
+public class AppNodeTypes {
+    
+    static final String CND_FILE = "/app-node-types.cnd";
+    
+    /**
+     * Registers the node types, the ones registered already are updated.
+     *
+     * @param session
+     *            the session to use
+     *
+     * @throws RepositoryException
+     *             if the node types could not be registered
+     */
+    public static void register(Session session) throws RepositoryException {
+        NodeTypeManager nodeTypeManager = (NodeTypeManager) session.getWorkspace().getNodeTypeManager();
+        
+        try (InputStream stream = AppNodeTypes.class.getResourceAsStream(CND_FILE)) {
+            nodeTypeManager.registerNodeTypes(stream, true);
+        
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    public static String addNode(Session session, String parentAbsolutePath, String relativePath,
+            NodeKind kind, Optional<String> content, MixinPolicy policy) throws RepositoryException {
+        
+        Node child = session.getNode(parentAbsolutePath).addNode(relativePath, kind.getTypeName());
+        
+        if (policy.isVersionable(kind)) {
+            child.addMixin(NodeHelper.MIXIN_VERSIONABLE);
+        }
+        
+        if (policy.isLockable(kind)) {
+            child.addMixin(NodeHelper.MIXIN_LOCKABLE);
+        }
+        
+        if (content.isPresent()) {
+            child.setProperty(NodeHelper.NODE_CONTENT_PROPERTY, content.get());
+        }
+        
+        session.save();
+        
+        if (policy.isVersionable(kind)) {
+            NodeHelper.checkinNode(child);
+        }
+        
+        return child.getPath();
+    }
+    
+    /**
+     * Updates the content of the node, which is checked out and in again only if it is
+     * versionable. The parent is left intact, because it does not version its children.
+     */
+    public static String updateNode(Session session, String absolutePath, String content) throws RepositoryException {
+        return updateNode(session, absolutePath, content, Optional.empty());
+    }
+    
+    public static String updateNode(Session session, String absolutePath, String content,
+            Optional<NodeIdentifierCache> cache) throws RepositoryException {
+        
+        Node node = NodeHelper.getNode(session, absolutePath, cache);
+        boolean versionable = node.isNodeType(NodeHelper.MIXIN_VERSIONABLE);
+        
+        if (versionable) {
+            NodeHelper.checkoutNode(node);
+        }
+        
+        node.setProperty(NodeHelper.NODE_CONTENT_PROPERTY, content);
+        session.save();
+        
+        if (versionable) {
+            NodeHelper.checkinNode(node);
+        }
+        
+        return node.getPath();
+    }
+    
+    /**
+     * Same as {@link #updateNode(Session, String, String)}, but holds the lock while updating the
+     * node, provided that the node is lockable.
+     */
+    public static String safeUpdateNode(Session session, String absolutePath, String content) throws RepositoryException {
+        Node node = session.getNode(absolutePath);
+        
+        if (!node.isNodeType(NodeHelper.MIXIN_LOCKABLE)) {
+            return updateNode(session, absolutePath, content);
+        }
+        
+        NodeHelper.lockNode(node);
+        
+        try {
+            return updateNode(session, absolutePath, content);
+        
+        } finally {
+            NodeHelper.unlockNode(node);
+        }
+    }
+    
+    /**
+     * Returns the {@link Callable} to update the content of the node in its own session.
+     */
+    public static Callable<String> getUpdateNodeCallable(Repository repository, String absolutePath,
+            Optional<NodeIdentifierCache> cache) {
+        
+        return () -> {
+            Session session = RepositoryHelper.createSession(repository);
+            
+            try {
+                return updateNode(session, absolutePath, UUID.randomUUID().toString(), cache);
+            
+            } finally {
+                session.logout();
+            }
+        };
+    }
+    
+    private AppNodeTypes() {}
+    
+    /**
+     * The levels of the application tree along with their node types.
+     */
+    public enum NodeKind {
+        
+        ROOT("app:root"),
+        FOLDER("app:folder"),
+        FILE("app:file");
+        
+        private final String typeName;
+        
+        private NodeKind(String typeName) {
+            this.typeName = typeName;
+        }
+        
+        public String getTypeName() {
+            return typeName;
+        }
+    }
+    
+    /**
+     * Tells which levels of the application tree are versionable and lockable.
+     */
+    public enum MixinPolicy {
+        
+        /**
+         * Neither versionable nor lockable nodes.
+         */
+        NONE(EnumSet.noneOf(NodeKind.class), EnumSet.noneOf(NodeKind.class)),
+        
+        /**
+         * Only the files, i.e. the nodes having the content, are versionable and lockable.
+         */
+        FILES(EnumSet.of(NodeKind.FILE), EnumSet.of(NodeKind.FILE)),
+        
+        /**
+         * Every node is versionable and lockable, just like the ones created by {@link NodeHelper}.
+         */
+        ALL(EnumSet.allOf(NodeKind.class), EnumSet.allOf(NodeKind.class));
+        
+        private final Set<NodeKind> versionable;
+        private final Set<NodeKind> lockable;
+        
+        private MixinPolicy(Set<NodeKind> versionable, Set<NodeKind> lockable) {
+            this.versionable = versionable;
+            this.lockable = lockable;
+        }
+        
+        public boolean isVersionable(NodeKind kind) {
+            return versionable.contains(kind);
+        }
+        
+        public boolean isLockable(NodeKind kind) {
+            return lockable.contains(kind);
+        }
+        
+        public static MixinPolicy fromName(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.US));
+        }
+    }
+}
@@ -1,20 +1,27 @@
 package com.foo.bar;
 
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import javax.jcr.InvalidItemStateException;
 import javax.jcr.Node;
 import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.lock.LockException;
 import org.modeshape.jcr.ModeShapeEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +39,37 @@ public class ApplicationRunner {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ApplicationRunner.class);
     private static final String LOG_FILE = "./target/run.log";
+    private static final String TREE_ROOT_NODE_PATH = "/treeRoot";
+    private static final double SOAK_TREND_THRESHOLD = 0.2;
+    private static final BackoffPolicy BACKOFF_POLICY = BackoffPolicy.fromSystemProperties();
+    
+    /**
+     * Whether the workspace cache has been populated, i.e. whether the leaf nodes have been read
+     * or warmed up since the start, which tells the cold reads from the warm ones.
+     */
+    private static boolean cacheWarm;
+    
+    /**
+     * The tree created by the last [GENERATE] action, whose files replace the leaf nodes of the
+     * application root in the other actions.
+     */
+    private static Optional<TreeShapeGenerator.GeneratedTree> generatedTree = Optional.empty();
+    
+    /**
+     * The chooser of the nodes to read and update, which is kept between the actions as long as
+     * the number of the nodes stays the same, so that the latest-written nodes are remembered.
+     */
+    private static KeyChooser keyChooser;
+    
+    /**
+     * The results of the performed actions, which are written once the run is over.
+     */
+    private static RunResults runResults;
+    
+    /**
+     * The queue of the write-behind updates, which is created once the first update is submitted.
+     */
+    private static Optional<WriteBehindQueue> writeBehindQueue = Optional.empty();
     
     public static void main(String[] args) throws InterruptedException, ExecutionException {
         boolean successfulCompletion = true;
@@ -43,32 +81,52 @@ public class ApplicationRunner {
             System.exit(0);
         }
         
+        if (commandLineHelper.getComparedResultsFiles().isPresent()) {
+            System.exit(compareResults(commandLineHelper) ? 0 : 1);
+        }
+        
+        Optional<AutoCloseable> recording = startRecording(commandLineHelper);
+        
         ModeShapeEngine engine = new ModeShapeEngine();
         engine.start();
         
         ActionType actionType = null;
         
         try {
-            Repository repository = RepositoryHelper.createRepository(engine, commandLineHelper.getDbUrl());
+            Repository repository = RepositoryHelper.createRepository(engine, commandLineHelper.getDbUrl(),
+                    commandLineHelper.getJGroupsProfile(), commandLineHelper.getConfigurationGenerator());
             checkConnectivity(repository);
             
+            runResults = new RunResults(Instant.now(), commandLineHelper.getClusterSize(),
+                    commandLineHelper.getRunConfiguration(), RunResults.captureEnvironment(repository));
+            
+            Optional<NodeIdentifierCache> cache = commandLineHelper.getPathCacheSize() > 0
+                    ? Optional.of(NodeIdentifierCache.create(repository, commandLineHelper.getPathCacheSize()))
+                    : Optional.empty();
+            
             try (Scanner scanner = new Scanner(System.in)) {
                 
                 while (true) {
-                    System.out.print("\nAction to execute (create/read/update/none): ");
+                    System.out.print("\nAction to execute (create/generate/read/query/update/warmup/soak/none): ");
                     actionType = Enum.valueOf(ActionType.class, scanner.nextLine().toUpperCase(Locale.US));
                     
                     if (actionType == ActionType.NONE) {
                         break;
                     }
                     
-                    if (!handleAction(repository, actionType, commandLineHelper.getNodeCount(),
-                            commandLineHelper.getThreadCount())) {
+                    if (!handleAction(repository, actionType, commandLineHelper, cache)) {
                         
                         successfulCompletion = false;
                         break;
                     }
                 }
+            
+            } finally {
+                closeWriteBehindQueue();
+                
+                if (cache.isPresent()) {
+                    cache.get().close();
+                }
             }
             
         } catch (Exception e) {
@@ -80,21 +138,36 @@ public class ApplicationRunner {
             successfulCompletion = false;
             
         } finally {
+            writeResults(commandLineHelper);
             engine.shutdown().get();
+            stopRecording(recording, commandLineHelper);
         }
         
         System.exit(successfulCompletion ? 0 : -1);
     }
     
-    private static boolean canPerformAction(Repository repository, ActionType actionType)
-            throws RepositoryException {
+    private static boolean canPerformAction(Repository repository, ActionType actionType,
+            CommandLineHelper commandLineHelper) throws RepositoryException {
+        
+        boolean updatesNodes = actionType == ActionType.UPDATE
+                || (actionType == ActionType.SOAK && commandLineHelper.getSoakWorkload().equals("update"));
+        
+        if (updatesNodes && generatedTree.isPresent() && !commandLineHelper.getUpdateStrategy().equals("plain")) {
+            System.out.println(String.format("Unable to perform [%s] action, because the nodes of the generated "
+                    + "tree are updated in place, which does not support the [%s] update strategy", actionType,
+                    commandLineHelper.getUpdateStrategy()));
+            
+            return false;
+        }
         
         Session session = RepositoryHelper.createSession(repository);
         
         try {
-            boolean parentNodeExists = session.nodeExists(NodeHelper.ABSOLUTE_APP_ROOT_NODE_PATH);
+            boolean parentNodeExists = session.nodeExists(getWorkloadRootPath());
             
-            if (!parentNodeExists && (actionType == ActionType.READ || actionType == ActionType.UPDATE)) {
+            if (!parentNodeExists && (actionType == ActionType.READ || actionType == ActionType.QUERY
+                    || actionType == ActionType.UPDATE || actionType == ActionType.WARMUP
+                    || actionType == ActionType.SOAK)) {
                 System.out.println(String.format("Unable to perform [%s] action, because the "
                         + "required nodes do not exist", actionType));
                 
@@ -108,6 +181,72 @@ public class ApplicationRunner {
         }
     }
     
+    /**
+     * Compares the requested results files and prints the report.
+     *
+     * @return {@code true} if no metric has regressed, {@code false} otherwise
+     */
+    private static boolean compareResults(CommandLineHelper commandLineHelper) {
+        List<Path> files = commandLineHelper.getComparedResultsFiles().get();
+        
+        RunResults.Comparison comparison = RunResults.compare(RunResults.read(files.get(0)),
+                RunResults.read(files.get(1)), commandLineHelper.getRegressionThreshold());
+        
+        System.out.println(String.format("\nComparing [%s] with the baseline [%s]:\n\n%s", files.get(1), files.get(0),
+                comparison.getReport()));
+        
+        System.out.println(comparison.isRegressed()
+                ? String.format("[%s] metric(s) have regressed and [%s] operation(s) are missing",
+                        comparison.getRegressions().size(), comparison.getMissingOperations().size())
+                : "No metric has regressed");
+        
+        return !comparison.isRegressed();
+    }
+    
+    private static void writeResults(CommandLineHelper commandLineHelper) {
+        if (runResults == null || runResults.getOperations().isEmpty()) {
+            return;
+        }
+        
+        try {
+            Path csvFile = runResults.write(commandLineHelper.getResultsFile());
+            System.out.println(String.format("\nThe results have been written to [%s] and [%s]",
+                    commandLineHelper.getResultsFile(), csvFile));
+        
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to write the results", e);
+        }
+    }
+    
+    /**
+     * Starts the Java Flight Recorder recording of the run, if requested.
+     */
+    private static Optional<AutoCloseable> startRecording(CommandLineHelper commandLineHelper) {
+        if (!commandLineHelper.getJfrFile().isPresent()) {
+            return Optional.empty();
+        }
+        
+        AutoCloseable recording = FlightEvents.startRecording(commandLineHelper.getJfrFile().get());
+        System.out.println(String.format("\nRecording the run to [%s]", commandLineHelper.getJfrFile().get()));
+        
+        return Optional.of(recording);
+    }
+    
+    private static void stopRecording(Optional<AutoCloseable> recording, CommandLineHelper commandLineHelper) {
+        if (!recording.isPresent()) {
+            return;
+        }
+        
+        try {
+            recording.get().close();
+            System.out.println(String.format("\nThe recording has been written to [%s]",
+                    commandLineHelper.getJfrFile().get()));
+        
+        } catch (Exception e) {
+            LOGGER.error("Failed to write the recording", e);
+        }
+    }
+    
     private static void checkConnectivity(Repository repository) throws RepositoryException {
         Session session = null;
         
@@ -124,35 +263,67 @@ public class ApplicationRunner {
     private static boolean handleAction(
             Repository repository,
             ActionType actionType,
-            int nodeCount,
-            int threadCount) throws RepositoryException, InterruptedException, ExecutionException {
+            CommandLineHelper commandLineHelper,
+            Optional<NodeIdentifierCache> cache) throws RepositoryException, InterruptedException, ExecutionException {
         
-        if (!canPerformAction(repository, actionType)) {
+        if (!canPerformAction(repository, actionType, commandLineHelper)) {
             return false;
         }
         
+        int nodeCount = commandLineHelper.getNodeCount();
+        
         switch (actionType) {
         case CREATE:
+            generatedTree = Optional.empty();
+            
             printAffectedNodes(
                     repository,
-                    handleSequentialLeafNodeCreation(repository, nodeCount),
+                    handleSequentialLeafNodeCreation(repository, nodeCount, cache),
                     actionType);
             break;
+        
+        case GENERATE:
+            handleTreeGeneration(repository, commandLineHelper);
+            break;
             
         case UPDATE:
+            Set<String> updatedNodes = new LinkedHashSet<>();
+            int errorCount = handleParallelLeafNodeUpdate(repository, getWorkloadNodes(nodeCount), updatedNodes,
+                    commandLineHelper, cache);
+            
+            printAffectedNodes(repository, new ArrayList<>(updatedNodes), actionType);
+            
+            if (errorCount > 0) {
+                System.out.println(String.format("\n  The [%s] update(s) have failed (see [%s] file for details)",
+                        errorCount, LOG_FILE));
+                
+                return false;
+            }
+            
+            break;
+        
+        case READ:
             printAffectedNodes(
                     repository,
-                    handleParallelLeafNodeUpdate(repository, nodeCount, threadCount),
+                    handleSequentialLeafNodeRead(repository, getWorkloadNodes(nodeCount), commandLineHelper, cache),
                     actionType);
             break;
         
-        case READ:
+        case QUERY:
             printAffectedNodes(
                     repository,
-                    handleSequentialLeafNodeRead(repository, nodeCount),
+                    handlePagedLeafNodeQuery(repository, commandLineHelper.getPageSize()),
                     actionType);
             break;
         
+        case WARMUP:
+            handleCacheWarmUp(repository);
+            break;
+        
+        case SOAK:
+            handleSoak(repository, getWorkloadNodes(nodeCount), commandLineHelper, cache);
+            break;
+        
         default:
             throw new IllegalStateException(String.format("Unsupported action type [%s]",
                     actionType));
@@ -161,44 +332,300 @@ public class ApplicationRunner {
         return true;
     }
     
-    private static List<String> handleSequentialLeafNodeRead(Repository repository, int nodeCount)
-            throws RepositoryException {
+    /**
+     * Returns the files of the generated tree, if any, or the given number of the leaf nodes of the
+     * application root otherwise.
+     */
+    private static List<String> getWorkloadNodes(int nodeCount) {
+        if (generatedTree.isPresent()) {
+            return generatedTree.get().getLeaves();
+        }
+        
+        List<String> leafNodes = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            leafNodes.add(NodeHelper.getLeafAbsolutePath(i));
+        }
+        
+        return leafNodes;
+    }
+    
+    private static KeyChooser getKeyChooser(CommandLineHelper commandLineHelper, int keyCount) {
+        if (keyChooser == null || keyChooser.getKeyCount() != keyCount) {
+            keyChooser = commandLineHelper.getKeyChooser(keyCount);
+        }
+        
+        return keyChooser;
+    }
+    
+    private static int getOperationCount(CommandLineHelper commandLineHelper, List<String> leafNodes) {
+        return commandLineHelper.getOperationCount() > 0 ? commandLineHelper.getOperationCount() : leafNodes.size();
+    }
+    
+    /**
+     * Returns the callable to update the given node according to the update strategy. The nodes of
+     * the generated tree are always updated in place, as their folders are not versionable, so the
+     * other strategies than the plain one are rejected for them, see
+     * {@link #canPerformAction(Repository, ActionType, CommandLineHelper)}.
+     */
+    private static Callable<String> getUpdateCallable(Repository repository, String absolutePath,
+            CommandLineHelper commandLineHelper, Optional<NodeIdentifierCache> cache) {
+        
+        if (generatedTree.isPresent()) {
+            return AppNodeTypes.getUpdateNodeCallable(repository, absolutePath, cache);
+        }
+        
+        switch (commandLineHelper.getUpdateStrategy()) {
+        case "locked":
+            return NodeHelper.getLockedUpdateNodeCallable(repository, absolutePath, cache, BACKOFF_POLICY);
+        
+        case "optimistic":
+            return NodeHelper.getOptimisticUpdateNodeCallable(repository, absolutePath, cache, BACKOFF_POLICY);
+        
+        case "write-behind":
+            return () -> getWriteBehindQueue(repository, cache).submit(absolutePath, UUID.randomUUID().toString());
+        
+        default:
+            return NodeHelper.getUpdateChildNodeCallable(repository, absolutePath, cache);
+        }
+    }
+    
+    private static synchronized WriteBehindQueue getWriteBehindQueue(Repository repository,
+            Optional<NodeIdentifierCache> cache) {
+        
+        if (!writeBehindQueue.isPresent()) {
+            writeBehindQueue = Optional.of(WriteBehindQueue.fromSystemProperties(repository, cache));
+        }
+        
+        return writeBehindQueue.get();
+    }
+    
+    private static void closeWriteBehindQueue() {
+        if (writeBehindQueue.isPresent()) {
+            try {
+                writeBehindQueue.get().close();
+            
+            } catch (RepositoryException e) {
+                LOGGER.error("Failed to write the pending write-behind updates", e);
+            }
+        }
+    }
+    
+    /**
+     * Writes the pending write-behind updates, if any, so that the measured time of the action
+     * includes them. The updates, which could not be written, are counted by the queue (see
+     * {@link #getWriteBehindFailedCount()}) rather than thrown.
+     */
+    private static void flushWriteBehindQueue() {
+        if (writeBehindQueue.isPresent()) {
+            try {
+                writeBehindQueue.get().flush();
+            
+            } catch (RepositoryException e) {
+                LOGGER.warn("Failed to write some of the pending write-behind updates", e);
+            }
+            
+            System.out.println(String.format("\n  Write-behind queue: %s", writeBehindQueue.get()));
+        }
+    }
+    
+    /**
+     * Returns the number of the write-behind updates, which could not be written so far, either by
+     * the background flushes or by the explicit ones.
+     */
+    private static long getWriteBehindFailedCount() {
+        return writeBehindQueue.isPresent() ? writeBehindQueue.get().getFailedCount() : 0;
+    }
+    
+    private static String getWorkloadRootPath() {
+        return generatedTree.isPresent()
+                ? generatedTree.get().getRootPath()
+                : NodeHelper.ABSOLUTE_APP_ROOT_NODE_PATH;
+    }
+    
+    private static void handleTreeGeneration(Repository repository, CommandLineHelper commandLineHelper)
+            throws RepositoryException, InterruptedException, ExecutionException {
+        
+        TreeShapeGenerator generator = new TreeShapeGenerator(commandLineHelper.getTreeDepth(),
+                commandLineHelper.getTreeFanOuts(), commandLineHelper.getNodeCount(), commandLineHelper.getTreeSeed());
+        
+        long start = System.nanoTime();
+        TreeShapeGenerator.GeneratedTree tree = generator.generate(repository, TREE_ROOT_NODE_PATH,
+                AppNodeTypes.MixinPolicy.FILES, commandLineHelper.getThreadCount());
+        
+        long elapsedNanos = System.nanoTime() - start;
+        
+        System.out.println(String.format("\n  The tree %s of %s has been generated in [%s] ms", tree.describe(),
+                generator.getFanOuts(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
+        
+        runResults.addOperation("generate", tree.getNodes().size(), 0, elapsedNanos, new LatencyRecorder());
+        
+        generatedTree = Optional.of(tree);
+    }
+    
+    private static List<String> handleSequentialLeafNodeRead(Repository repository, List<String> leafNodes,
+            CommandLineHelper commandLineHelper, Optional<NodeIdentifierCache> cache) throws RepositoryException {
 
         Session session = RepositoryHelper.createSession(repository);
+        LatencyRecorder recorder = new LatencyRecorder();
+        KeyChooser chooser = getKeyChooser(commandLineHelper, leafNodes.size());
+        int operationCount = getOperationCount(commandLineHelper, leafNodes);
         
         try {
-            List<String> affectedNodes = new ArrayList<>(nodeCount);
-            for (int i = 0; i < nodeCount; i++) {
-                affectedNodes.add(session.getNode(NodeHelper.getLeafAbsolutePath(i)).getPath());
+            Set<String> affectedNodes = new LinkedHashSet<>();
+            long readStart = System.nanoTime();
+            
+            for (int i = 0; i < operationCount; i++) {
+                long start = System.nanoTime();
+                affectedNodes.add(NodeHelper.getNode(session, leafNodes.get(chooser.nextKey()), cache).getPath());
+                recorder.record(System.nanoTime() - start);
             }
-    
-            return affectedNodes;
+            
+            System.out.println(String.format("\n  The %s read latency of [%s] %s read(s) of [%s] distinct node(s): "
+                    + "mean=%.2f ms, p50=%.2f ms, p99=%.2f ms, max=%.2f ms",
+                    cacheWarm ? "warm" : "cold", operationCount, chooser, affectedNodes.size(),
+                    LatencyRecorder.toMillis(recorder.getMean()),
+                    LatencyRecorder.toMillis(recorder.getPercentile(50)),
+                    LatencyRecorder.toMillis(recorder.getPercentile(99)),
+                    LatencyRecorder.toMillis(recorder.getMax())));
+            
+            runResults.addOperation(cacheWarm ? "read-warm" : "read-cold", operationCount, 0,
+                    System.nanoTime() - readStart, recorder);
+            
+            cacheWarm = true;
+            return new ArrayList<>(affectedNodes);
             
         } finally {
             session.logout();
         }
     }
     
-    private static List<String> handleSequentialLeafNodeCreation(Repository repository, int nodeCount)
+    private static List<String> handlePagedLeafNodeQuery(Repository repository, int pageSize)
             throws RepositoryException {
         
         Session session = RepositoryHelper.createSession(repository);
         
+        try {
+            long start = System.nanoTime();
+            List<String> affectedNodes = QueryHelper.readLeafNodes(session, pageSize);
+            long elapsedNanos = System.nanoTime() - start;
+            
+            System.out.println(String.format("\n  The leaf nodes have been queried in [%s] page(s) of up to [%s] "
+                    + "node(s) in [%s] ms", (affectedNodes.size() + pageSize) / pageSize, pageSize,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
+            
+            LatencyRecorder recorder = new LatencyRecorder();
+            recorder.record(elapsedNanos);
+            runResults.addOperation("query", 1, 0, elapsedNanos, recorder);
+            
+            return affectedNodes;
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    private static void handleCacheWarmUp(Repository repository) throws InterruptedException, ExecutionException {
+        CacheWarmer.Result result = new CacheWarmer(Collections.singletonList(repository))
+                .warmUp(getWorkloadRootPath()).get(0);
+        
+        System.out.println(String.format("\n  The [%s] node(s) have been read to warm the cache up in [%s] ms",
+                result.getNodeCount(), TimeUnit.NANOSECONDS.toMillis(result.getDurationNanos())));
+        
+        runResults.addOperation("warmup", result.getNodeCount(), 0, result.getDurationNanos(), new LatencyRecorder());
+        cacheWarm = true;
+    }
+    
+    private static void handleSoak(Repository repository, List<String> leafNodes, CommandLineHelper commandLineHelper,
+            Optional<NodeIdentifierCache> cache) throws InterruptedException {
+        
+        KeyChooser chooser = getKeyChooser(commandLineHelper, leafNodes.size());
+        boolean update = commandLineHelper.getSoakWorkload().equals("update");
+        
+        Callable<String> operation = () -> {
+            int key = chooser.nextKey();
+            
+            if (update) {
+                String updatedNode = getUpdateCallable(repository, leafNodes.get(key), commandLineHelper, cache).call();
+                
+                chooser.onWritten(key);
+                return updatedNode;
+            }
+            
+            Session session = RepositoryHelper.createSession(repository);
+            
+            try {
+                return NodeHelper.getNode(session, leafNodes.get(key), cache).getPath();
+            
+            } finally {
+                session.logout();
+            }
+        };
+        
+        SoakRunner runner = new SoakRunner(
+                TimeUnit.MINUTES.toMillis(commandLineHelper.getSoakDurationMinutes()),
+                TimeUnit.SECONDS.toMillis(commandLineHelper.getSoakIntervalSeconds()),
+                commandLineHelper.getThreadCount(),
+                SOAK_TREND_THRESHOLD);
+        
+        System.out.println(String.format("\n  Looping the %s %s workload on [%s] thread(s) for [%s] minute(s):",
+                chooser, commandLineHelper.getSoakWorkload(), commandLineHelper.getThreadCount(),
+                commandLineHelper.getSoakDurationMinutes()));
+        
+        // the whole run goes to a fixed-size histogram, as keeping every latency of a long run would leak
+        LatencyHistogram histogram = new LatencyHistogram();
+        long writeBehindFailedCount = getWriteBehindFailedCount();
+        long start = System.nanoTime();
+        
+        List<SoakRunner.Interval> intervals = runner.run(() -> {
+            long operationStart = System.nanoTime();
+            String node = operation.call();
+            
+            histogram.record(System.nanoTime() - operationStart);
+            return node;
+        
+        }, interval -> System.out.println("    " + interval));
+        
+        flushWriteBehindQueue();
+        
+        long failedCount = intervals.stream().mapToLong(SoakRunner.Interval::getFailureCount).sum()
+                + getWriteBehindFailedCount() - writeBehindFailedCount;
+        runResults.addOperation("soak-" + commandLineHelper.getSoakWorkload(),
+                (int) (histogram.getCount() + failedCount), (int) failedCount, System.nanoTime() - start, histogram);
+        
+        List<String> warnings = runner.detectTrends(intervals);
+        
+        System.out.println(warnings.isEmpty()
+                ? "\n  No upward trends have been detected"
+                : "\n  WARNING: " + String.join("\n  WARNING: ", warnings));
+    }
+    
+    private static List<String> handleSequentialLeafNodeCreation(Repository repository, int nodeCount,
+            Optional<NodeIdentifierCache> cache) throws RepositoryException {
+        
+        Session session = RepositoryHelper.createSession(repository);
+        
         try {
             NodeHelper.deleteApplicationRoot(session);
             String appRootNode = NodeHelper.createApplicationRoot(session);
             
             List<String> affectedNodes = new ArrayList<>(nodeCount);
+            LatencyRecorder recorder = new LatencyRecorder();
+            long createStart = System.nanoTime();
     
             for (int i = 0; i < nodeCount; i++) {
+                long start = System.nanoTime();
                 String parentNode = NodeHelper.unsafeAddNode(session, appRootNode,
-                        NodeHelper.getLeafParentRelativePath(i), Optional.empty());
+                        NodeHelper.getLeafParentRelativePath(i), Optional.empty(), cache);
                 
                 String childNode = NodeHelper.unsafeAddNode(session, parentNode,
-                        NodeHelper.getLeafRelativePath(i), Optional.of(UUID.randomUUID().toString()));
+                        NodeHelper.getLeafRelativePath(i), Optional.of(UUID.randomUUID().toString()), cache);
     
                 affectedNodes.add(childNode);
+                recorder.record(System.nanoTime() - start);
             }
+            
+            // every operation adds a leaf node along with its parent
+            runResults.addOperation("create", nodeCount, 0, System.nanoTime() - createStart, recorder);
     
             return affectedNodes;
             
@@ -207,30 +634,98 @@ public class ApplicationRunner {
         }
     }
     
-    private static List<String> handleParallelLeafNodeUpdate(Repository repository, int nodeCount,
-            int threadCount) throws InterruptedException, ExecutionException {
+    /**
+     * Updates the leaf nodes in parallel and collects the updated ones.
+     *
+     * @return the number of the failed updates, except for the conflicts, which have exhausted
+     *         their retries
+     */
+    private static int handleParallelLeafNodeUpdate(Repository repository, List<String> leafNodes,
+            Set<String> affectedNodes, CommandLineHelper commandLineHelper, Optional<NodeIdentifierCache> cache)
+            throws InterruptedException {
         
-        List<String> affectedNodes = new ArrayList<>(nodeCount);
-        ExecutorService executorService = ConcurrencyHelper.createExecutorService(threadCount, "update-child-parallel-");
+        KeyChooser chooser = getKeyChooser(commandLineHelper, leafNodes.size());
+        int operationCount = getOperationCount(commandLineHelper, leafNodes);
+        
+        LatencyRecorder recorder = new LatencyRecorder();
+        int failedCount = 0;
+        int exhaustedCount = 0;
+        
+        ExecutorService executorService = ConcurrencyHelper.createExecutorService(
+                commandLineHelper.getThreadCount(), "update-child-parallel-");
         
         try {
-            List<Callable<String>> tasks = new ArrayList<>(nodeCount);
+            List<Callable<String>> tasks = new ArrayList<>(operationCount);
             
-            for (int i = 0; i < nodeCount; i++) {
-                tasks.add(NodeHelper.getUpdateChildNodeCallable(
-                        repository,
-                        NodeHelper.getLeafAbsolutePath(i)));
+            for (int i = 0; i < operationCount; i++) {
+                // the node is chosen once the task runs, so that the latest writes are taken into account
+                tasks.add(() -> {
+                    int key = chooser.nextKey();
+                    long start = System.nanoTime();
+                    
+                    String updatedNode = getUpdateCallable(repository, leafNodes.get(key), commandLineHelper, cache)
+                            .call();
+                    
+                    recorder.record(System.nanoTime() - start);
+                    chooser.onWritten(key);
+                    
+                    return updatedNode;
+                });
             }
             
+            long writeBehindFailedCount = getWriteBehindFailedCount();
+            long start = System.nanoTime();
+            
             for (Future<String> updatedNode : executorService.invokeAll(tasks)) {
-                affectedNodes.add(updatedNode.get());
+                try {
+                    affectedNodes.add(updatedNode.get());
+                
+                } catch (ExecutionException e) {
+                    LOGGER.warn("Failed to update the node", e.getCause());
+                    failedCount++;
+                    
+                    if (isRetriedUpdate(commandLineHelper) && isConflict(e.getCause())) {
+                        exhaustedCount++;
+                    }
+                }
             }
             
+            flushWriteBehindQueue();
+            long elapsedNanos = System.nanoTime() - start;
+            
+            // the submitted write-behind updates succeed, their failures surface once they are flushed
+            failedCount += (int) (getWriteBehindFailedCount() - writeBehindFailedCount);
+            
+            System.out.println(String.format("\n  The [%s] %s %s update(s) of [%s] distinct node(s), [%s] failed "
+                    + "([%s] exhausted conflicts): %.1f ops/s, mean=%.2f ms, p99=%.2f ms, max=%.2f ms",
+                    operationCount, chooser, generatedTree.isPresent() ? "in-place" : commandLineHelper.getUpdateStrategy(),
+                    affectedNodes.size(), failedCount, exhaustedCount,
+                    recorder.getThroughput(elapsedNanos),
+                    LatencyRecorder.toMillis(recorder.getMean()),
+                    LatencyRecorder.toMillis(recorder.getPercentile(99)),
+                    LatencyRecorder.toMillis(recorder.getMax())));
+            
+            runResults.addOperation("update", operationCount, failedCount, elapsedNanos, recorder);
+        
         } finally {
             ConcurrencyHelper.closeExecutorService(executorService, TimeUnit.SECONDS.toMillis(30));
         }
         
-        return affectedNodes;
+        return failedCount - exhaustedCount;
+    }
+    
+    /**
+     * Returns whether the updates are retried on a conflict, in which case a conflict, which has
+     * exhausted its retries, is expected rather than an error.
+     */
+    private static boolean isRetriedUpdate(CommandLineHelper commandLineHelper) {
+        String updateStrategy = commandLineHelper.getUpdateStrategy();
+        
+        return updateStrategy.equals("locked") || updateStrategy.equals("optimistic");
+    }
+    
+    private static boolean isConflict(Throwable cause) {
+        return cause instanceof LockException || cause instanceof InvalidItemStateException;
     }
     
     private static void printAffectedNodes(Repository repository, List<String> nodePathList,
@@ -265,8 +760,12 @@ public class ApplicationRunner {
     private enum ActionType {
         
         CREATE,
+        GENERATE,
         READ,
+        QUERY,
         UPDATE,
+        WARMUP,
+        SOAK,
         NONE
     }
 }
@@ -0,0 +1,105 @@
+package com.foo.bar;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Tells whether a failed attempt, e.g. an update which lost a race to a concurrent one, should be
+ * retried and how long to wait before. The delay grows exponentially with the attempt up to the
+ * maximum one and is drawn at random below it ("full jitter"), so that the members of the cluster
+ * retrying the same conflict do not collide again in lockstep.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code backoff.max.attempts} - the number of attempts, the first one included, defaults to {@code 10}</li>
+ *   <li>{@code backoff.initial.delay} - the number of milliseconds to wait after the first attempt, defaults to {@code 5}</li>
+ *   <li>{@code backoff.max.delay} - the maximum number of milliseconds to wait, defaults to {@code 500}</li>
+ * </ul>
+ */
+public class BackoffPolicy {
+    
+    private static final double MULTIPLIER = 2;
+    
+    private final int maxAttempts;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    
+    public BackoffPolicy(int maxAttempts, long initialDelayMillis, long maxDelayMillis) {
+        if (maxAttempts < 1 || initialDelayMillis < 0 || maxDelayMillis < initialDelayMillis) {
+            throw new IllegalArgumentException(String.format("Invalid backoff [maxAttempts=%s, initialDelay=%s ms, "
+                    + "maxDelay=%s ms]", maxAttempts, initialDelayMillis, maxDelayMillis));
+        }
+        
+        this.maxAttempts = maxAttempts;
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+    
+    public static BackoffPolicy fromSystemProperties() {
+        return new BackoffPolicy(
+                Integer.valueOf(System.getProperty("backoff.max.attempts", "10")),
+                Long.valueOf(System.getProperty("backoff.initial.delay", "5")),
+                Long.valueOf(System.getProperty("backoff.max.delay", "500")));
+    }
+    
+    /**
+     * The policy of a single attempt, i.e. without any retries.
+     */
+    public static BackoffPolicy none() {
+        return new BackoffPolicy(1, 0, 0);
+    }
+    
+    /**
+     * Whether another attempt may follow the given failed one.
+     *
+     * @param attempt
+     *            the failed attempt, starting with {@code 1}
+     */
+    public boolean canRetry(int attempt) {
+        return attempt < maxAttempts;
+    }
+    
+    /**
+     * Returns the random delay to wait after the given failed attempt, which is below
+     * {@code initialDelay * 2^(attempt - 1)}, capped by the maximum delay.
+     *
+     * @param attempt
+     *            the failed attempt, starting with {@code 1}
+     */
+    public long getDelayMillis(int attempt) {
+        double ceiling = Math.min(maxDelayMillis, initialDelayMillis * Math.pow(MULTIPLIER, Math.max(0, attempt - 1)));
+        
+        return ceiling < 1 ? 0 : ThreadLocalRandom.current().nextLong((long) ceiling + 1);
+    }
+    
+    /**
+     * Waits for the delay after the given failed attempt.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public void backOff(int attempt) throws InterruptedException {
+        long delayMillis = getDelayMillis(attempt);
+        
+        if (delayMillis > 0) {
+            Thread.sleep(delayMillis);
+        }
+    }
+    
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+    
+    public long getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+    
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("[maxAttempts=%s, initialDelay=%s ms, maxDelay=%s ms]", maxAttempts, initialDelayMillis,
+                maxDelayMillis);
+    }
+}
@@ -0,0 +1,132 @@
+package com.foo.bar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.PropertyIterator;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pre-reads a subtree on every cluster member in parallel, so that the measurements which follow
+ * hit the warm workspace caches rather than the DB. Every node of the subtree is loaded along with
+ * its properties.
+ */
+public class CacheWarmer {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheWarmer.class);
+    
+    private final List<Repository> members;
+    
+    public CacheWarmer(List<Repository> members) {
+        this.members = new ArrayList<>(members);
+    }
+    
+    /**
+     * Warms the caches up.
+     *
+     * @param absolutePath
+     *            the root of the subtree to read, e.g. {@link NodeHelper#ABSOLUTE_APP_ROOT_NODE_PATH}
+     *
+     * @return the number of nodes read and the time it took, per member
+     *
+     * @throws InterruptedException
+     *             if the current thread has been interrupted
+     * @throws ExecutionException
+     *             if a member failed to read the subtree
+     */
+    public List<Result> warmUp(String absolutePath) throws InterruptedException, ExecutionException {
+        ExecutorService executorService = ConcurrencyHelper.createExecutorService(members.size(), "cache-warmer-");
+        List<Result> results = new ArrayList<>(members.size());
+        
+        try {
+            List<Future<Result>> futures = new ArrayList<>(members.size());
+            
+            for (int i = 0; i < members.size(); i++) {
+                futures.add(executorService.submit(readSubtree(i, absolutePath)));
+            }
+            
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+            }
+        
+        } finally {
+            ConcurrencyHelper.closeExecutorService(executorService, TimeUnit.SECONDS.toMillis(30));
+        }
+        
+        for (Result result : results) {
+            LOGGER.info("Cache warmed up [member={}, path={}, nodeCount={}, took={} ms]", result.getMember(),
+                    absolutePath, result.getNodeCount(), TimeUnit.NANOSECONDS.toMillis(result.getDurationNanos()));
+        }
+        
+        return results;
+    }
+    
+    private Callable<Result> readSubtree(int member, String absolutePath) {
+        return () -> {
+            Session session = RepositoryHelper.createSession(members.get(member));
+            long start = System.nanoTime();
+            
+            try {
+                int nodeCount = session.nodeExists(absolutePath) ? readNode(session.getNode(absolutePath)) : 0;
+                return new Result(member, nodeCount, System.nanoTime() - start);
+            
+            } finally {
+                session.logout();
+            }
+        };
+    }
+    
+    private static int readNode(Node node) throws RepositoryException {
+        for (PropertyIterator properties = node.getProperties(); properties.hasNext();) {
+            properties.nextProperty();
+        }
+        
+        int nodeCount = 1;
+        
+        for (NodeIterator children = node.getNodes(); children.hasNext();) {
+            nodeCount += readNode(children.nextNode());
+        }
+        
+        return nodeCount;
+    }
+    
+    /**
+     * The outcome of the warm-up of a single member.
+     */
+    public static class Result {
+        
+        private final int member;
+        private final int nodeCount;
+        private final long durationNanos;
+        
+        private Result(int member, int nodeCount, long durationNanos) {
+            this.member = member;
+            this.nodeCount = nodeCount;
+            this.durationNanos = durationNanos;
+        }
+        
+        public int getMember() {
+            return member;
+        }
+        
+        public int getNodeCount() {
+            return nodeCount;
+        }
+        
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+    }
+}
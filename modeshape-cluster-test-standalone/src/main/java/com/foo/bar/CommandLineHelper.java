@@ -1,9 +1,21 @@
 package com.foo.bar;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
@@ -18,6 +30,20 @@ public class CommandLineHelper {
     private static final String DEFAULT_DB_URL = "jdbc:h2:tcp://localhost/./target/h2/test";
     private static final int DEFAULT_ROOT_CHILD_COUNT = 5;
     private static final int DEFAULT_THREAD_COUNT = 5;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int DEFAULT_PATH_CACHE_SIZE = 0;
+    private static final int DEFAULT_TREE_DEPTH = 4;
+    private static final String DEFAULT_TREE_FAN_OUT = "uniform:1-8";
+    private static final long DEFAULT_TREE_SEED = 42;
+    private static final String DEFAULT_KEY_CHOOSER = "sequential";
+    private static final int DEFAULT_OPERATION_COUNT = 0;
+    private static final int DEFAULT_SOAK_DURATION_MINUTES = 60;
+    private static final int DEFAULT_SOAK_INTERVAL_SECONDS = 60;
+    private static final String DEFAULT_SOAK_WORKLOAD = "update";
+    private static final String DEFAULT_UPDATE_STRATEGY = "plain";
+    private static final String DEFAULT_RESULTS_DIRECTORY = "./target/results";
+    private static final int DEFAULT_CLUSTER_SIZE = 1;
+    private static final double DEFAULT_REGRESSION_THRESHOLD = 0.1;
     
     private final Options options;
     private final CommandLine commandLine;
@@ -25,6 +51,24 @@ public class CommandLineHelper {
     private final String dbUrl;
     private final int nodeCount;
     private final int threadCount;
+    private final int pageSize;
+    private final int pathCacheSize;
+    private final int treeDepth;
+    private final List<TreeShapeGenerator.FanOut> treeFanOuts;
+    private final long treeSeed;
+    private final String keyChooser;
+    private final int operationCount;
+    private final int soakDurationMinutes;
+    private final int soakIntervalSeconds;
+    private final String soakWorkload;
+    private final String updateStrategy;
+    private final Optional<Path> jfrFile;
+    private final Path resultsFile;
+    private final int clusterSize;
+    private final Optional<List<Path>> comparedResultsFiles;
+    private final double regressionThreshold;
+    private final Optional<JGroupsStackProfile> jgroupsProfile;
+    private final RepositoryConfigurationGenerator configurationGenerator;
     
     public CommandLineHelper(String[] args) {
         this.options = createOptions();
@@ -33,6 +77,24 @@ public class CommandLineHelper {
         this.dbUrl = parseDbUrl(commandLine);
         this.nodeCount = parseNodeCount(commandLine);
         this.threadCount = parseThreadCount(commandLine);
+        this.pageSize = parsePageSize(commandLine);
+        this.pathCacheSize = parsePathCacheSize(commandLine);
+        this.treeDepth = parseTreeDepth(commandLine);
+        this.treeFanOuts = parseTreeFanOuts(commandLine);
+        this.treeSeed = parseTreeSeed(commandLine);
+        this.keyChooser = parseKeyChooser(commandLine);
+        this.operationCount = parseOperationCount(commandLine);
+        this.soakDurationMinutes = parseSoakDuration(commandLine);
+        this.soakIntervalSeconds = parseSoakInterval(commandLine);
+        this.soakWorkload = parseSoakWorkload(commandLine);
+        this.updateStrategy = parseUpdateStrategy(commandLine);
+        this.jfrFile = parseJfrFile(commandLine);
+        this.resultsFile = parseResultsFile(commandLine);
+        this.clusterSize = parseClusterSize(commandLine);
+        this.comparedResultsFiles = parseComparedResultsFiles(commandLine);
+        this.regressionThreshold = parseRegressionThreshold(commandLine);
+        this.jgroupsProfile = parseJGroupsProfile(commandLine);
+        this.configurationGenerator = parseConfigurationGenerator(commandLine);
     }
     
     public static void printHelp(Options options) {
@@ -52,6 +114,135 @@ public class CommandLineHelper {
         return threadCount;
     }
     
+    public int getPageSize() {
+        return pageSize;
+    }
+    
+    public int getPathCacheSize() {
+        return pathCacheSize;
+    }
+    
+    public int getTreeDepth() {
+        return treeDepth;
+    }
+    
+    public List<TreeShapeGenerator.FanOut> getTreeFanOuts() {
+        return treeFanOuts;
+    }
+    
+    /**
+     * Returns the seed of the random fan-outs of the generated tree, so that the same tree is
+     * generated by every run with the same options.
+     */
+    public long getTreeSeed() {
+        return treeSeed;
+    }
+    
+    /**
+     * Returns the {@link KeyChooser} for the given number of keys.
+     */
+    public KeyChooser getKeyChooser(int keyCount) {
+        return KeyChooser.parse(keyChooser, keyCount);
+    }
+    
+    /**
+     * Returns the number of operations of the [READ] and [UPDATE] actions, {@code 0} meaning one
+     * per node.
+     */
+    public int getOperationCount() {
+        return operationCount;
+    }
+    
+    public int getSoakDurationMinutes() {
+        return soakDurationMinutes;
+    }
+    
+    public int getSoakIntervalSeconds() {
+        return soakIntervalSeconds;
+    }
+    
+    public String getSoakWorkload() {
+        return soakWorkload;
+    }
+    
+    /**
+     * Returns the way the nodes are updated, i.e. {@code plain}, {@code locked}, {@code optimistic}
+     * or {@code write-behind}.
+     */
+    public String getUpdateStrategy() {
+        return updateStrategy;
+    }
+    
+    /**
+     * Returns the file the Java Flight Recorder recording of the run is written to, if any.
+     */
+    public Optional<Path> getJfrFile() {
+        return jfrFile;
+    }
+    
+    /**
+     * Returns the JSON file the {@link RunResults results} of the run are written to.
+     */
+    public Path getResultsFile() {
+        return resultsFile;
+    }
+    
+    public int getClusterSize() {
+        return clusterSize;
+    }
+    
+    /**
+     * Returns the baseline and the current results files to compare, if requested, in which case
+     * no action is performed.
+     */
+    public Optional<List<Path>> getComparedResultsFiles() {
+        return comparedResultsFiles;
+    }
+    
+    public double getRegressionThreshold() {
+        return regressionThreshold;
+    }
+    
+    /**
+     * Returns the effective configuration of the run, i.e. the values of all the options but the
+     * ones not affecting the results, the defaults included.
+     */
+    public Map<String, String> getRunConfiguration() {
+        Map<String, String> configuration = new LinkedHashMap<>();
+        
+        configuration.put(CustomOption.DB_URL.getName(), dbUrl);
+        configuration.put(CustomOption.NODE_COUNT.getName(), String.valueOf(nodeCount));
+        configuration.put(CustomOption.THREAD_COUNT.getName(), String.valueOf(threadCount));
+        configuration.put(CustomOption.PAGE_SIZE.getName(), String.valueOf(pageSize));
+        configuration.put(CustomOption.PATH_CACHE_SIZE.getName(), String.valueOf(pathCacheSize));
+        configuration.put(CustomOption.TREE_DEPTH.getName(), String.valueOf(treeDepth));
+        configuration.put(CustomOption.TREE_FAN_OUT.getName(), String.valueOf(treeFanOuts));
+        configuration.put(CustomOption.TREE_SEED.getName(), String.valueOf(treeSeed));
+        configuration.put(CustomOption.KEY_CHOOSER.getName(), keyChooser);
+        configuration.put(CustomOption.OPERATION_COUNT.getName(), String.valueOf(operationCount));
+        configuration.put(CustomOption.SOAK_DURATION.getName(), String.valueOf(soakDurationMinutes));
+        configuration.put(CustomOption.SOAK_INTERVAL.getName(), String.valueOf(soakIntervalSeconds));
+        configuration.put(CustomOption.SOAK_WORKLOAD.getName(), soakWorkload);
+        configuration.put(CustomOption.UPDATE_STRATEGY.getName(), updateStrategy);
+        configuration.put(CustomOption.JGROUPS_PROFILE.getName(),
+                jgroupsProfile.isPresent() ? jgroupsProfile.get().getProfileName() : "main-jgroups.xml");
+        configuration.put(CustomOption.PERSISTENCE.getName(), configurationGenerator.getPersistence().getTypeName());
+        configuration.put(CustomOption.BINARY_STORAGE.getName(), configurationGenerator.getBinaryStorage().getTypeName());
+        configuration.put(CustomOption.CACHE_SIZE.getName(), configurationGenerator.getCacheSize().isPresent()
+                ? String.valueOf(configurationGenerator.getCacheSize().get())
+                : "default");
+        
+        return configuration;
+    }
+    
+    public Optional<JGroupsStackProfile> getJGroupsProfile() {
+        return jgroupsProfile;
+    }
+    
+    public RepositoryConfigurationGenerator getConfigurationGenerator() {
+        return configurationGenerator;
+    }
+    
     public CommandLine getCommandLine() {
         return commandLine;
     }
@@ -66,6 +257,27 @@ public class CommandLineHelper {
         options.addOption(CustomOption.DB_URL.getName(), true, CustomOption.DB_URL.getDescription());
         options.addOption(CustomOption.NODE_COUNT.getName(), true, CustomOption.NODE_COUNT.getDescription());
         options.addOption(CustomOption.THREAD_COUNT.getName(), true, CustomOption.THREAD_COUNT.getDescription());
+        options.addOption(CustomOption.PAGE_SIZE.getName(), true, CustomOption.PAGE_SIZE.getDescription());
+        options.addOption(CustomOption.PATH_CACHE_SIZE.getName(), true, CustomOption.PATH_CACHE_SIZE.getDescription());
+        options.addOption(CustomOption.TREE_DEPTH.getName(), true, CustomOption.TREE_DEPTH.getDescription());
+        options.addOption(CustomOption.TREE_FAN_OUT.getName(), true, CustomOption.TREE_FAN_OUT.getDescription());
+        options.addOption(CustomOption.TREE_SEED.getName(), true, CustomOption.TREE_SEED.getDescription());
+        options.addOption(CustomOption.KEY_CHOOSER.getName(), true, CustomOption.KEY_CHOOSER.getDescription());
+        options.addOption(CustomOption.OPERATION_COUNT.getName(), true, CustomOption.OPERATION_COUNT.getDescription());
+        options.addOption(CustomOption.SOAK_DURATION.getName(), true, CustomOption.SOAK_DURATION.getDescription());
+        options.addOption(CustomOption.SOAK_INTERVAL.getName(), true, CustomOption.SOAK_INTERVAL.getDescription());
+        options.addOption(CustomOption.SOAK_WORKLOAD.getName(), true, CustomOption.SOAK_WORKLOAD.getDescription());
+        options.addOption(CustomOption.UPDATE_STRATEGY.getName(), true, CustomOption.UPDATE_STRATEGY.getDescription());
+        options.addOption(CustomOption.JFR_FILE.getName(), true, CustomOption.JFR_FILE.getDescription());
+        options.addOption(CustomOption.RESULTS_FILE.getName(), true, CustomOption.RESULTS_FILE.getDescription());
+        options.addOption(CustomOption.CLUSTER_SIZE.getName(), true, CustomOption.CLUSTER_SIZE.getDescription());
+        options.addOption(Option.builder(CustomOption.COMPARE.getName()).numberOfArgs(2).argName("baseline> <current")
+                .desc(CustomOption.COMPARE.getDescription()).build());
+        options.addOption(CustomOption.REGRESSION_THRESHOLD.getName(), true, CustomOption.REGRESSION_THRESHOLD.getDescription());
+        options.addOption(CustomOption.JGROUPS_PROFILE.getName(), true, CustomOption.JGROUPS_PROFILE.getDescription());
+        options.addOption(CustomOption.PERSISTENCE.getName(), true, CustomOption.PERSISTENCE.getDescription());
+        options.addOption(CustomOption.BINARY_STORAGE.getName(), true, CustomOption.BINARY_STORAGE.getDescription());
+        options.addOption(CustomOption.CACHE_SIZE.getName(), true, CustomOption.CACHE_SIZE.getDescription());
         options.addOption(CustomOption.HELP.getName(), false, CustomOption.HELP.getDescription());
         
         return options;
@@ -89,6 +301,150 @@ public class CommandLineHelper {
                 : DEFAULT_THREAD_COUNT;
     }
     
+    private static int parsePageSize(CommandLine commandLine) {
+        return commandLine.hasOption(CustomOption.PAGE_SIZE.getName())
+                ? Integer.valueOf(commandLine.getOptionValue(CustomOption.PAGE_SIZE.getName()))
+                : DEFAULT_PAGE_SIZE;
+    }
+    
+    private static int parsePathCacheSize(CommandLine commandLine) {
+        return commandLine.hasOption(CustomOption.PATH_CACHE_SIZE.getName())
+                ? Integer.valueOf(commandLine.getOptionValue(CustomOption.PATH_CACHE_SIZE.getName()))
+                : DEFAULT_PATH_CACHE_SIZE;
+    }
+    
+    private static int parseTreeDepth(CommandLine commandLine) {
+        return commandLine.hasOption(CustomOption.TREE_DEPTH.getName())
+                ? Integer.valueOf(commandLine.getOptionValue(CustomOption.TREE_DEPTH.getName()))
+                : DEFAULT_TREE_DEPTH;
+    }
+    
+    private static List<TreeShapeGenerator.FanOut> parseTreeFanOuts(CommandLine commandLine) {
+        return TreeShapeGenerator.FanOut.parseList(commandLine.hasOption(CustomOption.TREE_FAN_OUT.getName())
+                ? commandLine.getOptionValue(CustomOption.TREE_FAN_OUT.getName())
+                : DEFAULT_TREE_FAN_OUT);
+    }
+    
+    private static long parseTreeSeed(CommandLine commandLine) {
+        return commandLine.hasOption(CustomOption.TREE_SEED.getName())
+                ? Long.valueOf(commandLine.getOptionValue(CustomOption.TREE_SEED.getName()))
+                : DEFAULT_TREE_SEED;
+    }
+    
+    private static String parseKeyChooser(CommandLine commandLine) {
+        String value = commandLine.hasOption(CustomOption.KEY_CHOOSER.getName())
+                ? commandLine.getOptionValue(CustomOption.KEY_CHOOSER.getName())
+                : DEFAULT_KEY_CHOOSER;
+        
+        // fails fast on an invalid chooser
+        KeyChooser.parse(value, 1);
+        return value;
+    }
+    
+    private static int parseOperationCount(CommandLine commandLine) {
+        return commandLine.hasOption(CustomOption.OPERATION_COUNT.getName())
+                ? Integer.valueOf(commandLine.getOptionValue(CustomOption.OPERATION_COUNT.getName()))
+                : DEFAULT_OPERATION_COUNT;
+    }
+    
+    private static int parseSoakDuration(CommandLine commandLine) {
+        return commandLine.hasOption(CustomOption.SOAK_DURATION.getName())
+                ? Integer.valueOf(commandLine.getOptionValue(CustomOption.SOAK_DURATION.getName()))
+                : DEFAULT_SOAK_DURATION_MINUTES;
+    }
+    
+    private static int parseSoakInterval(CommandLine commandLine) {
+        return commandLine.hasOption(CustomOption.SOAK_INTERVAL.getName())
+                ? Integer.valueOf(commandLine.getOptionValue(CustomOption.SOAK_INTERVAL.getName()))
+                : DEFAULT_SOAK_INTERVAL_SECONDS;
+    }
+    
+    private static String parseSoakWorkload(CommandLine commandLine) {
+        String value = commandLine.hasOption(CustomOption.SOAK_WORKLOAD.getName())
+                ? commandLine.getOptionValue(CustomOption.SOAK_WORKLOAD.getName()).toLowerCase(Locale.US)
+                : DEFAULT_SOAK_WORKLOAD;
+        
+        if (!value.equals("read") && !value.equals("update")) {
+            throw new IllegalStateException(String.format("Unsupported soak workload [%s]", value));
+        }
+        
+        return value;
+    }
+    
+    private static String parseUpdateStrategy(CommandLine commandLine) {
+        String value = commandLine.hasOption(CustomOption.UPDATE_STRATEGY.getName())
+                ? commandLine.getOptionValue(CustomOption.UPDATE_STRATEGY.getName()).toLowerCase(Locale.US)
+                : DEFAULT_UPDATE_STRATEGY;
+        
+        if (!value.equals("plain") && !value.equals("locked") && !value.equals("optimistic")
+                && !value.equals("write-behind")) {
+            throw new IllegalStateException(String.format("Unsupported update strategy [%s]", value));
+        }
+        
+        return value;
+    }
+    
+    private static Optional<Path> parseJfrFile(CommandLine commandLine) {
+        return commandLine.hasOption(CustomOption.JFR_FILE.getName())
+                ? Optional.of(Paths.get(commandLine.getOptionValue(CustomOption.JFR_FILE.getName())))
+                : Optional.empty();
+    }
+    
+    private static Path parseResultsFile(CommandLine commandLine) {
+        return commandLine.hasOption(CustomOption.RESULTS_FILE.getName())
+                ? Paths.get(commandLine.getOptionValue(CustomOption.RESULTS_FILE.getName()))
+                : Paths.get(DEFAULT_RESULTS_DIRECTORY, String.format("run-%s.json",
+                        LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"))));
+    }
+    
+    private static int parseClusterSize(CommandLine commandLine) {
+        return commandLine.hasOption(CustomOption.CLUSTER_SIZE.getName())
+                ? Integer.valueOf(commandLine.getOptionValue(CustomOption.CLUSTER_SIZE.getName()))
+                : DEFAULT_CLUSTER_SIZE;
+    }
+    
+    private static Optional<List<Path>> parseComparedResultsFiles(CommandLine commandLine) {
+        if (!commandLine.hasOption(CustomOption.COMPARE.getName())) {
+            return Optional.empty();
+        }
+        
+        String[] values = commandLine.getOptionValues(CustomOption.COMPARE.getName());
+        if (values.length != 2) {
+            throw new IllegalStateException(String.format("The baseline and the current results files are required "
+                    + "[values=%s]", Arrays.toString(values)));
+        }
+        
+        return Optional.of(Arrays.asList(Paths.get(values[0]), Paths.get(values[1])));
+    }
+    
+    private static double parseRegressionThreshold(CommandLine commandLine) {
+        return commandLine.hasOption(CustomOption.REGRESSION_THRESHOLD.getName())
+                ? Double.valueOf(commandLine.getOptionValue(CustomOption.REGRESSION_THRESHOLD.getName()))
+                : DEFAULT_REGRESSION_THRESHOLD;
+    }
+    
+    private static Optional<JGroupsStackProfile> parseJGroupsProfile(CommandLine commandLine) {
+        return commandLine.hasOption(CustomOption.JGROUPS_PROFILE.getName())
+                ? Optional.of(JGroupsStackProfile.fromProfileName(commandLine.getOptionValue(CustomOption.JGROUPS_PROFILE.getName())))
+                : Optional.empty();
+    }
+    
+    private static RepositoryConfigurationGenerator parseConfigurationGenerator(CommandLine commandLine) {
+        RepositoryConfigurationGenerator defaults = RepositoryConfigurationGenerator.fromSystemProperties();
+        
+        return new RepositoryConfigurationGenerator(
+                commandLine.hasOption(CustomOption.PERSISTENCE.getName())
+                        ? RepositoryConfigurationGenerator.Persistence.fromTypeName(commandLine.getOptionValue(CustomOption.PERSISTENCE.getName()))
+                        : defaults.getPersistence(),
+                commandLine.hasOption(CustomOption.BINARY_STORAGE.getName())
+                        ? RepositoryConfigurationGenerator.BinaryStorage.fromTypeName(commandLine.getOptionValue(CustomOption.BINARY_STORAGE.getName()))
+                        : defaults.getBinaryStorage(),
+                commandLine.hasOption(CustomOption.CACHE_SIZE.getName())
+                        ? Optional.of(Integer.valueOf(commandLine.getOptionValue(CustomOption.CACHE_SIZE.getName())))
+                        : defaults.getCacheSize(),
+                defaults.getStorageDirectory());
+    }
+    
     private static CommandLine createCommandLine(String[] args, Options options) {
         CommandLineParser parser = new DefaultParser();
         
@@ -109,8 +465,28 @@ public class CommandLineHelper {
     public enum CustomOption {
         
         DB_URL("dbUrl", "The DB connection URL. Defaults to: " + DEFAULT_DB_URL),
-        NODE_COUNT("nodeCount", "The number of child nodes the root of the application should have. Defaults to: " + DEFAULT_ROOT_CHILD_COUNT),
+        NODE_COUNT("nodeCount", "The number of child nodes the root of the application should have, or the total number of nodes of the generated tree. Defaults to: " + DEFAULT_ROOT_CHILD_COUNT),
         THREAD_COUNT("threadCount", "The number of threads to use (applies only to the [UPDATE] action). Defaults to: " + DEFAULT_THREAD_COUNT),
+        PAGE_SIZE("pageSize", "The number of nodes fetched by a single query (applies only to the [QUERY] action). Defaults to: " + DEFAULT_PAGE_SIZE),
+        PATH_CACHE_SIZE("pathCacheSize", "The number of node identifiers cached by path, 0 disables the cache. Defaults to: " + DEFAULT_PATH_CACHE_SIZE),
+        TREE_DEPTH("treeDepth", "The number of levels of the generated tree (applies only to the [GENERATE] action). Defaults to: " + DEFAULT_TREE_DEPTH),
+        TREE_FAN_OUT("treeFanOut", "The comma separated fan-outs of the levels of the generated tree, e.g. fixed:10, uniform:1-20 or zipf:50:1.2 (applies only to the [GENERATE] action). Defaults to: " + DEFAULT_TREE_FAN_OUT),
+        TREE_SEED("treeSeed", "The seed of the random fan-outs of the generated tree, the same seed generating the same tree (applies only to the [GENERATE] action). Defaults to: " + DEFAULT_TREE_SEED),
+        KEY_CHOOSER("keyChooser", "The distribution of the nodes the [READ] and [UPDATE] operations are applied to (sequential/uniform/zipfian:<exponent>/hotspot:<operation fraction>:<node fraction>/latest:<exponent>). Defaults to: " + DEFAULT_KEY_CHOOSER),
+        OPERATION_COUNT("operationCount", "The number of operations of the [READ] and [UPDATE] actions, 0 meaning one per node. Defaults to: " + DEFAULT_OPERATION_COUNT),
+        SOAK_DURATION("soakDuration", "The number of minutes the workload is looped for (applies only to the [SOAK] action). Defaults to: " + DEFAULT_SOAK_DURATION_MINUTES),
+        SOAK_INTERVAL("soakInterval", "The number of seconds between the reports (applies only to the [SOAK] action). Defaults to: " + DEFAULT_SOAK_INTERVAL_SECONDS),
+        SOAK_WORKLOAD("soakWorkload", "The looped workload (read/update), whose nodes are chosen by the key chooser (applies only to the [SOAK] action). Defaults to: " + DEFAULT_SOAK_WORKLOAD),
+        UPDATE_STRATEGY("updateStrategy", "The way the [UPDATE] and [SOAK] actions update the nodes of the [CREATE] action (plain/locked/optimistic/write-behind): plain checks the parent out, locked locks the node and optimistic detects the concurrent updates at save time, the locked and optimistic updates being retried with a backoff (see the backoff.* system properties), while write-behind queues the updates, coalesces the ones of the same node and saves them in batches in the background (see the writebehind.* system properties). The nodes of the [GENERATE] action are updated in place and support the plain strategy only. Defaults to: " + DEFAULT_UPDATE_STRATEGY),
+        JFR_FILE("jfr", "The file the Java Flight Recorder recording of the run, including the repository operation, lock acquisition and transaction events, is written to (requires Java 8u262+ or 11+). Defaults to: no recording"),
+        RESULTS_FILE("resultsFile", "The JSON file the configuration, the environment and the throughput and latency percentiles of every action of the run are written to, along with a CSV file of the actions next to it. Defaults to: " + DEFAULT_RESULTS_DIRECTORY + "/run-<timestamp>.json"),
+        CLUSTER_SIZE("clusterSize", "The number of the cluster members the run is made against, which is recorded in the results file. Defaults to: " + DEFAULT_CLUSTER_SIZE),
+        COMPARE("compare", "Compares the given baseline and current results files instead of performing any action, and exits with a non-zero status if any metric has regressed beyond the regression threshold"),
+        REGRESSION_THRESHOLD("regressionThreshold", "The relative change of the throughput or a latency percentile, or the change of the failure rate, beyond which a metric has regressed (applies only to the comparison). Defaults to: " + DEFAULT_REGRESSION_THRESHOLD),
+        JGROUPS_PROFILE("jgroupsProfile", "The JGroups stack profile (default/low-latency/high-throughput/loopback). Defaults to: main-jgroups.xml"),
+        PERSISTENCE("persistence", "The document storage (db/file). Defaults to: db"),
+        BINARY_STORAGE("binaryStorage", "The binary storage (database/file/transient). Defaults to: database"),
+        CACHE_SIZE("cacheSize", "The number of nodes cached per workspace. Defaults to: the ModeShape default"),
         HELP("help", "Displays help documentation");
         
         private final String name;
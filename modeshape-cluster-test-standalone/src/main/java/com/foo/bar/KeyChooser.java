@@ -0,0 +1,319 @@
+package com.foo.bar;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses the keys, i.e. the indexes of the nodes, the operations of a workload are applied to.
+ * Unlike touching every node once in order, the skewed choosers make a few nodes take most of the
+ * operations, which is what the lock contention and the cache behaviour of the real traffic depend
+ * on. The choosers are thread safe.
+ * <p>
+ * The hot keys of the {@link #zipfian(int, double) Zipfian} and the {@link #hotspot(int, double,
+ * double) hotspot} choosers are spread over the key space by a fixed permutation, so that they do
+ * not end up under the same parents.
+ */
+public abstract class KeyChooser {
+    
+    private static final long PERMUTATION_SEED = 42;
+    
+    private final int keyCount;
+    
+    protected KeyChooser(int keyCount) {
+        if (keyCount < 1) {
+            throw new IllegalArgumentException(String.format("At least one key is required [keyCount=%s]", keyCount));
+        }
+        
+        this.keyCount = keyCount;
+    }
+    
+    /**
+     * Returns the key of the next operation.
+     *
+     * @return the key between {@code 0}, inclusive, and the number of keys, exclusive
+     */
+    public abstract int nextKey();
+    
+    /**
+     * Records that the given key has been written, which only the {@link #latest(int, double)
+     * latest-written} chooser takes into account.
+     *
+     * @param key
+     *            the written key
+     */
+    public void onWritten(int key) {
+        // the written keys are not tracked by default
+    }
+    
+    public int getKeyCount() {
+        return keyCount;
+    }
+    
+    /**
+     * Every key is chosen once in order, then the order repeats, which is the behaviour of the
+     * one-shot actions.
+     */
+    public static KeyChooser sequential(int keyCount) {
+        AtomicLong counter = new AtomicLong();
+        
+        return new KeyChooser(keyCount) {
+            
+            @Override
+            public int nextKey() {
+                return (int) (counter.getAndIncrement() % keyCount);
+            }
+            
+            @Override
+            public String toString() {
+                return "sequential";
+            }
+        };
+    }
+    
+    /**
+     * Every key is equally likely to be chosen.
+     */
+    public static KeyChooser uniform(int keyCount) {
+        return new KeyChooser(keyCount) {
+            
+            @Override
+            public int nextKey() {
+                return ThreadLocalRandom.current().nextInt(keyCount);
+            }
+            
+            @Override
+            public String toString() {
+                return "uniform";
+            }
+        };
+    }
+    
+    /**
+     * The key of the rank {@code k} is chosen with the probability proportional to
+     * {@code 1 / k^exponent}, i.e. the higher the exponent, the more skewed the choice.
+     */
+    public static KeyChooser zipfian(int keyCount, double exponent) {
+        ZipfianRanks ranks = new ZipfianRanks(keyCount, exponent);
+        int[] permutation = createPermutation(keyCount);
+        
+        return new KeyChooser(keyCount) {
+            
+            @Override
+            public int nextKey() {
+                return permutation[ranks.next()];
+            }
+            
+            @Override
+            public String toString() {
+                return "zipfian:" + exponent;
+            }
+        };
+    }
+    
+    /**
+     * The given fraction of the operations goes to the given fraction of the keys, e.g.
+     * {@code 0.9} of the operations to {@code 0.1} of the keys, each key of either set being
+     * equally likely to be chosen.
+     */
+    public static KeyChooser hotspot(int keyCount, double hotOperationFraction, double hotKeyFraction) {
+        if (hotOperationFraction < 0 || hotOperationFraction > 1 || hotKeyFraction <= 0 || hotKeyFraction > 1) {
+            throw new IllegalArgumentException(String.format("Invalid fractions [hotOperations=%s, hotKeys=%s]",
+                    hotOperationFraction, hotKeyFraction));
+        }
+        
+        int hotKeyCount = Math.max(1, (int) Math.round(keyCount * hotKeyFraction));
+        int[] permutation = createPermutation(keyCount);
+        
+        return new KeyChooser(keyCount) {
+            
+            @Override
+            public int nextKey() {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                
+                return permutation[hotKeyCount == keyCount || random.nextDouble() < hotOperationFraction
+                        ? random.nextInt(hotKeyCount)
+                        : hotKeyCount + random.nextInt(keyCount - hotKeyCount)];
+            }
+            
+            @Override
+            public String toString() {
+                return "hotspot:" + hotOperationFraction + ":" + hotKeyFraction;
+            }
+        };
+    }
+    
+    /**
+     * The recently written keys are the most likely to be chosen, the key written {@code k}
+     * writes ago being chosen with the Zipfian probability of the rank {@code k + 1}. The keys are
+     * chosen uniformly until the first one is written.
+     */
+    public static KeyChooser latest(int keyCount, double exponent) {
+        return new LatestKeyChooser(keyCount, exponent);
+    }
+    
+    /**
+     * Parses the chooser, e.g. {@code sequential}, {@code uniform}, {@code zipfian:0.99},
+     * {@code hotspot:0.9:0.1} or {@code latest:0.99}.
+     *
+     * @param value
+     *            the chooser to parse
+     * @param keyCount
+     *            the number of keys
+     *
+     * @return the chooser
+     *
+     * @throws IllegalArgumentException
+     *             if the chooser is not supported or its parameters are invalid
+     */
+    public static KeyChooser parse(String value, int keyCount) {
+        String[] parts = value.trim().toLowerCase(Locale.US).split(":");
+        
+        try {
+            switch (parts[0]) {
+            case "sequential":
+                return sequential(keyCount);
+            
+            case "uniform":
+                return uniform(keyCount);
+            
+            case "zipfian":
+                return zipfian(keyCount, parts.length > 1 ? Double.parseDouble(parts[1]) : 0.99);
+            
+            case "hotspot":
+                return hotspot(keyCount, Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+            
+            case "latest":
+                return latest(keyCount, parts.length > 1 ? Double.parseDouble(parts[1]) : 0.99);
+            
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported key chooser [%s]", value));
+            }
+        
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid key chooser [%s]", value), e);
+        }
+    }
+    
+    private static int[] createPermutation(int keyCount) {
+        int[] permutation = new int[keyCount];
+        Random random = new Random(PERMUTATION_SEED);
+        
+        for (int i = 0; i < keyCount; i++) {
+            int j = random.nextInt(i + 1);
+            
+            permutation[i] = permutation[j];
+            permutation[j] = i;
+        }
+        
+        return permutation;
+    }
+    
+    /**
+     * Draws the zero based ranks, the rank {@code 0} being the most likely one.
+     */
+    private static class ZipfianRanks {
+        
+        private final double[] cumulative;
+        
+        ZipfianRanks(int rankCount, double exponent) {
+            if (exponent <= 0) {
+                throw new IllegalArgumentException(String.format("The exponent must be positive [exponent=%s]", exponent));
+            }
+            
+            this.cumulative = new double[rankCount];
+            double sum = 0;
+            
+            for (int rank = 0; rank < rankCount; rank++) {
+                sum += 1 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = sum;
+            }
+        }
+        
+        int next() {
+            int position = Arrays.binarySearch(cumulative,
+                    ThreadLocalRandom.current().nextDouble() * cumulative[cumulative.length - 1]);
+            
+            return Math.min(position < 0 ? -position - 1 : position, cumulative.length - 1);
+        }
+    }
+    
+    /**
+     * Keeps the keys in the order they have been written, the most recent one last. Moving a key
+     * to the end is linear, which is negligible next to the write itself. Ranks beyond the written
+     * keys pick uniformly among the keys not written yet.
+     */
+    private static class LatestKeyChooser extends KeyChooser {
+        
+        private final double exponent;
+        private final ZipfianRanks ranks;
+        
+        private final int[] writtenKeys;
+        private final int[] positions;
+        private int size;
+        
+        private final int[] unwrittenKeys;
+        private final int[] unwrittenPositions;
+        
+        LatestKeyChooser(int keyCount, double exponent) {
+            super(keyCount);
+            
+            this.exponent = exponent;
+            this.ranks = new ZipfianRanks(keyCount, exponent);
+            this.writtenKeys = new int[keyCount];
+            this.positions = new int[keyCount];
+            
+            this.unwrittenKeys = new int[keyCount];
+            this.unwrittenPositions = new int[keyCount];
+            
+            Arrays.fill(positions, -1);
+            
+            for (int key = 0; key < keyCount; key++) {
+                unwrittenKeys[key] = key;
+                unwrittenPositions[key] = key;
+            }
+        }
+        
+        @Override
+        public int nextKey() {
+            int rank = ranks.next();
+            
+            synchronized (this) {
+                return rank < size
+                        ? writtenKeys[size - 1 - rank]
+                        : unwrittenKeys[ThreadLocalRandom.current().nextInt(getKeyCount() - size)];
+            }
+        }
+        
+        @Override
+        public synchronized void onWritten(int key) {
+            int position = positions[key];
+            
+            if (position < 0) {
+                int unwrittenPosition = unwrittenPositions[key];
+                int lastUnwrittenKey = unwrittenKeys[getKeyCount() - size - 1];
+                
+                unwrittenKeys[unwrittenPosition] = lastUnwrittenKey;
+                unwrittenPositions[lastUnwrittenKey] = unwrittenPosition;
+                
+                size++;
+            
+            } else {
+                for (int i = position; i < size - 1; i++) {
+                    writtenKeys[i] = writtenKeys[i + 1];
+                    positions[writtenKeys[i]] = i;
+                }
+            }
+            
+            writtenKeys[size - 1] = key;
+            positions[key] = size - 1;
+        }
+        
+        @Override
+        public String toString() {
+            return "latest:" + exponent;
+        }
+    }
+}
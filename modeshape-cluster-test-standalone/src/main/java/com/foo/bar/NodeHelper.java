@@ -5,11 +5,13 @@ import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
+import javax.jcr.InvalidItemStateException;
 import javax.jcr.Node;
 import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.lock.Lock;
+import javax.jcr.lock.LockException;
 import javax.jcr.version.Version;
 
 import org.modeshape.jcr.JcrLexicon;
@@ -27,6 +29,7 @@ public class NodeHelper {
     private static final Logger LOGGER = LoggerFactory.getLogger(NodeHelper.class);
     
     static final String NODE_CONTENT_PROPERTY = "testContent";
+    static final String NODE_REVISION_PROPERTY = "testRevision";
     static final String RELATIVE_APP_ROOT_NODE_PATH = "appRoot";
     static final String ABSOLUTE_APP_ROOT_NODE_PATH = "/" + RELATIVE_APP_ROOT_NODE_PATH;
     static final String LEAF_PARENT_NODE_PREFIX = "folder-";
@@ -64,34 +67,17 @@ public class NodeHelper {
     public static String unsafeAddNode(Session session, String parentAbsolutePath,
             String relativePath, Optional<String> content) throws RepositoryException {
         
-        Node parent = session.getNode(parentAbsolutePath);
-        checkoutNode(parent);
-        
-        Node child = parent.addNode(relativePath);
-        child.addMixin(MIXIN_VERSIONABLE);
-        child.addMixin(MIXIN_LOCKABLE);
-        
-        if (content.isPresent()) {
-            child.setProperty(NODE_CONTENT_PROPERTY, content.get());
-        }
-        
-        child.getSession().save();
-        checkoutNode(child);
-        checkinNode(child);
-        
-        checkinNode(parent);
-        
-        return child.getPath();
+        return unsafeAddNode(session, parentAbsolutePath, relativePath, content, Optional.empty());
     }
     
-    public static String safeAddNodeNoTransaction(Session session, String parentAbsolutePath,
-            String relativePath, Optional<String> content) throws RepositoryException {
+    public static String unsafeAddNode(Session session, String parentAbsolutePath,
+            String relativePath, Optional<String> content, Optional<NodeIdentifierCache> cache)
+            throws RepositoryException {
         
-        Node parent = session.getNode(parentAbsolutePath);
-        lockNode(parent);
-        checkoutNode(parent);
+        return FlightEvents.recordOperation("add", session, parentAbsolutePath + "/" + relativePath, () -> {
+            Node parent = getNode(session, parentAbsolutePath, cache);
+            checkoutNode(parent);
             
-        try {
             Node child = parent.addNode(relativePath);
             child.addMixin(MIXIN_VERSIONABLE);
             child.addMixin(MIXIN_LOCKABLE);
@@ -105,88 +91,268 @@ public class NodeHelper {
             checkinNode(child);
             
             checkinNode(parent);
-            return child.getPath();
             
-        } finally {
-            unlockNode(parent);
-        }
+            if (cache.isPresent()) {
+                cache.get().put(child.getPath(), child.getIdentifier());
+            }
+            
+            return child.getPath();
+        });
     }
     
-    public static String safeAddNodeWithTransaction(Session session, String parentAbsolutePath,
+    public static String safeAddNodeNoTransaction(Session session, String parentAbsolutePath,
             String relativePath, Optional<String> content) throws RepositoryException {
         
-        Node parent = session.getNode(parentAbsolutePath);
-        lockNode(parent);
-            
-        return TransactionExecutor.runInTransaction(() -> {
+        return FlightEvents.recordOperation("safeAdd", session, parentAbsolutePath + "/" + relativePath, () -> {
+            Node parent = session.getNode(parentAbsolutePath);
+            lockNode(parent);
+            checkoutNode(parent);
             
             try {
-                return TransactionExecutor.runInTransaction(() -> {
-                    checkoutNode(parent);
-                    
-                    Node child = parent.addNode(relativePath);
-                    child.addMixin(MIXIN_VERSIONABLE);
-                    child.addMixin(MIXIN_LOCKABLE);
-                    
-                    if (content.isPresent()) {
-                        child.setProperty(NODE_CONTENT_PROPERTY, content.get());
-                    }
-                    
-                    child.getSession().save();
-                    checkoutNode(child);
-                    checkinNode(child);
-                    
-                    checkinNode(parent);
-                    return child.getPath();
-                });
+                Node child = parent.addNode(relativePath);
+                child.addMixin(MIXIN_VERSIONABLE);
+                child.addMixin(MIXIN_LOCKABLE);
+                
+                if (content.isPresent()) {
+                    child.setProperty(NODE_CONTENT_PROPERTY, content.get());
+                }
                 
+                child.getSession().save();
+                checkoutNode(child);
+                checkinNode(child);
+                
+                checkinNode(parent);
+                return child.getPath();
+            
             } finally {
                 unlockNode(parent);
             }
         });
     }
+    
+    public static String safeAddNodeWithTransaction(Session session, String parentAbsolutePath,
+            String relativePath, Optional<String> content) throws RepositoryException {
+        
+        return FlightEvents.recordOperation("transactionalAdd", session, parentAbsolutePath + "/" + relativePath, () -> {
+            Node parent = session.getNode(parentAbsolutePath);
+            lockNode(parent);
+            
+            return TransactionExecutor.runInTransaction(() -> {
+                
+                try {
+                    return TransactionExecutor.runInTransaction(() -> {
+                        checkoutNode(parent);
+                        
+                        Node child = parent.addNode(relativePath);
+                        child.addMixin(MIXIN_VERSIONABLE);
+                        child.addMixin(MIXIN_LOCKABLE);
+                        
+                        if (content.isPresent()) {
+                            child.setProperty(NODE_CONTENT_PROPERTY, content.get());
+                        }
+                        
+                        child.getSession().save();
+                        checkoutNode(child);
+                        checkinNode(child);
+                        
+                        checkinNode(parent);
+                        return child.getPath();
+                    });
+                
+                } finally {
+                    unlockNode(parent);
+                }
+            });
+        });
+    }
 
     public static String updateNode(Session session, String absolutePath, String content) throws RepositoryException {
-        Node node = session.getNode(absolutePath);
-        
-        Node parent = node.getParent();
-        checkoutNode(parent);
-        
-        checkoutNode(node);
-        node.setProperty(NODE_CONTENT_PROPERTY, content);
-        node.getSession().save();
-        checkinNode(node);
-        
-        checkinNode(parent);
-        
-        return node.getPath();
+        return updateNode(session, absolutePath, content, Optional.empty());
     }
     
-    public static String safeUpdateNode(Session session, String absolutePath, String content) throws RepositoryException {
-        Node node = session.getNode(absolutePath);
-        lockNode(node);
+    public static String updateNode(Session session, String absolutePath, String content,
+            Optional<NodeIdentifierCache> cache) throws RepositoryException {
         
-        try {
+        return FlightEvents.recordOperation("update", session, absolutePath, () -> {
+            Node node = getNode(session, absolutePath, cache);
+            
+            Node parent = node.getParent();
+            checkoutNode(parent);
+            
             checkoutNode(node);
             node.setProperty(NODE_CONTENT_PROPERTY, content);
             node.getSession().save();
             checkinNode(node);
             
-        } finally {
-            unlockNode(node);
-        }
+            checkinNode(parent);
+            
+            return node.getPath();
+        });
+    }
+    
+    public static String safeUpdateNode(Session session, String absolutePath, String content) throws RepositoryException {
+        return safeUpdateNode(session, absolutePath, content, Optional.empty());
+    }
+    
+    public static String safeUpdateNode(Session session, String absolutePath, String content,
+            Optional<NodeIdentifierCache> cache) throws RepositoryException {
         
-        return node.getPath();
+        return FlightEvents.recordOperation("safeUpdate", session, absolutePath, () -> {
+            Node node = getNode(session, absolutePath, cache);
+            lockNode(node);
+            
+            try {
+                checkoutNode(node);
+                node.setProperty(NODE_CONTENT_PROPERTY, content);
+                node.getSession().save();
+                checkinNode(node);
+            
+            } finally {
+                unlockNode(node);
+            }
+            
+            return node.getPath();
+        });
+    }
+    
+    /**
+     * Updates the node without locking it and without checking its parent out. The revision of
+     * the node, read before the update, is compared with the persisted one once the first save of
+     * the transaction has locked the document of the node until the transaction ends. If a
+     * concurrent update has been committed in between, or the node is locked by a concurrent
+     * {@link #safeUpdateNode(Session, String, String, Optional) locked update}, the transaction is
+     * rolled back and the update is retried after the delay of the given policy.
+     *
+     * @param session
+     *            the session to update the node with
+     * @param absolutePath
+     *            the path of the node
+     * @param content
+     *            the new content of the node
+     * @param cache
+     *            the cache to resolve the node with, if any
+     * @param backoffPolicy
+     *            the policy of the retried conflicting updates
+     *
+     * @return the path of the updated node
+     *
+     * @throws InvalidItemStateException
+     *             if the last attempt has conflicted with a concurrent update as well
+     * @throws LockException
+     *             if the node was still locked by another session on the last attempt
+     * @throws RepositoryException
+     *             if the node could not be updated otherwise, or the thread was interrupted while
+     *             backing off
+     */
+    public static String optimisticUpdateNode(Session session, String absolutePath, String content,
+            Optional<NodeIdentifierCache> cache, BackoffPolicy backoffPolicy) throws RepositoryException {
+        
+        return FlightEvents.recordOperation("optimisticUpdate", session, absolutePath, () -> {
+            for (int attempt = 1;; attempt++) {
+                try {
+                    String updatedNode = tryOptimisticUpdate(session, absolutePath, content, cache);
+                    
+                    MetricsRegistry.counter(MetricsRegistry.OPTIMISTIC_UPDATE_METRIC,
+                            MetricsRegistry.label("outcome", "committed")).increment();
+                    
+                    return updatedNode;
+                
+                } catch (InvalidItemStateException | LockException e) {
+                    boolean retried = backoffPolicy.canRetry(attempt);
+                    
+                    MetricsRegistry.counter(MetricsRegistry.OPTIMISTIC_UPDATE_METRIC,
+                            MetricsRegistry.label("outcome", retried ? "conflict" : "exhausted")).increment();
+                    
+                    if (!retried) {
+                        throw e;
+                    }
+                    
+                    LOGGER.debug("Optimistic update conflicted [path={}, attempt={}]", absolutePath, attempt, e);
+                    backOff(backoffPolicy, attempt);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Returns the revision of the node, which is incremented by every optimistic update, or
+     * {@code 0} if the node has never been updated optimistically.
+     */
+    public static long getRevision(Node node) throws RepositoryException {
+        return node.hasProperty(NODE_REVISION_PROPERTY) ? node.getProperty(NODE_REVISION_PROPERTY).getLong() : 0;
     }
     
     public static Callable<String> getUpdateChildNodeCallable(Repository repository, String childAbsolutePath) {
-        return new UpdateChildNodeCallable(repository, childAbsolutePath);
+        return getUpdateChildNodeCallable(repository, childAbsolutePath, Optional.empty());
+    }
+    
+    public static Callable<String> getUpdateChildNodeCallable(Repository repository, String childAbsolutePath,
+            Optional<NodeIdentifierCache> cache) {
+        
+        return new UpdateChildNodeCallable(repository, childAbsolutePath, cache);
+    }
+    
+    /**
+     * Returns the callable to update the node via {@link #safeUpdateNode(Session, String, String, Optional)},
+     * which is retried according to the given policy while the node is locked by another session.
+     */
+    public static Callable<String> getLockedUpdateNodeCallable(Repository repository, String absolutePath,
+            Optional<NodeIdentifierCache> cache, BackoffPolicy backoffPolicy) {
+        
+        return () -> {
+            Session session = RepositoryHelper.createSession(repository);
+            
+            try {
+                for (int attempt = 1;; attempt++) {
+                    try {
+                        return safeUpdateNode(session, absolutePath, UUID.randomUUID().toString(), cache);
+                    
+                    } catch (LockException e) {
+                        MetricsRegistry.counter(MetricsRegistry.LOCK_CONFLICT_METRIC, "").increment();
+                        
+                        if (!backoffPolicy.canRetry(attempt)) {
+                            throw e;
+                        }
+                        
+                        session.refresh(false);
+                        backoffPolicy.backOff(attempt);
+                    }
+                }
+            
+            } finally {
+                session.logout();
+            }
+        };
+    }
+    
+    public static Callable<String> getOptimisticUpdateNodeCallable(Repository repository, String absolutePath,
+            Optional<NodeIdentifierCache> cache, BackoffPolicy backoffPolicy) {
+        
+        return () -> {
+            Session session = RepositoryHelper.createSession(repository);
+            
+            try {
+                return optimisticUpdateNode(session, absolutePath, UUID.randomUUID().toString(), cache, backoffPolicy);
+            
+            } finally {
+                session.logout();
+            }
+        };
     }
     
     public static Callable<String> getCreateChildNodeCallable(Repository repository, String parentAbsolutePath, String childRelativePath) {
         return new CreateChildNodeCallable(repository, parentAbsolutePath, childRelativePath);
     }
     
+    /**
+     * Resolves the node via the cache, if any, otherwise by its path.
+     */
+    public static Node getNode(Session session, String absolutePath, Optional<NodeIdentifierCache> cache)
+            throws RepositoryException {
+        
+        return cache.isPresent() ? cache.get().getNode(session, absolutePath) : session.getNode(absolutePath);
+    }
+    
     public static void checkoutNode(Node node) throws RepositoryException {
         node.getSession().getWorkspace().getVersionManager().checkout(node.getPath());
     }
@@ -202,8 +368,19 @@ public class NodeHelper {
             LOGGER.trace("Corrupted node detected [path={}, id={}]", node.getPath(), node.getIdentifier());
         }
         
-        return node.getSession().getWorkspace().getLockManager().lock(
-                node.getPath(), false, false, TimeUnit.MINUTES.toSeconds(5), null);
+        FlightEvents.Scope event = FlightEvents.beginLockAcquisition(node.getSession(), node.getPath());
+        String outcome = FlightEvents.OUTCOME_FAILED;
+        
+        try {
+            Lock lock = node.getSession().getWorkspace().getLockManager().lock(
+                    node.getPath(), false, false, TimeUnit.MINUTES.toSeconds(5), null);
+            
+            outcome = "acquired";
+            return lock;
+        
+        } finally {
+            event.end(outcome);
+        }
     }
     
     public static void unlockNode(Node node) throws RepositoryException {
@@ -229,6 +406,60 @@ public class NodeHelper {
         return String.format("%s%s", LEAF_PARENT_NODE_PREFIX, index);
     }
     
+    private static String tryOptimisticUpdate(Session session, String absolutePath, String content,
+            Optional<NodeIdentifierCache> cache) throws RepositoryException {
+        
+        session.refresh(false);
+        
+        Node node = getNode(session, absolutePath, cache);
+        long expectedRevision = getRevision(node);
+        
+        try {
+            return TransactionExecutor.runInTransaction(() -> {
+                checkoutNode(node);
+                node.setProperty(NODE_CONTENT_PROPERTY, content);
+                
+                // the save locks the document until the transaction ends and refreshes the node
+                session.save();
+                
+                long actualRevision = getRevision(node);
+                if (actualRevision != expectedRevision) {
+                    throw new InvalidItemStateException(String.format("The node has been updated concurrently "
+                            + "[path=%s, expectedRevision=%s, actualRevision=%s]", absolutePath, expectedRevision,
+                            actualRevision));
+                }
+                
+                node.setProperty(NODE_REVISION_PROPERTY, expectedRevision + 1);
+                session.save();
+                checkinNode(node);
+                
+                return node.getPath();
+            });
+        
+        } catch (RuntimeException e) {
+            // the changes of the rolled back transaction are discarded by the next attempt
+            if (e.getCause() instanceof InvalidItemStateException) {
+                throw (InvalidItemStateException) e.getCause();
+            }
+            
+            if (e.getCause() instanceof LockException) {
+                throw (LockException) e.getCause();
+            }
+            
+            throw e;
+        }
+    }
+    
+    private static void backOff(BackoffPolicy backoffPolicy, int attempt) throws RepositoryException {
+        try {
+            backoffPolicy.backOff(attempt);
+        
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Interrupted while backing off the optimistic update", e);
+        }
+    }
+    
     private NodeHelper() {}
     
     /**
@@ -243,10 +474,12 @@ public class NodeHelper {
         
         private final Repository repository;
         private final String absolutePath;
+        private final Optional<NodeIdentifierCache> cache;
         
-        private UpdateChildNodeCallable(Repository repository, String absolutePath) {
+        private UpdateChildNodeCallable(Repository repository, String absolutePath, Optional<NodeIdentifierCache> cache) {
             this.repository = repository;
             this.absolutePath = absolutePath;
+            this.cache = cache;
         }
 
         @Override
@@ -258,7 +491,7 @@ public class NodeHelper {
                 
                 try {
                     return NodeHelper.updateNode(session, absolutePath,
-                            UUID.randomUUID().toString());
+                            UUID.randomUUID().toString(), cache);
                     
                 } finally {
                     session.logout();
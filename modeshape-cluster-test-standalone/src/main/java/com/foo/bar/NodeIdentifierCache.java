@@ -0,0 +1,197 @@
+package com.foo.bar;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+import javax.jcr.observation.ObservationManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The bounded LRU cache of the node identifiers by the absolute paths, which lets the hot paths
+ * resolve a node via {@link Session#getNodeByIdentifier(String)} rather than walking the
+ * hierarchy segment by segment. The cache is filled when the nodes are created or read, and the
+ * entries of the removed and moved subtrees are invalidated by the observation events, including
+ * the ones coming from the other cluster members.
+ * <p>
+ * As the events are delivered asynchronously, a node moved by another session may still be
+ * resolved at its new location until the event arrives. The path of the resolved node is not
+ * verified, because computing it walks the ancestors, which is what the cache avoids. A node,
+ * whose identifier is not found, is resolved by its path instead.
+ */
+public class NodeIdentifierCache implements AutoCloseable {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(NodeIdentifierCache.class);
+    
+    private final Map<String, String> identifiers;
+    private final Session listenerSession;
+    private final EventListener listener;
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    
+    private NodeIdentifierCache(int maxSize, Session listenerSession) throws RepositoryException {
+        this.identifiers = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxSize;
+            }
+        };
+        
+        this.listenerSession = listenerSession;
+        this.listener = this::onEvents;
+        
+        ObservationManager observationManager = listenerSession.getWorkspace().getObservationManager();
+        observationManager.addEventListener(listener, Event.NODE_REMOVED | Event.NODE_MOVED, "/", true, null, null, false);
+    }
+    
+    /**
+     * Creates the cache of the given repository, whose observation session stays open until the
+     * cache is closed.
+     *
+     * @param repository
+     *            the repository, whose nodes are to be cached
+     * @param maxSize
+     *            the maximum number of cached paths
+     *
+     * @return the cache
+     *
+     * @throws RepositoryException
+     *             if the event listener could not be registered
+     */
+    public static NodeIdentifierCache create(Repository repository, int maxSize) throws RepositoryException {
+        Session session = RepositoryHelper.createSession(repository);
+        
+        try {
+            return new NodeIdentifierCache(maxSize, session);
+        
+        } catch (RepositoryException | RuntimeException e) {
+            session.logout();
+            throw e;
+        }
+    }
+    
+    /**
+     * Resolves the node by its cached identifier, falling back to the path, which is cached then.
+     *
+     * @param session
+     *            the session to use
+     * @param absolutePath
+     *            the absolute path of the node
+     *
+     * @return the node
+     *
+     * @throws RepositoryException
+     *             if the node does not exist or could not be read
+     */
+    public Node getNode(Session session, String absolutePath) throws RepositoryException {
+        String identifier = get(absolutePath);
+        
+        if (identifier != null) {
+            try {
+                Node node = session.getNodeByIdentifier(identifier);
+                hits.increment();
+                
+                return node;
+            
+            } catch (ItemNotFoundException e) {
+                LOGGER.trace("Cached node not found [path={}, id={}]", absolutePath, identifier);
+                invalidate(absolutePath);
+            }
+        }
+        
+        misses.increment();
+        
+        Node node = session.getNode(absolutePath);
+        put(absolutePath, node.getIdentifier());
+        
+        return node;
+    }
+    
+    public synchronized void put(String absolutePath, String identifier) {
+        identifiers.put(absolutePath, identifier);
+    }
+    
+    public synchronized String get(String absolutePath) {
+        return identifiers.get(absolutePath);
+    }
+    
+    /**
+     * Drops the entries of the given path and of all its descendants.
+     *
+     * @param absolutePath
+     *            the root of the invalidated subtree
+     */
+    public synchronized void invalidate(String absolutePath) {
+        String descendantPrefix = absolutePath.endsWith("/") ? absolutePath : absolutePath + "/";
+        
+        for (Iterator<String> paths = identifiers.keySet().iterator(); paths.hasNext();) {
+            String path = paths.next();
+            
+            if (path.equals(absolutePath) || path.startsWith(descendantPrefix)) {
+                paths.remove();
+                invalidations.increment();
+            }
+        }
+    }
+    
+    public synchronized int size() {
+        return identifiers.size();
+    }
+    
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+    
+    @Override
+    public void close() throws RepositoryException {
+        try {
+            listenerSession.getWorkspace().getObservationManager().removeEventListener(listener);
+        
+        } finally {
+            listenerSession.logout();
+        }
+    }
+    
+    private void onEvents(EventIterator events) {
+        while (events.hasNext()) {
+            Event event = events.nextEvent();
+            
+            try {
+                invalidate(event.getType() == Event.NODE_MOVED
+                        ? (String) event.getInfo().get("srcAbsPath")
+                        : event.getPath());
+            
+            } catch (RepositoryException e) {
+                LOGGER.warn("Unable to process the event, clearing the cache [event={}]", event, e);
+                
+                synchronized (this) {
+                    identifiers.clear();
+                }
+            }
+        }
+    }
+}
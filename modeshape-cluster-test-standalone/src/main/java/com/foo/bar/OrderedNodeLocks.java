@@ -0,0 +1,221 @@
+package com.foo.bar;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.lock.LockException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The locks of several nodes, acquired by a single session within one deadline. The nodes are
+ * always locked in the same, canonical order, i.e. the natural order of their paths, whatever the
+ * order they are given in, so that two sessions locking overlapping sets of nodes cannot wait for
+ * each other in a cycle. A node locked by another session is retried after the delay of the given
+ * {@link BackoffPolicy}, shortened to the remaining time, until the deadline, the maximum number of
+ * attempts of the policy being ignored. If any of the nodes cannot be locked, the already locked
+ * ones are unlocked in the reverse order.
+ *
+ * <pre>
+ * try (OrderedNodeLocks locks = OrderedNodeLocks.acquire(session, paths, 5, TimeUnit.SECONDS, policy)) {
+ *     ...
+ * }
+ * </pre>
+ */
+public class OrderedNodeLocks implements AutoCloseable {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderedNodeLocks.class);
+    
+    private final Session session;
+    private final Map<String, Node> lockedNodes = new LinkedHashMap<>();
+    private final Map<String, Duration> waitTimes = new LinkedHashMap<>();
+    
+    private OrderedNodeLocks(Session session) {
+        this.session = session;
+    }
+    
+    /**
+     * Locks the nodes at the given paths in their canonical order. The session is refreshed on
+     * every conflict, which would discard its pending changes, so it must not have any.
+     *
+     * @param session
+     *            the session to lock the nodes with, which holds the locks until {@link #close()}
+     *            and must not have any pending changes
+     * @param absolutePaths
+     *            the paths of the nodes, in any order, the duplicates being ignored
+     * @param timeout
+     *            the time to lock all the nodes within
+     * @param unit
+     *            the unit of the timeout
+     * @param backoffPolicy
+     *            the policy of the retried locks
+     *
+     * @return the acquired locks
+     *
+     * @throws IllegalStateException
+     *             if the session has pending changes
+     * @throws LockException
+     *             if a node was still locked by another session at the deadline
+     * @throws RepositoryException
+     *             if a node could not be locked otherwise, or the thread was interrupted while
+     *             backing off
+     */
+    public static OrderedNodeLocks acquire(Session session, Collection<String> absolutePaths, long timeout,
+            TimeUnit unit, BackoffPolicy backoffPolicy) throws RepositoryException {
+        
+        if (session.hasPendingChanges()) {
+            throw new IllegalStateException(String.format("The nodes cannot be locked in a session with pending "
+                    + "changes, as they would be discarded [paths=%s]", absolutePaths));
+        }
+        
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        OrderedNodeLocks locks = new OrderedNodeLocks(session);
+        
+        try {
+            for (String absolutePath : getLockOrder(absolutePaths)) {
+                locks.lock(absolutePath, deadline, backoffPolicy);
+            }
+            
+            LOGGER.debug("Locked nodes [waitTimes={}]", locks.waitTimes);
+            return locks;
+        
+        } catch (RepositoryException | RuntimeException e) {
+            LOGGER.debug("Failed to lock nodes [paths={}, waitTimes={}]", absolutePaths, locks.waitTimes);
+            locks.release(e);
+            
+            throw e;
+        }
+    }
+    
+    /**
+     * Returns the paths in the order the nodes are locked in.
+     */
+    public static SortedSet<String> getLockOrder(Collection<String> absolutePaths) {
+        return new TreeSet<>(absolutePaths);
+    }
+    
+    /**
+     * Returns the time spent waiting for the lock of every node, in the order the nodes were
+     * locked in. The wait of a node, which could not be locked, is included as well.
+     */
+    public Map<String, Duration> getWaitTimes() {
+        return Collections.unmodifiableMap(waitTimes);
+    }
+    
+    public Duration getTotalWaitTime() {
+        return waitTimes.values().stream().reduce(Duration.ZERO, Duration::plus);
+    }
+    
+    /**
+     * Unlocks the nodes in the reverse order of their locking. All the nodes are attempted to be
+     * unlocked, the first failure being thrown, the others being suppressed by it. The pending
+     * changes of the session are discarded, so they should be saved before.
+     */
+    @Override
+    public void close() throws RepositoryException {
+        RepositoryException failure = release(null);
+        
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    private void lock(String absolutePath, long deadline, BackoffPolicy backoffPolicy) throws RepositoryException {
+        long start = System.nanoTime();
+        boolean acquired = false;
+        
+        try {
+            for (int attempt = 1;; attempt++) {
+                Node node = session.getNode(absolutePath);
+                
+                try {
+                    NodeHelper.lockNode(node);
+                    lockedNodes.put(absolutePath, node);
+                    
+                    acquired = true;
+                    return;
+                
+                } catch (LockException e) {
+                    MetricsRegistry.counter(MetricsRegistry.LOCK_CONFLICT_METRIC, "").increment();
+                    
+                    long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remainingMillis <= 0) {
+                        throw new LockException(String.format("Failed to lock the node before the deadline "
+                                + "[path=%s, attempts=%s, waitTimes=%s]", absolutePath, attempt, waitTimes), e);
+                    }
+                    
+                    session.refresh(false);
+                    sleep(Math.min(remainingMillis, backoffPolicy.getDelayMillis(attempt)));
+                }
+            }
+        
+        } finally {
+            long waitNanos = System.nanoTime() - start;
+            waitTimes.put(absolutePath, Duration.ofNanos(waitNanos));
+            
+            MetricsRegistry.histogram(MetricsRegistry.LOCK_WAIT_METRIC,
+                    MetricsRegistry.label("outcome", acquired ? "acquired" : "failed"))
+                    .record(waitNanos);
+        }
+    }
+    
+    private RepositoryException release(Exception cause) {
+        RepositoryException failure = null;
+        
+        List<String> absolutePaths = new ArrayList<>(lockedNodes.keySet());
+        Collections.reverse(absolutePaths);
+        
+        for (String absolutePath : absolutePaths) {
+            Node node = lockedNodes.remove(absolutePath);
+            
+            try {
+                NodeHelper.unlockNode(node);
+            
+            } catch (RepositoryException e) {
+                // the lock may have been dropped by a late unlock event of another member
+                LOGGER.warn("Failed to unlock the node [path={}, corrupted={}]", absolutePath, isCorrupted(node), e);
+                
+                if (cause != null) {
+                    cause.addSuppressed(e);
+                } else if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        
+        return failure;
+    }
+    
+    private static Boolean isCorrupted(Node node) {
+        try {
+            return NodeLockHelper.isNodeCorrupted(node);
+        
+        } catch (RepositoryException e) {
+            return null;
+        }
+    }
+    
+    private static void sleep(long millis) throws RepositoryException {
+        try {
+            Thread.sleep(millis);
+        
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Interrupted while waiting for the lock", e);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.foo.bar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+
+/**
+ * The utility class to find the nodes via JCR-SQL2 queries rather than by their paths. The queries
+ * rely on the {@code contentIndex} and {@code localNameIndex} indexes of the repository
+ * configuration, otherwise every one of them would walk the whole workspace.
+ */
+public class QueryHelper {
+    
+    // the local index provider cannot serve LIKE, hence the prefix is turned into a range
+    static final String LEAF_NODES_QUERY = String.format("SELECT node.[jcr:path] FROM [nt:unstructured] AS node "
+            + "WHERE LOCALNAME(node) >= '%s' AND LOCALNAME(node) < '%s' AND ISDESCENDANTNODE(node, '%s') "
+            + "ORDER BY LOCALNAME(node)",
+            NodeHelper.LEAF_NODE_PREFIX, getUpperBound(NodeHelper.LEAF_NODE_PREFIX), NodeHelper.ABSOLUTE_APP_ROOT_NODE_PATH);
+    
+    static final String NODE_BY_CONTENT_QUERY = String.format("SELECT node.[jcr:path] FROM [nt:unstructured] AS node "
+            + "WHERE node.[%s] = $content", NodeHelper.NODE_CONTENT_PROPERTY);
+    
+    /**
+     * Reads all the leaf nodes page by page.
+     *
+     * @param session
+     *            the session to use
+     * @param pageSize
+     *            the maximum number of nodes fetched by a single query
+     *
+     * @return the absolute paths of the leaf nodes, ordered by their names
+     *
+     * @throws RepositoryException
+     *             if the query failed
+     */
+    public static List<String> readLeafNodes(Session session, int pageSize) throws RepositoryException {
+        List<String> leafNodes = new ArrayList<>();
+        
+        for (List<String> page = readLeafNodes(session, 0, pageSize); !page.isEmpty();
+                page = readLeafNodes(session, leafNodes.size(), pageSize)) {
+            
+            leafNodes.addAll(page);
+            
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+        
+        return leafNodes;
+    }
+    
+    /**
+     * Reads a single page of the leaf nodes.
+     *
+     * @param session
+     *            the session to use
+     * @param offset
+     *            the number of leaf nodes to skip
+     * @param limit
+     *            the maximum number of leaf nodes to return
+     *
+     * @return the absolute paths of the leaf nodes, ordered by their names
+     *
+     * @throws RepositoryException
+     *             if the query failed
+     */
+    public static List<String> readLeafNodes(Session session, long offset, long limit) throws RepositoryException {
+        Query query = createLeafNodesQuery(session);
+        query.setOffset(offset);
+        query.setLimit(limit);
+        
+        List<String> leafNodes = new ArrayList<>((int) limit);
+        for (NodeIterator nodes = query.execute().getNodes(); nodes.hasNext();) {
+            leafNodes.add(nodes.nextNode().getPath());
+        }
+        
+        return leafNodes;
+    }
+    
+    /**
+     * Finds the node by the value of its {@link NodeHelper#NODE_CONTENT_PROPERTY} property.
+     *
+     * @param session
+     *            the session to use
+     * @param content
+     *            the value to look for
+     *
+     * @return the first node having the given value, if any
+     *
+     * @throws RepositoryException
+     *             if the query failed
+     */
+    public static Optional<Node> findNodeByContent(Session session, String content) throws RepositoryException {
+        Query query = createNodeByContentQuery(session, content);
+        query.setLimit(1);
+        
+        NodeIterator nodes = query.execute().getNodes();
+        return nodes.hasNext() ? Optional.of(nodes.nextNode()) : Optional.empty();
+    }
+    
+    public static Query createLeafNodesQuery(Session session) throws RepositoryException {
+        return session.getWorkspace().getQueryManager().createQuery(LEAF_NODES_QUERY, Query.JCR_SQL2);
+    }
+    
+    public static Query createNodeByContentQuery(Session session, String content) throws RepositoryException {
+        Query query = session.getWorkspace().getQueryManager().createQuery(NODE_BY_CONTENT_QUERY, Query.JCR_SQL2);
+        query.bindValue("content", session.getValueFactory().createValue(content));
+        
+        return query;
+    }
+    
+    /**
+     * Describes how the given query would be executed, including the indexes it would use.
+     *
+     * @param query
+     *            the query created by the ModeShape query manager
+     *
+     * @return the query plan
+     *
+     * @throws RepositoryException
+     *             if the query could not be planned
+     */
+    public static String explain(Query query) throws RepositoryException {
+        return ((org.modeshape.jcr.api.query.Query) query).explain().getPlan();
+    }
+    
+    private static String getUpperBound(String prefix) {
+        return prefix.substring(0, prefix.length() - 1) + (char) (prefix.charAt(prefix.length() - 1) + 1);
+    }
+    
+    private QueryHelper() {}
+}
@@ -0,0 +1,642 @@
+package com.foo.bar;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Repository;
+
+import org.modeshape.schematic.Schematic;
+import org.modeshape.schematic.document.Document;
+import org.modeshape.schematic.document.EditableDocument;
+import org.modeshape.schematic.document.Json;
+import org.modeshape.schematic.document.ParsingException;
+
+/**
+ * The results of a run, i.e. its configuration, its environment, the size of the cluster it was
+ * made against and the throughput and the latency percentiles of every performed operation. The
+ * results are written to a JSON file, which can be {@link #compare(RunResults, RunResults, double)
+ * compared} with the one of another run, e.g. before and after a ModeShape upgrade, and to a CSV
+ * file of the operations next to it.
+ * <p>
+ * An operation regresses if its throughput drops, or its mean, p50, p90 or p99 latency grows, by
+ * more than the threshold relative to the baseline, or if its failure rate grows by more than the
+ * threshold. The max latency is reported, but not compared, as it is a single sample.
+ */
+public class RunResults {
+    
+    private static final String CSV_HEADER = "operation,count,failed,throughput_ops,mean_ms,p50_ms,p90_ms,p99_ms,max_ms";
+    
+    private final Instant startedAt;
+    private final int clusterSize;
+    private final Map<String, String> configuration;
+    private final Map<String, String> environment;
+    private final Map<String, Operation> operations = new LinkedHashMap<>();
+    
+    public RunResults(Instant startedAt, int clusterSize, Map<String, String> configuration,
+            Map<String, String> environment) {
+        
+        this.startedAt = startedAt;
+        this.clusterSize = clusterSize;
+        this.configuration = new LinkedHashMap<>(configuration);
+        this.environment = new LinkedHashMap<>(environment);
+    }
+    
+    /**
+     * Returns the environment of the current JVM and the given repository, e.g. the Java, the OS
+     * and the ModeShape versions.
+     */
+    public static Map<String, String> captureEnvironment(Repository repository) {
+        Map<String, String> environment = new LinkedHashMap<>();
+        
+        environment.put("modeshape.version", repository.getDescriptor(Repository.REP_VERSION_DESC));
+        environment.put("java.version", System.getProperty("java.version"));
+        environment.put("java.vm.name", System.getProperty("java.vm.name"));
+        environment.put("os.name", System.getProperty("os.name"));
+        environment.put("os.version", System.getProperty("os.version"));
+        environment.put("os.arch", System.getProperty("os.arch"));
+        environment.put("processors", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        environment.put("max.heap.bytes", String.valueOf(Runtime.getRuntime().maxMemory()));
+        environment.put("jvm.arguments", String.join(" ", ManagementFactory.getRuntimeMXBean().getInputArguments()));
+        
+        return environment;
+    }
+    
+    /**
+     * Adds the results of the operation. The operations performed more than once in a run, e.g.
+     * two [UPDATE] actions, get a numbered name, e.g. {@code update#2}.
+     *
+     * @param name
+     *            the name of the operation
+     * @param count
+     *            the number of the performed operations, the failed ones included
+     * @param failedCount
+     *            the number of the failed operations
+     * @param elapsedNanos
+     *            the wall-clock time the operations took
+     * @param recorder
+     *            the latencies of the operations, empty if only the total time is known
+     *
+     * @return the added operation
+     */
+    public synchronized Operation addOperation(String name, int count, int failedCount, long elapsedNanos,
+            LatencyRecorder recorder) {
+        
+        return addOperation(name, count, failedCount, elapsedNanos, recorder.getMean(), recorder.getPercentile(50),
+                recorder.getPercentile(90), recorder.getPercentile(99), recorder.getMax());
+    }
+    
+    /**
+     * The same as {@link #addOperation(String, int, int, long, LatencyRecorder)}, except for the
+     * percentiles being the bucket bounds of the histogram, which suits the long runs, e.g. the
+     * [SOAK] action, whose latencies are too many to be kept.
+     */
+    public synchronized Operation addOperation(String name, int count, int failedCount, long elapsedNanos,
+            LatencyHistogram histogram) {
+        
+        long meanNanos = histogram.getCount() == 0
+                ? 0
+                : (long) (histogram.getSumSeconds() / histogram.getCount() * TimeUnit.SECONDS.toNanos(1));
+        
+        return addOperation(name, count, failedCount, elapsedNanos, meanNanos, histogram.getPercentileNanos(50),
+                histogram.getPercentileNanos(90), histogram.getPercentileNanos(99), histogram.getMaxNanos());
+    }
+    
+    private Operation addOperation(String name, int count, int failedCount, long elapsedNanos, long meanNanos,
+            long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos) {
+        
+        String uniqueName = name;
+        for (int i = 2; operations.containsKey(uniqueName); i++) {
+            uniqueName = name + "#" + i;
+        }
+        
+        Operation operation = new Operation(uniqueName, count, failedCount,
+                elapsedNanos <= 0 ? 0 : (count - failedCount) * 1e9 / elapsedNanos,
+                LatencyRecorder.toMillis(meanNanos),
+                LatencyRecorder.toMillis(p50Nanos),
+                LatencyRecorder.toMillis(p90Nanos),
+                LatencyRecorder.toMillis(p99Nanos),
+                LatencyRecorder.toMillis(maxNanos));
+        
+        operations.put(uniqueName, operation);
+        return operation;
+    }
+    
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+    
+    public int getClusterSize() {
+        return clusterSize;
+    }
+    
+    public Map<String, String> getConfiguration() {
+        return Collections.unmodifiableMap(configuration);
+    }
+    
+    public Map<String, String> getEnvironment() {
+        return Collections.unmodifiableMap(environment);
+    }
+    
+    public synchronized List<Operation> getOperations() {
+        return new ArrayList<>(operations.values());
+    }
+    
+    public synchronized Optional<Operation> getOperation(String name) {
+        return Optional.ofNullable(operations.get(name));
+    }
+    
+    /**
+     * Writes the results to the given JSON file and the operations to the CSV file of the same
+     * name next to it, creating the missing directories.
+     *
+     * @param jsonFile
+     *            the JSON file to write
+     *
+     * @return the written CSV file
+     */
+    public synchronized Path write(Path jsonFile) {
+        Path csvFile = jsonFile.resolveSibling(jsonFile.getFileName().toString().replaceFirst("\\.json$", "") + ".csv");
+        
+        try {
+            if (jsonFile.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(jsonFile.toAbsolutePath().getParent());
+            }
+            
+            try (Writer writer = Files.newBufferedWriter(jsonFile, StandardCharsets.UTF_8)) {
+                Json.writePretty(toDocument(), writer);
+            }
+            
+            try (Writer writer = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8)) {
+                writer.write(CSV_HEADER + System.lineSeparator());
+                
+                for (Operation operation : operations.values()) {
+                    writer.write(String.format(Locale.US, "%s,%s,%s,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f%n",
+                            operation.getName(), operation.getCount(), operation.getFailedCount(),
+                            operation.getThroughput(), operation.getMeanMillis(), operation.getP50Millis(),
+                            operation.getP90Millis(), operation.getP99Millis(), operation.getMaxMillis()));
+                }
+            }
+            
+            return csvFile;
+        
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Reads the results from the given JSON file.
+     *
+     * @throws IllegalStateException
+     *             if the file is not a valid results file
+     */
+    public static RunResults read(Path jsonFile) {
+        try (InputStream stream = Files.newInputStream(jsonFile)) {
+            // the strings are read as they are, otherwise the timestamps would be read as dates
+            Document document = Json.read(stream, false);
+            
+            RunResults results = new RunResults(
+                    Instant.parse(document.getString("startedAt")),
+                    getNumber(document, "clusterSize").intValue(),
+                    toMap(document.getDocument("configuration")),
+                    toMap(document.getDocument("environment")));
+            
+            for (Object value : document.getArray("operations")) {
+                Document operation = (Document) value;
+                
+                results.operations.put(operation.getString("name"), new Operation(
+                        operation.getString("name"),
+                        getNumber(operation, "count").intValue(),
+                        getNumber(operation, "failed").intValue(),
+                        getNumber(operation, "throughput").doubleValue(),
+                        getNumber(operation, "meanMillis").doubleValue(),
+                        getNumber(operation, "p50Millis").doubleValue(),
+                        getNumber(operation, "p90Millis").doubleValue(),
+                        getNumber(operation, "p99Millis").doubleValue(),
+                        getNumber(operation, "maxMillis").doubleValue()));
+            }
+            
+            return results;
+        
+        } catch (ParsingException | RuntimeException e) {
+            throw new IllegalStateException(String.format("Invalid results file [%s]", jsonFile), e);
+        
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Compares the operations of the current run with the ones of the baseline run.
+     *
+     * @param baseline
+     *            the results of the baseline run
+     * @param current
+     *            the results of the current run
+     * @param threshold
+     *            the relative change, e.g. {@code 0.1}, above which a metric regresses
+     *
+     * @return the comparison
+     */
+    public static Comparison compare(RunResults baseline, RunResults current, double threshold) {
+        List<Difference> differences = new ArrayList<>();
+        List<String> missingOperations = new ArrayList<>();
+        
+        for (Operation expected : baseline.getOperations()) {
+            Optional<Operation> actual = current.getOperation(expected.getName());
+            
+            if (!actual.isPresent()) {
+                missingOperations.add(expected.getName());
+                continue;
+            }
+            
+            for (Metric metric : Metric.values()) {
+                differences.add(new Difference(expected.getName(), metric,
+                        metric.getValue(expected), metric.getValue(actual.get()), threshold));
+            }
+        }
+        
+        return new Comparison(baseline, current, threshold, differences, missingOperations);
+    }
+    
+    private Document toDocument() {
+        EditableDocument document = Schematic.newDocument();
+        
+        document.setString("startedAt", startedAt.toString());
+        document.setNumber("clusterSize", clusterSize);
+        document.setDocument("configuration", toDocument(configuration));
+        document.setDocument("environment", toDocument(environment));
+        
+        List<Document> operationDocuments = new ArrayList<>(operations.size());
+        for (Operation operation : operations.values()) {
+            EditableDocument operationDocument = Schematic.newDocument();
+            
+            operationDocument.setString("name", operation.getName());
+            operationDocument.setNumber("count", operation.getCount());
+            operationDocument.setNumber("failed", operation.getFailedCount());
+            operationDocument.setNumber("throughput", operation.getThroughput());
+            operationDocument.setNumber("meanMillis", operation.getMeanMillis());
+            operationDocument.setNumber("p50Millis", operation.getP50Millis());
+            operationDocument.setNumber("p90Millis", operation.getP90Millis());
+            operationDocument.setNumber("p99Millis", operation.getP99Millis());
+            operationDocument.setNumber("maxMillis", operation.getMaxMillis());
+            
+            operationDocuments.add(operationDocument);
+        }
+        
+        document.setArray("operations", operationDocuments.toArray());
+        return document;
+    }
+    
+    private static Document toDocument(Map<String, String> values) {
+        EditableDocument document = Schematic.newDocument();
+        values.forEach((name, value) -> document.setString(name, value));
+        
+        return document;
+    }
+    
+    private static Map<String, String> toMap(Document document) {
+        Map<String, String> values = new LinkedHashMap<>();
+        
+        for (Document.Field field : document.fields()) {
+            values.put(field.getName(), String.valueOf(field.getValue()));
+        }
+        
+        return values;
+    }
+    
+    /**
+     * Returns the number of the field, whose JSON value may have been read as an integer or a
+     * floating point number.
+     */
+    private static Number getNumber(Document document, String name) {
+        Object value = document.get(name);
+        
+        if (!(value instanceof Number)) {
+            throw new IllegalStateException(String.format("The field is not a number [name=%s, value=%s]", name, value));
+        }
+        
+        return (Number) value;
+    }
+    
+    /**
+     * The results of an operation, whose throughput is the one of the successful operations. The
+     * latencies are {@code 0} if only the total time of the operations is known, e.g. the one of
+     * the [GENERATE] action.
+     */
+    public static class Operation {
+        
+        private final String name;
+        private final int count;
+        private final int failedCount;
+        private final double throughput;
+        private final double meanMillis;
+        private final double p50Millis;
+        private final double p90Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+        
+        Operation(String name, int count, int failedCount, double throughput, double meanMillis,
+                double p50Millis, double p90Millis, double p99Millis, double maxMillis) {
+            
+            this.name = name;
+            this.count = count;
+            this.failedCount = failedCount;
+            this.throughput = throughput;
+            this.meanMillis = meanMillis;
+            this.p50Millis = p50Millis;
+            this.p90Millis = p90Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public int getCount() {
+            return count;
+        }
+        
+        public int getFailedCount() {
+            return failedCount;
+        }
+        
+        public double getFailureRate() {
+            return count == 0 ? 0 : (double) failedCount / count;
+        }
+        
+        public double getThroughput() {
+            return throughput;
+        }
+        
+        public double getMeanMillis() {
+            return meanMillis;
+        }
+        
+        public double getP50Millis() {
+            return p50Millis;
+        }
+        
+        public double getP90Millis() {
+            return p90Millis;
+        }
+        
+        public double getP99Millis() {
+            return p99Millis;
+        }
+        
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "[name=%s, count=%s, failed=%s, throughput=%.1f ops/s, mean=%.2f ms, "
+                    + "p50=%.2f ms, p90=%.2f ms, p99=%.2f ms, max=%.2f ms]", name, count, failedCount, throughput,
+                    meanMillis, p50Millis, p90Millis, p99Millis, maxMillis);
+        }
+    }
+    
+    /**
+     * The compared metrics of an operation.
+     */
+    public enum Metric {
+        
+        THROUGHPUT("throughput", false, true),
+        MEAN("mean", true, true),
+        P50("p50", true, true),
+        P90("p90", true, true),
+        P99("p99", true, true),
+        MAX("max", true, false),
+        FAILURE_RATE("failure rate", true, true);
+        
+        private final String label;
+        private final boolean lowerIsBetter;
+        private final boolean compared;
+        
+        private Metric(String label, boolean lowerIsBetter, boolean compared) {
+            this.label = label;
+            this.lowerIsBetter = lowerIsBetter;
+            this.compared = compared;
+        }
+        
+        public String getLabel() {
+            return label;
+        }
+        
+        public boolean isLowerBetter() {
+            return lowerIsBetter;
+        }
+        
+        /**
+         * Whether the metric can regress, as opposed to being reported only.
+         */
+        public boolean isCompared() {
+            return compared;
+        }
+        
+        double getValue(Operation operation) {
+            switch (this) {
+            case THROUGHPUT:
+                return operation.getThroughput();
+            case MEAN:
+                return operation.getMeanMillis();
+            case P50:
+                return operation.getP50Millis();
+            case P90:
+                return operation.getP90Millis();
+            case P99:
+                return operation.getP99Millis();
+            case MAX:
+                return operation.getMaxMillis();
+            case FAILURE_RATE:
+                return operation.getFailureRate();
+            default:
+                throw new IllegalStateException(String.format("Unsupported metric [%s]", this));
+            }
+        }
+    }
+    
+    /**
+     * The change of a metric of an operation between the baseline and the current run.
+     */
+    public static class Difference {
+        
+        private final String operation;
+        private final Metric metric;
+        private final double baseline;
+        private final double current;
+        private final boolean regressed;
+        
+        Difference(String operation, Metric metric, double baseline, double current, double threshold) {
+            this.operation = operation;
+            this.metric = metric;
+            this.baseline = baseline;
+            this.current = current;
+            this.regressed = metric.isCompared() && isRegressed(metric, baseline, current, threshold);
+        }
+        
+        private static boolean isRegressed(Metric metric, double baseline, double current, double threshold) {
+            if (metric == Metric.FAILURE_RATE) {
+                // the failure rates are fractions already, so they are compared directly
+                return current - baseline > threshold;
+            }
+            
+            if (baseline <= 0) {
+                // the metric has not been measured, e.g. the latency of an operation timed as a whole
+                return false;
+            }
+            
+            double change = (current - baseline) / baseline;
+            return metric.isLowerBetter() ? change > threshold : -change > threshold;
+        }
+        
+        public String getOperation() {
+            return operation;
+        }
+        
+        public Metric getMetric() {
+            return metric;
+        }
+        
+        public double getBaseline() {
+            return baseline;
+        }
+        
+        public double getCurrent() {
+            return current;
+        }
+        
+        /**
+         * Returns the change relative to the baseline, or {@code 0} if the baseline is zero.
+         */
+        public double getRelativeChange() {
+            return baseline == 0 ? 0 : (current - baseline) / baseline;
+        }
+        
+        public boolean isRegressed() {
+            return regressed;
+        }
+    }
+    
+    /**
+     * The comparison of two runs.
+     */
+    public static class Comparison {
+        
+        private static final String REPORT_FORMAT = "%-24s %-14s %12s %12s %9s  %s%n";
+        
+        private final RunResults baseline;
+        private final RunResults current;
+        private final double threshold;
+        private final List<Difference> differences;
+        private final List<String> missingOperations;
+        
+        Comparison(RunResults baseline, RunResults current, double threshold, List<Difference> differences,
+                List<String> missingOperations) {
+            
+            this.baseline = baseline;
+            this.current = current;
+            this.threshold = threshold;
+            this.differences = differences;
+            this.missingOperations = missingOperations;
+        }
+        
+        public List<Difference> getDifferences() {
+            return Collections.unmodifiableList(differences);
+        }
+        
+        public List<Difference> getRegressions() {
+            List<Difference> regressions = new ArrayList<>();
+            
+            for (Difference difference : differences) {
+                if (difference.isRegressed()) {
+                    regressions.add(difference);
+                }
+            }
+            
+            return regressions;
+        }
+        
+        /**
+         * Returns the operations of the baseline run, which the current run has not performed.
+         */
+        public List<String> getMissingOperations() {
+            return Collections.unmodifiableList(missingOperations);
+        }
+        
+        /**
+         * Whether any metric has regressed or any operation of the baseline run is missing.
+         */
+        public boolean isRegressed() {
+            return !missingOperations.isEmpty() || !getRegressions().isEmpty();
+        }
+        
+        /**
+         * Returns the report of the differing configuration and environment entries and of all
+         * the compared metrics.
+         */
+        public String getReport() {
+            StringBuilder report = new StringBuilder();
+            
+            report.append(String.format("Baseline run [startedAt=%s, clusterSize=%s], current run [startedAt=%s, "
+                    + "clusterSize=%s], threshold [%s]%n", baseline.getStartedAt(), baseline.getClusterSize(),
+                    current.getStartedAt(), current.getClusterSize(), threshold));
+            
+            appendChanges(report, "configuration", baseline.getConfiguration(), current.getConfiguration());
+            appendChanges(report, "environment", baseline.getEnvironment(), current.getEnvironment());
+            
+            report.append(String.format("%n" + REPORT_FORMAT, "operation", "metric", "baseline", "current", "change", ""));
+            
+            for (Difference difference : differences) {
+                report.append(String.format(Locale.US, REPORT_FORMAT,
+                        difference.getOperation(),
+                        difference.getMetric().getLabel(),
+                        String.format(Locale.US, "%.3f", difference.getBaseline()),
+                        String.format(Locale.US, "%.3f", difference.getCurrent()),
+                        difference.getMetric() == Metric.FAILURE_RATE
+                                ? String.format(Locale.US, "%+.1fpp", (difference.getCurrent() - difference.getBaseline()) * 100)
+                                : String.format(Locale.US, "%+.1f%%", difference.getRelativeChange() * 100),
+                        difference.isRegressed() ? "REGRESSED" : ""));
+            }
+            
+            for (String operation : missingOperations) {
+                report.append(String.format("%s: MISSING from the current run%n", operation));
+            }
+            
+            return report.toString();
+        }
+        
+        private static void appendChanges(StringBuilder report, String section, Map<String, String> baseline,
+                Map<String, String> current) {
+            
+            Map<String, String> keys = new LinkedHashMap<>(baseline);
+            keys.putAll(current);
+            
+            for (String key : keys.keySet()) {
+                String before = baseline.get(key);
+                String after = current.get(key);
+                
+                if (before == null ? after != null : !before.equals(after)) {
+                    report.append(String.format("  %s [%s]: [%s] -> [%s]%n", section, key, before, after));
+                }
+            }
+        }
+    }
+}
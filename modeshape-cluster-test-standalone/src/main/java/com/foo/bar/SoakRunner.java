@@ -0,0 +1,393 @@
+package com.foo.bar;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loops an operation on several threads for the given duration and reports, every interval, the
+ * throughput and the latency of the operation along with the heap after the last GC, the GC totals
+ * and the thread count read from the platform MXBeans. Once the run is over, the trends of the
+ * intervals are checked and a warning is issued if the heap, the latency or the thread count keep
+ * growing, or the throughput keeps dropping, which is what the leaks of the sessions, the caches or
+ * the transaction object store look like. The first interval, which warms the JVM and the caches
+ * up, is not taken into account.
+ * <p>
+ * The trend of a series is its least squares slope over the run, relative to the mean of the
+ * series, i.e. the relative change from the first interval to the last one.
+ */
+public class SoakRunner {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(SoakRunner.class);
+    
+    /**
+     * The minimum number of the intervals, the warm-up one excluded, to tell a trend.
+     */
+    static final int MIN_TREND_INTERVAL_COUNT = 3;
+    
+    private final long durationMillis;
+    private final long intervalMillis;
+    private final int threadCount;
+    private final double trendThreshold;
+    
+    /**
+     * Creates the runner.
+     *
+     * @param durationMillis
+     *            the duration of the run
+     * @param intervalMillis
+     *            the duration of the reported interval
+     * @param threadCount
+     *            the number of threads looping the operation
+     * @param trendThreshold
+     *            the relative change over the run, e.g. {@code 0.2}, above which a trend is reported
+     */
+    public SoakRunner(long durationMillis, long intervalMillis, int threadCount, double trendThreshold) {
+        if (intervalMillis <= 0 || durationMillis < intervalMillis) {
+            throw new IllegalArgumentException(String.format("Invalid durations [duration=%s ms, interval=%s ms]",
+                    durationMillis, intervalMillis));
+        }
+        
+        this.durationMillis = durationMillis;
+        this.intervalMillis = intervalMillis;
+        this.threadCount = threadCount;
+        this.trendThreshold = trendThreshold;
+    }
+    
+    /**
+     * Runs the operation until the duration elapses. The failed operations are counted, but do
+     * not stop the run.
+     *
+     * @param operation
+     *            the operation to loop
+     * @param listener
+     *            the listener to be notified of every completed interval
+     *
+     * @return the completed intervals
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the interval to complete
+     */
+    public List<Interval> run(Callable<?> operation, Consumer<Interval> listener) throws InterruptedException {
+        AtomicReference<IntervalRecorder> recorder = new AtomicReference<>(new IntervalRecorder());
+        List<Interval> intervals = new ArrayList<>();
+        
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        
+        ExecutorService executorService = ConcurrencyHelper.createExecutorService(threadCount, "soak-");
+        
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                executorService.submit(() -> loop(operation, recorder, deadline));
+            }
+            
+            JvmSnapshot previous = JvmSnapshot.take();
+            long intervalStart = start;
+            
+            while (intervalStart < deadline) {
+                long intervalEnd = Math.min(deadline, intervalStart + TimeUnit.MILLISECONDS.toNanos(intervalMillis));
+                TimeUnit.NANOSECONDS.sleep(Math.max(0, intervalEnd - System.nanoTime()));
+                
+                IntervalRecorder completed = recorder.getAndSet(new IntervalRecorder());
+                JvmSnapshot current = JvmSnapshot.take();
+                
+                Interval interval = new Interval(intervals.size(), TimeUnit.NANOSECONDS.toMillis(intervalEnd - start),
+                        completed, System.nanoTime() - intervalStart, previous, current);
+                
+                intervals.add(interval);
+                listener.accept(interval);
+                
+                previous = current;
+                intervalStart = intervalEnd;
+            }
+        
+        } finally {
+            ConcurrencyHelper.closeExecutorService(executorService, TimeUnit.SECONDS.toMillis(30));
+        }
+        
+        return intervals;
+    }
+    
+    /**
+     * Returns the warnings about the upward trends of the heap, the latency and the thread count
+     * and about the downward trend of the throughput.
+     *
+     * @param intervals
+     *            the completed intervals
+     *
+     * @return the warnings, empty if there are no trends or too few intervals to tell
+     */
+    public List<String> detectTrends(List<Interval> intervals) {
+        if (intervals.size() - 1 < MIN_TREND_INTERVAL_COUNT) {
+            return Collections.emptyList();
+        }
+        
+        List<Interval> measured = intervals.subList(1, intervals.size());
+        List<String> warnings = new ArrayList<>();
+        
+        checkTrend(measured, "heap after GC", Interval::getHeapAfterGcBytes, 1, warnings);
+        checkTrend(measured, "mean latency", Interval::getMeanLatencyNanos, 1, warnings);
+        checkTrend(measured, "thread count", Interval::getThreadCount, 1, warnings);
+        checkTrend(measured, "throughput", Interval::getThroughput, -1, warnings);
+        
+        for (String warning : warnings) {
+            LOGGER.warn(warning);
+        }
+        
+        return warnings;
+    }
+    
+    private void checkTrend(List<Interval> intervals, String name, ToDoubleFunction<Interval> value, int direction,
+            List<String> warnings) {
+        
+        double[] values = intervals.stream().mapToDouble(value).toArray();
+        double trend = getRelativeTrend(values);
+        
+        if (trend * direction > trendThreshold) {
+            warnings.add(String.format("The %s %s by %.0f%% over [%s] intervals [first=%.1f, last=%.1f]",
+                    name, trend > 0 ? "grows" : "drops", Math.abs(trend) * 100, values.length,
+                    values[0], values[values.length - 1]));
+        }
+    }
+    
+    /**
+     * Returns the least squares slope of the series over its whole length, relative to its mean.
+     *
+     * @param values
+     *            the series
+     *
+     * @return the relative change, {@code 0} if the series is shorter than two values or its mean
+     *         is not positive
+     */
+    static double getRelativeTrend(double[] values) {
+        int count = values.length;
+        
+        if (count < 2) {
+            return 0;
+        }
+        
+        double meanX = (count - 1) / 2.0;
+        double meanY = 0;
+        
+        for (double y : values) {
+            meanY += y / count;
+        }
+        
+        if (meanY <= 0) {
+            return 0;
+        }
+        
+        double covariance = 0;
+        double variance = 0;
+        
+        for (int x = 0; x < count; x++) {
+            covariance += (x - meanX) * (values[x] - meanY);
+            variance += (x - meanX) * (x - meanX);
+        }
+        
+        return covariance / variance * (count - 1) / meanY;
+    }
+    
+    private static void loop(Callable<?> operation, AtomicReference<IntervalRecorder> recorder, long deadline) {
+        while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+            long start = System.nanoTime();
+            
+            try {
+                operation.call();
+                recorder.get().latencies.record(System.nanoTime() - start);
+            
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            
+            } catch (Exception e) {
+                LOGGER.debug("The soak operation failed", e);
+                recorder.get().failures.increment();
+            }
+        }
+    }
+    
+    /**
+     * The operations of an interval.
+     */
+    private static class IntervalRecorder {
+        
+        private final LatencyRecorder latencies = new LatencyRecorder();
+        private final LongAdder failures = new LongAdder();
+    }
+    
+    /**
+     * The JVM state read from the platform MXBeans.
+     */
+    static class JvmSnapshot {
+        
+        private final long heapAfterGcBytes;
+        private final long heapUsedBytes;
+        private final long gcCount;
+        private final long gcTimeMillis;
+        private final int threadCount;
+        private final int peakThreadCount;
+        
+        private JvmSnapshot(long heapAfterGcBytes, long heapUsedBytes, long gcCount, long gcTimeMillis,
+                int threadCount, int peakThreadCount) {
+            
+            this.heapAfterGcBytes = heapAfterGcBytes;
+            this.heapUsedBytes = heapUsedBytes;
+            this.gcCount = gcCount;
+            this.gcTimeMillis = gcTimeMillis;
+            this.threadCount = threadCount;
+            this.peakThreadCount = peakThreadCount;
+        }
+        
+        /**
+         * Reads the current state. The heap after GC is the usage of the heap pools right after
+         * their last collection, or the current usage of the pools, which do not report it.
+         */
+        static JvmSnapshot take() {
+            long heapAfterGc = 0;
+            
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                    MemoryUsage usage = pool.getCollectionUsage();
+                    heapAfterGc += usage != null ? usage.getUsed() : pool.getUsage().getUsed();
+                }
+            }
+            
+            long gcCount = 0;
+            long gcTime = 0;
+            
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount += Math.max(0, collector.getCollectionCount());
+                gcTime += Math.max(0, collector.getCollectionTime());
+            }
+            
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            
+            return new JvmSnapshot(heapAfterGc, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(),
+                    gcCount, gcTime, threads.getThreadCount(), threads.getPeakThreadCount());
+        }
+    }
+    
+    /**
+     * The statistics of a completed interval.
+     */
+    public static class Interval {
+        
+        private final int index;
+        private final long elapsedMillis;
+        private final int operationCount;
+        private final long failureCount;
+        private final double throughput;
+        private final long meanLatencyNanos;
+        private final long p99LatencyNanos;
+        private final long heapAfterGcBytes;
+        private final long heapUsedBytes;
+        private final long gcCount;
+        private final long gcTimeMillis;
+        private final long totalGcTimeMillis;
+        private final int threadCount;
+        private final int peakThreadCount;
+        
+        private Interval(int index, long elapsedMillis, IntervalRecorder recorder, long durationNanos,
+                JvmSnapshot previous, JvmSnapshot current) {
+            
+            this.index = index;
+            this.elapsedMillis = elapsedMillis;
+            this.operationCount = recorder.latencies.getCount();
+            this.failureCount = recorder.failures.sum();
+            this.throughput = recorder.latencies.getThroughput(durationNanos);
+            this.meanLatencyNanos = recorder.latencies.getMean();
+            this.p99LatencyNanos = recorder.latencies.getPercentile(99);
+            this.heapAfterGcBytes = current.heapAfterGcBytes;
+            this.heapUsedBytes = current.heapUsedBytes;
+            this.gcCount = current.gcCount - previous.gcCount;
+            this.gcTimeMillis = current.gcTimeMillis - previous.gcTimeMillis;
+            this.totalGcTimeMillis = current.gcTimeMillis;
+            this.threadCount = current.threadCount;
+            this.peakThreadCount = current.peakThreadCount;
+        }
+        
+        public int getIndex() {
+            return index;
+        }
+        
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+        
+        public int getOperationCount() {
+            return operationCount;
+        }
+        
+        public long getFailureCount() {
+            return failureCount;
+        }
+        
+        public double getThroughput() {
+            return throughput;
+        }
+        
+        public long getMeanLatencyNanos() {
+            return meanLatencyNanos;
+        }
+        
+        public long getP99LatencyNanos() {
+            return p99LatencyNanos;
+        }
+        
+        public long getHeapAfterGcBytes() {
+            return heapAfterGcBytes;
+        }
+        
+        public long getHeapUsedBytes() {
+            return heapUsedBytes;
+        }
+        
+        public long getGcCount() {
+            return gcCount;
+        }
+        
+        public long getGcTimeMillis() {
+            return gcTimeMillis;
+        }
+        
+        public long getTotalGcTimeMillis() {
+            return totalGcTimeMillis;
+        }
+        
+        public int getThreadCount() {
+            return threadCount;
+        }
+        
+        public int getPeakThreadCount() {
+            return peakThreadCount;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("[interval=%s, elapsed=%s s, ops=%s, failed=%s, throughput=%.1f ops/s, "
+                    + "mean=%.2f ms, p99=%.2f ms, heapAfterGc=%s MB, heapUsed=%s MB, gc=%s (%s ms, total %s ms), "
+                    + "threads=%s (peak %s)]",
+                    index, TimeUnit.MILLISECONDS.toSeconds(elapsedMillis), operationCount, failureCount, throughput,
+                    LatencyRecorder.toMillis(meanLatencyNanos), LatencyRecorder.toMillis(p99LatencyNanos),
+                    heapAfterGcBytes >> 20, heapUsedBytes >> 20, gcCount, gcTimeMillis, totalGcTimeMillis,
+                    threadCount, peakThreadCount);
+        }
+    }
+}
@@ -0,0 +1,495 @@
+package com.foo.bar;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import com.foo.bar.AppNodeTypes.MixinPolicy;
+import com.foo.bar.AppNodeTypes.NodeKind;
+
+/**
+ * Generates the trees of the given shape out of the lean node types of {@link AppNodeTypes}, so
+ * that the workloads can be run against hierarchies other than the flat {@code /appRoot} one. The
+ * tree is planned breadth first: every node above the given depth draws its number of children
+ * from the {@link FanOut} of its level, until the total number of nodes is reached. The childless
+ * nodes are the files, having the content, the others are the folders.
+ * <p>
+ * The planned tree is created level by level, the children of every parent are added by a single
+ * task, which saves them at once, and the tasks of a level run in parallel. Every level is
+ * complete before the next one starts, so that the parents always exist.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code tree.depth} - the number of levels below the root of the tree, defaults to {@code 4}</li>
+ *   <li>{@code tree.fanout} - the comma separated fan-outs of the levels, starting with the children
+ *   of the root, the last one applies to the deeper levels too, e.g. {@code fixed:10},
+ *   {@code uniform:1-20} or {@code zipf:50:1.2}, defaults to {@code uniform:1-8}</li>
+ *   <li>{@code tree.node.count} - the total number of nodes below the root, defaults to {@code 500}</li>
+ *   <li>{@code tree.seed} - the seed of the random fan-outs, defaults to {@code 42}</li>
+ * </ul>
+ */
+public class TreeShapeGenerator {
+    
+    private static final long LEVEL_TIMEOUT_MINUTES = 10;
+    
+    private final int depth;
+    private final List<FanOut> fanOuts;
+    private final int nodeCount;
+    private final long seed;
+    
+    public TreeShapeGenerator(int depth, List<FanOut> fanOuts, int nodeCount, long seed) {
+        if (depth < 1) {
+            throw new IllegalArgumentException(String.format("The depth must be positive [depth=%s]", depth));
+        }
+        
+        if (fanOuts.isEmpty()) {
+            throw new IllegalArgumentException("At least one fan-out is required");
+        }
+        
+        this.depth = depth;
+        this.fanOuts = Collections.unmodifiableList(new ArrayList<>(fanOuts));
+        this.nodeCount = nodeCount;
+        this.seed = seed;
+    }
+    
+    public static TreeShapeGenerator fromSystemProperties() {
+        return new TreeShapeGenerator(
+                Integer.valueOf(System.getProperty("tree.depth", "4")),
+                FanOut.parseList(System.getProperty("tree.fanout", "uniform:1-8")),
+                Integer.valueOf(System.getProperty("tree.node.count", "500")),
+                Long.valueOf(System.getProperty("tree.seed", "42")));
+    }
+    
+    /**
+     * Plans the tree without creating it. The same generator always plans the same tree.
+     *
+     * @param rootAbsolutePath
+     *            the absolute path of the root of the tree
+     *
+     * @return the planned tree
+     */
+    public GeneratedTree plan(String rootAbsolutePath) {
+        Random random = new Random(seed);
+        PlannedNode root = new PlannedNode(null, 0, rootAbsolutePath);
+        List<List<PlannedNode>> levels = new ArrayList<>(depth);
+        
+        Deque<PlannedNode> parents = new ArrayDeque<>();
+        parents.add(root);
+        
+        int remaining = nodeCount;
+        int index = 0;
+        
+        while (remaining > 0 && !parents.isEmpty()) {
+            PlannedNode parent = parents.poll();
+            int childCount = Math.min(remaining, getFanOut(parent.level).next(random));
+            
+            for (int i = 0; i < childCount; i++) {
+                PlannedNode child = new PlannedNode(parent, parent.level + 1, null);
+                child.index = index++;
+                parent.children.add(child);
+                
+                if (levels.size() < child.level) {
+                    levels.add(new ArrayList<>());
+                }
+                
+                levels.get(child.level - 1).add(child);
+                
+                if (child.level < depth) {
+                    parents.add(child);
+                }
+            }
+            
+            remaining -= childCount;
+        }
+        
+        // the kind of a node, hence its name, is known only once its children have been planned
+        for (List<PlannedNode> level : levels) {
+            for (PlannedNode node : level) {
+                node.path = node.parent.path + "/" + (node.children.isEmpty()
+                        ? NodeHelper.LEAF_NODE_PREFIX
+                        : NodeHelper.LEAF_PARENT_NODE_PREFIX) + node.index;
+            }
+        }
+        
+        return new GeneratedTree(rootAbsolutePath, levels);
+    }
+    
+    /**
+     * Plans and creates the tree, replacing the existing node at the root path, if any. The node
+     * types are registered first.
+     *
+     * @param repository
+     *            the repository to create the tree in
+     * @param rootAbsolutePath
+     *            the absolute path of the root of the tree, whose parent must exist
+     * @param policy
+     *            the policy of the mixins of the created nodes
+     * @param threadCount
+     *            the number of parents whose children are created in parallel
+     *
+     * @return the created tree
+     *
+     * @throws RepositoryException
+     *             if the root could not be created
+     * @throws InterruptedException
+     *             if interrupted while waiting for the level to be created
+     * @throws ExecutionException
+     *             if a child could not be created
+     */
+    public GeneratedTree generate(Repository repository, String rootAbsolutePath, MixinPolicy policy,
+            int threadCount) throws RepositoryException, InterruptedException, ExecutionException {
+        
+        GeneratedTree tree = plan(rootAbsolutePath);
+        createRoot(repository, rootAbsolutePath, policy);
+        
+        ExecutorService executorService = ConcurrencyHelper.createExecutorService(threadCount, "tree-shape-");
+        
+        try {
+            for (int level = 1; level <= tree.getDepth(); level++) {
+                Map<String, List<PlannedNode>> children = tree.levels.get(level - 1).stream().collect(
+                        Collectors.groupingBy(node -> node.parent.path, LinkedHashMap::new, Collectors.toList()));
+                
+                List<Callable<Void>> tasks = new ArrayList<>(children.size());
+                
+                for (Map.Entry<String, List<PlannedNode>> entry : children.entrySet()) {
+                    tasks.add(() -> createChildren(repository, entry.getKey(), entry.getValue(), policy));
+                }
+                
+                for (Future<Void> future : executorService.invokeAll(tasks, LEVEL_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                    future.get();
+                }
+            }
+        
+        } finally {
+            ConcurrencyHelper.closeExecutorService(executorService, TimeUnit.SECONDS.toMillis(30));
+        }
+        
+        return tree;
+    }
+    
+    public int getDepth() {
+        return depth;
+    }
+    
+    public List<FanOut> getFanOuts() {
+        return fanOuts;
+    }
+    
+    public int getNodeCount() {
+        return nodeCount;
+    }
+    
+    private FanOut getFanOut(int level) {
+        return fanOuts.get(Math.min(level, fanOuts.size() - 1));
+    }
+    
+    private static void createRoot(Repository repository, String rootAbsolutePath, MixinPolicy policy)
+            throws RepositoryException {
+        
+        Session session = RepositoryHelper.createSession(repository);
+        
+        try {
+            AppNodeTypes.register(session);
+            
+            if (session.nodeExists(rootAbsolutePath)) {
+                session.getNode(rootAbsolutePath).remove();
+                session.save();
+            }
+            
+            int separator = rootAbsolutePath.lastIndexOf('/');
+            
+            AppNodeTypes.addNode(session, separator == 0 ? "/" : rootAbsolutePath.substring(0, separator),
+                    rootAbsolutePath.substring(separator + 1), NodeKind.FOLDER, Optional.empty(), policy);
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    private static Void createChildren(Repository repository, String parentAbsolutePath,
+            List<PlannedNode> children, MixinPolicy policy) throws RepositoryException {
+        
+        Session session = RepositoryHelper.createSession(repository);
+        
+        try {
+            Node parent = session.getNode(parentAbsolutePath);
+            boolean versionableParent = parent.isNodeType(NodeHelper.MIXIN_VERSIONABLE);
+            List<Node> versionableChildren = new ArrayList<>();
+            
+            if (versionableParent) {
+                NodeHelper.checkoutNode(parent);
+            }
+            
+            for (PlannedNode plannedChild : children) {
+                NodeKind kind = plannedChild.children.isEmpty() ? NodeKind.FILE : NodeKind.FOLDER;
+                Node child = parent.addNode(plannedChild.getName(), kind.getTypeName());
+                
+                if (policy.isVersionable(kind)) {
+                    child.addMixin(NodeHelper.MIXIN_VERSIONABLE);
+                    versionableChildren.add(child);
+                }
+                
+                if (policy.isLockable(kind)) {
+                    child.addMixin(NodeHelper.MIXIN_LOCKABLE);
+                }
+                
+                if (kind == NodeKind.FILE) {
+                    child.setProperty(NodeHelper.NODE_CONTENT_PROPERTY, UUID.randomUUID().toString());
+                }
+            }
+            
+            session.save();
+            
+            for (Node child : versionableChildren) {
+                NodeHelper.checkinNode(child);
+            }
+            
+            if (versionableParent) {
+                NodeHelper.checkinNode(parent);
+            }
+            
+            return null;
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    /**
+     * The node of the planned tree.
+     */
+    private static class PlannedNode {
+        
+        private final PlannedNode parent;
+        private final int level;
+        private final List<PlannedNode> children = new ArrayList<>();
+        
+        private int index;
+        private String path;
+        
+        PlannedNode(PlannedNode parent, int level, String path) {
+            this.parent = parent;
+            this.level = level;
+            this.path = path;
+        }
+        
+        String getName() {
+            return path.substring(path.lastIndexOf('/') + 1);
+        }
+    }
+    
+    /**
+     * The planned or created tree, which exposes its nodes to the workloads.
+     */
+    public static class GeneratedTree {
+        
+        private final String rootPath;
+        private final List<List<PlannedNode>> levels;
+        
+        GeneratedTree(String rootPath, List<List<PlannedNode>> levels) {
+            this.rootPath = rootPath;
+            this.levels = levels;
+        }
+        
+        public String getRootPath() {
+            return rootPath;
+        }
+        
+        /**
+         * Returns the actual depth, which is lower than the requested one if the total number of
+         * nodes has been reached earlier.
+         */
+        public int getDepth() {
+            return levels.size();
+        }
+        
+        /**
+         * Returns the absolute paths of all the nodes but the root, in the breadth first order.
+         */
+        public List<String> getNodes() {
+            return levels.stream().flatMap(List::stream).map(node -> node.path).collect(Collectors.toList());
+        }
+        
+        /**
+         * Returns the absolute paths of the files, i.e. of the nodes having the content.
+         */
+        public List<String> getLeaves() {
+            return levels.stream().flatMap(List::stream).filter(node -> node.children.isEmpty())
+                    .map(node -> node.path).collect(Collectors.toList());
+        }
+        
+        /**
+         * Returns the absolute paths of the nodes of the given level, the children of the root
+         * being the first one.
+         */
+        public List<String> getNodesAtLevel(int level) {
+            return level < 1 || level > levels.size()
+                    ? Collections.emptyList()
+                    : levels.get(level - 1).stream().map(node -> node.path).collect(Collectors.toList());
+        }
+        
+        /**
+         * Returns the level of the given node, the children of the root being the first one.
+         */
+        public static int getLevel(String rootPath, String absolutePath) {
+            return (int) absolutePath.substring(rootPath.length()).chars().filter(c -> c == '/').count();
+        }
+        
+        public int getMaxFanOut() {
+            return levels.stream().flatMap(List::stream).mapToInt(node -> node.children.size()).max().orElse(0);
+        }
+        
+        /**
+         * Describes the number of the nodes and of the files per level.
+         */
+        public String describe() {
+            StringBuilder description = new StringBuilder(String.format("[root=%s, depth=%s, nodes=%s, leaves=%s, maxFanOut=%s]",
+                    rootPath, getDepth(), getNodes().size(), getLeaves().size(), getMaxFanOut()));
+            
+            for (int level = 1; level <= levels.size(); level++) {
+                List<PlannedNode> nodes = levels.get(level - 1);
+                
+                description.append(String.format("%n  level %s: nodes=%s, leaves=%s", level, nodes.size(),
+                        nodes.stream().filter(node -> node.children.isEmpty()).count()));
+            }
+            
+            return description.toString();
+        }
+    }
+    
+    /**
+     * Draws the number of children of a node.
+     */
+    public abstract static class FanOut {
+        
+        public abstract int next(Random random);
+        
+        /**
+         * Every node has the same number of children.
+         */
+        public static FanOut fixed(int childCount) {
+            return new FanOut() {
+                
+                @Override
+                public int next(Random random) {
+                    return childCount;
+                }
+                
+                @Override
+                public String toString() {
+                    return "fixed:" + childCount;
+                }
+            };
+        }
+        
+        /**
+         * The number of children is uniformly distributed between the bounds, both inclusive.
+         */
+        public static FanOut uniform(int min, int max) {
+            if (min < 0 || max < min) {
+                throw new IllegalArgumentException(String.format("Invalid bounds [min=%s, max=%s]", min, max));
+            }
+            
+            return new FanOut() {
+                
+                @Override
+                public int next(Random random) {
+                    return min + random.nextInt(max - min + 1);
+                }
+                
+                @Override
+                public String toString() {
+                    return "uniform:" + min + "-" + max;
+                }
+            };
+        }
+        
+        /**
+         * The number of children between 1 and the maximum follows the Zipf distribution, i.e. most
+         * of the nodes have a few children, while a few of them have many.
+         */
+        public static FanOut zipf(int max, double exponent) {
+            if (max < 1 || exponent <= 0) {
+                throw new IllegalArgumentException(String.format("Invalid parameters [max=%s, exponent=%s]", max, exponent));
+            }
+            
+            double[] cumulative = new double[max];
+            double sum = 0;
+            
+            for (int k = 1; k <= max; k++) {
+                sum += 1 / Math.pow(k, exponent);
+                cumulative[k - 1] = sum;
+            }
+            
+            double total = sum;
+            
+            return new FanOut() {
+                
+                @Override
+                public int next(Random random) {
+                    int position = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+                    return (position < 0 ? -position - 1 : position) + 1;
+                }
+                
+                @Override
+                public String toString() {
+                    return "zipf:" + max + ":" + exponent;
+                }
+            };
+        }
+        
+        /**
+         * Parses a fan-out, e.g. {@code fixed:10}, {@code uniform:1-20} or {@code zipf:50:1.2}.
+         */
+        public static FanOut parse(String value) {
+            String[] parts = value.trim().toLowerCase(Locale.US).split(":");
+            
+            try {
+                switch (parts[0]) {
+                case "fixed":
+                    return fixed(Integer.parseInt(parts[1]));
+                
+                case "uniform":
+                    String[] bounds = parts[1].split("-");
+                    return uniform(Integer.parseInt(bounds[0]), Integer.parseInt(bounds[1]));
+                
+                case "zipf":
+                    return zipf(Integer.parseInt(parts[1]), Double.parseDouble(parts[2]));
+                
+                default:
+                    throw new IllegalArgumentException(String.format("Unsupported fan-out [%s]", value));
+                }
+            
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("Invalid fan-out [%s]", value), e);
+            }
+        }
+        
+        /**
+         * Parses the comma separated fan-outs of the levels.
+         */
+        public static List<FanOut> parseList(String value) {
+            return Arrays.stream(value.split(",")).map(FanOut::parse).collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.foo.bar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the replication visibility lag between the cluster members, i.e. the time between a
+ * save on one member and the moment the saved value can be read on another one. Every member in
+ * turn writes a unique, timestamped value to its own probe node, while all the other members poll
+ * for it. The lag is recorded per (writer, reader) pair.
+ */
+public class VisibilityProbe {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(VisibilityProbe.class);
+    
+    static final String RELATIVE_PROBE_ROOT_NODE_PATH = "visibilityProbe";
+    static final String ABSOLUTE_PROBE_ROOT_NODE_PATH = "/" + RELATIVE_PROBE_ROOT_NODE_PATH;
+    static final String PROBE_VALUE_PROPERTY = "probeValue";
+    
+    private static final long POLL_INTERVAL_MILLIS = 1;
+    
+    private final List<Repository> members;
+    private final long timeoutNanos;
+    
+    public VisibilityProbe(List<Repository> members, long timeout, TimeUnit unit) {
+        if (members.size() < 2) {
+            throw new IllegalArgumentException("At least two cluster members are required");
+        }
+        
+        this.members = new ArrayList<>(members);
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+    
+    /**
+     * Runs the given number of rounds, each of them consisting of one write per member.
+     *
+     * @param roundCount
+     *            the number of rounds
+     *
+     * @return the recorded lags keyed by {@code writer->reader}, where the members are identified
+     *         by their index
+     *
+     * @throws RepositoryException
+     *             if an error occurred
+     * @throws InterruptedException
+     *             if the current thread has been interrupted
+     * @throws ExecutionException
+     *             if a reader failed, e.g. the value did not become visible in time
+     */
+    public Map<String, LatencyRecorder> run(int roundCount)
+            throws RepositoryException, InterruptedException, ExecutionException {
+        
+        createProbeNodes();
+        
+        Map<String, LatencyRecorder> lags = new LinkedHashMap<>();
+        ExecutorService executorService = ConcurrencyHelper.createExecutorService(members.size() - 1, "visibility-probe-");
+        
+        try {
+            for (int round = 0; round < roundCount; round++) {
+                for (int writer = 0; writer < members.size(); writer++) {
+                    probe(writer, executorService, lags);
+                }
+            }
+        
+        } finally {
+            ConcurrencyHelper.closeExecutorService(executorService, TimeUnit.SECONDS.toMillis(30));
+        }
+        
+        return Collections.unmodifiableMap(lags);
+    }
+    
+    private void probe(int writer, ExecutorService executorService, Map<String, LatencyRecorder> lags)
+            throws RepositoryException, InterruptedException, ExecutionException {
+        
+        String probeNodePath = getProbeNodePath(writer);
+        String value = String.format("%s@%s", UUID.randomUUID(), System.currentTimeMillis());
+        
+        Session session = RepositoryHelper.createSession(members.get(writer));
+        long savedAt;
+        
+        try {
+            session.getNode(probeNodePath).setProperty(PROBE_VALUE_PROPERTY, value);
+            session.save();
+            savedAt = System.nanoTime();
+        
+        } finally {
+            session.logout();
+        }
+        
+        Map<Integer, Future<Long>> readers = new LinkedHashMap<>();
+        for (int reader = 0; reader < members.size(); reader++) {
+            if (reader != writer) {
+                readers.put(reader, executorService.submit(awaitValue(members.get(reader), probeNodePath, value)));
+            }
+        }
+        
+        for (Map.Entry<Integer, Future<Long>> reader : readers.entrySet()) {
+            long lag = Math.max(0, reader.getValue().get() - savedAt);
+            
+            lags.computeIfAbsent(writer + "->" + reader.getKey(), key -> new LatencyRecorder()).record(lag);
+            LOGGER.trace("Value visible [writer={}, reader={}, lag={} ms]", writer, reader.getKey(),
+                    LatencyRecorder.toMillis(lag));
+        }
+    }
+    
+    private Callable<Long> awaitValue(Repository repository, String probeNodePath, String value) {
+        return () -> {
+            Session session = RepositoryHelper.createSession(repository);
+            long deadline = System.nanoTime() + timeoutNanos;
+            
+            try {
+                while (true) {
+                    Node node = session.getNode(probeNodePath);
+                    
+                    if (node.hasProperty(PROBE_VALUE_PROPERTY)
+                            && value.equals(node.getProperty(PROBE_VALUE_PROPERTY).getString())) {
+                        
+                        return System.nanoTime();
+                    }
+                    
+                    if (System.nanoTime() > deadline) {
+                        throw new IllegalStateException(String.format("The value did not become visible in time "
+                                + "[path=%s, value=%s]", probeNodePath, value));
+                    }
+                    
+                    Thread.sleep(POLL_INTERVAL_MILLIS);
+                    session.refresh(false);
+                }
+            
+            } finally {
+                session.logout();
+            }
+        };
+    }
+    
+    private void createProbeNodes() throws RepositoryException {
+        Session session = RepositoryHelper.createSession(members.get(0));
+        
+        try {
+            // reused across the runs, the values are unique anyway
+            Node root = session.nodeExists(ABSOLUTE_PROBE_ROOT_NODE_PATH)
+                    ? session.getNode(ABSOLUTE_PROBE_ROOT_NODE_PATH)
+                    : session.getRootNode().addNode(RELATIVE_PROBE_ROOT_NODE_PATH);
+            
+            for (int i = 0; i < members.size(); i++) {
+                if (!root.hasNode(getProbeNodeName(i))) {
+                    root.addNode(getProbeNodeName(i));
+                }
+            }
+            
+            session.save();
+        
+        } finally {
+            session.logout();
+        }
+        
+        // every member has to see the probe nodes before the first measurement
+        for (int i = 1; i < members.size(); i++) {
+            try {
+                awaitProbeNodes(members.get(i));
+            
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+    
+    private void awaitProbeNodes(Repository repository) throws RepositoryException, InterruptedException {
+        Session session = RepositoryHelper.createSession(repository);
+        long deadline = System.nanoTime() + timeoutNanos;
+        
+        try {
+            while (!session.nodeExists(getProbeNodePath(members.size() - 1))) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("The probe nodes did not become visible in time");
+                }
+                
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+                session.refresh(false);
+            }
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    private static String getProbeNodePath(int member) {
+        return ABSOLUTE_PROBE_ROOT_NODE_PATH + "/" + getProbeNodeName(member);
+    }
+    
+    private static String getProbeNodeName(int member) {
+        return "member-" + member;
+    }
+}
@@ -0,0 +1,377 @@
+package com.foo.bar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Defers the updates of the node content of a repository and writes them in batches from a
+ * background thread. The pending updates of the same node are coalesced, the last submitted
+ * content winning, so that a node rewritten many times between two flushes is checked out, saved
+ * and checked in only once. The queue is flushed as soon as the number of the pending nodes
+ * reaches the batch size, or once per flush interval otherwise, every batch being written with a
+ * single save. The nodes of a failed batch are retried one at a time, so that a single bad node
+ * does not fail the others, the failed updates being logged, counted and dropped. The number of
+ * the pending updates is exposed as a gauge until the queue is closed.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code writebehind.batch.size} - the number of nodes saved at once, which triggers the flush, defaults to {@code 100}</li>
+ *   <li>{@code writebehind.flush.interval} - the maximum number of milliseconds between the flushes, defaults to {@code 200}</li>
+ * </ul>
+ */
+public class WriteBehindQueue implements AutoCloseable {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindQueue.class);
+    
+    static final String TRIGGER_SIZE = "size";
+    static final String TRIGGER_TIME = "time";
+    static final String TRIGGER_EXPLICIT = "explicit";
+    static final String TRIGGER_CLOSE = "close";
+    
+    private final Repository repository;
+    private final Optional<NodeIdentifierCache> cache;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    
+    private final Object monitor = new Object();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Thread flusher;
+    private final LongSupplier pendingGauge = this::getPendingCount;
+    
+    private Map<String, String> pendingUpdates = new LinkedHashMap<>();
+    private boolean closed;
+    
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    
+    public WriteBehindQueue(Repository repository, Optional<NodeIdentifierCache> cache, int batchSize,
+            long flushInterval, TimeUnit unit) {
+        
+        if (batchSize < 1 || flushInterval < 1) {
+            throw new IllegalArgumentException(String.format("Invalid write-behind queue [batchSize=%s, "
+                    + "flushInterval=%s %s]", batchSize, flushInterval, unit));
+        }
+        
+        this.repository = repository;
+        this.cache = cache;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = unit.toMillis(flushInterval);
+        
+        MetricsRegistry.gauge(MetricsRegistry.WRITE_BEHIND_PENDING_METRIC, pendingGauge);
+        
+        flusher = new Thread(this::runFlusher, "write-behind-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+    
+    public static WriteBehindQueue fromSystemProperties(Repository repository, Optional<NodeIdentifierCache> cache) {
+        return new WriteBehindQueue(
+                repository,
+                cache,
+                Integer.valueOf(System.getProperty("writebehind.batch.size", "100")),
+                Long.valueOf(System.getProperty("writebehind.flush.interval", "200")),
+                TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Queues the update of the node content, replacing the pending update of the same node, if any.
+     *
+     * @return the path of the node
+     *
+     * @throws IllegalStateException
+     *             if the queue has been closed
+     */
+    public String submit(String absolutePath, String content) {
+        synchronized (monitor) {
+            if (closed) {
+                throw new IllegalStateException(String.format("The write-behind queue has been closed [path=%s]",
+                        absolutePath));
+            }
+            
+            boolean coalesced = pendingUpdates.put(absolutePath, content) != null;
+            
+            count(submittedCount, "submitted", 1);
+            if (coalesced) {
+                count(coalescedCount, "coalesced", 1);
+            }
+            
+            if (pendingUpdates.size() >= batchSize) {
+                monitor.notifyAll();
+            }
+        }
+        
+        return absolutePath;
+    }
+    
+    /**
+     * Writes the pending updates in the calling thread, waiting for the running flush, if any.
+     *
+     * @return the number of the written nodes
+     *
+     * @throws RepositoryException
+     *             if any of the updates could not be written, the other ones being written anyway
+     */
+    public int flush() throws RepositoryException {
+        return flush(TRIGGER_EXPLICIT);
+    }
+    
+    /**
+     * Stops the background flushes, rejects the new updates and writes the pending ones.
+     *
+     * @throws RepositoryException
+     *             if any of the pending updates could not be written
+     */
+    @Override
+    public void close() throws RepositoryException {
+        synchronized (monitor) {
+            if (closed) {
+                return;
+            }
+            
+            closed = true;
+            monitor.notifyAll();
+        }
+        
+        try {
+            flusher.join();
+        
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        try {
+            flush(TRIGGER_CLOSE);
+        
+        } finally {
+            MetricsRegistry.removeGauge(MetricsRegistry.WRITE_BEHIND_PENDING_METRIC, pendingGauge);
+        }
+        
+        LOGGER.debug("Closed the write-behind queue {}", this);
+    }
+    
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+    
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+    
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+    
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+    
+    public long getPendingCount() {
+        synchronized (monitor) {
+            return pendingUpdates.size();
+        }
+    }
+    
+    /**
+     * Returns the share of the submitted updates which have been replaced by a later update of the
+     * same node before being written.
+     */
+    public double getCoalescingRatio() {
+        long submitted = getSubmittedCount();
+        
+        return submitted == 0 ? 0 : (double) getCoalescedCount() / submitted;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("[batchSize=%s, flushInterval=%s ms, submitted=%s, coalesced=%s (%.1f%%), written=%s, "
+                + "failed=%s, pending=%s]", batchSize, flushIntervalMillis, getSubmittedCount(), getCoalescedCount(),
+                getCoalescingRatio() * 100, getWrittenCount(), getFailedCount(), getPendingCount());
+    }
+    
+    private void runFlusher() {
+        while (true) {
+            String trigger;
+            
+            synchronized (monitor) {
+                long deadline = System.currentTimeMillis() + flushIntervalMillis;
+                long remainingMillis = flushIntervalMillis;
+                
+                while (!closed && pendingUpdates.size() < batchSize && remainingMillis > 0) {
+                    try {
+                        monitor.wait(remainingMillis);
+                    
+                    } catch (InterruptedException e) {
+                        LOGGER.debug("The write-behind flusher has been interrupted");
+                        return;
+                    }
+                    
+                    remainingMillis = deadline - System.currentTimeMillis();
+                }
+                
+                if (closed) {
+                    return;
+                }
+                
+                trigger = pendingUpdates.size() >= batchSize ? TRIGGER_SIZE : TRIGGER_TIME;
+            }
+            
+            try {
+                flush(trigger);
+            
+            } catch (RepositoryException | RuntimeException e) {
+                LOGGER.error("Failed to flush the write-behind queue [trigger={}]", trigger, e);
+            }
+        }
+    }
+    
+    private int flush(String trigger) throws RepositoryException {
+        flushLock.lock();
+        
+        try {
+            List<Map.Entry<String, String>> updates;
+            
+            synchronized (monitor) {
+                if (pendingUpdates.isEmpty()) {
+                    return 0;
+                }
+                
+                updates = new ArrayList<>(pendingUpdates.entrySet());
+                pendingUpdates = new LinkedHashMap<>();
+            }
+            
+            long start = System.nanoTime();
+            RepositoryException failure = null;
+            int written = 0;
+            
+            for (int from = 0; from < updates.size(); from += batchSize) {
+                List<Map.Entry<String, String>> batch = updates.subList(from, Math.min(from + batchSize, updates.size()));
+                
+                try {
+                    writeBatch(batch);
+                    
+                    count(writtenCount, "written", batch.size());
+                    written += batch.size();
+                
+                } catch (RepositoryException | RuntimeException e) {
+                    if (batch.size() == 1) {
+                        failure = addFailure(failure, trigger, batch.get(0).getKey(), e);
+                    
+                    } else {
+                        LOGGER.debug("Failed to write the batch, retrying its nodes one at a time [trigger={}, "
+                                + "size={}, first={}]", trigger, batch.size(), batch.get(0).getKey(), e);
+                        
+                        for (Map.Entry<String, String> update : batch) {
+                            try {
+                                writeBatch(Collections.singletonList(update));
+                                
+                                count(writtenCount, "written", 1);
+                                written++;
+                            
+                            } catch (RepositoryException | RuntimeException updateException) {
+                                failure = addFailure(failure, trigger, update.getKey(), updateException);
+                            }
+                        }
+                    }
+                }
+            }
+            
+            MetricsRegistry.histogram(MetricsRegistry.WRITE_BEHIND_FLUSH_METRIC, MetricsRegistry.label("trigger", trigger))
+                    .record(System.nanoTime() - start);
+            
+            LOGGER.trace("Flushed the write-behind queue [trigger={}, written={}, failed={}]", trigger, written,
+                    updates.size() - written);
+            
+            if (failure != null) {
+                throw failure;
+            }
+            
+            return written;
+        
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    /**
+     * Counts the failed update and adds it to the failure of the flush.
+     */
+    private RepositoryException addFailure(RepositoryException failure, String trigger, String absolutePath,
+            Exception e) {
+        
+        LOGGER.warn("Failed to write the update [trigger={}, path={}]", trigger, absolutePath, e);
+        count(failedCount, "failed", 1);
+        
+        RepositoryException updateFailure = e instanceof RepositoryException
+                ? (RepositoryException) e
+                : new RepositoryException(e);
+        
+        if (failure == null) {
+            return updateFailure;
+        }
+        
+        failure.addSuppressed(updateFailure);
+        return failure;
+    }
+    
+    /**
+     * Checks the nodes out, sets their content, saves them at once and checks them in again. The
+     * checked out nodes are checked in even if the batch could not be saved, its changes being
+     * discarded.
+     */
+    private void writeBatch(List<Map.Entry<String, String>> batch) throws RepositoryException {
+        Session session = RepositoryHelper.createSession(repository);
+        List<Node> nodes = new ArrayList<>(batch.size());
+        
+        try {
+            for (Map.Entry<String, String> update : batch) {
+                Node node = NodeHelper.getNode(session, update.getKey(), cache);
+                
+                NodeHelper.checkoutNode(node);
+                nodes.add(node);
+                
+                node.setProperty(NodeHelper.NODE_CONTENT_PROPERTY, update.getValue());
+            }
+            
+            session.save();
+        
+        } finally {
+            try {
+                if (session.hasPendingChanges()) {
+                    session.refresh(false);
+                }
+                
+                for (Node node : nodes) {
+                    NodeHelper.checkinNode(node);
+                }
+            
+            } finally {
+                session.logout();
+            }
+        }
+    }
+    
+    private static void count(LongAdder counter, String outcome, int count) {
+        counter.add(count);
+        
+        MetricsRegistry.counter(MetricsRegistry.WRITE_BEHIND_UPDATE_METRIC, MetricsRegistry.label("outcome", outcome))
+                .add(count);
+    }
+}
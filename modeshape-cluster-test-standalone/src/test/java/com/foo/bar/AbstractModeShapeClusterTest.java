@@ -2,12 +2,19 @@ package com.foo.bar;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
@@ -30,6 +37,10 @@ import org.modeshape.schematic.document.ParsingException;
  *   <li>{@code db.url} - the DB connection URL, defaults to {@code jdbc:h2:file:./target/content/db;DB_CLOSE_DELAY=-1}</li>
  *   <li>{@code db.username} - the DB username, defaults to {@code sa}</li>
  *   <li>{@code db.password} - the DB password, defaults to an empty string</li>
+ *   <li>{@code jgroups.profile} - the {@link JGroupsStackProfile} to use instead of {@code test-jgroups.xml}, e.g. {@code loopback}</li>
+ *   <li>{@code repository.startup.timeout} - the number of seconds to wait for all the members to start, defaults to {@code 300}</li>
+ *   <li>{@code repository.persistence}, {@code repository.binary.storage}, {@code repository.cache.size} - the storage
+ *       variant, see {@link RepositoryConfigurationGenerator}</li>
  * </ul>
  * 
  * @author Illia Khokholkov
@@ -41,7 +52,8 @@ public abstract class AbstractModeShapeClusterTest {
     static final int THREAD_COUNT = Integer.valueOf(System.getProperty("thread.count", "1"));
     
     static final String CLUSTER_NAME = "test-cluster";
-    static final String JGROUPS_CONFIGURATION_FILE = System.getProperty("jgroups.location", "test-jgroups.xml");
+    static final String JGROUPS_CONFIGURATION_FILE = JGroupsStackProfile.resolveLocation(
+            System.getProperty("jgroups.location", "test-jgroups.xml"));
     static final String REPOSITORY_CONFIGURATION_FILE = System.getProperty(
             "repository.configuration.file",
             AbstractModeShapeClusterTest.class.getResource("/test-repository-h2.json").getPath());
@@ -50,6 +62,7 @@ public abstract class AbstractModeShapeClusterTest {
     static final String DB_USERNAME = System.getProperty("db.username", "sa");
     static final String DB_PASSWORD = System.getProperty("db.password", "");
     static final String ORACLE_DB_DRIVER_JAR_PROPERTY = "ojdbc6.jar.path";
+    static final long STARTUP_TIMEOUT_SECONDS = Long.valueOf(System.getProperty("repository.startup.timeout", "300"));
     
     static ModeShapeEngine engine;
     static List<Repository> repositories;
@@ -67,9 +80,17 @@ public abstract class AbstractModeShapeClusterTest {
         engine = new ModeShapeEngine();
         engine.start();
         
-        repositories = new LinkedList<>();
+        List<Callable<RepositoryConfiguration>> configurations = new ArrayList<>(clusterSize);
         for (int i = 0; i < clusterSize; i++) {
-            repositories.add(createRepository(engine));
+            configurations.add(() -> createConfiguration(REPOSITORY_CONFIGURATION_FILE,
+                    RepositoryConfigurationGenerator.fromSystemProperties()));
+        }
+        
+        repositories = new LinkedList<>();
+        for (ClusterDeployer.Member member : new ClusterDeployer(engine, STARTUP_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .deploy(configurations)) {
+            
+            repositories.add(member.getRepository());
         }
         
         repositoryIterator= new CircularRepositoryIterator(repositories);
@@ -192,16 +213,59 @@ public abstract class AbstractModeShapeClusterTest {
     static Repository createRepository(ModeShapeEngine engine)
             throws ConfigurationException, ParsingException, RepositoryException, FileNotFoundException {
         
-        System.setProperty("db.url", DB_URL);
-        System.setProperty("db.username", DB_USERNAME);
-        System.setProperty("db.password", DB_PASSWORD);
+        return createRepository(engine, REPOSITORY_CONFIGURATION_FILE);
+    }
+    
+    static Repository createRepository(ModeShapeEngine engine, String configurationFile)
+            throws ConfigurationException, ParsingException, RepositoryException, FileNotFoundException {
         
-        System.setProperty("repository.uuid", UUID.randomUUID().toString());
-        System.setProperty("cluster.name", CLUSTER_NAME);
-        System.setProperty("jgroups.location", JGROUPS_CONFIGURATION_FILE);
-        System.setProperty("transaction.manager.lookup", ArjunaTransactionManagerLookup.class.getCanonicalName());
+        return createRepository(engine, configurationFile, RepositoryConfigurationGenerator.fromSystemProperties());
+    }
+    
+    static Repository createRepository(ModeShapeEngine engine, String configurationFile,
+            RepositoryConfigurationGenerator configurationGenerator)
+            throws ConfigurationException, ParsingException, RepositoryException, FileNotFoundException {
         
-        return engine.deploy(RepositoryConfiguration.read(REPOSITORY_CONFIGURATION_FILE)); 
+        return engine.deploy(createConfiguration(configurationFile, configurationGenerator));
+    }
+    
+    static RepositoryConfiguration createConfiguration(String configurationFile,
+            RepositoryConfigurationGenerator configurationGenerator) throws ParsingException, FileNotFoundException {
+        
+        return configurationGenerator.generate(readConfigurationTemplate(configurationFile).resolve(createVariables()));
+    }
+    
+    /**
+     * Creates the values of the configuration variables of a single repository. Unlike the system
+     * properties, they are not shared by the repositories being configured at the same time.
+     *
+     * @return the variables
+     */
+    static Map<String, String> createVariables() {
+        Map<String, String> variables = new HashMap<>();
+        
+        variables.put("db.url", DB_URL);
+        variables.put("db.username", DB_USERNAME);
+        variables.put("db.password", DB_PASSWORD);
+        
+        variables.put("repository.uuid", UUID.randomUUID().toString());
+        variables.put("cluster.name", CLUSTER_NAME);
+        variables.put("jgroups.location", JGROUPS_CONFIGURATION_FILE);
+        variables.put("transaction.manager.lookup", ArjunaTransactionManagerLookup.class.getCanonicalName());
+        
+        return variables;
+    }
+    
+    static RepositoryConfigurationTemplate readConfigurationTemplate(String configurationFile) throws FileNotFoundException {
+        try {
+            return RepositoryConfigurationTemplate.read(new File(configurationFile));
+        
+        } catch (FileNotFoundException e) {
+            throw e;
+        
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
     
     static Session createSession(Repository repository) throws RepositoryException {
@@ -0,0 +1,337 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.jcr.Binary;
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.modeshape.jcr.ModeShapeEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Attaches binaries of a configurable size distribution to the nodes and reads them back from
+ * another cluster member. The payloads are generated on the fly by {@link GeneratedInputStream} and
+ * passed to {@link javax.jcr.ValueFactory#createBinary(InputStream)}, so that nothing but the
+ * repository itself can make them occupy the heap. The upload and download throughput are reported
+ * per member, along with the peak heap usage of every phase. The members share the JVM, so the
+ * heap usage is that of the whole JVM while the given member was busy.
+ * <p>
+ * Use {@code repository.binary.storage} (see {@link RepositoryConfigurationGenerator}) to compare
+ * the binary storages.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code binary.payload.sizes} - the payload sizes, either a comma-separated list, which is cycled through, e.g.
+ *       {@code 4KB,1MB,100MB}, or a range, from which the sizes are drawn log-uniformly, e.g. {@code 1KB-200MB},
+ *       defaults to {@code 4KB,256KB,4MB}</li>
+ *   <li>{@code binary.payload.count} - the number of payloads, defaults to {@code 12}</li>
+ *   <li>{@code binary.cluster.size} - the number of members, defaults to {@code 2}</li>
+ *   <li>{@code binary.thread.count} - the number of concurrent uploads/downloads per member, defaults to {@code 2}</li>
+ * </ul>
+ */
+public class BinaryPayloadTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinaryPayloadTest.class);
+    
+    private static final String PAYLOAD_SIZES = System.getProperty("binary.payload.sizes", "4KB,256KB,4MB");
+    private static final int PAYLOAD_COUNT = Integer.valueOf(System.getProperty("binary.payload.count", "12"));
+    private static final int CLUSTER_SIZE = Integer.valueOf(System.getProperty("binary.cluster.size", "2"));
+    private static final int THREAD_COUNT = Integer.valueOf(System.getProperty("binary.thread.count", "2"));
+    
+    private static final String RELATIVE_ROOT_NODE_PATH = "binaryPayloads";
+    private static final String PAYLOAD_PROPERTY = "payload";
+    private static final String SEED_PROPERTY = "payloadSeed";
+    private static final String SIZE_PROPERTY = "payloadSize";
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final double MEGABYTE = 1024 * 1024;
+    
+    private static final String REPORT_FORMAT = "%-7s %-9s %9s %10s %8s %14s%n";
+    
+    private static ModeShapeEngine engine;
+    private static List<Repository> repositories;
+    
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        engine = new ModeShapeEngine();
+        engine.start();
+        
+        repositories = new ArrayList<>(CLUSTER_SIZE);
+        for (int i = 0; i < CLUSTER_SIZE; i++) {
+            repositories.add(AbstractModeShapeClusterTest.createRepository(engine));
+        }
+        
+        AbstractModeShapeClusterTest.checkConnectivity(repositories.toArray(new Repository[CLUSTER_SIZE]));
+    }
+    
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (engine != null) {
+            engine.shutdown().get();
+        }
+    }
+    
+    @Test
+    public void uploadAndDownloadPayloads() throws Exception {
+        List<Long> sizes = createSizes(PAYLOAD_SIZES, PAYLOAD_COUNT);
+        List<String> payloadNodes = createPayloadNodes(repositories.get(0), sizes);
+        
+        StringBuilder report = new StringBuilder(String.format("%n" + REPORT_FORMAT,
+                "member", "phase", "payloads", "total MB", "MB/s", "peak heap MB"));
+        
+        for (int member = 0; member < repositories.size(); member++) {
+            report.append(runPhase(member, "upload", uploadTasks(repositories.get(member), getShare(payloadNodes, member))));
+        }
+        
+        for (int member = 0; member < repositories.size(); member++) {
+            // reads what the next member has written
+            int writer = (member + 1) % repositories.size();
+            report.append(runPhase(member, "download", downloadTasks(repositories.get(member), getShare(payloadNodes, writer))));
+        }
+        
+        LOGGER.info("Binary payloads [sizes={}, payloadCount={}, clusterSize={}, threadCount={}, maxHeap={} MB]:{}",
+                PAYLOAD_SIZES, PAYLOAD_COUNT, CLUSTER_SIZE, THREAD_COUNT,
+                String.format("%.0f", Runtime.getRuntime().maxMemory() / MEGABYTE), report);
+    }
+    
+    private static List<String> createPayloadNodes(Repository repository, List<Long> sizes) throws RepositoryException {
+        Session session = AbstractModeShapeClusterTest.createSession(repository);
+        Random random = new Random();
+        
+        try {
+            Node root = session.nodeExists("/" + RELATIVE_ROOT_NODE_PATH)
+                    ? session.getNode("/" + RELATIVE_ROOT_NODE_PATH)
+                    : session.getRootNode().addNode(RELATIVE_ROOT_NODE_PATH);
+            
+            Node run = root.addNode("run-" + UUID.randomUUID());
+            List<String> payloadNodes = new ArrayList<>(sizes.size());
+            
+            for (int i = 0; i < sizes.size(); i++) {
+                Node node = run.addNode("payload-" + i);
+                node.setProperty(SEED_PROPERTY, random.nextLong());
+                node.setProperty(SIZE_PROPERTY, sizes.get(i));
+                
+                payloadNodes.add(node.getPath());
+            }
+            
+            session.save();
+            return payloadNodes;
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    private static List<Callable<Long>> uploadTasks(Repository repository, List<String> payloadNodes) {
+        List<Callable<Long>> tasks = new ArrayList<>(payloadNodes.size());
+        
+        for (String payloadNode : payloadNodes) {
+            tasks.add(() -> {
+                Session session = AbstractModeShapeClusterTest.createSession(repository);
+                
+                try {
+                    Node node = session.getNode(payloadNode);
+                    long size = node.getProperty(SIZE_PROPERTY).getLong();
+                    Binary binary;
+                    
+                    try (InputStream stream = new GeneratedInputStream(node.getProperty(SEED_PROPERTY).getLong(), size)) {
+                        binary = session.getValueFactory().createBinary(stream);
+                    }
+                    
+                    try {
+                        node.setProperty(PAYLOAD_PROPERTY, binary);
+                        session.save();
+                    
+                    } finally {
+                        binary.dispose();
+                    }
+                    
+                    return size;
+                
+                } finally {
+                    session.logout();
+                }
+            });
+        }
+        
+        return tasks;
+    }
+    
+    private static List<Callable<Long>> downloadTasks(Repository repository, List<String> payloadNodes) {
+        List<Callable<Long>> tasks = new ArrayList<>(payloadNodes.size());
+        
+        for (String payloadNode : payloadNodes) {
+            tasks.add(() -> {
+                Session session = AbstractModeShapeClusterTest.createSession(repository);
+                
+                try {
+                    Node node = session.getNode(payloadNode);
+                    long size = node.getProperty(SIZE_PROPERTY).getLong();
+                    Binary binary = node.getProperty(PAYLOAD_PROPERTY).getBinary();
+                    
+                    try (InputStream actual = binary.getStream();
+                            InputStream expected = new GeneratedInputStream(node.getProperty(SEED_PROPERTY).getLong(), size)) {
+                        
+                        assertThat(binary.getSize()).as(payloadNode).isEqualTo(size);
+                        assertSameContent(payloadNode, actual, expected);
+                    
+                    } finally {
+                        binary.dispose();
+                    }
+                    
+                    return size;
+                
+                } finally {
+                    session.logout();
+                }
+            });
+        }
+        
+        return tasks;
+    }
+    
+    private static void assertSameContent(String payloadNode, InputStream actual, InputStream expected) throws IOException {
+        byte[] actualBuffer = new byte[BUFFER_SIZE];
+        byte[] expectedBuffer = new byte[BUFFER_SIZE];
+        long offset = 0;
+        
+        for (int read = actual.read(actualBuffer); read != -1; read = actual.read(actualBuffer)) {
+            int expectedRead = 0;
+            while (expectedRead < read) {
+                int count = expected.read(expectedBuffer, expectedRead, read - expectedRead);
+                
+                if (count == -1) {
+                    throw new AssertionError(String.format("The payload is too long [node=%s]", payloadNode));
+                }
+                
+                expectedRead += count;
+            }
+            
+            for (int i = 0; i < read; i++) {
+                if (actualBuffer[i] != expectedBuffer[i]) {
+                    throw new AssertionError(String.format("The payload differs [node=%s, offset=%s]", payloadNode, offset + i));
+                }
+            }
+            
+            offset += read;
+        }
+        
+        assertThat(expected.read()).as(payloadNode).isEqualTo(-1);
+    }
+    
+    private static String runPhase(int member, String phase, List<Callable<Long>> tasks) throws Exception {
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .collect(Collectors.toList());
+        
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        
+        AtomicLong totalBytes = new AtomicLong();
+        ExecutorService executorService = ConcurrencyHelper.createExecutorService(THREAD_COUNT, "binary-" + phase + "-");
+        long elapsed;
+        
+        try {
+            long start = System.nanoTime();
+            
+            for (Future<Long> size : executorService.invokeAll(tasks)) {
+                totalBytes.addAndGet(size.get());
+            }
+            
+            elapsed = System.nanoTime() - start;
+        
+        } finally {
+            ConcurrencyHelper.closeExecutorService(executorService, TimeUnit.SECONDS.toMillis(30));
+        }
+        
+        // the sum of the per-pool peaks, i.e. an upper bound of the actual peak
+        long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        
+        return String.format(REPORT_FORMAT,
+                member,
+                phase,
+                tasks.size(),
+                String.format("%.1f", totalBytes.get() / MEGABYTE),
+                String.format("%.1f", totalBytes.get() / MEGABYTE * TimeUnit.SECONDS.toNanos(1) / elapsed),
+                String.format("%.1f", peakHeap / MEGABYTE));
+    }
+    
+    private static List<String> getShare(List<String> payloadNodes, int member) {
+        List<String> share = new ArrayList<>();
+        
+        for (int i = member; i < payloadNodes.size(); i += repositories.size()) {
+            share.add(payloadNodes.get(i));
+        }
+        
+        return share;
+    }
+    
+    static List<Long> createSizes(String distribution, int count) {
+        List<Long> sizes = new ArrayList<>(count);
+        
+        if (distribution.contains("-")) {
+            String[] range = distribution.split("-");
+            double min = Math.log(parseSize(range[0]));
+            double max = Math.log(parseSize(range[1]));
+            Random random = new Random();
+            
+            for (int i = 0; i < count; i++) {
+                sizes.add(Math.round(Math.exp(min + (max - min) * random.nextDouble())));
+            }
+        
+        } else {
+            List<Long> values = Arrays.stream(distribution.split(","))
+                    .map(BinaryPayloadTest::parseSize)
+                    .collect(Collectors.toList());
+            
+            for (int i = 0; i < count; i++) {
+                sizes.add(values.get(i % values.size()));
+            }
+        }
+        
+        return sizes;
+    }
+    
+    static long parseSize(String size) {
+        String value = size.trim().toUpperCase(Locale.US);
+        
+        if (value.endsWith("GB")) {
+            return Long.valueOf(value.substring(0, value.length() - 2).trim()) << 30;
+        }
+        
+        if (value.endsWith("MB")) {
+            return Long.valueOf(value.substring(0, value.length() - 2).trim()) << 20;
+        }
+        
+        if (value.endsWith("KB")) {
+            return Long.valueOf(value.substring(0, value.length() - 2).trim()) << 10;
+        }
+        
+        return Long.valueOf(value.endsWith("B") ? value.substring(0, value.length() - 1).trim() : value);
+    }
+}
@@ -0,0 +1,150 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Repository;
+import javax.jcr.Session;
+
+import org.junit.Test;
+import org.modeshape.jcr.ModeShapeEngine;
+import org.modeshape.jcr.RepositoryConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Separates the cold-start read latency from the steady-state one. After the content has been
+ * created, the members are restarted, i.e. a fresh set of members joins the cluster, to mimic a
+ * rolling restart:
+ * <ul>
+ *   <li>{@code cold} - the first read of every leaf on the restarted members</li>
+ *   <li>{@code warm} - the second read of every leaf on the same members</li>
+ *   <li>{@code warmed-up} - the first read of every leaf on another set of restarted members, whose caches have
+ *       been warmed up by {@link CacheWarmer} beforehand</li>
+ * </ul>
+ * Honors the same system properties as {@link AbstractModeShapeClusterTest}.
+ */
+public class CacheWarmUpTest extends AbstractModeShapeClusterTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheWarmUpTest.class);
+    
+    private static final String REPORT_FORMAT = "%-10s %7s %10s %10s %10s %10s%n";
+    
+    @Test
+    public void compareColdAndWarmReads() throws Exception {
+        List<String> parentNodes = createParentNodes(repositoryIterator.next(), LEAF_NODE_COUNT);
+        List<String> leafNodes = createChildNodes(repositoryIterator.next(), parentNodes);
+        
+        StringBuilder report = new StringBuilder(String.format("%n" + REPORT_FORMAT,
+                "phase", "reads", "mean ms", "p50 ms", "p99 ms", "max ms"));
+        
+        ModeShapeEngine restartedEngine = startEngine();
+        
+        try {
+            List<Repository> members = deployMembers(restartedEngine);
+            
+            report.append(formatReads("cold", readLeaves(members, leafNodes)));
+            report.append(formatReads("warm", readLeaves(members, leafNodes)));
+        
+        } finally {
+            restartedEngine.shutdown().get();
+        }
+        
+        ModeShapeEngine warmedUpEngine = startEngine();
+        
+        try {
+            List<Repository> members = deployMembers(warmedUpEngine);
+            
+            for (CacheWarmer.Result result : new CacheWarmer(members).warmUp(NodeHelper.ABSOLUTE_APP_ROOT_NODE_PATH)) {
+                assertThat(result.getNodeCount()).isGreaterThan(leafNodes.size() * 2);
+            }
+            
+            report.append(formatReads("warmed-up", readLeaves(members, leafNodes)));
+        
+        } finally {
+            warmedUpEngine.shutdown().get();
+        }
+        
+        LOGGER.info("Read latency [leafNodeCount={}, clusterSize={}]:{}", leafNodes.size(), repositories.size(), report);
+    }
+    
+    private static ModeShapeEngine startEngine() {
+        ModeShapeEngine engine = new ModeShapeEngine();
+        engine.start();
+        
+        return engine;
+    }
+    
+    private static List<Repository> deployMembers(ModeShapeEngine engine) throws Exception {
+        List<Callable<RepositoryConfiguration>> configurations = new ArrayList<>(repositories.size());
+        for (int i = 0; i < repositories.size(); i++) {
+            configurations.add(() -> createConfiguration(REPOSITORY_CONFIGURATION_FILE,
+                    RepositoryConfigurationGenerator.fromSystemProperties()));
+        }
+        
+        List<Repository> members = new ArrayList<>(configurations.size());
+        for (ClusterDeployer.Member member : new ClusterDeployer(engine, STARTUP_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .deploy(configurations)) {
+            
+            members.add(member.getRepository());
+        }
+        
+        return members;
+    }
+    
+    /**
+     * Reads every leaf once on every member, the members being read in parallel.
+     */
+    private static LatencyRecorder readLeaves(List<Repository> members, List<String> leafNodes) throws Exception {
+        LatencyRecorder recorder = new LatencyRecorder();
+        ExecutorService executorService = ConcurrencyHelper.createExecutorService(members.size(), "read-leaves-");
+        
+        try {
+            List<Future<Integer>> futures = new ArrayList<>(members.size());
+            
+            for (Repository member : members) {
+                futures.add(executorService.submit(() -> {
+                    Session session = createSession(member);
+                    
+                    try {
+                        for (String leafNode : leafNodes) {
+                            long start = System.nanoTime();
+                            session.getNode(leafNode).getProperty(NodeHelper.NODE_CONTENT_PROPERTY).getString();
+                            recorder.record(System.nanoTime() - start);
+                        }
+                        
+                        return leafNodes.size();
+                    
+                    } finally {
+                        session.logout();
+                    }
+                }));
+            }
+            
+            for (Future<Integer> future : futures) {
+                assertThat(future.get()).isEqualTo(leafNodes.size());
+            }
+        
+        } finally {
+            ConcurrencyHelper.closeExecutorService(executorService, TimeUnit.SECONDS.toMillis(30));
+        }
+        
+        return recorder;
+    }
+    
+    private static String formatReads(String phase, LatencyRecorder recorder) {
+        return String.format(REPORT_FORMAT,
+                phase,
+                recorder.getCount(),
+                String.format("%.2f", LatencyRecorder.toMillis(recorder.getMean())),
+                String.format("%.2f", LatencyRecorder.toMillis(recorder.getPercentile(50))),
+                String.format("%.2f", LatencyRecorder.toMillis(recorder.getPercentile(99))),
+                String.format("%.2f", LatencyRecorder.toMillis(recorder.getMax())));
+    }
+}
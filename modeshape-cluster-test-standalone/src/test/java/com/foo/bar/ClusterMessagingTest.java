@@ -0,0 +1,214 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.junit.Test;
+import org.modeshape.jcr.ModeShapeEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures how fast the changes made on one cluster member become visible on the others, for every
+ * {@link JGroupsStackProfile}. Each profile gets a fresh engine and the same workload: one member
+ * adds the nodes one by one, while the other members poll for each of them.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code messaging.profiles} - the comma-separated profiles to measure, defaults to all of them</li>
+ *   <li>{@code messaging.node.count} - the number of nodes to add per profile, defaults to {@code 50}</li>
+ *   <li>{@code messaging.cluster.size} - the number of cluster members, defaults to {@code 2}</li>
+ *   <li>{@code messaging.visibility.timeout} - the number of seconds to wait for a single node to become visible, defaults to {@code 30}</li>
+ * </ul>
+ */
+public class ClusterMessagingTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterMessagingTest.class);
+    
+    private static final List<JGroupsStackProfile> PROFILES = System.getProperty("messaging.profiles") == null
+            ? Arrays.asList(JGroupsStackProfile.values())
+            : Arrays.stream(System.getProperty("messaging.profiles").split(","))
+                    .map(String::trim)
+                    .map(JGroupsStackProfile::fromProfileName)
+                    .collect(Collectors.toList());
+    
+    private static final int NODE_COUNT = Integer.valueOf(System.getProperty("messaging.node.count", "50"));
+    private static final int CLUSTER_SIZE = Integer.valueOf(System.getProperty("messaging.cluster.size", "2"));
+    private static final long VISIBILITY_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(
+            Long.valueOf(System.getProperty("messaging.visibility.timeout", "30")));
+    
+    @Test
+    public void measureChangePropagation() throws Exception {
+        List<String> report = new ArrayList<>(PROFILES.size());
+        
+        for (JGroupsStackProfile profile : PROFILES) {
+            report.add(measureProfile(profile));
+        }
+        
+        StringBuilder builder = new StringBuilder(String.format("%n%-16s %8s %12s %10s %10s %10s %10s%n",
+                "profile", "changes", "throughput/s", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        report.forEach(builder::append);
+        
+        LOGGER.info("Change propagation [clusterSize={}, nodeCount={}]:{}", CLUSTER_SIZE, NODE_COUNT, builder);
+    }
+    
+    private static String measureProfile(JGroupsStackProfile profile) throws Exception {
+        ModeShapeEngine engine = new ModeShapeEngine();
+        engine.start();
+        
+        try {
+            List<Repository> members = new ArrayList<>(CLUSTER_SIZE);
+            for (int i = 0; i < CLUSTER_SIZE; i++) {
+                members.add(createRepository(engine, profile));
+            }
+            
+            String parentPath = createParentNode(members.get(0), profile);
+            AbstractModeShapeClusterTest.checkConnectivity(members.toArray(new Repository[members.size()]));
+            
+            AtomicLongArray savedAt = new AtomicLongArray(NODE_COUNT);
+            LatencyRecorder recorder = new LatencyRecorder();
+            ExecutorService executorService = ConcurrencyHelper.createExecutorService(CLUSTER_SIZE - 1,
+                    "messaging-" + profile.getProfileName() + "-");
+            
+            try {
+                List<Future<Long>> watchers = new ArrayList<>(CLUSTER_SIZE - 1);
+                for (Repository member : members.subList(1, members.size())) {
+                    watchers.add(executorService.submit(() -> watch(member, parentPath, savedAt, recorder)));
+                }
+                
+                long start = System.nanoTime();
+                write(members.get(0), parentPath, savedAt);
+                
+                long lastVisible = start;
+                for (Future<Long> watcher : watchers) {
+                    lastVisible = Math.max(lastVisible, watcher.get());
+                }
+                
+                assertThat(recorder.getCount()).isEqualTo(NODE_COUNT * (CLUSTER_SIZE - 1));
+                
+                return String.format("%-16s %8s %12.2f %10.1f %10.1f %10.1f %10.1f%n",
+                        profile.getProfileName(),
+                        NODE_COUNT,
+                        NODE_COUNT * (double) TimeUnit.SECONDS.toNanos(1) / (lastVisible - start),
+                        LatencyRecorder.toMillis(recorder.getPercentile(50)),
+                        LatencyRecorder.toMillis(recorder.getPercentile(90)),
+                        LatencyRecorder.toMillis(recorder.getPercentile(99)),
+                        LatencyRecorder.toMillis(recorder.getMax()));
+            
+            } finally {
+                ConcurrencyHelper.closeExecutorService(executorService, TimeUnit.SECONDS.toMillis(30));
+            }
+        
+        } finally {
+            engine.shutdown().get();
+        }
+    }
+    
+    private static void write(Repository repository, String parentPath, AtomicLongArray savedAt)
+            throws RepositoryException {
+        
+        Session session = AbstractModeShapeClusterTest.createSession(repository);
+        
+        try {
+            Node parent = session.getNode(parentPath);
+            
+            for (int i = 0; i < NODE_COUNT; i++) {
+                parent.addNode(NodeHelper.getLeafRelativePath(i));
+                session.save();
+                
+                savedAt.set(i, System.nanoTime());
+            }
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    /**
+     * Polls for the nodes in the order they are added and records the time between the save on
+     * the writer and the moment the node is visible on this member.
+     *
+     * @return the time the last node became visible
+     */
+    private static long watch(Repository repository, String parentPath, AtomicLongArray savedAt,
+            LatencyRecorder recorder) throws RepositoryException, InterruptedException {
+        
+        Session session = AbstractModeShapeClusterTest.createSession(repository);
+        long visibleAt = System.nanoTime();
+        
+        try {
+            for (int i = 0; i < NODE_COUNT; i++) {
+                String path = parentPath + "/" + NodeHelper.getLeafRelativePath(i);
+                long deadline = System.nanoTime() + VISIBILITY_TIMEOUT_NANOS;
+                
+                while (!session.nodeExists(path)) {
+                    if (System.nanoTime() > deadline) {
+                        throw new IllegalStateException(String.format("The node did not become visible [path=%s]", path));
+                    }
+                    
+                    Thread.sleep(1);
+                    session.refresh(false);
+                }
+                
+                visibleAt = System.nanoTime();
+                
+                // the save might not have been acknowledged on the writer yet
+                while (savedAt.get(i) == 0) {
+                    Thread.yield();
+                }
+                
+                recorder.record(Math.max(0, visibleAt - savedAt.get(i)));
+            }
+            
+            return visibleAt;
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    private static String createParentNode(Repository repository, JGroupsStackProfile profile)
+            throws RepositoryException {
+        
+        Session session = AbstractModeShapeClusterTest.createSession(repository);
+        
+        try {
+            String relativePath = "messaging-" + profile.getProfileName();
+            
+            if (session.nodeExists("/" + relativePath)) {
+                session.getNode("/" + relativePath).remove();
+            }
+            
+            Node parent = session.getRootNode().addNode(relativePath);
+            session.save();
+            
+            return parent.getPath();
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    private static Repository createRepository(ModeShapeEngine engine, JGroupsStackProfile profile) throws Exception {
+        Map<String, String> variables = AbstractModeShapeClusterTest.createVariables();
+        variables.put("cluster.name", "messaging-" + profile.getProfileName());
+        variables.put("jgroups.location", profile.writeConfiguration());
+        
+        return engine.deploy(AbstractModeShapeClusterTest.readConfigurationTemplate(
+                AbstractModeShapeClusterTest.REPOSITORY_CONFIGURATION_FILE).resolve(variables));
+    }
+}
@@ -0,0 +1,200 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.junit.Test;
+import org.modeshape.jcr.ModeShapeEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sweeps the cluster size and runs the same workloads with the same thread count for each size,
+ * so that it becomes visible where adding members stops paying off. The workloads are the ones of
+ * {@link ChildNodeCreationTest}, {@link ChildNodeUpdateTest} and {@link LockingBehaviorTest}:
+ * <ul>
+ *   <li>{@code create} - every task adds a leaf under its own parent node</li>
+ *   <li>{@code update} - every task updates its own leaf</li>
+ *   <li>{@code locked-add} - every task adds a node under a single parent, which is locked for the duration</li>
+ * </ul>
+ * Each task goes to the next cluster member in a round-robin fashion.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code scaling.cluster.sizes} - the comma-separated cluster sizes, defaults to {@code 1,2,3}, e.g. {@code 1,2,3,5,8,10}</li>
+ *   <li>{@code scaling.thread.count} - the number of concurrent tasks, defaults to {@code 4}</li>
+ *   <li>{@code scaling.operation.count} - the number of tasks per workload, defaults to {@code 40}</li>
+ *   <li>{@code scaling.lock.attempt.count} - the number of attempts of a {@code locked-add} task, defaults to {@code 5}</li>
+ * </ul>
+ */
+public class ClusterScalingTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterScalingTest.class);
+    
+    private static final List<Integer> CLUSTER_SIZES = Arrays.stream(
+            System.getProperty("scaling.cluster.sizes", "1,2,3").split(","))
+            .map(String::trim)
+            .map(Integer::valueOf)
+            .collect(Collectors.toList());
+    
+    private static final int THREAD_COUNT = Integer.valueOf(System.getProperty("scaling.thread.count", "4"));
+    private static final int OPERATION_COUNT = Integer.valueOf(System.getProperty("scaling.operation.count", "40"));
+    private static final int LOCK_ATTEMPT_COUNT = Integer.valueOf(System.getProperty("scaling.lock.attempt.count", "5"));
+    private static final long LOCK_RETRY_DELAY_MILLIS = 500;
+    
+    private static final String REPORT_FORMAT = "%-8s %-12s %6s %7s %12s %10s %10s %10s%n";
+    
+    @Test
+    public void sweepClusterSize() throws Exception {
+        StringBuilder report = new StringBuilder(String.format("%n" + REPORT_FORMAT,
+                "members", "workload", "ops", "errors", "throughput/s", "p50 ms", "p99 ms", "max ms"));
+        
+        for (int clusterSize : CLUSTER_SIZES) {
+            ModeShapeEngine engine = new ModeShapeEngine();
+            engine.start();
+            
+            try {
+                List<Repository> repositories = new ArrayList<>(clusterSize);
+                for (int i = 0; i < clusterSize; i++) {
+                    repositories.add(AbstractModeShapeClusterTest.createRepository(engine));
+                }
+                
+                AbstractModeShapeClusterTest.checkConnectivity(repositories.toArray(new Repository[clusterSize]));
+                CircularRepositoryIterator iterator = new CircularRepositoryIterator(repositories);
+                
+                List<String> parentNodes = AbstractModeShapeClusterTest.createParentNodes(iterator.next(), OPERATION_COUNT);
+                report.append(runWorkload(clusterSize, "create", createTasks(iterator, parentNodes)));
+                report.append(runWorkload(clusterSize, "update", updateTasks(iterator)));
+                
+                String lockedParentNode = AbstractModeShapeClusterTest.createParentNodes(iterator.next(), 1).get(0);
+                report.append(runWorkload(clusterSize, "locked-add", lockedAddTasks(iterator, lockedParentNode)));
+            
+            } finally {
+                engine.shutdown().get();
+            }
+            
+            LOGGER.info("Cluster size completed [clusterSize={}]", clusterSize);
+        }
+        
+        LOGGER.info("Cluster scaling [threadCount={}, operationCount={}]:{}", THREAD_COUNT, OPERATION_COUNT, report);
+    }
+    
+    private static List<Callable<String>> createTasks(CircularRepositoryIterator iterator, List<String> parentNodes) {
+        List<Callable<String>> tasks = new ArrayList<>(parentNodes.size());
+        
+        for (int i = 0; i < parentNodes.size(); i++) {
+            tasks.add(NodeHelper.getCreateChildNodeCallable(iterator.next(), parentNodes.get(i),
+                    NodeHelper.getLeafRelativePath(i)));
+        }
+        
+        return tasks;
+    }
+    
+    private static List<Callable<String>> updateTasks(CircularRepositoryIterator iterator) {
+        List<Callable<String>> tasks = new ArrayList<>(OPERATION_COUNT);
+        
+        for (int i = 0; i < OPERATION_COUNT; i++) {
+            tasks.add(NodeHelper.getUpdateChildNodeCallable(iterator.next(), NodeHelper.getLeafAbsolutePath(i)));
+        }
+        
+        return tasks;
+    }
+    
+    private static List<Callable<String>> lockedAddTasks(CircularRepositoryIterator iterator, String parentNode) {
+        List<Callable<String>> tasks = new ArrayList<>(OPERATION_COUNT);
+        
+        for (int i = 0; i < OPERATION_COUNT; i++) {
+            Repository repository = iterator.next();
+            String childNode = "child-" + i;
+            
+            tasks.add(() -> {
+                for (int attempt = 1; ; attempt++) {
+                    Session session = AbstractModeShapeClusterTest.createSession(repository);
+                    
+                    try {
+                        return NodeHelper.safeAddNodeWithTransaction(session, parentNode, childNode, Optional.empty());
+                    
+                    } catch (RepositoryException | RuntimeException e) {
+                        if (attempt >= LOCK_ATTEMPT_COUNT) {
+                            throw e;
+                        }
+                        
+                        LOGGER.debug("Locked add failed, retrying [node={}, attempt={}, error={}]", childNode, attempt, e.getMessage());
+                    
+                    } finally {
+                        session.logout();
+                    }
+                    
+                    Thread.sleep(LOCK_RETRY_DELAY_MILLIS);
+                }
+            });
+        }
+        
+        return tasks;
+    }
+    
+    private static String runWorkload(int clusterSize, String workload, List<Callable<String>> tasks)
+            throws InterruptedException {
+        
+        LatencyRecorder recorder = new LatencyRecorder();
+        AtomicInteger errorCount = new AtomicInteger();
+        List<Callable<String>> timedTasks = new ArrayList<>(tasks.size());
+        
+        for (Callable<String> task : tasks) {
+            timedTasks.add(() -> {
+                long start = System.nanoTime();
+                
+                try {
+                    return task.call();
+                
+                } catch (Exception e) {
+                    LOGGER.debug("The [{}] task failed", workload, e);
+                    errorCount.incrementAndGet();
+                    
+                    return null;
+                
+                } finally {
+                    recorder.record(System.nanoTime() - start);
+                }
+            });
+        }
+        
+        ExecutorService executorService = ConcurrencyHelper.createExecutorService(THREAD_COUNT, "scaling-" + workload + "-");
+        long elapsed;
+        
+        try {
+            long start = System.nanoTime();
+            List<Future<String>> futures = executorService.invokeAll(timedTasks);
+            elapsed = System.nanoTime() - start;
+            
+            assertThat(futures).hasSize(tasks.size());
+        
+        } finally {
+            ConcurrencyHelper.closeExecutorService(executorService, TimeUnit.SECONDS.toMillis(30));
+        }
+        
+        return String.format(REPORT_FORMAT,
+                clusterSize,
+                workload,
+                recorder.getCount(),
+                errorCount.get(),
+                String.format("%.2f", (recorder.getCount() - errorCount.get()) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed),
+                String.format("%.1f", LatencyRecorder.toMillis(recorder.getPercentile(50))),
+                String.format("%.1f", LatencyRecorder.toMillis(recorder.getPercentile(99))),
+                String.format("%.1f", LatencyRecorder.toMillis(recorder.getMax())));
+    }
+}
@@ -0,0 +1,124 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.jcr.Session;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Records the repository operations, the lock acquisitions and the transactions of a few updates
+ * made on all the cluster members and verifies the {@link FlightEvents} found in the recording.
+ * The test is skipped if the Flight Recorder is not available.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code flight.recording.file} - the file the recording is written to, defaults to
+ *   {@code ./target/flight-events.jfr}</li>
+ * </ul>
+ */
+public class FlightEventsTest extends AbstractModeShapeClusterTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlightEventsTest.class);
+    
+    private static final Path RECORDING_FILE = Paths.get(
+            System.getProperty("flight.recording.file", "./target/flight-events.jfr"));
+    
+    private static final int NODE_COUNT = 10;
+    
+    private static final String OPERATION_EVENT = "com.foo.bar.RepositoryOperation";
+    private static final String LOCK_EVENT = "com.foo.bar.LockAcquisition";
+    private static final String TRANSACTION_EVENT = "com.foo.bar.Transaction";
+    
+    @Test
+    public void operationsShouldBeRecorded() throws Exception {
+        Assume.assumeTrue("The Flight Recorder is not available", FlightEvents.isAvailable());
+        
+        Files.createDirectories(RECORDING_FILE.toAbsolutePath().getParent());
+        
+        List<String> leafNodes;
+        String transactionalNode;
+        
+        try (AutoCloseable recording = FlightEvents.startRecording(RECORDING_FILE)) {
+            leafNodes = createChildNodes(repositoryIterator.next(),
+                    createParentNodes(repositoryIterator.next(), NODE_COUNT));
+            
+            for (String leafNode : leafNodes) {
+                Session session = createSession(repositoryIterator.next());
+                
+                try {
+                    NodeHelper.updateNode(session, leafNode, UUID.randomUUID().toString());
+                    NodeHelper.safeUpdateNode(session, leafNode, UUID.randomUUID().toString());
+                
+                } finally {
+                    session.logout();
+                }
+            }
+            
+            Session session = createSession(repositoryIterator.next());
+            
+            try {
+                transactionalNode = NodeHelper.safeAddNodeWithTransaction(session, NodeHelper.ABSOLUTE_APP_ROOT_NODE_PATH,
+                        "transactional", Optional.empty());
+            
+            } finally {
+                session.logout();
+            }
+        }
+        
+        List<RecordedEvent> events = RecordingFile.readAllEvents(RECORDING_FILE);
+        Map<String, List<RecordedEvent>> eventsByType = events.stream()
+                .filter(event -> event.getEventType().getName().startsWith("com.foo.bar."))
+                .collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+        
+        LOGGER.info("Recorded events [file={}]: {}", RECORDING_FILE, eventsByType.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().size())));
+        
+        List<RecordedEvent> operations = eventsByType.get(OPERATION_EVENT);
+        Map<String, Long> operationCounts = countBy(operations, event -> event.getString("operation"));
+        
+        assertThat(operationCounts).containsEntry("add", (long) NODE_COUNT * 2)
+                .containsEntry("update", (long) NODE_COUNT)
+                .containsEntry("safeUpdate", (long) NODE_COUNT)
+                .containsEntry("transactionalAdd", 1L);
+        
+        assertThat(operations).allMatch(event -> FlightEvents.OUTCOME_SUCCEEDED.equals(event.getString("outcome")));
+        assertThat(operations).allMatch(event -> event.getString("repository") != null);
+        assertThat(operations).allMatch(event -> event.getDuration().toNanos() > 0);
+        
+        assertThat(operations.stream().map(event -> event.getString("path")).collect(Collectors.toSet()))
+                .containsAll(leafNodes)
+                .contains(transactionalNode);
+        
+        List<RecordedEvent> locks = eventsByType.get(LOCK_EVENT);
+        assertThat(locks).hasSize(NODE_COUNT + 1);
+        assertThat(locks).allMatch(event -> "acquired".equals(event.getString("outcome")));
+        assertThat(locks).allMatch(event -> event.getStackTrace() != null);
+        
+        assertThat(countBy(eventsByType.get(TRANSACTION_EVENT), event -> event.getString("outcome")))
+                .containsEntry("commit", 1L)
+                .containsEntry("joined", 1L);
+    }
+    
+    private static Map<String, Long> countBy(List<RecordedEvent> events, Function<RecordedEvent, String> classifier) {
+        assertThat(events).isNotNull();
+        
+        return events.stream().collect(Collectors.groupingBy(classifier, Collectors.counting()));
+    }
+}
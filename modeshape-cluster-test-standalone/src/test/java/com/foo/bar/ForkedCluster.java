@@ -0,0 +1,258 @@
+package com.foo.bar;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.tools.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.foo.bar.ForkedClusterMember.Command;
+
+/**
+ * The test fixture, which forks every cluster member into its own JVM on localhost, so that the
+ * members share nothing but the DB and the network. The members are driven via the protocol of
+ * {@link ForkedClusterMember}. If the default file-based H2 database is used, it is exposed to the
+ * members via an H2 TCP server started in this JVM.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code forked.h2.port} - the port of the H2 TCP server, defaults to {@code 9124}</li>
+ *   <li>{@code forked.member.jvm.args} - the space-separated extra JVM arguments of every member, empty by default</li>
+ *   <li>{@code forked.startup.timeout} - the number of seconds to wait for a member to start, defaults to {@code 300}</li>
+ * </ul>
+ */
+public class ForkedCluster implements AutoCloseable {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(ForkedCluster.class);
+    
+    private static final int H2_PORT = Integer.valueOf(System.getProperty("forked.h2.port", "9124"));
+    private static final String MEMBER_JVM_ARGS = System.getProperty("forked.member.jvm.args", "");
+    private static final long STARTUP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(
+            Long.valueOf(System.getProperty("forked.startup.timeout", "300")));
+    
+    private static final Path WORK_DIR = Paths.get("target", "forked");
+    private static final String H2_FILE_URL_PREFIX = "jdbc:h2:file:";
+    
+    private final List<Member> members;
+    private final Optional<Server> h2Server;
+    
+    private ForkedCluster(List<Member> members, Optional<Server> h2Server) {
+        this.members = members;
+        this.h2Server = h2Server;
+    }
+    
+    /**
+     * Forks the given number of members and waits for all of them to start.
+     *
+     * @param clusterSize
+     *            the number of members
+     *
+     * @return the running cluster
+     *
+     * @throws Exception
+     *             if a member failed to start
+     */
+    public static ForkedCluster start(int clusterSize) throws Exception {
+        String profileName = System.getProperty(JGroupsStackProfile.PROFILE_PROPERTY, "").trim();
+        
+        if (!profileName.isEmpty() && JGroupsStackProfile.fromProfileName(profileName) == JGroupsStackProfile.LOOPBACK) {
+            throw new IllegalStateException("The loopback JGroups stack cannot connect members running in different JVMs");
+        }
+        
+        Files.createDirectories(WORK_DIR);
+        
+        Optional<Server> h2Server = Optional.empty();
+        String dbUrl = AbstractModeShapeClusterTest.DB_URL;
+        
+        if (dbUrl.startsWith(H2_FILE_URL_PREFIX)) {
+            h2Server = Optional.of(Server.createTcpServer("-tcpPort", Integer.toString(H2_PORT)).start());
+            dbUrl = String.format("jdbc:h2:tcp://localhost:%s/%s", H2_PORT, dbUrl.substring(H2_FILE_URL_PREFIX.length()));
+        }
+        
+        List<Member> members = new ArrayList<>(clusterSize);
+        ForkedCluster cluster = new ForkedCluster(members, h2Server);
+        
+        try {
+            // started one after another, so that every member joins an existing cluster view
+            for (int i = 0; i < clusterSize; i++) {
+                members.add(Member.fork(i, dbUrl));
+            }
+        
+        } catch (Exception e) {
+            cluster.close();
+            throw e;
+        }
+        
+        return cluster;
+    }
+    
+    public List<Member> getMembers() {
+        return Collections.unmodifiableList(members);
+    }
+    
+    @Override
+    public void close() throws InterruptedException {
+        for (Member member : members) {
+            member.close();
+        }
+        
+        if (h2Server.isPresent()) {
+            h2Server.get().stop();
+        }
+    }
+    
+    /**
+     * The client of a single forked member. It is thread-safe, because every call uses its own
+     * connection.
+     */
+    public static class Member {
+        
+        private final int index;
+        private final Process process;
+        private final int port;
+        
+        private Member(int index, Process process, int port) {
+            this.index = index;
+            this.process = process;
+            this.port = port;
+        }
+        
+        private static Member fork(int index, String dbUrl) throws IOException, InterruptedException {
+            Path memberDir = WORK_DIR.resolve("member-" + index).toAbsolutePath();
+            Path portFile = memberDir.resolve("port");
+            File logFile = WORK_DIR.resolve("member-" + index + ".log").toFile();
+            
+            Files.createDirectories(memberDir);
+            Files.deleteIfExists(portFile);
+            
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            
+            if (!MEMBER_JVM_ARGS.trim().isEmpty()) {
+                command.addAll(Arrays.asList(MEMBER_JVM_ARGS.trim().split("\\s+")));
+            }
+            
+            command.addAll(Arrays.asList(
+                    "-Ddb.url=" + dbUrl,
+                    "-Ddb.username=" + AbstractModeShapeClusterTest.DB_USERNAME,
+                    "-Ddb.password=" + AbstractModeShapeClusterTest.DB_PASSWORD,
+                    "-Djgroups.location=" + AbstractModeShapeClusterTest.JGROUPS_CONFIGURATION_FILE,
+                    "-Drepository.configuration.file=" + AbstractModeShapeClusterTest.REPOSITORY_CONFIGURATION_FILE,
+                    "-D" + ArjunaTransactionManagerLookup.RECOVERY_DIR + "=" + memberDir.resolve("arjuna"),
+                    "-cp", System.getProperty("java.class.path"),
+                    ForkedClusterMember.class.getName(),
+                    portFile.toString()));
+            
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(logFile)
+                    .start();
+            
+            long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+            
+            while (!Files.exists(portFile)) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(String.format("The cluster member exited during the startup "
+                            + "[index=%s, exitCode=%s, log=%s]", index, process.exitValue(), logFile));
+                }
+                
+                if (System.currentTimeMillis() > deadline) {
+                    process.destroyForcibly();
+                    throw new IllegalStateException(String.format("The cluster member did not start in time "
+                            + "[index=%s, log=%s]", index, logFile));
+                }
+                
+                Thread.sleep(100);
+            }
+            
+            int port = Integer.parseInt(new String(Files.readAllBytes(portFile), StandardCharsets.US_ASCII).trim());
+            LOGGER.info("Cluster member forked [index={}, port={}, log={}]", index, port, logFile);
+            
+            return new Member(index, process, port);
+        }
+        
+        public int getIndex() {
+            return index;
+        }
+        
+        public List<String> createParentNodes(int nodeCount) throws IOException {
+            return call(Command.CREATE_PARENT_NODES, Integer.toString(nodeCount));
+        }
+        
+        public List<String> createChildNodes(List<String> parentNodes) throws IOException {
+            return call(Command.CREATE_CHILD_NODES, parentNodes.toArray(new String[parentNodes.size()]));
+        }
+        
+        public String createChildNode(String parentAbsolutePath, String childRelativePath) throws IOException {
+            return call(Command.CREATE_CHILD_NODE, parentAbsolutePath, childRelativePath).get(0);
+        }
+        
+        public List<String> getContent(List<String> nodes) throws IOException {
+            return call(Command.GET_CONTENT, nodes.toArray(new String[nodes.size()]));
+        }
+        
+        public List<String> getLeafPaths(int nodeCount) throws IOException {
+            return call(Command.GET_LEAF_PATHS, Integer.toString(nodeCount));
+        }
+        
+        private List<String> call(Command command, String... arguments) throws IOException {
+            StringBuilder request = new StringBuilder(command.name());
+            for (String argument : arguments) {
+                request.append(ForkedClusterMember.SEPARATOR).append(argument);
+            }
+            
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                    PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                
+                writer.println(request);
+                String response = reader.readLine();
+                
+                if (response == null) {
+                    throw new IOException(String.format("The cluster member closed the connection [index=%s, command=%s]",
+                            index, command));
+                }
+                
+                List<String> values = Arrays.asList(response.split(ForkedClusterMember.SEPARATOR, -1));
+                
+                if (!ForkedClusterMember.OK.equals(values.get(0))) {
+                    throw new IllegalStateException(String.format("The cluster member failed to execute the command "
+                            + "[index=%s, command=%s, error=%s]", index, command, values.subList(1, values.size())));
+                }
+                
+                return new ArrayList<>(values.subList(1, values.size()));
+            }
+        }
+        
+        private void close() throws InterruptedException {
+            try {
+                if (process.isAlive()) {
+                    call(Command.SHUTDOWN);
+                }
+            
+            } catch (IOException | IllegalStateException e) {
+                LOGGER.debug("Failed to shut the cluster member down gracefully [index={}]", index, e);
+            }
+            
+            if (!process.waitFor(60, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+}
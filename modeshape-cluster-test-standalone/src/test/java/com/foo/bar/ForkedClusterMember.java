@@ -0,0 +1,202 @@
+package com.foo.bar;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.jcr.Repository;
+import javax.jcr.Session;
+
+import org.modeshape.jcr.ModeShapeEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single cluster member running in its own JVM, see {@link ForkedCluster}. The member deploys
+ * one repository, configured the same way as in {@link AbstractModeShapeClusterTest}, and then
+ * accepts the commands on a loopback socket. The port is written to the file given as the only
+ * argument, once the repository is up.
+ *
+ * The protocol is line-based: a request is {@code COMMAND[\targument]*}, a response is either
+ * {@code OK[\tvalue]*} or {@code ERROR\tmessage}. Every connection can carry any number of
+ * requests and the connections are served concurrently.
+ */
+public class ForkedClusterMember {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(ForkedClusterMember.class);
+    
+    static final String SEPARATOR = "\t";
+    static final String OK = "OK";
+    static final String ERROR = "ERROR";
+    
+    private final Repository repository;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    
+    private volatile boolean running = true;
+    
+    private ForkedClusterMember(Repository repository) throws IOException {
+        this.repository = repository;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Path portFile = Paths.get(args[0]);
+        
+        ModeShapeEngine engine = new ModeShapeEngine();
+        engine.start();
+        
+        Repository repository = AbstractModeShapeClusterTest.createRepository(engine);
+        AbstractModeShapeClusterTest.checkConnectivity(repository);
+        
+        ForkedClusterMember member = new ForkedClusterMember(repository);
+        
+        // written atomically, so that the fixture never reads a partial port number
+        Path tempFile = Paths.get(portFile + ".tmp");
+        Files.write(tempFile, Integer.toString(member.serverSocket.getLocalPort()).getBytes(StandardCharsets.US_ASCII));
+        Files.move(tempFile, portFile);
+        
+        LOGGER.info("Cluster member started [port={}]", member.serverSocket.getLocalPort());
+        
+        member.serve();
+        engine.shutdown().get();
+        
+        System.exit(0);
+    }
+    
+    private void serve() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                executorService.submit(() -> handle(socket));
+            
+            } catch (IOException e) {
+                if (running) {
+                    LOGGER.error("Failed to accept a connection", e);
+                }
+            }
+        }
+        
+        executorService.shutdownNow();
+    }
+    
+    private void handle(Socket socket) {
+        try (Socket client = socket;
+                BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter writer = new PrintWriter(client.getOutputStream(), true)) {
+            
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> request = Arrays.asList(line.split(SEPARATOR, -1));
+                
+                try {
+                    writer.println(OK + join(execute(request.get(0), request.subList(1, request.size()))));
+                
+                } catch (Exception e) {
+                    LOGGER.error("Failed to execute the command [{}]", line, e);
+                    writer.println(ERROR + SEPARATOR + String.valueOf(e).replace('\n', ' ').replace(SEPARATOR, " "));
+                }
+                
+                if (!running) {
+                    serverSocket.close();
+                    return;
+                }
+            }
+        
+        } catch (IOException e) {
+            LOGGER.debug("The connection has been closed", e);
+        }
+    }
+    
+    private List<String> execute(String command, List<String> arguments) throws Exception {
+        switch (Command.valueOf(command)) {
+        case PING:
+            return arguments;
+        
+        case CREATE_PARENT_NODES:
+            return AbstractModeShapeClusterTest.createParentNodes(repository, Integer.parseInt(arguments.get(0)));
+        
+        case CREATE_CHILD_NODES:
+            return AbstractModeShapeClusterTest.createChildNodes(repository, arguments);
+        
+        case CREATE_CHILD_NODE:
+            return Arrays.asList(NodeHelper.getCreateChildNodeCallable(repository, arguments.get(0), arguments.get(1)).call());
+        
+        case GET_CONTENT:
+            return withSession(session -> AbstractModeShapeClusterTest.getContentProperty(session, arguments));
+        
+        case GET_LEAF_PATHS:
+            return withSession(session -> {
+                List<String> paths = new ArrayList<>();
+                for (int i = 0; i < Integer.parseInt(arguments.get(0)); i++) {
+                    paths.add(session.getNode(NodeHelper.getLeafAbsolutePath(i)).getPath());
+                }
+                
+                return paths;
+            });
+        
+        case SHUTDOWN:
+            running = false;
+            return arguments;
+        
+        default:
+            throw new IllegalStateException(String.format("Unsupported command [%s]", command));
+        }
+    }
+    
+    private List<String> withSession(SessionCallable callable) throws Exception {
+        Session session = AbstractModeShapeClusterTest.createSession(repository);
+        
+        try {
+            return callable.call(session);
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    private static String join(List<String> values) {
+        StringBuilder builder = new StringBuilder();
+        for (String value : values) {
+            builder.append(SEPARATOR).append(value);
+        }
+        
+        return builder.toString();
+    }
+    
+    /**
+     * The supported commands.
+     */
+    enum Command {
+        
+        PING,
+        CREATE_PARENT_NODES,
+        CREATE_CHILD_NODES,
+        CREATE_CHILD_NODE,
+        GET_CONTENT,
+        GET_LEAF_PATHS,
+        SHUTDOWN
+    }
+    
+    /**
+     * The work to be done within a session.
+     */
+    @FunctionalInterface
+    private interface SessionCallable {
+        
+        List<String> call(Session session) throws Exception;
+    }
+}
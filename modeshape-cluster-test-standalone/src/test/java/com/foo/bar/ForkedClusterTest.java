@@ -0,0 +1,110 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.foo.bar.ForkedCluster.Member;
+
+/**
+ * The scenarios of {@link ChildNodeCreationTest}, run against the cluster members forked into
+ * separate JVMs (see {@link ForkedCluster}). The durations are logged, so that they can be compared
+ * with the in-JVM numbers. Honors the same system properties as {@link AbstractModeShapeClusterTest}.
+ */
+public class ForkedClusterTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(ForkedClusterTest.class);
+    
+    private static ForkedCluster cluster;
+    private static int nextMember;
+    
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        cluster = ForkedCluster.start(Integer.valueOf(System.getProperty("cluster.size", "3")));
+    }
+    
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (cluster != null) {
+            cluster.close();
+        }
+    }
+    
+    @Test
+    public void createLeafNodesInOrder() throws Exception {
+        long start = System.nanoTime();
+        
+        List<String> parentNodes = nextMember().createParentNodes(AbstractModeShapeClusterTest.LEAF_NODE_COUNT);
+        List<String> childNodes = nextMember().createChildNodes(parentNodes);
+        
+        LOGGER.info("Created leaf nodes in order [nodeCount={}, clusterSize={}, took={} ms]",
+                childNodes.size(), cluster.getMembers().size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        
+        verifyChildNodes(childNodes);
+    }
+    
+    @Test
+    public void createLeafNodesInParallel() throws Exception {
+        List<String> parentNodes = nextMember().createParentNodes(AbstractModeShapeClusterTest.LEAF_NODE_COUNT);
+        List<String> affectedNodes = new ArrayList<>(parentNodes.size());
+        ExecutorService executorService = ConcurrencyHelper.createExecutorService(
+                AbstractModeShapeClusterTest.THREAD_COUNT, "forked-create-child-parallel-");
+        
+        try {
+            List<Callable<String>> tasks = new ArrayList<>(parentNodes.size());
+            
+            for (int i = 0; i < parentNodes.size(); i++) {
+                Member member = nextMember();
+                String parentNode = parentNodes.get(i);
+                String childNode = NodeHelper.getLeafRelativePath(i);
+                
+                tasks.add(() -> member.createChildNode(parentNode, childNode));
+            }
+            
+            long start = System.nanoTime();
+            
+            for (Future<String> createdNode : executorService.invokeAll(tasks)) {
+                affectedNodes.add(createdNode.get());
+            }
+            
+            LOGGER.info("Created leaf nodes in parallel [nodeCount={}, clusterSize={}, threadCount={}, took={} ms]",
+                    affectedNodes.size(), cluster.getMembers().size(), AbstractModeShapeClusterTest.THREAD_COUNT,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            
+            assertThat(affectedNodes).hasSize(parentNodes.size());
+            
+            verifyChildNodes(affectedNodes);
+        
+        } finally {
+            ConcurrencyHelper.closeExecutorService(executorService, TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+    
+    private static void verifyChildNodes(List<String> expectedNodes) throws Exception {
+        List<String> expectedLeafContent = cluster.getMembers().get(0).getContent(expectedNodes);
+        
+        for (Member member : cluster.getMembers()) {
+            List<String> affectedNodes = member.getLeafPaths(expectedNodes.size());
+            
+            assertThat(affectedNodes).isEqualTo(expectedNodes);
+            assertThat(member.getContent(affectedNodes)).isEqualTo(expectedLeafContent);
+        }
+    }
+    
+    private static Member nextMember() {
+        List<Member> members = cluster.getMembers();
+        return members.get(nextMember++ % members.size());
+    }
+}
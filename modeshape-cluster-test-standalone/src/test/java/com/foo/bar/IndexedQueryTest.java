@@ -0,0 +1,186 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.Session;
+
+import org.junit.Test;
+import org.modeshape.jcr.JcrRepository;
+import org.modeshape.jcr.ModeShapeEngine;
+import org.modeshape.jcr.RepositoryConfiguration;
+import org.modeshape.jcr.RepositoryConfiguration.FieldName;
+import org.modeshape.schematic.document.Editor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the path-by-path access with the JCR-SQL2 queries backed by the indexes of the
+ * repository configuration:
+ * <ul>
+ *   <li>{@code path read} - every leaf is read via {@link Session#getNode(String)}</li>
+ *   <li>{@code query read} - all the leaves are read page by page via {@link QueryHelper#readLeafNodes(Session, int)}</li>
+ *   <li>{@code query lookup} - every leaf is found by its content via {@link QueryHelper#findNodeByContent(Session, String)}</li>
+ * </ul>
+ * The index update overhead is measured by updating the content of the leaves on a member with the
+ * indexes and on one without them. The reads are done on another member than the one which has
+ * written the nodes, so that the local indexes are verified to be updated across the cluster.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code query.page.size} - the maximum number of leaves fetched by a single query, defaults to {@code 50}</li>
+ * </ul>
+ */
+public class IndexedQueryTest extends AbstractModeShapeClusterTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexedQueryTest.class);
+    
+    private static final int PAGE_SIZE = Integer.valueOf(System.getProperty("query.page.size", "50"));
+    
+    private static final String REPORT_FORMAT = "%-14s %7s %10s %10s %10s %10s%n";
+    
+    @Test
+    public void queriesShouldUseIndexes() throws Exception {
+        Session session = createSession(repositoryIterator.next());
+        
+        try {
+            assertThat(QueryHelper.explain(QueryHelper.createLeafNodesQuery(session))).contains("localNameIndex");
+            assertThat(QueryHelper.explain(QueryHelper.createNodeByContentQuery(session, "any"))).contains("contentIndex");
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    @Test
+    public void compareQueriesWithPathAccess() throws Exception {
+        List<String> parentNodes = createParentNodes(repositoryIterator.next(), LEAF_NODE_COUNT);
+        List<String> leafNodes = createChildNodes(repositoryIterator.next(), parentNodes);
+        
+        StringBuilder report = new StringBuilder(String.format("%n" + REPORT_FORMAT,
+                "mode", "ops", "total ms", "mean ms", "p99 ms", "max ms"));
+        
+        Session session = createSession(repositoryIterator.next());
+        
+        try {
+            List<String> contents = getContentProperty(session, leafNodes);
+            
+            LatencyRecorder pathReads = new LatencyRecorder();
+            long start = System.nanoTime();
+            
+            for (String leafNode : leafNodes) {
+                long readStart = System.nanoTime();
+                session.getNode(leafNode);
+                pathReads.record(System.nanoTime() - readStart);
+            }
+            
+            report.append(formatOperations("path read", pathReads, System.nanoTime() - start));
+            
+            LatencyRecorder pageReads = new LatencyRecorder();
+            List<String> queriedNodes = new ArrayList<>(leafNodes.size());
+            start = System.nanoTime();
+            
+            for (int pageSize = PAGE_SIZE; pageSize == PAGE_SIZE;) {
+                long pageStart = System.nanoTime();
+                List<String> page = QueryHelper.readLeafNodes(session, queriedNodes.size(), PAGE_SIZE);
+                pageReads.record(System.nanoTime() - pageStart);
+                
+                queriedNodes.addAll(page);
+                pageSize = page.size();
+            }
+            
+            report.append(formatOperations("query read", pageReads, System.nanoTime() - start));
+            assertThat(queriedNodes).containsOnlyElementsOf(leafNodes).hasSameSizeAs(leafNodes);
+            
+            LatencyRecorder lookups = new LatencyRecorder();
+            start = System.nanoTime();
+            
+            for (int i = 0; i < leafNodes.size(); i++) {
+                long lookupStart = System.nanoTime();
+                Optional<Node> node = QueryHelper.findNodeByContent(session, contents.get(i));
+                lookups.record(System.nanoTime() - lookupStart);
+                
+                assertThat(node.isPresent()).isTrue();
+                assertThat(node.get().getPath()).isEqualTo(leafNodes.get(i));
+            }
+            
+            report.append(formatOperations("query lookup", lookups, System.nanoTime() - start));
+        
+        } finally {
+            session.logout();
+        }
+        
+        ModeShapeEngine unindexedEngine = new ModeShapeEngine();
+        unindexedEngine.start();
+        
+        try {
+            JcrRepository unindexedRepository = unindexedEngine.deploy(removeIndexes(
+                    createConfiguration(REPOSITORY_CONFIGURATION_FILE, RepositoryConfigurationGenerator.fromSystemProperties())));
+            unindexedEngine.startRepository(unindexedRepository.getName()).get();
+            
+            report.append(updateLeaves(leafNodes, unindexedRepository, repositoryIterator.next()));
+        
+        } finally {
+            unindexedEngine.shutdown().get();
+        }
+        
+        LOGGER.info("Path vs. query access [leafNodeCount={}, pageSize={}]:{}", leafNodes.size(), PAGE_SIZE, report);
+    }
+    
+    /**
+     * Updates the content of every leaf on both members in turn, so that neither of them benefits
+     * from going second.
+     */
+    private static String updateLeaves(List<String> leafNodes, Repository unindexedRepository,
+            Repository indexedRepository) throws Exception {
+        
+        Session unindexedSession = createSession(unindexedRepository);
+        Session indexedSession = createSession(indexedRepository);
+        
+        try {
+            LatencyRecorder unindexedWrites = new LatencyRecorder();
+            LatencyRecorder indexedWrites = new LatencyRecorder();
+            
+            for (String leafNode : leafNodes) {
+                long start = System.nanoTime();
+                NodeHelper.updateNode(unindexedSession, leafNode, UUID.randomUUID().toString());
+                unindexedWrites.record(System.nanoTime() - start);
+                
+                start = System.nanoTime();
+                NodeHelper.updateNode(indexedSession, leafNode, UUID.randomUUID().toString());
+                indexedWrites.record(System.nanoTime() - start);
+            }
+            
+            return formatOperations("unindexed write", unindexedWrites, unindexedWrites.getMean() * unindexedWrites.getCount())
+                    + formatOperations("indexed write", indexedWrites, indexedWrites.getMean() * indexedWrites.getCount());
+        
+        } finally {
+            unindexedSession.logout();
+            indexedSession.logout();
+        }
+    }
+    
+    private static RepositoryConfiguration removeIndexes(RepositoryConfiguration configuration) {
+        Editor editor = configuration.edit();
+        editor.remove(FieldName.INDEXES);
+        editor.remove(FieldName.INDEX_PROVIDERS);
+        
+        return new RepositoryConfiguration(editor, configuration.getName());
+    }
+    
+    private static String formatOperations(String mode, LatencyRecorder recorder, long elapsedNanos) {
+        return String.format(REPORT_FORMAT,
+                mode,
+                recorder.getCount(),
+                String.format("%.2f", LatencyRecorder.toMillis(elapsedNanos)),
+                String.format("%.2f", LatencyRecorder.toMillis(recorder.getMean())),
+                String.format("%.2f", LatencyRecorder.toMillis(recorder.getPercentile(99))),
+                String.format("%.2f", LatencyRecorder.toMillis(recorder.getMax())));
+    }
+}
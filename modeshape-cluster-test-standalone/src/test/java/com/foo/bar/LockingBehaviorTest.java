@@ -1,7 +1,10 @@
 package com.foo.bar;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
@@ -32,6 +35,11 @@ public class LockingBehaviorTest extends AbstractModeShapeClusterTest {
     private static final Logger LOGGER = LoggerFactory.getLogger(LockingBehaviorTest.class);
     private static final int RETRY_ATTEMPT_COUNT = 2;
     
+    private static final int LOCKED_NODE_COUNT = 3;
+    private static final long LOCK_DEADLINE_SECONDS = 60;
+    private static final long LOCK_HOLD_MILLIS = 50;
+    private static final BackoffPolicy LOCK_BACKOFF_POLICY = new BackoffPolicy(1, 5, 200);
+    
     /**
      * Tests whether a {@link LockException} can be thrown when adding nodes to a parent node in
      * a sequential order. The parent and child nodes are versioned. Note, that lock/unlock mechanism
@@ -185,6 +193,135 @@ public class LockingBehaviorTest extends AbstractModeShapeClusterTest {
         }
     }
     
+    /**
+     * Tests whether the sessions, running on different members and locking the same nodes given
+     * in different orders via {@link OrderedNodeLocks}, all acquire the locks before the deadline,
+     * the nodes being locked in the same canonical order by every one of them. With several
+     * threads ({@code thread.count}), a lock may occasionally be dropped from the lock table of a
+     * member by a late unlock event of another one, in which case the node cannot be unlocked and
+     * remains corrupted, see {@link NodeLockHelper#isNodeCorrupted(javax.jcr.Node)}.
+     * 
+     * @throws Exception
+     *             if an error occurred
+     */
+    @Test
+    public void lockNodesInCanonicalOrder() throws Exception {
+        List<String> nodes = createParentNodes(repositoryIterator.next(), LOCKED_NODE_COUNT);
+        List<Callable<Map<String, Duration>>> tasks = new ArrayList<>();
+        
+        for (int i = 0; i < THREAD_COUNT * 2; i++) {
+            Repository repository = repositoryIterator.next();
+            List<String> shuffledNodes = new ArrayList<>(nodes);
+            Collections.shuffle(shuffledNodes);
+            
+            tasks.add(() -> {
+                Session session = createSession(repository);
+                
+                try (OrderedNodeLocks locks = OrderedNodeLocks.acquire(session, shuffledNodes,
+                        LOCK_DEADLINE_SECONDS, TimeUnit.SECONDS, LOCK_BACKOFF_POLICY)) {
+                    
+                    Thread.sleep(LOCK_HOLD_MILLIS);
+                    return locks.getWaitTimes();
+                
+                } finally {
+                    session.logout();
+                }
+            });
+        }
+        
+        ExecutorService executorService = ConcurrencyHelper.createExecutorService(
+                THREAD_COUNT, "lock-nodes-ordered-");
+        
+        try {
+            for (Future<Map<String, Duration>> future : executorService.invokeAll(tasks)) {
+                Map<String, Duration> waitTimes = future.get(5, TimeUnit.MINUTES);
+                LOGGER.info("Locked nodes [waitTimes={}]", waitTimes);
+                
+                Assertions.assertThat(waitTimes.keySet()).containsExactlyElementsOf(
+                        OrderedNodeLocks.getLockOrder(nodes));
+            }
+        
+        } finally {
+            ConcurrencyHelper.closeExecutorService(executorService, TimeUnit.SECONDS.toMillis(60));
+        }
+    }
+    
+    /**
+     * Tests whether the nodes, locked by {@link OrderedNodeLocks} before one of them turned out to
+     * be locked by another session until the deadline, are unlocked again, and whether the wait
+     * for the locked node is reported.
+     * 
+     * @throws Exception
+     *             if an error occurred
+     */
+    @Test
+    public void lockNodesShouldBeReleasedAfterDeadline() throws Exception {
+        List<String> nodes = new ArrayList<>(OrderedNodeLocks.getLockOrder(
+                createParentNodes(repositoryIterator.next(), LOCKED_NODE_COUNT)));
+        
+        String lastNode = nodes.get(nodes.size() - 1);
+        
+        Session holder = createSession(repositoryIterator.next());
+        Session session = createSession(repositoryIterator.next());
+        
+        try (OrderedNodeLocks held = OrderedNodeLocks.acquire(holder, Collections.singleton(lastNode),
+                LOCK_DEADLINE_SECONDS, TimeUnit.SECONDS, LOCK_BACKOFF_POLICY)) {
+            
+            long start = System.nanoTime();
+            
+            Assertions.assertThatThrownBy(() -> OrderedNodeLocks.acquire(session, nodes, 1, TimeUnit.SECONDS,
+                    LOCK_BACKOFF_POLICY)).isInstanceOf(LockException.class).hasMessageContaining(lastNode);
+            
+            Assertions.assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.SECONDS.toNanos(1));
+            
+            session.refresh(false);
+            for (String node : nodes.subList(0, nodes.size() - 1)) {
+                Assertions.assertThat(session.getNode(node).isLocked()).as(node).isFalse();
+            }
+        
+        } finally {
+            holder.logout();
+        }
+        
+        try (OrderedNodeLocks locks = OrderedNodeLocks.acquire(session, nodes, LOCK_DEADLINE_SECONDS,
+                TimeUnit.SECONDS, LOCK_BACKOFF_POLICY)) {
+            
+            Assertions.assertThat(locks.getWaitTimes()).hasSize(nodes.size());
+            Assertions.assertThat(locks.getTotalWaitTime()).isLessThan(Duration.ofSeconds(LOCK_DEADLINE_SECONDS));
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    /**
+     * Tests whether {@link OrderedNodeLocks} rejects a session with pending changes, which would be
+     * discarded on a conflict, without locking any of the nodes.
+     * 
+     * @throws Exception
+     *             if an error occurred
+     */
+    @Test
+    public void lockNodesShouldRejectPendingChanges() throws Exception {
+        List<String> nodes = createParentNodes(repositoryIterator.next(), LOCKED_NODE_COUNT);
+        Session session = createSession(repositoryIterator.next());
+        
+        try {
+            session.getRootNode().addNode("pending-" + UUID.randomUUID());
+            
+            Assertions.assertThatThrownBy(() -> OrderedNodeLocks.acquire(session, nodes, LOCK_DEADLINE_SECONDS,
+                    TimeUnit.SECONDS, LOCK_BACKOFF_POLICY)).isInstanceOf(IllegalStateException.class);
+            
+            Assertions.assertThat(session.hasPendingChanges()).isTrue();
+            for (String node : nodes) {
+                Assertions.assertThat(session.getNode(node).isLocked()).as(node).isFalse();
+            }
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
     private static void addNodes(boolean transactionPerNode) throws Exception {
         String parentNode = createParentNodes(repositoryIterator.next(), 1).iterator().next();
         
@@ -0,0 +1,182 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.Repository;
+import javax.jcr.Session;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verifies that {@link NodeIdentifierCache} follows the removals and the moves made on another
+ * cluster member and compares the lookups by identifier with the ones by path in a deep tree.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code path.cache.depth} - the depth of the tree the leaves are looked up in, defaults to {@code 30}</li>
+ * </ul>
+ */
+public class NodeIdentifierCacheTest extends AbstractModeShapeClusterTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(NodeIdentifierCacheTest.class);
+    
+    private static final int DEPTH = Integer.valueOf(System.getProperty("path.cache.depth", "30"));
+    private static final long INVALIDATION_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    
+    @Test
+    public void cacheShouldFollowRemovalsAndMoves() throws Exception {
+        Repository writer = repositories.get(0);
+        Repository reader = repositories.get(repositories.size() - 1);
+        
+        List<String> leafNodes = createChildNodes(writer, createParentNodes(writer, 4));
+        
+        try (NodeIdentifierCache cache = NodeIdentifierCache.create(reader, 100)) {
+            Session session = createSession(reader);
+            
+            try {
+                String removedIdentifier = session.getNode(leafNodes.get(0)).getIdentifier();
+                
+                for (String leafNode : leafNodes) {
+                    cache.getNode(session, leafNode);
+                    cache.getNode(session, leafNode);
+                }
+                
+                assertThat(cache.getMisses()).isEqualTo(leafNodes.size());
+                assertThat(cache.getHits()).isEqualTo(leafNodes.size());
+                
+                String movedParent = NodeHelper.ABSOLUTE_APP_ROOT_NODE_PATH + "/moved-1";
+                removeAndMove(writer, NodeHelper.getLeafAbsolutePath(0), movedParent);
+                
+                long deadline = System.currentTimeMillis() + INVALIDATION_TIMEOUT_MILLIS;
+                while (cache.get(leafNodes.get(0)) != null || cache.get(leafNodes.get(1)) != null) {
+                    if (System.currentTimeMillis() > deadline) {
+                        fail("The cache has not been invalidated in time");
+                    }
+                    
+                    Thread.sleep(50);
+                }
+                
+                session.refresh(false);
+                
+                try {
+                    cache.getNode(session, leafNodes.get(1));
+                    fail("The moved node should not be found by its old path");
+                
+                } catch (PathNotFoundException e) {
+                    // expected
+                }
+                
+                assertThat(cache.getNode(session, movedParent + "/" + NodeHelper.getLeafRelativePath(1)).getPath())
+                        .isEqualTo(movedParent + "/" + NodeHelper.getLeafRelativePath(1));
+                
+                // a stale entry, whose event has not arrived yet, falls back to the path
+                cache.put(leafNodes.get(2), removedIdentifier);
+                assertThat(cache.getNode(session, leafNodes.get(2)).getPath()).isEqualTo(leafNodes.get(2));
+            
+            } finally {
+                session.logout();
+            }
+        }
+    }
+    
+    @Test
+    public void compareIdentifierAndPathLookups() throws Exception {
+        Repository repository = repositoryIterator.next();
+        List<String> leafNodes = new ArrayList<>(LEAF_NODE_COUNT);
+        
+        try (NodeIdentifierCache cache = NodeIdentifierCache.create(repository, LEAF_NODE_COUNT)) {
+            Session session = createSession(repository);
+            
+            try {
+                NodeHelper.deleteApplicationRoot(session);
+                Node parent = session.getNode(NodeHelper.createApplicationRoot(session));
+                NodeHelper.checkoutNode(parent);
+                
+                for (int level = 0; level < DEPTH; level++) {
+                    parent = parent.addNode("level-" + level);
+                }
+                
+                for (int i = 0; i < LEAF_NODE_COUNT; i++) {
+                    leafNodes.add(parent.addNode(NodeHelper.getLeafRelativePath(i)).getPath());
+                }
+                
+                session.save();
+                NodeHelper.checkinNode(session.getNode(NodeHelper.ABSOLUTE_APP_ROOT_NODE_PATH));
+                
+                for (String leafNode : leafNodes) {
+                    cache.put(leafNode, session.getNode(leafNode).getIdentifier());
+                }
+            
+            } finally {
+                session.logout();
+            }
+            
+            LatencyRecorder pathLookups = new LatencyRecorder();
+            LatencyRecorder identifierLookups = new LatencyRecorder();
+            
+            // every pass uses a new session, whose own cache is empty, the first pass warms the JIT up
+            for (int pass = 0; pass < 3; pass++) {
+                pathLookups.reset();
+                identifierLookups.reset();
+                
+                Session pathSession = createSession(repository);
+                Session identifierSession = createSession(repository);
+                
+                try {
+                    for (String leafNode : leafNodes) {
+                        long start = System.nanoTime();
+                        pathSession.getNode(leafNode);
+                        pathLookups.record(System.nanoTime() - start);
+                        
+                        start = System.nanoTime();
+                        cache.getNode(identifierSession, leafNode);
+                        identifierLookups.record(System.nanoTime() - start);
+                    }
+                
+                } finally {
+                    pathSession.logout();
+                    identifierSession.logout();
+                }
+            }
+            
+            assertThat(cache.getMisses()).isZero();
+            
+            LOGGER.info("Lookup latency [depth={}, leafNodeCount={}]: path mean={} ms p99={} ms, identifier mean={} ms p99={} ms",
+                    DEPTH, leafNodes.size(),
+                    String.format("%.3f", LatencyRecorder.toMillis(pathLookups.getMean())),
+                    String.format("%.3f", LatencyRecorder.toMillis(pathLookups.getPercentile(99))),
+                    String.format("%.3f", LatencyRecorder.toMillis(identifierLookups.getMean())),
+                    String.format("%.3f", LatencyRecorder.toMillis(identifierLookups.getPercentile(99))));
+        }
+    }
+    
+    /**
+     * Removes the given leaf along with its parent and moves the next parent.
+     */
+    private static void removeAndMove(Repository repository, String removedLeaf, String movedParent) throws Exception {
+        Session session = createSession(repository);
+        
+        try {
+            Node appRoot = session.getNode(NodeHelper.ABSOLUTE_APP_ROOT_NODE_PATH);
+            NodeHelper.checkoutNode(appRoot);
+            
+            session.getNode(removedLeaf).getParent().remove();
+            session.move(NodeHelper.ABSOLUTE_APP_ROOT_NODE_PATH + "/" + NodeHelper.getLeafParentRelativePath(1), movedParent);
+            session.save();
+            
+            NodeHelper.checkinNode(appRoot);
+        
+        } finally {
+            session.logout();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.modeshape.jcr.ModeShapeEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.foo.bar.AppNodeTypes.MixinPolicy;
+import com.foo.bar.AppNodeTypes.NodeKind;
+
+/**
+ * Compares the size of the stored documents and the throughput of the {@code nt:unstructured}
+ * nodes with the mixins on every node, i.e. the layout of {@link NodeHelper}, against the lean
+ * node types of {@link AppNodeTypes}. Each layout creates, updates and reads the same tree. The
+ * stored size is the growth of the H2 repository table, which includes the version histories,
+ * while the SQL cost is accounted via {@link AccountingDriver}.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code layout.node.count} - the number of files, each one in its own folder, defaults to {@code 50}</li>
+ *   <li>{@code layout.mixin.policy} - the {@link MixinPolicy} of the lean layout, defaults to {@code files}</li>
+ * </ul>
+ */
+public class NodeTypeLayoutTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(NodeTypeLayoutTest.class);
+    
+    private static final String CONFIGURATION_FILE = NodeTypeLayoutTest.class
+            .getResource("/test-repository-h2-accounting.json").getPath();
+    
+    private static final String REPOSITORY_TABLE = "MODESHAPE_REPOSITORY";
+    
+    private static final int NODE_COUNT = Integer.valueOf(System.getProperty("layout.node.count", "50"));
+    private static final MixinPolicy MIXIN_POLICY = MixinPolicy.fromName(System.getProperty("layout.mixin.policy", "files"));
+    
+    private static final String REPORT_FORMAT = "%-14s %8s %10s %10s %12s %12s %12s%n";
+    
+    private static ModeShapeEngine engine;
+    private static Repository repository;
+    
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        engine = new ModeShapeEngine();
+        engine.start();
+        
+        repository = AbstractModeShapeClusterTest.createRepository(engine, CONFIGURATION_FILE);
+    }
+    
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (engine != null) {
+            engine.shutdown().get();
+        }
+    }
+    
+    @Test
+    public void compareLayouts() throws Exception {
+        Session session = AbstractModeShapeClusterTest.createSession(repository);
+        
+        try {
+            AppNodeTypes.register(session);
+            
+            StringBuilder report = new StringBuilder(String.format("%n" + REPORT_FORMAT,
+                    "operation", "calls", "ops/s", "mean ms", "stmts/call", "bytes/call", "stored/node"));
+            
+            for (Layout layout : Layout.values()) {
+                report.append(runLayout(session, layout));
+            }
+            
+            LOGGER.info("Node type layouts [nodeCount={}, mixinPolicy={}]:{}", NODE_COUNT, MIXIN_POLICY, report);
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    private static String runLayout(Session session, Layout layout) throws Exception {
+        StringBuilder report = new StringBuilder();
+        SqlCostTracker.reset();
+        
+        long[] storedBefore = getStoredSize();
+        LatencyRecorder creates = new LatencyRecorder();
+        long start = System.nanoTime();
+        
+        String root = layout.addRoot(session, layout.name().toLowerCase(Locale.US) + "-" + UUID.randomUUID());
+        List<String> files = new ArrayList<>(NODE_COUNT);
+        
+        for (int i = 0; i < NODE_COUNT; i++) {
+            int index = i;
+            long createStart = System.nanoTime();
+            
+            files.add(SqlCostTracker.track("create", () -> {
+                String folder = layout.addFolder(session, root, NodeHelper.getLeafParentRelativePath(index));
+                return layout.addFile(session, folder, NodeHelper.getLeafRelativePath(index), UUID.randomUUID().toString());
+            }));
+            
+            creates.record(System.nanoTime() - createStart);
+        }
+        
+        long createNanos = System.nanoTime() - start;
+        long[] storedAfter = getStoredSize();
+        
+        // the root, a folder and a file per index
+        long storedPerNode = (storedAfter[1] - storedBefore[1]) / (2 * NODE_COUNT + 1);
+        report.append(formatOperation(layout, "create", creates, createNanos, storedPerNode));
+        
+        LatencyRecorder updates = new LatencyRecorder();
+        start = System.nanoTime();
+        
+        for (String file : files) {
+            long updateStart = System.nanoTime();
+            SqlCostTracker.track("update", () -> layout.updateFile(session, file, UUID.randomUUID().toString()));
+            updates.record(System.nanoTime() - updateStart);
+        }
+        
+        report.append(formatOperation(layout, "update", updates, System.nanoTime() - start, -1));
+        
+        Session readSession = AbstractModeShapeClusterTest.createSession(repository);
+        LatencyRecorder reads = new LatencyRecorder();
+        start = System.nanoTime();
+        
+        try {
+            for (String file : files) {
+                long readStart = System.nanoTime();
+                String content = SqlCostTracker.track("read", () -> readSession.getNode(file)
+                        .getProperty(NodeHelper.NODE_CONTENT_PROPERTY).getString());
+                reads.record(System.nanoTime() - readStart);
+                
+                assertThat(content).isNotEmpty();
+            }
+        
+        } finally {
+            readSession.logout();
+        }
+        
+        report.append(formatOperation(layout, "read", reads, System.nanoTime() - start, -1));
+        
+        LOGGER.info("Stored documents [layout={}, before={}, after={}]", layout, storedBefore[0], storedAfter[0]);
+        return report.toString();
+    }
+    
+    /**
+     * Returns the number of stored documents and their total size.
+     */
+    private static long[] getStoredSize() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(AbstractModeShapeClusterTest.DB_URL,
+                AbstractModeShapeClusterTest.DB_USERNAME, AbstractModeShapeClusterTest.DB_PASSWORD);
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery(String.format(
+                        "SELECT COUNT(*), COALESCE(SUM(LENGTH(CONTENT)), 0) FROM %s", REPOSITORY_TABLE))) {
+            
+            resultSet.next();
+            return new long[] { resultSet.getLong(1), resultSet.getLong(2) };
+        }
+    }
+    
+    private static String formatOperation(Layout layout, String operation, LatencyRecorder recorder,
+            long elapsedNanos, long storedPerNode) {
+        
+        SqlCostTracker.OperationCost cost = SqlCostTracker.getCosts().get(operation);
+        double invocations = Math.max(1, recorder.getCount());
+        
+        return String.format(REPORT_FORMAT,
+                layout.name().toLowerCase(Locale.US) + " " + operation,
+                recorder.getCount(),
+                String.format("%.1f", recorder.getThroughput(elapsedNanos)),
+                String.format("%.2f", LatencyRecorder.toMillis(recorder.getMean())),
+                cost == null ? "-" : String.format("%.1f", cost.getStatements() / invocations),
+                cost == null ? "-" : String.format("%.0f", cost.getBytes() / invocations),
+                storedPerNode < 0 ? "-" : String.valueOf(storedPerNode));
+    }
+    
+    /**
+     * The compared ways to lay the tree out.
+     */
+    private enum Layout {
+        
+        MIXINS {
+            
+            @Override
+            String addRoot(Session session, String name) throws RepositoryException {
+                Node node = session.getRootNode().addNode(name);
+                node.addMixin(NodeHelper.MIXIN_VERSIONABLE);
+                node.addMixin(NodeHelper.MIXIN_LOCKABLE);
+                session.save();
+                
+                NodeHelper.checkinNode(node);
+                return node.getPath();
+            }
+            
+            @Override
+            String addFolder(Session session, String parent, String name) throws RepositoryException {
+                return NodeHelper.unsafeAddNode(session, parent, name, Optional.empty());
+            }
+            
+            @Override
+            String addFile(Session session, String parent, String name, String content) throws RepositoryException {
+                return NodeHelper.unsafeAddNode(session, parent, name, Optional.of(content));
+            }
+            
+            @Override
+            String updateFile(Session session, String file, String content) throws RepositoryException {
+                return NodeHelper.updateNode(session, file, content);
+            }
+        },
+        
+        LEAN {
+            
+            @Override
+            String addRoot(Session session, String name) throws RepositoryException {
+                return AppNodeTypes.addNode(session, "/", name, NodeKind.ROOT, Optional.empty(), MIXIN_POLICY);
+            }
+            
+            @Override
+            String addFolder(Session session, String parent, String name) throws RepositoryException {
+                return AppNodeTypes.addNode(session, parent, name, NodeKind.FOLDER, Optional.empty(), MIXIN_POLICY);
+            }
+            
+            @Override
+            String addFile(Session session, String parent, String name, String content) throws RepositoryException {
+                return AppNodeTypes.addNode(session, parent, name, NodeKind.FILE, Optional.of(content), MIXIN_POLICY);
+            }
+            
+            @Override
+            String updateFile(Session session, String file, String content) throws RepositoryException {
+                return AppNodeTypes.updateNode(session, file, content);
+            }
+        };
+        
+        abstract String addRoot(Session session, String name) throws RepositoryException;
+        
+        abstract String addFolder(Session session, String parent, String name) throws RepositoryException;
+        
+        abstract String addFile(Session session, String parent, String name, String content) throws RepositoryException;
+        
+        abstract String updateFile(Session session, String file, String content) throws RepositoryException;
+    }
+}
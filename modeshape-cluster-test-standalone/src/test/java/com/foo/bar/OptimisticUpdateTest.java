@@ -0,0 +1,248 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import javax.jcr.InvalidItemStateException;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.lock.LockException;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the plain, the locked and the optimistic updates of the leaf nodes, made in parallel
+ * on all the cluster members, under a low contention, i.e. the updates spread over all the leaf
+ * nodes, and under a high one, i.e. the updates of a few hot nodes. The locked and the optimistic
+ * updates are retried according to the {@link BackoffPolicy} and every retried attempt is counted
+ * as a conflict. The optimistic updates are verified not to lose any update, i.e. the revisions of
+ * the nodes, once replicated to another member, grow by the number of the successful updates.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code optimistic.operation.count} - the number of updates per strategy and contention, defaults to {@code 100}</li>
+ *   <li>{@code optimistic.thread.count} - the number of updating threads, defaults to {@code 4}</li>
+ *   <li>{@code optimistic.hot.node.count} - the number of the nodes updated under the high contention, defaults to {@code 2}</li>
+ *   <li>{@code backoff.max.attempts}, {@code backoff.initial.delay}, {@code backoff.max.delay} - the retries,
+ *       see {@link BackoffPolicy}</li>
+ * </ul>
+ */
+public class OptimisticUpdateTest extends AbstractModeShapeClusterTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(OptimisticUpdateTest.class);
+    
+    private static final int OPERATION_COUNT = Integer.valueOf(System.getProperty("optimistic.operation.count", "100"));
+    private static final int UPDATE_THREAD_COUNT = Integer.valueOf(System.getProperty("optimistic.thread.count", "4"));
+    private static final int HOT_NODE_COUNT = Integer.valueOf(System.getProperty("optimistic.hot.node.count", "2"));
+    
+    private static final BackoffPolicy BACKOFF_POLICY = BackoffPolicy.fromSystemProperties();
+    
+    private static final long REVISION_WAIT_DELAY_MILLIS = 100;
+    private static final long REVISION_WAIT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    
+    private static final String REPORT_FORMAT = "%-12s %-12s %8s %8s %10s %10s %10s %10s%n";
+    
+    @Test
+    public void backoffShouldGrowUpToMaxDelay() {
+        BackoffPolicy policy = new BackoffPolicy(5, 10, 50);
+        
+        assertThat(policy.canRetry(4)).isTrue();
+        assertThat(policy.canRetry(5)).isFalse();
+        
+        for (int i = 0; i < 1000; i++) {
+            assertThat(policy.getDelayMillis(1)).isBetween(0L, 10L);
+            assertThat(policy.getDelayMillis(2)).isBetween(0L, 20L);
+            assertThat(policy.getDelayMillis(10)).isBetween(0L, 50L);
+        }
+        
+        assertThat(BackoffPolicy.none().canRetry(1)).isFalse();
+        assertThat(BackoffPolicy.none().getDelayMillis(1)).isZero();
+    }
+    
+    @Test
+    public void revisionShouldGrowWithEveryUpdate() throws Exception {
+        String leafNode = createChildNodes(repositoryIterator.next(),
+                createParentNodes(repositoryIterator.next(), 1)).get(0);
+        
+        for (int i = 1; i <= 3; i++) {
+            Session session = createSession(repositoryIterator.next());
+            
+            try {
+                String content = UUID.randomUUID().toString();
+                
+                assertThat(NodeHelper.optimisticUpdateNode(session, leafNode, content, Optional.empty(),
+                        BackoffPolicy.none())).isEqualTo(leafNode);
+                
+                assertThat(NodeHelper.getRevision(session.getNode(leafNode))).isEqualTo(i);
+                assertThat(session.getNode(leafNode).getProperty(NodeHelper.NODE_CONTENT_PROPERTY).getString())
+                        .isEqualTo(content);
+            
+            } finally {
+                session.logout();
+            }
+        }
+    }
+    
+    @Test
+    public void compareUpdates() throws Exception {
+        List<String> leafNodes = createChildNodes(repositoryIterator.next(),
+                createParentNodes(repositoryIterator.next(), LEAF_NODE_COUNT));
+        
+        List<String> hotNodes = leafNodes.subList(0, Math.min(HOT_NODE_COUNT, leafNodes.size()));
+        
+        StringBuilder report = new StringBuilder(String.format("%n" + REPORT_FORMAT,
+                "contention", "strategy", "updates", "failed", "ops/s", "mean ms", "p99 ms", "conflicts"));
+        
+        Map<String, List<String>> contentionNodes = new LinkedHashMap<>();
+        contentionNodes.put("low", leafNodes);
+        contentionNodes.put("high", hotNodes);
+        
+        for (Map.Entry<String, List<String>> entry : contentionNodes.entrySet()) {
+            String contention = entry.getKey();
+            List<String> nodes = entry.getValue();
+            
+            report.append(runUpdates(contention, "plain", nodes, (repository, node) ->
+                    NodeHelper.getUpdateChildNodeCallable(repository, node)));
+            
+            report.append(runUpdates(contention, "locked", nodes, (repository, node) ->
+                    NodeHelper.getLockedUpdateNodeCallable(repository, node, Optional.empty(), BACKOFF_POLICY)));
+            
+            report.append(runUpdates(contention, "optimistic", nodes, (repository, node) ->
+                    NodeHelper.getOptimisticUpdateNodeCallable(repository, node, Optional.empty(),
+                            BACKOFF_POLICY)));
+        }
+        
+        LOGGER.info("Update strategies [leafNodeCount={}, hotNodeCount={}, operationCount={}, threadCount={}, "
+                + "backoff={}]:{}", leafNodes.size(), hotNodes.size(), OPERATION_COUNT, UPDATE_THREAD_COUNT,
+                BACKOFF_POLICY, report);
+    }
+    
+    private static String runUpdates(String contention, String strategy, List<String> nodes,
+            BiFunction<Repository, String, Callable<String>> updateFactory) throws Exception {
+        
+        LatencyRecorder recorder = new LatencyRecorder();
+        long[] revisions = getRevisions(nodes);
+        long conflicts = getConflictCount();
+        
+        ExecutorService executorService = ConcurrencyHelper.createExecutorService(UPDATE_THREAD_COUNT,
+                "update-" + strategy + "-");
+        
+        try {
+            List<Callable<String>> tasks = new ArrayList<>(OPERATION_COUNT);
+            
+            for (int i = 0; i < OPERATION_COUNT; i++) {
+                Callable<String> update = updateFactory.apply(repositoryIterator.next(), nodes.get(i % nodes.size()));
+                
+                tasks.add(() -> {
+                    long start = System.nanoTime();
+                    String updatedNode = update.call();
+                    
+                    recorder.record(System.nanoTime() - start);
+                    return updatedNode;
+                });
+            }
+            
+            long start = System.nanoTime();
+            int failed = 0;
+            
+            for (Future<String> updatedNode : executorService.invokeAll(tasks)) {
+                try {
+                    assertThat(nodes).contains(updatedNode.get());
+                
+                } catch (ExecutionException e) {
+                    LOGGER.debug("Failed to update the node [strategy={}]", strategy, e.getCause());
+                    failed++;
+                    
+                    if (strategy.equals("optimistic")) {
+                        assertThat(e.getCause()).isInstanceOfAny(InvalidItemStateException.class, LockException.class);
+                    }
+                }
+            }
+            
+            long elapsedNanos = System.nanoTime() - start;
+            
+            if (strategy.equals("optimistic")) {
+                assertThat(awaitRevisionGrowth(nodes, revisions, OPERATION_COUNT - failed))
+                        .isEqualTo(OPERATION_COUNT - failed);
+            }
+            
+            return String.format(REPORT_FORMAT, contention, strategy, OPERATION_COUNT, failed,
+                    String.format("%.1f", recorder.getThroughput(elapsedNanos)),
+                    String.format("%.2f", LatencyRecorder.toMillis(recorder.getMean())),
+                    String.format("%.2f", LatencyRecorder.toMillis(recorder.getPercentile(99))),
+                    getConflictCount() - conflicts);
+        
+        } finally {
+            ConcurrencyHelper.closeExecutorService(executorService, TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+    
+    /**
+     * Waits until the revisions of the nodes, read on another cluster member, grow by the expected
+     * number of updates or stop growing, and returns the growth.
+     */
+    private static long awaitRevisionGrowth(List<String> nodes, long[] revisions, long expectedGrowth)
+            throws RepositoryException, InterruptedException {
+        
+        long deadline = System.currentTimeMillis() + REVISION_WAIT_TIMEOUT_MILLIS;
+        
+        while (true) {
+            long[] updatedRevisions = getRevisions(nodes);
+            long growth = 0;
+            
+            for (int i = 0; i < nodes.size(); i++) {
+                growth += updatedRevisions[i] - revisions[i];
+            }
+            
+            if (growth >= expectedGrowth || System.currentTimeMillis() > deadline) {
+                return growth;
+            }
+            
+            Thread.sleep(REVISION_WAIT_DELAY_MILLIS);
+        }
+    }
+    
+    private static long[] getRevisions(List<String> nodes) throws RepositoryException {
+        Session session = createSession(repositoryIterator.next());
+        
+        try {
+            long[] revisions = new long[nodes.size()];
+            
+            for (int i = 0; i < nodes.size(); i++) {
+                revisions[i] = NodeHelper.getRevision(session.getNode(nodes.get(i)));
+            }
+            
+            return revisions;
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    /**
+     * Returns the number of the retried and the exhausted conflicts of both the locked and the
+     * optimistic updates so far.
+     */
+    private static long getConflictCount() {
+        return MetricsRegistry.counter(MetricsRegistry.LOCK_CONFLICT_METRIC, "").sum()
+                + MetricsRegistry.counter(MetricsRegistry.OPTIMISTIC_UPDATE_METRIC,
+                        MetricsRegistry.label("outcome", "conflict")).sum()
+                + MetricsRegistry.counter(MetricsRegistry.OPTIMISTIC_UPDATE_METRIC,
+                        MetricsRegistry.label("outcome", "exhausted")).sum();
+    }
+}
@@ -1,5 +1,17 @@
 package com.foo.bar;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
@@ -10,6 +22,7 @@ import org.junit.Test;
  * <ul>
  *   <li>How many direct child nodes can be added to a given node?</li>
  *   <li>Is there a node removal limitation, i.e. can we remove a node with lots of direct children?</li> 
+ *   <li>Does spreading the children over hashed buckets (see {@link BucketedPathLayout}) help?</li>
  * </ul> 
  *
  * Available system properties:
@@ -25,6 +38,9 @@ public class PerformanceTest extends AbstractModeShapeClusterTest {
 
     private static final int CREATE_CHILD_COUNT = Integer.valueOf(System.getProperty("performance.create.child.count", "10"));
     private static final int DELETE_CHILD_COUNT = Integer.valueOf(System.getProperty("performance.delete.child.count", "5"));
+    private static final int BUCKETED_THREAD_COUNT = 4;
+    private static final String RELATIVE_BUCKETED_ROOT_NODE_PATH = "bucketedRoot";
+    private static final String ABSOLUTE_BUCKETED_ROOT_NODE_PATH = "/" + RELATIVE_BUCKETED_ROOT_NODE_PATH;
 
     /**
      * Creates a lot of direct child nodes added to the application root.
@@ -55,4 +71,172 @@ public class PerformanceTest extends AbstractModeShapeClusterTest {
             session.logout();
         }
     }
+    
+    /**
+     * Creates the same number of children as {@link #createDirectChildren()} does, but spreads them
+     * over hashed buckets, then resolves them back on every cluster member.
+     * 
+     * @throws RepositoryException
+     *             if an error occurred
+     */
+    @Test
+    public void createBucketedChildren() throws RepositoryException {
+        BucketedPathLayout layout = new BucketedPathLayout(ABSOLUTE_BUCKETED_ROOT_NODE_PATH);
+        List<String> expectedNodes = new ArrayList<>(CREATE_CHILD_COUNT);
+        
+        Session session = RepositoryHelper.createSession(repositoryIterator.next());
+        try {
+            recreateBucketedRoot(session);
+            
+            for (int i = 0; i < CREATE_CHILD_COUNT; i++) {
+                expectedNodes.add(createBucketedChild(session, layout, NodeHelper.getLeafRelativePath(i)));
+            }
+        
+        } finally {
+            session.logout();
+        }
+        
+        assertBucketedChildren(layout, expectedNodes);
+    }
+    
+    /**
+     * The same as {@link #createBucketedChildren()}, except for the children being created in
+     * parallel on all the cluster members, so that the first writers of the buckets under the same
+     * parent compete for creating them.
+     * 
+     * @throws Exception
+     *             if an error occurred
+     */
+    @Test
+    public void createBucketedChildrenInParallel() throws Exception {
+        BucketedPathLayout layout = new BucketedPathLayout(ABSOLUTE_BUCKETED_ROOT_NODE_PATH);
+        
+        Session session = RepositoryHelper.createSession(repositoryIterator.next());
+        try {
+            recreateBucketedRoot(session);
+            awaitBucketedRoot(session.getNode(ABSOLUTE_BUCKETED_ROOT_NODE_PATH).getIdentifier());
+        
+        } finally {
+            session.logout();
+        }
+        
+        List<Callable<String>> tasks = new ArrayList<>(CREATE_CHILD_COUNT);
+        
+        for (int i = 0; i < CREATE_CHILD_COUNT; i++) {
+            Repository repository = repositoryIterator.next();
+            String childName = NodeHelper.getLeafRelativePath(i);
+            
+            tasks.add(() -> {
+                Session taskSession = RepositoryHelper.createSession(repository);
+                
+                try {
+                    return createBucketedChild(taskSession, layout, childName);
+                
+                } finally {
+                    taskSession.logout();
+                }
+            });
+        }
+        
+        ExecutorService executorService = ConcurrencyHelper.createExecutorService(BUCKETED_THREAD_COUNT,
+                "create-bucketed-parallel-");
+        
+        try {
+            List<String> expectedNodes = new ArrayList<>(CREATE_CHILD_COUNT);
+            
+            for (Future<String> childNode : executorService.invokeAll(tasks)) {
+                expectedNodes.add(childNode.get());
+            }
+            
+            assertBucketedChildren(layout, expectedNodes);
+        
+        } finally {
+            ConcurrencyHelper.closeExecutorService(executorService, TimeUnit.SECONDS.toMillis(60));
+        }
+    }
+    
+    private static void recreateBucketedRoot(Session session) throws RepositoryException {
+        if (session.nodeExists(ABSOLUTE_BUCKETED_ROOT_NODE_PATH)) {
+            session.getNode(ABSOLUTE_BUCKETED_ROOT_NODE_PATH).remove();
+        }
+        
+        session.getRootNode().addNode(RELATIVE_BUCKETED_ROOT_NODE_PATH).addMixin(NodeHelper.MIXIN_LOCKABLE);
+        session.save();
+    }
+    
+    /**
+     * Waits until every cluster member resolves the recreated root, so that none of them resolves
+     * the buckets of the removed one.
+     */
+    private static void awaitBucketedRoot(String identifier) throws RepositoryException, InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        
+        for (Repository repository : repositories) {
+            Session memberSession = RepositoryHelper.createSession(repository);
+            
+            try {
+                while (!hasBucketedRoot(memberSession, identifier) && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                    memberSession.refresh(false);
+                }
+                
+                assertThat(hasBucketedRoot(memberSession, identifier)).isTrue();
+            
+            } finally {
+                memberSession.logout();
+            }
+        }
+    }
+    
+    private static boolean hasBucketedRoot(Session session, String identifier) throws RepositoryException {
+        return session.nodeExists(ABSOLUTE_BUCKETED_ROOT_NODE_PATH)
+                && identifier.equals(session.getNode(ABSOLUTE_BUCKETED_ROOT_NODE_PATH).getIdentifier());
+    }
+    
+    private static String createBucketedChild(Session session, BucketedPathLayout layout, String childName)
+            throws RepositoryException {
+        
+        Node childNode = layout.getOrCreateBucket(session, childName).addNode(childName);
+        session.save();
+        
+        assertThat(layout.getChildName(childNode.getPath())).isEqualTo(childName);
+        return childNode.getPath();
+    }
+    
+    /**
+     * Verifies that every cluster member resolves all the children and that there are no same-name
+     * sibling buckets.
+     */
+    private static void assertBucketedChildren(BucketedPathLayout layout, List<String> expectedNodes)
+            throws RepositoryException {
+        
+        for (Repository repository : repositories) {
+            Session memberSession = RepositoryHelper.createSession(repository);
+            
+            try {
+                for (int i = 0; i < CREATE_CHILD_COUNT; i++) {
+                    assertThat(layout.findChild(memberSession, NodeHelper.getLeafRelativePath(i))).isPresent();
+                }
+                
+                List<String> actualNodes = new ArrayList<>();
+                for (Node childNode : layout.getChildren(memberSession)) {
+                    actualNodes.add(childNode.getPath());
+                }
+                
+                assertThat(actualNodes).containsOnlyElementsOf(expectedNodes).hasSameSizeAs(expectedNodes);
+                
+                List<String> buckets = new ArrayList<>();
+                NodeIterator iterator = memberSession.getNode(ABSOLUTE_BUCKETED_ROOT_NODE_PATH).getNodes();
+                
+                while (iterator.hasNext()) {
+                    buckets.add(iterator.nextNode().getName());
+                }
+                
+                assertThat(buckets).doesNotHaveDuplicates();
+            
+            } finally {
+                memberSession.logout();
+            }
+        }
+    }
 }
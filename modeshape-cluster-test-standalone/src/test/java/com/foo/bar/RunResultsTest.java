@@ -0,0 +1,165 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verifies that the {@link RunResults} survive the round trip through the results file and that
+ * the comparison of two runs tells the regressed metrics from the noise.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code results.directory} - the directory the results files are written to, defaults to
+ *   {@code ./target/results-test}</li>
+ * </ul>
+ */
+public class RunResultsTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(RunResultsTest.class);
+    
+    private static final Path RESULTS_DIRECTORY = Paths.get(System.getProperty("results.directory", "./target/results-test"));
+    
+    private static final double THRESHOLD = 0.1;
+    
+    @Test
+    public void resultsShouldBeWrittenAndRead() throws Exception {
+        RunResults results = createResults(100, 2, 1.0);
+        results.addOperation("read-cold", 50, 0, TimeUnit.MILLISECONDS.toNanos(100), createRecorder(50, 0.5));
+        results.addOperation("update", 10, 0, TimeUnit.MILLISECONDS.toNanos(100), createRecorder(10, 1.0));
+        
+        Path jsonFile = RESULTS_DIRECTORY.resolve("round-trip.json");
+        Path csvFile = results.write(jsonFile);
+        
+        RunResults read = RunResults.read(jsonFile);
+        
+        assertThat(read.getStartedAt()).isEqualTo(results.getStartedAt());
+        assertThat(read.getClusterSize()).isEqualTo(3);
+        assertThat(read.getConfiguration()).isEqualTo(results.getConfiguration());
+        assertThat(read.getEnvironment()).isEqualTo(results.getEnvironment());
+        
+        assertThat(read.getOperations()).extracting(RunResults.Operation::getName)
+                .containsExactly("update", "read-cold", "update#2");
+        
+        for (RunResults.Operation operation : results.getOperations()) {
+            RunResults.Operation actual = read.getOperation(operation.getName()).get();
+            
+            assertThat(actual.getCount()).isEqualTo(operation.getCount());
+            assertThat(actual.getFailedCount()).isEqualTo(operation.getFailedCount());
+            assertThat(actual.getThroughput()).isCloseTo(operation.getThroughput(), within(1e-9));
+            assertThat(actual.getP99Millis()).isCloseTo(operation.getP99Millis(), within(1e-9));
+        }
+        
+        // the throughput of the first update only counts the successful operations
+        assertThat(read.getOperation("update").get().getThroughput()).isCloseTo(98, within(1e-9));
+        
+        List<String> csvLines = Files.readAllLines(csvFile);
+        assertThat(csvLines).hasSize(4);
+        assertThat(csvLines.get(0)).startsWith("operation,count,failed,throughput_ops");
+        assertThat(csvLines.get(1)).startsWith("update,100,2,98.000,");
+    }
+    
+    @Test
+    public void identicalRunsShouldNotRegress() {
+        RunResults.Comparison comparison = RunResults.compare(createResults(100, 0, 1.0),
+                createResults(100, 0, 1.05), THRESHOLD);
+        
+        LOGGER.info("Comparison of the identical runs:\n{}", comparison.getReport());
+        
+        assertThat(comparison.isRegressed()).isFalse();
+        assertThat(comparison.getDifferences()).hasSize(RunResults.Metric.values().length);
+    }
+    
+    @Test
+    public void slowerRunShouldRegress() {
+        RunResults baseline = createResults(100, 0, 1.0);
+        RunResults current = createResults(100, 20, 1.5);
+        
+        RunResults.Comparison comparison = RunResults.compare(baseline, current, THRESHOLD);
+        
+        LOGGER.info("Comparison of the slower run:\n{}", comparison.getReport());
+        
+        assertThat(comparison.isRegressed()).isTrue();
+        assertThat(comparison.getRegressions()).extracting(RunResults.Difference::getMetric)
+                .containsExactly(RunResults.Metric.THROUGHPUT, RunResults.Metric.MEAN, RunResults.Metric.P50,
+                        RunResults.Metric.P90, RunResults.Metric.P99, RunResults.Metric.FAILURE_RATE);
+        
+        // the faster run does not regress, the other way round
+        assertThat(RunResults.compare(current, baseline, THRESHOLD).isRegressed()).isFalse();
+    }
+    
+    @Test
+    public void missingOperationShouldRegress() {
+        RunResults baseline = createResults(100, 0, 1.0);
+        baseline.addOperation("query", 1, 0, TimeUnit.MILLISECONDS.toNanos(10), createRecorder(1, 10));
+        
+        RunResults.Comparison comparison = RunResults.compare(baseline, createResults(100, 0, 1.0), THRESHOLD);
+        
+        assertThat(comparison.getRegressions()).isEmpty();
+        assertThat(comparison.getMissingOperations()).containsExactly("query");
+        assertThat(comparison.isRegressed()).isTrue();
+    }
+    
+    @Test
+    public void histogramShouldBoundPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        
+        // 98 fast operations of 3 ms, one of 40 ms and one of 70 ms
+        for (int i = 0; i < 98; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+        }
+        
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(40));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(70));
+        
+        RunResults.Operation operation = createResults(100, 0, 1.0).addOperation("soak-update", 100, 0,
+                TimeUnit.SECONDS.toNanos(10), histogram);
+        
+        assertThat(operation.getThroughput()).isCloseTo(10, within(1e-9));
+        assertThat(operation.getMeanMillis()).isCloseTo(4.04, within(1e-6));
+        assertThat(operation.getP50Millis()).isCloseTo(5, within(1e-9));
+        assertThat(operation.getP99Millis()).isCloseTo(50, within(1e-9));
+        assertThat(operation.getMaxMillis()).isCloseTo(70, within(1e-9));
+    }
+    
+    /**
+     * Creates the results of a run with a single update operation, which takes a second
+     * altogether, the latencies being the multiples of the given one.
+     */
+    private static RunResults createResults(int count, int failedCount, double latencyMillis) {
+        Map<String, String> configuration = new LinkedHashMap<>();
+        configuration.put("threadCount", "5");
+        configuration.put("keyChooser", "uniform");
+        
+        RunResults results = new RunResults(Instant.parse("2017-04-18T19:15:00Z"), 3, configuration,
+                Collections.singletonMap("java.version", System.getProperty("java.version")));
+        
+        results.addOperation("update", count, failedCount, TimeUnit.SECONDS.toNanos(1),
+                createRecorder(count - failedCount, latencyMillis));
+        
+        return results;
+    }
+    
+    private static LatencyRecorder createRecorder(int sampleCount, double latencyMillis) {
+        LatencyRecorder recorder = new LatencyRecorder();
+        
+        for (int i = 1; i <= sampleCount; i++) {
+            recorder.record((long) (i * latencyMillis * TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+        
+        return recorder;
+    }
+}
@@ -0,0 +1,245 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jcr.Repository;
+import javax.jcr.Session;
+import javax.jcr.lock.LockException;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verifies the distributions of the {@link KeyChooser key choosers} and compares the updates of
+ * the leaf nodes, made in parallel on all the cluster members, when the nodes are chosen uniformly
+ * and when a few of them take most of the updates. The updates are the ones of the [UPDATE] action
+ * by default. The locked updates, whose node is locked by another one, are retried after a short
+ * pause until the lock wait timeout and every attempt is counted as a lock conflict. The updates
+ * failing otherwise, e.g. because of a concurrent checkout of the same node, are counted as failed.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code skewed.operation.count} - the number of updates per chooser, defaults to {@code 200}</li>
+ *   <li>{@code skewed.thread.count} - the number of updating threads, defaults to {@code 4}</li>
+ *   <li>{@code skewed.choosers} - the comma separated compared choosers, defaults to
+ *   {@code uniform,zipfian:0.99,hotspot:0.9:0.05,latest:0.99}</li>
+ *   <li>{@code skewed.locked} - whether the nodes are locked while being updated, defaults to {@code false}</li>
+ * </ul>
+ */
+public class SkewedAccessTest extends AbstractModeShapeClusterTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(SkewedAccessTest.class);
+    
+    private static final int OPERATION_COUNT = Integer.valueOf(System.getProperty("skewed.operation.count", "200"));
+    private static final int UPDATE_THREAD_COUNT = Integer.valueOf(System.getProperty("skewed.thread.count", "4"));
+    private static final List<String> CHOOSERS = Arrays.asList(System.getProperty(
+            "skewed.choosers", "uniform,zipfian:0.99,hotspot:0.9:0.05,latest:0.99").split(","));
+    
+    private static final boolean LOCKED = Boolean.valueOf(System.getProperty("skewed.locked", "false"));
+    
+    private static final int SAMPLE_COUNT = 100_000;
+    private static final long LOCK_RETRY_DELAY_MILLIS = 10;
+    private static final long LOCK_WAIT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    
+    private static final String REPORT_FORMAT = "%-20s %8s %10s %8s %10s %10s %10s %12s%n";
+    
+    @Test
+    public void choosersShouldFollowTheirDistributions() {
+        int keyCount = 1000;
+        
+        int[] sequential = sample(KeyChooser.sequential(keyCount), keyCount);
+        assertThat(sequential).containsOnly(1);
+        
+        // the top 10% of the keys take about 10% of the uniform choices and most of the skewed ones
+        assertThat(getTopShare(sample(KeyChooser.uniform(keyCount), SAMPLE_COUNT), 0.1)).isLessThan(0.15);
+        assertThat(getTopShare(sample(KeyChooser.zipfian(keyCount, 0.99), SAMPLE_COUNT), 0.1)).isGreaterThan(0.6);
+        assertThat(getTopShare(sample(KeyChooser.hotspot(keyCount, 0.9, 0.1), SAMPLE_COUNT), 0.1)).isBetween(0.88, 0.92);
+        
+        KeyChooser latest = KeyChooser.latest(keyCount, 1.5);
+        for (int key = 0; key < keyCount; key++) {
+            latest.onWritten(key);
+        }
+        
+        latest.onWritten(7);
+        
+        int[] latestCounts = sample(latest, SAMPLE_COUNT);
+        assertThat(latestCounts[7]).isGreaterThan(latestCounts[keyCount - 1]);
+        assertThat(latestCounts[keyCount - 1]).isGreaterThan(latestCounts[keyCount - 2]);
+        assertThat(latestCounts[keyCount - 2]).isGreaterThan(latestCounts[0]);
+    }
+    
+    @Test
+    public void latestChooserShouldKeepPickingUnwrittenKeys() {
+        int keyCount = 1000;
+        
+        KeyChooser latest = KeyChooser.latest(keyCount, 1.5);
+        assertThat(Arrays.stream(sample(latest, SAMPLE_COUNT)).filter(count -> count > 0).count())
+                .isGreaterThan(keyCount * 9 / 10);
+        
+        latest.onWritten(7);
+        
+        // only rank 0 maps onto the single written key, the other ranks spread over the unwritten ones
+        int[] latestCounts = sample(latest, SAMPLE_COUNT);
+        assertThat(latestCounts[7]).isBetween(SAMPLE_COUNT / 4, SAMPLE_COUNT / 2);
+        assertThat(Arrays.stream(latestCounts).filter(count -> count > 0).count())
+                .isGreaterThan(keyCount * 9 / 10);
+        
+        boolean[] written = new boolean[keyCount];
+        int writtenCount = 0;
+        
+        for (int i = 0; i < keyCount; i++) {
+            int key = latest.nextKey();
+            latest.onWritten(key);
+            
+            if (!written[key]) {
+                written[key] = true;
+                writtenCount++;
+            }
+        }
+        
+        assertThat(writtenCount).isGreaterThan(keyCount / 20);
+    }
+    
+    @Test
+    public void compareUpdates() throws Exception {
+        List<String> leafNodes = createChildNodes(repositoryIterator.next(),
+                createParentNodes(repositoryIterator.next(), LEAF_NODE_COUNT));
+        
+        StringBuilder report = new StringBuilder(String.format("%n" + REPORT_FORMAT,
+                "chooser", "updates", "distinct", "failed", "ops/s", "mean ms", "p99 ms", "conflicts"));
+        
+        for (String name : CHOOSERS) {
+            report.append(runUpdates(KeyChooser.parse(name, leafNodes.size()), leafNodes));
+        }
+        
+        LOGGER.info("Skewed updates [leafNodeCount={}, operationCount={}, threadCount={}, locked={}]:{}",
+                leafNodes.size(), OPERATION_COUNT, UPDATE_THREAD_COUNT, LOCKED, report);
+    }
+    
+    private static String runUpdates(KeyChooser chooser, List<String> leafNodes) throws Exception {
+        LatencyRecorder recorder = new LatencyRecorder();
+        AtomicInteger conflicts = new AtomicInteger();
+        boolean[] updated = new boolean[leafNodes.size()];
+        
+        ExecutorService executorService = ConcurrencyHelper.createExecutorService(UPDATE_THREAD_COUNT, "skewed-update-");
+        
+        try {
+            List<Callable<String>> tasks = new ArrayList<>(OPERATION_COUNT);
+            
+            for (int i = 0; i < OPERATION_COUNT; i++) {
+                Repository repository = repositoryIterator.next();
+                
+                tasks.add(() -> {
+                    int key = chooser.nextKey();
+                    long start = System.nanoTime();
+                    String updatedNode = update(repository, leafNodes.get(key), conflicts);
+                    
+                    recorder.record(System.nanoTime() - start);
+                    chooser.onWritten(key);
+                    
+                    synchronized (updated) {
+                        updated[key] = true;
+                    }
+                    
+                    return updatedNode;
+                });
+            }
+            
+            long start = System.nanoTime();
+            int failed = 0;
+            
+            for (Future<String> updatedNode : executorService.invokeAll(tasks)) {
+                try {
+                    assertThat(leafNodes).contains(updatedNode.get());
+                
+                } catch (ExecutionException e) {
+                    LOGGER.debug("Failed to update the node [chooser={}]", chooser, e.getCause());
+                    failed++;
+                }
+            }
+            
+            long elapsedNanos = System.nanoTime() - start;
+            int distinct = 0;
+            
+            for (boolean nodeUpdated : updated) {
+                distinct += nodeUpdated ? 1 : 0;
+            }
+            
+            return String.format(REPORT_FORMAT, chooser, OPERATION_COUNT, distinct, failed,
+                    String.format("%.1f", recorder.getThroughput(elapsedNanos)),
+                    String.format("%.2f", LatencyRecorder.toMillis(recorder.getMean())),
+                    String.format("%.2f", LatencyRecorder.toMillis(recorder.getPercentile(99))),
+                    conflicts.get());
+        
+        } finally {
+            ConcurrencyHelper.closeExecutorService(executorService, TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+    
+    private static String update(Repository repository, String leafNode, AtomicInteger conflicts) throws Exception {
+        Session session = createSession(repository);
+        long deadline = System.currentTimeMillis() + LOCK_WAIT_TIMEOUT_MILLIS;
+        
+        try {
+            while (true) {
+                try {
+                    return LOCKED
+                            ? NodeHelper.safeUpdateNode(session, leafNode, UUID.randomUUID().toString())
+                            : NodeHelper.updateNode(session, leafNode, UUID.randomUUID().toString());
+                
+                } catch (LockException e) {
+                    conflicts.incrementAndGet();
+                    session.refresh(false);
+                    
+                    if (System.currentTimeMillis() > deadline) {
+                        throw e;
+                    }
+                    
+                    Thread.sleep(LOCK_RETRY_DELAY_MILLIS);
+                }
+            }
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    private static int[] sample(KeyChooser chooser, int sampleCount) {
+        int[] counts = new int[chooser.getKeyCount()];
+        
+        for (int i = 0; i < sampleCount; i++) {
+            counts[chooser.nextKey()]++;
+        }
+        
+        return counts;
+    }
+    
+    /**
+     * Returns the share of the choices taken by the given fraction of the most chosen keys.
+     */
+    private static double getTopShare(int[] counts, double keyFraction) {
+        int[] sorted = counts.clone();
+        Arrays.sort(sorted);
+        
+        long total = Arrays.stream(sorted).sum();
+        long top = 0;
+        
+        for (int i = sorted.length - 1; i >= sorted.length - (int) (sorted.length * keyFraction); i--) {
+            top += sorted[i];
+        }
+        
+        return (double) top / total;
+    }
+}
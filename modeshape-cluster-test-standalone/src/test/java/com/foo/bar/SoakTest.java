@@ -0,0 +1,90 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Session;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loops the updates of the leaf nodes, chosen by a {@link KeyChooser}, on all the cluster members
+ * via {@link SoakRunner} and reports the statistics of every interval along with the detected
+ * trends. The default duration only checks the mechanics, a real soak run takes hours, e.g.
+ * {@code -Dsoak.duration.seconds=14400 -Dsoak.interval.seconds=300}.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code soak.duration.seconds} - the duration of the run, defaults to {@code 60}</li>
+ *   <li>{@code soak.interval.seconds} - the duration of the reported interval, defaults to {@code 10}</li>
+ *   <li>{@code soak.key.chooser} - the {@link KeyChooser} of the updated nodes, defaults to {@code uniform}</li>
+ * </ul>
+ */
+public class SoakTest extends AbstractModeShapeClusterTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(SoakTest.class);
+    
+    private static final long DURATION_SECONDS = Long.valueOf(System.getProperty("soak.duration.seconds", "60"));
+    private static final long INTERVAL_SECONDS = Long.valueOf(System.getProperty("soak.interval.seconds", "10"));
+    private static final String KEY_CHOOSER = System.getProperty("soak.key.chooser", "uniform");
+    
+    private static final double TREND_THRESHOLD = 0.2;
+    
+    @Test
+    public void trendShouldBeRelativeToMean() {
+        assertThat(SoakRunner.getRelativeTrend(new double[] { 100, 100, 100, 100 })).isZero();
+        assertThat(SoakRunner.getRelativeTrend(new double[] { 100, 150, 200 })).isCloseTo(0.67, within(0.01));
+        assertThat(SoakRunner.getRelativeTrend(new double[] { 200, 150, 100 })).isCloseTo(-0.67, within(0.01));
+        
+        // the noise around a flat line is not a trend
+        assertThat(SoakRunner.getRelativeTrend(new double[] { 100, 120, 90, 110, 95, 105, 100 }))
+                .isBetween(-TREND_THRESHOLD, TREND_THRESHOLD);
+        
+        assertThat(SoakRunner.getRelativeTrend(new double[] { 5 })).isZero();
+        assertThat(SoakRunner.getRelativeTrend(new double[] { 0, 0, 0 })).isZero();
+    }
+    
+    @Test
+    public void soakUpdates() throws Exception {
+        List<String> leafNodes = createChildNodes(repositoryIterator.next(),
+                createParentNodes(repositoryIterator.next(), LEAF_NODE_COUNT));
+        
+        KeyChooser chooser = KeyChooser.parse(KEY_CHOOSER, leafNodes.size());
+        
+        SoakRunner runner = new SoakRunner(TimeUnit.SECONDS.toMillis(DURATION_SECONDS),
+                TimeUnit.SECONDS.toMillis(INTERVAL_SECONDS), repositories.size(), TREND_THRESHOLD);
+        
+        List<SoakRunner.Interval> intervals = runner.run(() -> {
+            int key = chooser.nextKey();
+            Session session = createSession(repositoryIterator.next());
+            
+            try {
+                NodeHelper.updateNode(session, leafNodes.get(key), UUID.randomUUID().toString());
+                chooser.onWritten(key);
+                
+                return null;
+            
+            } finally {
+                session.logout();
+            }
+        
+        }, interval -> LOGGER.info("Soak interval {}", interval));
+        
+        List<String> warnings = runner.detectTrends(intervals);
+        
+        assertThat(intervals).hasSize((int) ((DURATION_SECONDS + INTERVAL_SECONDS - 1) / INTERVAL_SECONDS));
+        assertThat(intervals).allMatch(interval -> interval.getOperationCount() > 0);
+        
+        LOGGER.info("Soak run [duration={} s, interval={} s, chooser={}, operations={}, failures={}]: {}",
+                DURATION_SECONDS, INTERVAL_SECONDS, chooser,
+                intervals.stream().mapToInt(SoakRunner.Interval::getOperationCount).sum(),
+                intervals.stream().mapToLong(SoakRunner.Interval::getFailureCount).sum(),
+                warnings.isEmpty() ? "no trends detected" : warnings);
+    }
+}
@@ -0,0 +1,164 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+
+import javax.jcr.Repository;
+import javax.jcr.Session;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.modeshape.jcr.ModeShapeEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Accounts the SQL round trips, rows and bytes per repository operation by deploying the
+ * repositories via {@link AccountingDriver}, so that the DB cost of every operation becomes
+ * visible. The report is logged at the end of the run. The streams and the large objects are
+ * verified to be accounted as well.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code sql.cost.configuration.file} - the repository configuration file, which uses {@link AccountingDriver},
+ *       defaults to {@code /test-repository-h2-accounting.json}</li>
+ *   <li>{@code sql.cost.operation.count} - the number of invocations of every operation, defaults to {@code 20}</li>
+ * </ul>
+ */
+public class SqlCostTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(SqlCostTest.class);
+    
+    private static final String CONFIGURATION_FILE = System.getProperty(
+            "sql.cost.configuration.file",
+            SqlCostTest.class.getResource("/test-repository-h2-accounting.json").getPath());
+    
+    private static final int OPERATION_COUNT = Integer.valueOf(System.getProperty("sql.cost.operation.count", "20"));
+    
+    private static ModeShapeEngine engine;
+    private static Repository repository;
+    
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        engine = new ModeShapeEngine();
+        engine.start();
+        
+        repository = AbstractModeShapeClusterTest.createRepository(engine, CONFIGURATION_FILE);
+    }
+    
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        LOGGER.info("SQL cost per operation [operationCount={}]:{}", OPERATION_COUNT, SqlCostTracker.getReport());
+        
+        if (engine != null) {
+            engine.shutdown().get();
+        }
+    }
+    
+    @Test
+    public void accountOperations() throws Exception {
+        Session session = AbstractModeShapeClusterTest.createSession(repository);
+        
+        try {
+            String parentNode = NodeHelper.createApplicationRoot(session);
+            List<String> childNodes = new ArrayList<>(OPERATION_COUNT);
+            
+            SqlCostTracker.reset();
+            
+            for (int i = 0; i < OPERATION_COUNT; i++) {
+                String childNode = "cost-" + UUID.randomUUID();
+                
+                childNodes.add(SqlCostTracker.track("unsafeAddNode",
+                        () -> NodeHelper.unsafeAddNode(session, parentNode, childNode, Optional.of(childNode))));
+            }
+            
+            for (String childNode : childNodes) {
+                SqlCostTracker.track("updateNode",
+                        () -> NodeHelper.updateNode(session, childNode, UUID.randomUUID().toString()));
+                
+                SqlCostTracker.track("safeUpdateNode",
+                        () -> NodeHelper.safeUpdateNode(session, childNode, UUID.randomUUID().toString()));
+            }
+            
+            Session readSession = AbstractModeShapeClusterTest.createSession(repository);
+            
+            try {
+                for (String childNode : childNodes) {
+                    SqlCostTracker.track("getNode", () -> readSession.getNode(childNode).getProperty(
+                            NodeHelper.NODE_CONTENT_PROPERTY).getString());
+                }
+            
+            } finally {
+                readSession.logout();
+            }
+            
+            for (String operation : new String[] { "unsafeAddNode", "updateNode", "safeUpdateNode" }) {
+                SqlCostTracker.OperationCost cost = SqlCostTracker.getCosts().get(operation);
+                
+                assertThat(cost).as(operation).isNotNull();
+                assertThat(cost.getInvocations()).as(operation).isEqualTo(OPERATION_COUNT);
+                assertThat(cost.getStatements()).as(operation).isGreaterThanOrEqualTo(OPERATION_COUNT);
+            }
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    @Test
+    public void streamsShouldBeAccounted() throws Exception {
+        byte[] content = new byte[4096];
+        String text = UUID.randomUUID().toString();
+        
+        try (Connection connection = new AccountingDriver().connect(AccountingDriver.URL_PREFIX
+                + "jdbc:h2:mem:accounting", new Properties())) {
+            
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE streams (content BLOB, text CLOB)");
+            }
+            
+            SqlCostTracker.track("writeStreams", () -> {
+                try (PreparedStatement statement = connection.prepareStatement("INSERT INTO streams VALUES (?, ?)")) {
+                    statement.setBinaryStream(1, new ByteArrayInputStream(content), (long) content.length);
+                    statement.setCharacterStream(2, new StringReader(text));
+                    
+                    return statement.executeUpdate();
+                }
+            });
+            
+            SqlCostTracker.track("readStreams", () -> {
+                try (Statement statement = connection.createStatement();
+                        ResultSet resultSet = statement.executeQuery("SELECT content, text FROM streams")) {
+                    
+                    assertThat(resultSet.next()).isTrue();
+                    
+                    try (InputStream stream = resultSet.getBinaryStream(1)) {
+                        while (stream.read(new byte[512]) >= 0) {
+                            // the content is only counted
+                        }
+                    }
+                    
+                    return resultSet.getClob(2).getSubString(1, text.length());
+                }
+            });
+        }
+        
+        long expectedBytes = content.length + text.length();
+        
+        assertThat(SqlCostTracker.getCosts().get("writeStreams").getBytes()).isGreaterThanOrEqualTo(expectedBytes);
+        assertThat(SqlCostTracker.getCosts().get("readStreams").getBytes()).isGreaterThanOrEqualTo(expectedBytes);
+    }
+}
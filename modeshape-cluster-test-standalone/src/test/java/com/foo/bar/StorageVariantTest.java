@@ -0,0 +1,292 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.jcr.Binary;
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.junit.Test;
+import org.modeshape.jcr.ModeShapeEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.foo.bar.RepositoryConfigurationGenerator.BinaryStorage;
+import com.foo.bar.RepositoryConfigurationGenerator.Persistence;
+
+/**
+ * Runs the same workload against every storage variant produced by
+ * {@link RepositoryConfigurationGenerator}, so that the cost of keeping the binaries in the same
+ * database as the documents becomes visible. The workloads are:
+ * <ul>
+ *   <li>{@code write} - every task adds a node with a binary payload under its own parent node</li>
+ *   <li>{@code read} - every task reads the payload of its own node</li>
+ *   <li>{@code update} - every task replaces the payload of its own node</li>
+ * </ul>
+ * The variants, which cannot be clustered (see {@link RepositoryConfigurationGenerator#isClusterable()}),
+ * run a single member.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code storage.variants} - the comma-separated variants in the {@code persistence/binaryStorage[/cacheSize]} form,
+ *       defaults to {@code db/database,db/file,db/transient,file/database,file/file}</li>
+ *   <li>{@code storage.cluster.size} - the number of members of the clusterable variants, defaults to {@code 2}</li>
+ *   <li>{@code storage.thread.count} - the number of concurrent tasks, defaults to {@code 4}</li>
+ *   <li>{@code storage.operation.count} - the number of tasks per workload, defaults to {@code 40}</li>
+ *   <li>{@code storage.payload.size} - the size of a binary payload in bytes, defaults to {@code 16384}</li>
+ * </ul>
+ */
+public class StorageVariantTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(StorageVariantTest.class);
+    
+    private static final List<String> VARIANTS = Arrays.stream(
+            System.getProperty("storage.variants", "db/database,db/file,db/transient,file/database,file/file").split(","))
+            .map(String::trim)
+            .collect(Collectors.toList());
+    
+    private static final int CLUSTER_SIZE = Integer.valueOf(System.getProperty("storage.cluster.size", "2"));
+    private static final int THREAD_COUNT = Integer.valueOf(System.getProperty("storage.thread.count", "4"));
+    private static final int OPERATION_COUNT = Integer.valueOf(System.getProperty("storage.operation.count", "40"));
+    private static final int PAYLOAD_SIZE = Integer.valueOf(System.getProperty("storage.payload.size", "16384"));
+    
+    private static final String RELATIVE_ROOT_NODE_PATH = "storageVariants";
+    private static final String PAYLOAD_PROPERTY = "payload";
+    
+    private static final String REPORT_FORMAT = "%-26s %7s %-8s %6s %7s %12s %10s %10s %10s%n";
+    
+    @Test
+    public void compareStorageVariants() throws Exception {
+        StringBuilder report = new StringBuilder(String.format("%n" + REPORT_FORMAT,
+                "variant", "members", "workload", "ops", "errors", "throughput/s", "p50 ms", "p99 ms", "max ms"));
+        
+        for (String variant : VARIANTS) {
+            RepositoryConfigurationGenerator generator = parseVariant(variant);
+            int clusterSize = generator.isClusterable() ? CLUSTER_SIZE : 1;
+            
+            ModeShapeEngine engine = new ModeShapeEngine();
+            engine.start();
+            
+            try {
+                List<Repository> repositories = new ArrayList<>(clusterSize);
+                for (int i = 0; i < clusterSize; i++) {
+                    repositories.add(AbstractModeShapeClusterTest.createRepository(engine,
+                            AbstractModeShapeClusterTest.REPOSITORY_CONFIGURATION_FILE, generator));
+                }
+                
+                AbstractModeShapeClusterTest.checkConnectivity(repositories.toArray(new Repository[clusterSize]));
+                CircularRepositoryIterator iterator = new CircularRepositoryIterator(repositories);
+                
+                List<String> parentNodes = createParentNodes(iterator.next());
+                String prefix = String.format("%-26s %7s ", generator.getVariantName(), clusterSize);
+                
+                report.append(prefix).append(runWorkload(generator, "write", writeTasks(iterator, parentNodes)));
+                report.append(prefix).append(runWorkload(generator, "read", readTasks(iterator, parentNodes)));
+                report.append(prefix).append(runWorkload(generator, "update", writeTasks(iterator, parentNodes)));
+            
+            } finally {
+                engine.shutdown().get();
+            }
+            
+            LOGGER.info("Storage variant completed [variant={}]", generator.getVariantName());
+        }
+        
+        LOGGER.info("Storage variants [threadCount={}, operationCount={}, payloadSize={}]:{}",
+                THREAD_COUNT, OPERATION_COUNT, PAYLOAD_SIZE, report);
+    }
+    
+    private static RepositoryConfigurationGenerator parseVariant(String variant) {
+        String[] parts = variant.split("/");
+        
+        if (parts.length < 2 || parts.length > 3) {
+            throw new IllegalArgumentException(String.format("Invalid storage variant [%s]", variant));
+        }
+        
+        return new RepositoryConfigurationGenerator(
+                Persistence.fromTypeName(parts[0]),
+                BinaryStorage.fromTypeName(parts[1]),
+                parts.length == 3 ? Optional.of(Integer.valueOf(parts[2])) : Optional.empty(),
+                Paths.get("target", "storage", UUID.randomUUID().toString()));
+    }
+    
+    private static List<String> createParentNodes(Repository repository) throws RepositoryException {
+        Session session = AbstractModeShapeClusterTest.createSession(repository);
+        
+        try {
+            Node root = session.nodeExists("/" + RELATIVE_ROOT_NODE_PATH)
+                    ? session.getNode("/" + RELATIVE_ROOT_NODE_PATH)
+                    : session.getRootNode().addNode(RELATIVE_ROOT_NODE_PATH);
+            
+            Node run = root.addNode("run-" + UUID.randomUUID());
+            List<String> parentNodes = new ArrayList<>(OPERATION_COUNT);
+            
+            for (int i = 0; i < OPERATION_COUNT; i++) {
+                parentNodes.add(run.addNode(NodeHelper.getLeafParentRelativePath(i)).getPath());
+            }
+            
+            session.save();
+            return parentNodes;
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    private static List<Callable<String>> writeTasks(CircularRepositoryIterator iterator, List<String> parentNodes) {
+        List<Callable<String>> tasks = new ArrayList<>(parentNodes.size());
+        
+        for (String parentNode : parentNodes) {
+            Repository repository = iterator.next();
+            
+            tasks.add(() -> {
+                Session session = AbstractModeShapeClusterTest.createSession(repository);
+                
+                try {
+                    Node parent = session.getNode(parentNode);
+                    Node child = parent.hasNode(PAYLOAD_PROPERTY)
+                            ? parent.getNode(PAYLOAD_PROPERTY)
+                            : parent.addNode(PAYLOAD_PROPERTY);
+                    
+                    Binary binary = session.getValueFactory().createBinary(createPayload());
+                    
+                    try {
+                        child.setProperty(NodeHelper.NODE_CONTENT_PROPERTY, UUID.randomUUID().toString());
+                        child.setProperty(PAYLOAD_PROPERTY, binary);
+                        session.save();
+                    
+                    } finally {
+                        binary.dispose();
+                    }
+                    
+                    return child.getPath();
+                
+                } finally {
+                    session.logout();
+                }
+            });
+        }
+        
+        return tasks;
+    }
+    
+    private static List<Callable<String>> readTasks(CircularRepositoryIterator iterator, List<String> parentNodes) {
+        List<Callable<String>> tasks = new ArrayList<>(parentNodes.size());
+        
+        for (String parentNode : parentNodes) {
+            Repository repository = iterator.next();
+            
+            tasks.add(() -> {
+                Session session = AbstractModeShapeClusterTest.createSession(repository);
+                
+                try {
+                    Node child = session.getNode(parentNode + "/" + PAYLOAD_PROPERTY);
+                    Binary binary = child.getProperty(PAYLOAD_PROPERTY).getBinary();
+                    
+                    try (InputStream stream = binary.getStream()) {
+                        long size = 0;
+                        byte[] buffer = new byte[8192];
+                        
+                        for (int read = stream.read(buffer); read != -1; read = stream.read(buffer)) {
+                            size += read;
+                        }
+                        
+                        assertThat(size).isEqualTo(PAYLOAD_SIZE);
+                    
+                    } finally {
+                        binary.dispose();
+                    }
+                    
+                    return child.getPath();
+                
+                } finally {
+                    session.logout();
+                }
+            });
+        }
+        
+        return tasks;
+    }
+    
+    private static InputStream createPayload() {
+        // random, so that the binaries are not deduplicated by their hash
+        byte[] payload = new byte[PAYLOAD_SIZE];
+        new Random().nextBytes(payload);
+        
+        return new ByteArrayInputStream(payload);
+    }
+    
+    /**
+     * Runs the tasks of the workload and returns its report row, failing if any of the tasks has
+     * failed, as the throughput of a failing variant would be meaningless.
+     */
+    private static String runWorkload(RepositoryConfigurationGenerator generator, String workload,
+            List<Callable<String>> tasks) throws InterruptedException {
+        
+        LatencyRecorder recorder = new LatencyRecorder();
+        AtomicInteger errorCount = new AtomicInteger();
+        List<Callable<String>> timedTasks = new ArrayList<>(tasks.size());
+        
+        for (Callable<String> task : tasks) {
+            timedTasks.add(() -> {
+                long start = System.nanoTime();
+                
+                try {
+                    return task.call();
+                
+                } catch (Exception | AssertionError e) {
+                    LOGGER.warn("The [{}] task failed [variant={}]", workload, generator.getVariantName(), e);
+                    errorCount.incrementAndGet();
+                    
+                    return null;
+                
+                } finally {
+                    recorder.record(System.nanoTime() - start);
+                }
+            });
+        }
+        
+        ExecutorService executorService = ConcurrencyHelper.createExecutorService(THREAD_COUNT, "storage-" + workload + "-");
+        long elapsed;
+        
+        try {
+            long start = System.nanoTime();
+            List<Future<String>> futures = executorService.invokeAll(timedTasks);
+            elapsed = System.nanoTime() - start;
+            
+            assertThat(futures).hasSize(tasks.size());
+            assertThat(errorCount.get())
+                    .as("The failed [%s] tasks of the [%s] variant", workload, generator.getVariantName())
+                    .isZero();
+        
+        } finally {
+            ConcurrencyHelper.closeExecutorService(executorService, TimeUnit.SECONDS.toMillis(30));
+        }
+        
+        return String.format("%-8s %6s %7s %12s %10s %10s %10s%n",
+                workload,
+                recorder.getCount(),
+                errorCount.get(),
+                String.format("%.2f", (recorder.getCount() - errorCount.get()) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed),
+                String.format("%.1f", LatencyRecorder.toMillis(recorder.getPercentile(50))),
+                String.format("%.1f", LatencyRecorder.toMillis(recorder.getPercentile(99))),
+                String.format("%.1f", LatencyRecorder.toMillis(recorder.getMax())));
+    }
+}
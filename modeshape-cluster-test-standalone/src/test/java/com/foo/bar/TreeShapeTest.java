@@ -0,0 +1,161 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Repository;
+import javax.jcr.Session;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.foo.bar.AppNodeTypes.MixinPolicy;
+import com.foo.bar.TreeShapeGenerator.FanOut;
+import com.foo.bar.TreeShapeGenerator.GeneratedTree;
+
+/**
+ * Verifies the shape of the trees planned by {@link TreeShapeGenerator}, then generates a tree
+ * on one cluster member and runs the read and the update workloads against its files on the
+ * others, the read latency being reported per level. The shape of the generated tree is set by
+ * the system properties of {@link TreeShapeGenerator}, e.g. {@code -Dtree.depth=8
+ * -Dtree.fanout=zipf:20:1.2} for a deep and uneven one.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code tree.mixin.policy} - the {@link MixinPolicy} of the generated nodes, defaults to {@code files}</li>
+ * </ul>
+ */
+public class TreeShapeTest extends AbstractModeShapeClusterTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(TreeShapeTest.class);
+    
+    private static final String TREE_ROOT_NODE_PATH = "/treeRoot";
+    private static final MixinPolicy MIXIN_POLICY = MixinPolicy.fromName(System.getProperty("tree.mixin.policy", "files"));
+    
+    @Test
+    public void planShouldFollowTheShape() {
+        GeneratedTree complete = new TreeShapeGenerator(3, Collections.singletonList(FanOut.fixed(3)), 39, 1)
+                .plan(TREE_ROOT_NODE_PATH);
+        
+        assertThat(complete.getDepth()).isEqualTo(3);
+        assertThat(complete.getNodes()).hasSize(39).doesNotHaveDuplicates();
+        assertThat(complete.getLeaves()).hasSize(27).containsExactlyElementsOf(complete.getNodesAtLevel(3));
+        assertThat(complete.getNodesAtLevel(1)).containsExactly(
+                TREE_ROOT_NODE_PATH + "/folder-0", TREE_ROOT_NODE_PATH + "/folder-1", TREE_ROOT_NODE_PATH + "/folder-2");
+        
+        // the node count is reached before the last level is complete, the rest are files
+        GeneratedTree truncated = new TreeShapeGenerator(5, FanOut.parseList("fixed:2,fixed:4"), 20, 1)
+                .plan(TREE_ROOT_NODE_PATH);
+        
+        assertThat(truncated.getNodes()).hasSize(20);
+        assertThat(truncated.getNodesAtLevel(1)).hasSize(2);
+        assertThat(truncated.getNodesAtLevel(2)).hasSize(8);
+        assertThat(truncated.getNodesAtLevel(3)).hasSize(10);
+        assertThat(truncated.getLeaves()).hasSize(10 + 8 - 3);
+        
+        TreeShapeGenerator skewed = new TreeShapeGenerator(6, Collections.singletonList(FanOut.zipf(20, 1.2)), 1000, 7);
+        GeneratedTree tree = skewed.plan(TREE_ROOT_NODE_PATH);
+        
+        assertThat(tree.getNodes()).hasSize(1000).isEqualTo(skewed.plan(TREE_ROOT_NODE_PATH).getNodes());
+        assertThat(tree.getMaxFanOut()).isLessThanOrEqualTo(20);
+        assertThat(tree.getDepth()).isLessThanOrEqualTo(6);
+        
+        for (String node : tree.getNodesAtLevel(tree.getDepth())) {
+            assertThat(GeneratedTree.getLevel(TREE_ROOT_NODE_PATH, node)).isEqualTo(tree.getDepth());
+        }
+        
+        LOGGER.info("Planned tree {}", tree.describe());
+    }
+    
+    @Test
+    public void runWorkloadsAgainstGeneratedTree() throws Exception {
+        Repository writer = repositoryIterator.next();
+        Repository reader = repositoryIterator.next();
+        
+        TreeShapeGenerator generator = TreeShapeGenerator.fromSystemProperties();
+        
+        long start = System.nanoTime();
+        GeneratedTree tree = generator.generate(writer, TREE_ROOT_NODE_PATH, MIXIN_POLICY, THREAD_COUNT);
+        long generationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        
+        assertThat(tree.getNodes()).hasSize(generator.getNodeCount());
+        
+        Map<Integer, LatencyRecorder> reads = new TreeMap<>();
+        Session session = createSession(reader);
+        
+        try {
+            for (String node : tree.getNodes()) {
+                long readStart = System.nanoTime();
+                assertThat(session.nodeExists(node)).isTrue();
+                
+                reads.computeIfAbsent(GeneratedTree.getLevel(TREE_ROOT_NODE_PATH, node), level -> new LatencyRecorder())
+                        .record(System.nanoTime() - readStart);
+            }
+            
+            assertThat(getContentProperty(session, tree.getLeaves())).doesNotContainNull();
+        
+        } finally {
+            session.logout();
+        }
+        
+        LatencyRecorder updates = new LatencyRecorder();
+        List<String> updatedNodes = new ArrayList<>();
+        ExecutorService executorService = ConcurrencyHelper.createExecutorService(THREAD_COUNT, "tree-shape-update-");
+        
+        try {
+            List<Callable<String>> tasks = new ArrayList<>();
+            
+            for (String leaf : tree.getLeaves()) {
+                Repository repository = repositoryIterator.next();
+                Callable<String> update = AppNodeTypes.getUpdateNodeCallable(repository, leaf, Optional.empty());
+                
+                tasks.add(() -> {
+                    long updateStart = System.nanoTime();
+                    String updatedNode = update.call();
+                    updates.record(System.nanoTime() - updateStart);
+                    
+                    return updatedNode;
+                });
+            }
+            
+            start = System.nanoTime();
+            
+            for (Future<String> updatedNode : executorService.invokeAll(tasks)) {
+                updatedNodes.add(updatedNode.get());
+            }
+        
+        } finally {
+            ConcurrencyHelper.closeExecutorService(executorService, TimeUnit.SECONDS.toMillis(30));
+        }
+        
+        long updateNanos = System.nanoTime() - start;
+        assertThat(updatedNodes).containsExactlyElementsOf(tree.getLeaves());
+        
+        StringBuilder report = new StringBuilder();
+        
+        for (Map.Entry<Integer, LatencyRecorder> entry : reads.entrySet()) {
+            report.append(String.format("%n  level %s: reads=%s, mean=%.3f ms, p99=%.3f ms",
+                    entry.getKey(), entry.getValue().getCount(),
+                    LatencyRecorder.toMillis(entry.getValue().getMean()),
+                    LatencyRecorder.toMillis(entry.getValue().getPercentile(99))));
+        }
+        
+        LOGGER.info("Generated tree {} of {} in [{}] ms, updated [{}] files at [{}] ops/s (mean={} ms, p99={} ms), read latency:{}",
+                tree.describe(), generator.getFanOuts(), generationMillis, updates.getCount(),
+                String.format("%.1f", updates.getThroughput(updateNanos)),
+                String.format("%.2f", LatencyRecorder.toMillis(updates.getMean())),
+                String.format("%.2f", LatencyRecorder.toMillis(updates.getPercentile(99))),
+                report);
+    }
+}
@@ -0,0 +1,121 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the replication visibility lag per member pair (see {@link VisibilityProbe}), once on an
+ * idle cluster and once while the leaf nodes are being updated in the background.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code visibility.round.count} - the number of writes per member, defaults to {@code 20}</li>
+ *   <li>{@code visibility.load.thread.count} - the number of background update threads, defaults to {@code 4}</li>
+ *   <li>{@code visibility.timeout} - the number of seconds to wait for a single value to become visible, defaults to {@code 30}</li>
+ * </ul>
+ */
+public class VisibilityProbeTest extends AbstractModeShapeClusterTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(VisibilityProbeTest.class);
+    
+    private static final int ROUND_COUNT = Integer.valueOf(System.getProperty("visibility.round.count", "20"));
+    private static final int LOAD_THREAD_COUNT = Integer.valueOf(System.getProperty("visibility.load.thread.count", "4"));
+    private static final long TIMEOUT_SECONDS = Long.valueOf(System.getProperty("visibility.timeout", "30"));
+    
+    @Test
+    public void measureIdleVisibilityLag() throws Exception {
+        Assume.assumeTrue("At least two cluster members are required", repositories.size() > 1);
+        
+        report("idle", new VisibilityProbe(repositories, TIMEOUT_SECONDS, TimeUnit.SECONDS).run(ROUND_COUNT));
+    }
+    
+    @Test
+    public void measureLoadedVisibilityLag() throws Exception {
+        Assume.assumeTrue("At least two cluster members are required", repositories.size() > 1);
+        
+        List<String> parentNodes = createParentNodes(repositoryIterator.next(), LEAF_NODE_COUNT);
+        createChildNodes(repositoryIterator.next(), parentNodes);
+        
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger updateCount = new AtomicInteger();
+        AtomicInteger failureCount = new AtomicInteger();
+        ExecutorService executorService = ConcurrencyHelper.createExecutorService(LOAD_THREAD_COUNT, "visibility-load-");
+        
+        try {
+            for (int i = 0; i < LOAD_THREAD_COUNT; i++) {
+                List<Integer> leaves = new ArrayList<>();
+                for (int leaf = i; leaf < LEAF_NODE_COUNT; leaf += LOAD_THREAD_COUNT) {
+                    leaves.add(leaf);
+                }
+                
+                executorService.submit(() -> {
+                    while (running.get()) {
+                        for (int leaf : leaves) {
+                            try {
+                                NodeHelper.getUpdateChildNodeCallable(repositoryIterator.next(),
+                                        NodeHelper.getLeafAbsolutePath(leaf)).call();
+                                
+                                updateCount.incrementAndGet();
+                            
+                            } catch (Exception e) {
+                                LOGGER.warn("Background update failed [leaf={}]", leaf, e);
+                                failureCount.incrementAndGet();
+                            }
+                        }
+                    }
+                    
+                    return null;
+                });
+            }
+            
+            report("loaded", new VisibilityProbe(repositories, TIMEOUT_SECONDS, TimeUnit.SECONDS).run(ROUND_COUNT));
+        
+        } finally {
+            running.set(false);
+            ConcurrencyHelper.closeExecutorService(executorService, TimeUnit.SECONDS.toMillis(60));
+        }
+        
+        LOGGER.info("Background load completed [threadCount={}, updateCount={}, failureCount={}]",
+                LOAD_THREAD_COUNT, updateCount.get(), failureCount.get());
+        
+        // every thread updates its own leaves, so a failure means the lags have been measured under less load
+        assertThat(failureCount.get()).isZero();
+        assertThat(updateCount.get()).isPositive();
+    }
+    
+    private static void report(String condition, Map<String, LatencyRecorder> lags) {
+        StringBuilder builder = new StringBuilder(String.format("%n%-10s %8s %10s %10s %10s %10s%n",
+                "pair", "samples", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        
+        for (Map.Entry<String, LatencyRecorder> lag : lags.entrySet()) {
+            LatencyRecorder recorder = lag.getValue();
+            
+            builder.append(String.format("%-10s %8s %10.1f %10.1f %10.1f %10.1f%n",
+                    lag.getKey(),
+                    recorder.getCount(),
+                    LatencyRecorder.toMillis(recorder.getPercentile(50)),
+                    LatencyRecorder.toMillis(recorder.getPercentile(90)),
+                    LatencyRecorder.toMillis(recorder.getPercentile(99)),
+                    LatencyRecorder.toMillis(recorder.getMax())));
+            
+            assertThat(recorder.getCount()).isEqualTo(ROUND_COUNT);
+        }
+        
+        assertThat(lags).hasSize(repositories.size() * (repositories.size() - 1));
+        
+        LOGGER.info("Visibility lag [condition={}, clusterSize={}, roundCount={}]:{}",
+                condition, repositories.size(), ROUND_COUNT, builder);
+    }
+}
@@ -0,0 +1,216 @@
+package com.foo.bar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verifies that the {@link WriteBehindQueue} coalesces the pending updates of the same node, the
+ * last one winning, that it is flushed on the size and time triggers, explicitly and once closed,
+ * that a failed update does not fail the other ones of its batch, and compares the plain updates
+ * of a few hot nodes with the write-behind ones.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code writebehind.operation.count} - the number of compared updates, defaults to {@code 200}</li>
+ *   <li>{@code writebehind.hot.node.count} - the number of the updated nodes, defaults to {@code 5}</li>
+ * </ul>
+ */
+public class WriteBehindQueueTest extends AbstractModeShapeClusterTest {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindQueueTest.class);
+    
+    private static final int OPERATION_COUNT = Integer.valueOf(System.getProperty("writebehind.operation.count", "200"));
+    private static final int HOT_NODE_COUNT = Integer.valueOf(System.getProperty("writebehind.hot.node.count", "5"));
+    
+    private static final long NEVER_HOURS = 1;
+    private static final long FLUSH_WAIT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    
+    @Test
+    public void pendingUpdatesShouldBeCoalesced() throws Exception {
+        Repository repository = repositoryIterator.next();
+        List<String> nodes = createChildNodes(repository, createParentNodes(repository, 3));
+        
+        try (WriteBehindQueue queue = new WriteBehindQueue(repository, Optional.empty(), 100, NEVER_HOURS,
+                TimeUnit.HOURS)) {
+            
+            for (int i = 0; i < 10; i++) {
+                for (String node : nodes) {
+                    queue.submit(node, node + "-" + i);
+                }
+            }
+            
+            assertThat(queue.getPendingCount()).isEqualTo(nodes.size());
+            assertThat(queue.getSubmittedCount()).isEqualTo(30);
+            assertThat(queue.getCoalescedCount()).isEqualTo(27);
+            assertThat(queue.getCoalescingRatio()).isCloseTo(0.9, within(1e-9));
+            
+            assertThat(queue.flush()).isEqualTo(nodes.size());
+            assertThat(queue.flush()).isZero();
+            
+            assertThat(queue.getPendingCount()).isZero();
+            assertThat(queue.getWrittenCount()).isEqualTo(nodes.size());
+            
+            for (String node : nodes) {
+                assertThat(getContent(repository, node)).isEqualTo(node + "-9");
+            }
+        }
+    }
+    
+    @Test
+    public void queueShouldBeFlushedOnTriggers() throws Exception {
+        Repository repository = repositoryIterator.next();
+        List<String> nodes = createChildNodes(repository, createParentNodes(repository, 5));
+        
+        try (WriteBehindQueue queue = new WriteBehindQueue(repository, Optional.empty(), nodes.size(), NEVER_HOURS,
+                TimeUnit.HOURS)) {
+            
+            for (String node : nodes) {
+                queue.submit(node, "size");
+            }
+            
+            awaitCount(queue::getWrittenCount, nodes.size());
+        }
+        
+        try (WriteBehindQueue queue = new WriteBehindQueue(repository, Optional.empty(), 100, 100,
+                TimeUnit.MILLISECONDS)) {
+            
+            queue.submit(nodes.get(0), "time");
+            awaitCount(queue::getWrittenCount, 1);
+        }
+        
+        WriteBehindQueue queue = new WriteBehindQueue(repository, Optional.empty(), 100, NEVER_HOURS, TimeUnit.HOURS);
+        queue.submit(nodes.get(1), "close");
+        queue.close();
+        
+        assertThat(queue.getWrittenCount()).isEqualTo(1);
+        assertThatThrownBy(() -> queue.submit(nodes.get(1), "closed")).isInstanceOf(IllegalStateException.class);
+        
+        assertThat(getContent(repository, nodes.get(0))).isEqualTo("time");
+        assertThat(getContent(repository, nodes.get(1))).isEqualTo("close");
+        assertThat(getContent(repository, nodes.get(2))).isEqualTo("size");
+    }
+    
+    @Test
+    public void failedUpdateShouldNotFailBatch() throws Exception {
+        Repository repository = repositoryIterator.next();
+        String node = createChildNodes(repository, createParentNodes(repository, 1)).get(0);
+        
+        try (WriteBehindQueue queue = new WriteBehindQueue(repository, Optional.empty(), 100, NEVER_HOURS,
+                TimeUnit.HOURS)) {
+            
+            queue.submit(node, "written");
+            queue.submit(node + "-missing", "failed");
+            
+            assertThatThrownBy(queue::flush).isInstanceOf(RepositoryException.class);
+            
+            assertThat(queue.getWrittenCount()).isEqualTo(1);
+            assertThat(queue.getFailedCount()).isEqualTo(1);
+            assertThat(queue.getPendingCount()).isZero();
+            
+            assertThat(getContent(repository, node)).isEqualTo("written");
+            assertThat(isCheckedOut(repository, node)).isFalse();
+        }
+        
+        assertThat(MetricsRegistry.getGauges()).doesNotContainKey(MetricsRegistry.WRITE_BEHIND_PENDING_METRIC);
+    }
+    
+    @Test
+    public void compareUpdates() throws Exception {
+        Repository repository = repositoryIterator.next();
+        List<String> nodes = createChildNodes(repository, createParentNodes(repository, HOT_NODE_COUNT));
+        
+        LatencyRecorder plainRecorder = new LatencyRecorder();
+        long start = System.nanoTime();
+        
+        for (int i = 0; i < OPERATION_COUNT; i++) {
+            Session session = createSession(repository);
+            
+            try {
+                long operationStart = System.nanoTime();
+                NodeHelper.updateNode(session, nodes.get(i % nodes.size()), UUID.randomUUID().toString());
+                
+                plainRecorder.record(System.nanoTime() - operationStart);
+            
+            } finally {
+                session.logout();
+            }
+        }
+        
+        long plainNanos = System.nanoTime() - start;
+        
+        WriteBehindQueue queue = WriteBehindQueue.fromSystemProperties(repository, Optional.empty());
+        String lastContent = null;
+        
+        start = System.nanoTime();
+        
+        try {
+            for (int i = 0; i < OPERATION_COUNT; i++) {
+                lastContent = UUID.randomUUID().toString();
+                queue.submit(nodes.get(i % nodes.size()), lastContent);
+            }
+        
+        } finally {
+            queue.close();
+        }
+        
+        long writeBehindNanos = System.nanoTime() - start;
+        
+        LOGGER.info("Hot node updates [nodeCount={}, operationCount={}]: plain={} ops/s (mean={} ms), "
+                + "write-behind={} ops/s, queue={}", nodes.size(), OPERATION_COUNT,
+                String.format("%.1f", plainRecorder.getThroughput(plainNanos)),
+                String.format("%.2f", LatencyRecorder.toMillis(plainRecorder.getMean())),
+                String.format("%.1f", OPERATION_COUNT * (double) TimeUnit.SECONDS.toNanos(1) / writeBehindNanos),
+                queue);
+        
+        assertThat(queue.getFailedCount()).isZero();
+        assertThat(queue.getWrittenCount() + queue.getCoalescedCount()).isEqualTo(OPERATION_COUNT);
+        assertThat(getContent(repository, nodes.get((OPERATION_COUNT - 1) % nodes.size()))).isEqualTo(lastContent);
+    }
+    
+    private static String getContent(Repository repository, String absolutePath) throws RepositoryException {
+        Session session = createSession(repository);
+        
+        try {
+            return session.getNode(absolutePath).getProperty(NodeHelper.NODE_CONTENT_PROPERTY).getString();
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    private static boolean isCheckedOut(Repository repository, String absolutePath) throws RepositoryException {
+        Session session = createSession(repository);
+        
+        try {
+            return session.getNode(absolutePath).isCheckedOut();
+        
+        } finally {
+            session.logout();
+        }
+    }
+    
+    private static void awaitCount(LongSupplier count, long expectedCount) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + FLUSH_WAIT_TIMEOUT_MILLIS;
+        
+        while (count.getAsLong() < expectedCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        
+        assertThat(count.getAsLong()).isEqualTo(expectedCount);
+    }
+}
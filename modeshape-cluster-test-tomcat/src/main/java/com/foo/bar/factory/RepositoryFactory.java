@@ -2,25 +2,38 @@ package com.foo.bar.factory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
 
 import org.glassfish.hk2.api.Factory;
+import org.modeshape.jcr.JcrRepository;
 import org.modeshape.jcr.ModeShapeEngine;
-import org.modeshape.jcr.RepositoryConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.foo.bar.ArjunaTransactionManagerLookup;
+import com.foo.bar.JGroupsStackProfile;
+import com.foo.bar.RepositoryConfigurationTemplate;
 
 public class RepositoryFactory implements Factory<Repository> {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryFactory.class);
+    
     private static final String DB_URL = System.getProperty("db.url", "jdbc:h2:file:./target/content/db;DB_CLOSE_DELAY=-1");
     private static final String DB_USERNAME = System.getProperty("db.username", "sa");
     private static final String DB_PASSWORD = System.getProperty("db.password", "");
     private static final String CLUSTER_NAME = "test-cluster";
-    private static final String JGROUPS_CONFIGURATION_FILE = System.getProperty("jgroups.location", "test-jgroups.xml");
+    private static final String JGROUPS_CONFIGURATION_FILE = JGroupsStackProfile.resolveLocation(
+            System.getProperty("jgroups.location", "test-jgroups.xml"));
     private static final String REPOSITORY_LOCATION = "/test-repository-h2.json";
+    private static final long STARTUP_TIMEOUT_SECONDS = Long.parseLong(System.getProperty("repository.startup.timeout", "300"));
     
     private final ModeShapeEngine engine;
     
@@ -29,21 +42,44 @@ public class RepositoryFactory implements Factory<Repository> {
         this.engine.start();
     }
     
+    /**
+     * Deploys the repository and waits for it to start. The start includes joining the cluster,
+     * because the JGroups channel is connected as a part of it.
+     */
     @Override
     public Repository provide() {
-        System.setProperty("db.url", DB_URL);
-        System.setProperty("db.username", DB_USERNAME);
-        System.setProperty("db.password", DB_PASSWORD);
+        Map<String, String> variables = new HashMap<>();
+        variables.put("db.url", DB_URL);
+        variables.put("db.username", DB_USERNAME);
+        variables.put("db.password", DB_PASSWORD);
         
-        System.setProperty("repository.uuid", UUID.randomUUID().toString());
-        System.setProperty("cluster.name", CLUSTER_NAME);
-        System.setProperty("jgroups.location", JGROUPS_CONFIGURATION_FILE);
-        System.setProperty("transaction.manager.lookup", ArjunaTransactionManagerLookup.class.getCanonicalName());
+        variables.put("repository.uuid", UUID.randomUUID().toString());
+        variables.put("cluster.name", CLUSTER_NAME);
+        variables.put("jgroups.location", JGROUPS_CONFIGURATION_FILE);
+        variables.put("transaction.manager.lookup", ArjunaTransactionManagerLookup.class.getCanonicalName());
         
         try (InputStream stream = RepositoryFactory.class.getResourceAsStream(REPOSITORY_LOCATION)) {
-            return engine.deploy(RepositoryConfiguration.read(stream, REPOSITORY_LOCATION));
+            long deployStart = System.nanoTime();
+            JcrRepository repository = engine.deploy(
+                    RepositoryConfigurationTemplate.read(stream, REPOSITORY_LOCATION).resolve(variables));
+            
+            LOGGER.info("Repository deployed [name={}, took={} ms]", repository.getName(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - deployStart));
+            
+            long startupStart = System.nanoTime();
+            engine.startRepository(repository.getName()).get(STARTUP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            
+            LOGGER.info("Repository started and joined the cluster [name={}, cluster={}, took={} ms]",
+                    repository.getName(), CLUSTER_NAME,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startupStart));
             
-        } catch (IOException | RepositoryException e) {
+            return repository;
+        
+        } catch (IOException | RepositoryException | ExecutionException | TimeoutException e) {
+            throw new RuntimeException(e);
+        
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(e);
         }
     }
@@ -1,5 +1,7 @@
 package com.foo.bar.factory;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.jcr.Node;
@@ -9,10 +11,22 @@ import javax.jcr.Session;
 
 import org.glassfish.hk2.api.Factory;
 
+import com.foo.bar.BucketedPathLayout;
+import com.foo.bar.MetricsRegistry;
+
 public class SessionFactory implements Factory<Session> {
 
     public static final String ABSOLUTE_PARENT_NODE_PATH = "/parentNode";
     public static final String RELATIVE_PARENT_NODE_PATH = "parentNode";
+    public static final String ACTIVE_SESSIONS_METRIC = "jcr_active_sessions";
+    public static final BucketedPathLayout PARENT_NODE_LAYOUT = new BucketedPathLayout(ABSOLUTE_PARENT_NODE_PATH);
+    
+    private static final AtomicInteger ACTIVE_SESSIONS = new AtomicInteger();
+    
+    static {
+        MetricsRegistry.describe(ACTIVE_SESSIONS_METRIC, "JCR sessions currently opened by request scopes");
+        MetricsRegistry.gauge(ACTIVE_SESSIONS_METRIC, ACTIVE_SESSIONS::get);
+    }
     
     private final Provider<Repository> repositoryProvider;
 
@@ -26,12 +40,20 @@ public class SessionFactory implements Factory<Session> {
         try {
             Session session = repositoryProvider.get().login("default");
             
-            if (!session.nodeExists(ABSOLUTE_PARENT_NODE_PATH)) {
-                Node parentNode = session.getRootNode().addNode(RELATIVE_PARENT_NODE_PATH);
-                parentNode.addMixin("mix:lockable");
-                session.save();
+            try {
+                if (!session.nodeExists(ABSOLUTE_PARENT_NODE_PATH)) {
+                    Node parentNode = session.getRootNode().addNode(RELATIVE_PARENT_NODE_PATH);
+                    parentNode.addMixin("mix:lockable");
+                    session.save();
+                }
+            
+            } catch (RepositoryException | RuntimeException e) {
+                // the session is never handed over to dispose, so it is logged out here
+                session.logout();
+                throw e;
             }
             
+            ACTIVE_SESSIONS.incrementAndGet();
             return session;
             
         } catch (RepositoryException e) {
@@ -42,5 +64,6 @@ public class SessionFactory implements Factory<Session> {
     @Override
     public void dispose(Session instance) {
         instance.logout();
+        ACTIVE_SESSIONS.decrementAndGet();
     }
 }
@@ -0,0 +1,62 @@
+package com.foo.bar.filter;
+
+import java.lang.reflect.Method;
+
+import javax.annotation.Priority;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+import com.foo.bar.MetricsRegistry;
+
+/**
+ * Records the latency of every request, including the rejected ones, per resource method and
+ * response status.
+ */
+@Provider
+@PreMatching
+@Priority(1)
+public class RequestMetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    
+    public static final String REQUEST_LATENCY_METRIC = "http_request_duration_seconds";
+    
+    private static final String START_TIME_PROPERTY = RequestMetricsFilter.class.getName() + ".startTime";
+    
+    static {
+        MetricsRegistry.describe(REQUEST_LATENCY_METRIC, "HTTP request latency per endpoint");
+    }
+    
+    @Context
+    private ResourceInfo resourceInfo;
+    
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        requestContext.setProperty(START_TIME_PROPERTY, System.nanoTime());
+    }
+    
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object startTime = requestContext.getProperty(START_TIME_PROPERTY);
+        
+        if (startTime == null) {
+            return;
+        }
+        
+        Method method = resourceInfo.getResourceMethod();
+        String endpoint = method == null
+                ? "unmatched"
+                : method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        
+        String labels = String.join(",",
+                MetricsRegistry.label("endpoint", endpoint),
+                MetricsRegistry.label("method", requestContext.getMethod()),
+                MetricsRegistry.label("code", Integer.toString(responseContext.getStatus())));
+        
+        MetricsRegistry.histogram(REQUEST_LATENCY_METRIC, labels).record(System.nanoTime() - (Long) startTime);
+    }
+}
@@ -0,0 +1,121 @@
+package com.foo.bar.filter;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of in-flight writes per target parent node and per instance. The
+ * {@code Retry-After} hint given to rejected clients is derived from the lock wait times
+ * observed for the same parent node.
+ */
+public class WriteAdmissionController {
+    
+    public static final String PARENT_MAX_IN_FLIGHT_PROPERTY = "admission.parent.max.inflight";
+    public static final String INSTANCE_MAX_IN_FLIGHT_PROPERTY = "admission.instance.max.inflight";
+    public static final String MAX_RETRY_AFTER_PROPERTY = "admission.retry.after.max";
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteAdmissionController.class);
+    
+    private static final int PARENT_MAX_IN_FLIGHT = Integer.parseInt(System.getProperty(PARENT_MAX_IN_FLIGHT_PROPERTY, "2"));
+    private static final int INSTANCE_MAX_IN_FLIGHT = Integer.parseInt(System.getProperty(INSTANCE_MAX_IN_FLIGHT_PROPERTY, "16"));
+    private static final long MAX_RETRY_AFTER_SECONDS = Long.parseLong(System.getProperty(MAX_RETRY_AFTER_PROPERTY, "60"));
+    private static final double LOCK_WAIT_SMOOTHING = 0.2;
+    
+    private final Semaphore instancePermits = new Semaphore(INSTANCE_MAX_IN_FLIGHT);
+    private final ConcurrentMap<String, Semaphore> parentPermits = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LockWaitEstimate> parentLockWaits = new ConcurrentHashMap<>();
+    private final LockWaitEstimate instanceLockWait = new LockWaitEstimate();
+    
+    /**
+     * Attempts to admit a write under the given parent node without blocking.
+     *
+     * @param parentAbsolutePath
+     *            the absolute path of the parent node the write targets
+     *
+     * @return the admission to release once the write completes, or an empty {@link Optional}
+     *         if the instance or the parent node is saturated
+     */
+    public Optional<Admission> tryAdmit(String parentAbsolutePath) {
+        if (!instancePermits.tryAcquire()) {
+            LOGGER.debug("Write rejected, instance is saturated [parent={}, maxInFlight={}]",
+                    parentAbsolutePath, INSTANCE_MAX_IN_FLIGHT);
+            
+            return Optional.empty();
+        }
+        
+        Semaphore permits = parentPermits.computeIfAbsent(parentAbsolutePath,
+                key -> new Semaphore(PARENT_MAX_IN_FLIGHT));
+        
+        if (!permits.tryAcquire()) {
+            instancePermits.release();
+            
+            LOGGER.debug("Write rejected, parent node is saturated [parent={}, maxInFlight={}]",
+                    parentAbsolutePath, PARENT_MAX_IN_FLIGHT);
+            
+            return Optional.empty();
+        }
+        
+        return Optional.of(new Admission(permits));
+    }
+    
+    public void recordLockWait(String parentAbsolutePath, long waitNanos) {
+        parentLockWaits.computeIfAbsent(parentAbsolutePath, key -> new LockWaitEstimate()).update(waitNanos);
+        instanceLockWait.update(waitNanos);
+    }
+    
+    /**
+     * Calculates how long a rejected client should wait before retrying. The estimate is the
+     * smoothed lock wait time of the parent node (or of the whole instance, if nothing has been
+     * observed for the parent yet), rounded up to whole seconds.
+     *
+     * @param parentAbsolutePath
+     *            the absolute path of the parent node the write targets
+     *
+     * @return the number of seconds, between {@code 1} and {@code admission.retry.after.max}
+     */
+    public long getRetryAfterSeconds(String parentAbsolutePath) {
+        LockWaitEstimate estimate = parentLockWaits.getOrDefault(parentAbsolutePath, instanceLockWait);
+        long seconds = (long) Math.ceil(estimate.getNanos() / TimeUnit.SECONDS.toNanos(1));
+        
+        return Math.max(1, Math.min(seconds, MAX_RETRY_AFTER_SECONDS));
+    }
+    
+    /**
+     * The permits held by an admitted write.
+     */
+    public class Admission {
+        
+        private final Semaphore parentPermits;
+        
+        private Admission(Semaphore parentPermits) {
+            this.parentPermits = parentPermits;
+        }
+        
+        public void release() {
+            parentPermits.release();
+            instancePermits.release();
+        }
+    }
+    
+    /**
+     * The exponentially weighted moving average of the lock wait times.
+     */
+    private static class LockWaitEstimate {
+        
+        private double nanos;
+        
+        synchronized void update(long waitNanos) {
+            nanos = nanos == 0 ? waitNanos : LOCK_WAIT_SMOOTHING * waitNanos + (1 - LOCK_WAIT_SMOOTHING) * nanos;
+        }
+        
+        synchronized double getNanos() {
+            return nanos;
+        }
+    }
+}
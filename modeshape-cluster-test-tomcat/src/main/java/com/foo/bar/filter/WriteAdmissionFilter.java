@@ -0,0 +1,71 @@
+package com.foo.bar.filter;
+
+import java.util.Optional;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+
+import com.foo.bar.factory.SessionFactory;
+import com.foo.bar.filter.WriteAdmissionController.Admission;
+
+/**
+ * Rejects writes with {@code 429 Too Many Requests} as soon as the target parent node or the whole
+ * instance has too many writes in flight, instead of letting them queue up on the same JCR lock.
+ * The parent node is the bucket, which the {@code nodeName} path parameter is hashed to.
+ */
+@Provider
+@WriteAdmission
+@Priority(Priorities.USER)
+public class WriteAdmissionFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    
+    static final int TOO_MANY_REQUESTS = 429;
+    
+    private static final String NODE_NAME_PARAMETER = "nodeName";
+    private static final String ADMISSION_PROPERTY = WriteAdmissionFilter.class.getName() + ".admission";
+    
+    private final WriteAdmissionController controller;
+    
+    @Inject
+    public WriteAdmissionFilter(WriteAdmissionController controller) {
+        this.controller = controller;
+    }
+    
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        String nodeName = requestContext.getUriInfo().getPathParameters().getFirst(NODE_NAME_PARAMETER);
+        String parentPath = nodeName == null
+                ? SessionFactory.ABSOLUTE_PARENT_NODE_PATH
+                : SessionFactory.PARENT_NODE_LAYOUT.getBucketAbsolutePath(nodeName);
+        
+        Optional<Admission> admission = controller.tryAdmit(parentPath);
+        
+        if (admission.isPresent()) {
+            requestContext.setProperty(ADMISSION_PROPERTY, admission.get());
+        
+        } else {
+            requestContext.abortWith(Response
+                    .status(TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, controller.getRetryAfterSeconds(parentPath))
+                    .entity(String.format("Too many concurrent writes under [%s]", parentPath))
+                    .build());
+        }
+    }
+    
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object admission = requestContext.getProperty(ADMISSION_PROPERTY);
+        
+        if (admission != null) {
+            requestContext.removeProperty(ADMISSION_PROPERTY);
+            ((Admission) admission).release();
+        }
+    }
+}
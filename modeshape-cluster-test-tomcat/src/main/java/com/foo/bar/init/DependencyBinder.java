@@ -9,6 +9,7 @@ import org.glassfish.jersey.process.internal.RequestScoped;
 
 import com.foo.bar.factory.RepositoryFactory;
 import com.foo.bar.factory.SessionFactory;
+import com.foo.bar.filter.WriteAdmissionController;
 
 public class DependencyBinder extends AbstractBinder {
 
@@ -16,5 +17,7 @@ public class DependencyBinder extends AbstractBinder {
     protected void configure() {
         bindFactory(RepositoryFactory.class).to(Repository.class).in(Singleton.class);
         bindFactory(SessionFactory.class).to(Session.class).in(RequestScoped.class);
+        bindAsContract(WriteAdmissionController.class).in(Singleton.class);
+        bindAsContract(ReadinessState.class).in(Singleton.class);
     }
 }
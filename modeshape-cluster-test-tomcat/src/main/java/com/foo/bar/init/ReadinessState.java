@@ -0,0 +1,32 @@
+package com.foo.bar.init;
+
+/**
+ * The readiness of this instance to serve traffic. The instance becomes ready once the repository
+ * has been deployed, has joined the cluster and the hot subtrees have been read.
+ */
+public class ReadinessState {
+    
+    private volatile String phase = "starting";
+    private volatile boolean ready;
+    
+    public boolean isReady() {
+        return ready;
+    }
+    
+    public String getPhase() {
+        return phase;
+    }
+    
+    void enterPhase(String phase) {
+        this.phase = phase;
+    }
+    
+    void markReady() {
+        this.phase = "ready";
+        this.ready = true;
+    }
+    
+    void markFailed(Exception e) {
+        this.phase = String.format("failed: %s", e.getMessage());
+    }
+}
@@ -0,0 +1,168 @@
+package com.foo.bar.init;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deploys the repository as soon as the application is initialized rather than on the first
+ * request, then pre-reads the hot subtrees (see {@code warmup.paths}) to fill the caches. The
+ * instance reports ready via {@link ReadinessState} only after all of that is done.
+ */
+@javax.ws.rs.ext.Provider
+public class RepositoryStartupListener implements ApplicationEventListener {
+    
+    public static final String WARMUP_PATHS_PROPERTY = "warmup.paths";
+    public static final String WARMUP_MAX_NODES_PROPERTY = "warmup.max.nodes";
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryStartupListener.class);
+    
+    private static final List<String> WARMUP_PATHS = Arrays.stream(
+            System.getProperty(WARMUP_PATHS_PROPERTY, "/parentNode").split(","))
+            .map(String::trim)
+            .filter(path -> !path.isEmpty())
+            .collect(Collectors.toList());
+    
+    private static final int WARMUP_MAX_NODES = Integer.parseInt(System.getProperty(WARMUP_MAX_NODES_PROPERTY, "10000"));
+    
+    private final javax.inject.Provider<Repository> repositoryProvider;
+    private final ReadinessState readinessState;
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "repository-startup");
+        thread.setDaemon(true);
+        
+        return thread;
+    });
+    
+    @Inject
+    public RepositoryStartupListener(javax.inject.Provider<Repository> repositoryProvider, ReadinessState readinessState) {
+        this.repositoryProvider = repositoryProvider;
+        this.readinessState = readinessState;
+    }
+    
+    @Override
+    public void onEvent(ApplicationEvent event) {
+        switch (event.getType()) {
+        case INITIALIZATION_FINISHED:
+            executorService.submit(this::startUp);
+            break;
+        
+        case DESTROY_FINISHED:
+            executorService.shutdownNow();
+            break;
+        
+        default:
+            break;
+        }
+    }
+    
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return null;
+    }
+    
+    private void startUp() {
+        long startupStart = System.nanoTime();
+        
+        try {
+            readinessState.enterPhase("deploying repository");
+            long phaseStart = System.nanoTime();
+            Repository repository = repositoryProvider.get();
+            
+            LOGGER.info("Startup phase completed [phase=deploy and cluster join, took={} ms]", millisSince(phaseStart));
+            
+            readinessState.enterPhase("warming up");
+            phaseStart = System.nanoTime();
+            Session session = repository.login("default");
+            
+            LOGGER.info("Startup phase completed [phase=first login, took={} ms]", millisSince(phaseStart));
+            
+            try {
+                for (String path : WARMUP_PATHS) {
+                    phaseStart = System.nanoTime();
+                    int nodeCount = warmUp(session, path);
+                    
+                    LOGGER.info("Startup phase completed [phase=warm-up, path={}, nodes={}, took={} ms]",
+                            path, nodeCount, millisSince(phaseStart));
+                }
+            
+            } finally {
+                session.logout();
+            }
+            
+            readinessState.markReady();
+            
+            LOGGER.info("Instance is ready [took={} ms]", millisSince(startupStart));
+        
+        } catch (Exception e) {
+            readinessState.markFailed(e);
+            
+            LOGGER.error("Failed to start the repository", e);
+        }
+    }
+    
+    /**
+     * Reads the subtree breadth-first, including all the properties, until either the subtree is
+     * exhausted or {@code warmup.max.nodes} nodes have been read.
+     */
+    private static int warmUp(Session session, String absolutePath) throws RepositoryException {
+        if (!session.nodeExists(absolutePath)) {
+            LOGGER.debug("Skipping warm-up of a missing subtree [path={}]", absolutePath);
+            
+            return 0;
+        }
+        
+        Deque<Node> queue = new ArrayDeque<>();
+        queue.add(session.getNode(absolutePath));
+        int nodeCount = 0;
+        
+        while (!queue.isEmpty() && nodeCount < WARMUP_MAX_NODES) {
+            Node node = queue.poll();
+            nodeCount++;
+            
+            PropertyIterator properties = node.getProperties();
+            while (properties.hasNext()) {
+                Property property = properties.nextProperty();
+                
+                if (property.isMultiple()) {
+                    property.getValues();
+                } else {
+                    property.getValue();
+                }
+            }
+            
+            // the queued nodes are read anyway, so the children beyond the limit are not even loaded
+            NodeIterator children = node.getNodes();
+            while (children.hasNext() && nodeCount + queue.size() < WARMUP_MAX_NODES) {
+                queue.add(children.nextNode());
+            }
+        }
+        
+        return nodeCount;
+    }
+    
+    private static long millisSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
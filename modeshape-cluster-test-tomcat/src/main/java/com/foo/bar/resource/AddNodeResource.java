@@ -5,7 +5,6 @@ import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.jcr.Node;
-import javax.jcr.NodeIterator;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.ws.rs.GET;
@@ -20,6 +19,8 @@ import org.slf4j.LoggerFactory;
 import com.foo.bar.NodeLockHelper;
 import com.foo.bar.TransactionExecutor;
 import com.foo.bar.factory.SessionFactory;
+import com.foo.bar.filter.WriteAdmission;
+import com.foo.bar.filter.WriteAdmissionController;
 
 @Path("/")
 public class AddNodeResource {
@@ -27,10 +28,12 @@ public class AddNodeResource {
     private static final Logger LOGGER = LoggerFactory.getLogger(AddNodeResource.class);
     
     private final Provider<Session> sessionProvider;
+    private final WriteAdmissionController admissionController;
 
     @Inject
-    public AddNodeResource(Provider<Session> sessionProvider) {
+    public AddNodeResource(Provider<Session> sessionProvider, WriteAdmissionController admissionController) {
         this.sessionProvider = sessionProvider;
+        this.admissionController = admissionController;
     }
 
     @GET
@@ -38,12 +41,9 @@ public class AddNodeResource {
         Session session = sessionProvider.get();
         
         try {
-            Node parentNode = session.getNode(SessionFactory.ABSOLUTE_PARENT_NODE_PATH);
-            NodeIterator nodeIterator = parentNode.getNodes();
-            
             StringBuilder builder = new StringBuilder();
-            while (nodeIterator.hasNext()) {
-                builder.append(nodeIterator.nextNode().getPath()).append("\n");
+            for (Node childNode : SessionFactory.PARENT_NODE_LAYOUT.getChildren(session)) {
+                builder.append(childNode.getPath()).append("\n");
             }
             
             return Response.ok(builder.toString()).build();
@@ -54,12 +54,20 @@ public class AddNodeResource {
     }
     
     @PUT
+    @WriteAdmission
     @Path("add/{nodeName}")
     public Response addNode(@PathParam("nodeName") String nodeName) {
         try {
             Session session = sessionProvider.get();
-            Node parentNode = session.getNode(SessionFactory.ABSOLUTE_PARENT_NODE_PATH);
-            NodeLockHelper.lockNode(parentNode);
+            Node parentNode = SessionFactory.PARENT_NODE_LAYOUT.getOrCreateBucket(session, nodeName);
+            
+            long lockStart = System.nanoTime();
+            try {
+                NodeLockHelper.lockNode(parentNode);
+            
+            } finally {
+                admissionController.recordLockWait(parentNode.getPath(), System.nanoTime() - lockStart);
+            }
             
             try {
                 return TransactionExecutor.runInTransaction(() -> {
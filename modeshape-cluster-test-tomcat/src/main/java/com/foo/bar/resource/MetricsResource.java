@@ -0,0 +1,87 @@
+package com.foo.bar.resource;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+
+import com.foo.bar.LatencyHistogram;
+import com.foo.bar.MetricsRegistry;
+
+/**
+ * Exposes the content of the {@link MetricsRegistry} in the Prometheus text format, so every
+ * member of the cluster can be scraped and compared.
+ */
+@Path("metrics")
+public class MetricsResource {
+    
+    static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    
+    @GET
+    @Produces(PROMETHEUS_CONTENT_TYPE)
+    public Response showMetrics() {
+        StringBuilder builder = new StringBuilder();
+        
+        for (Entry<String, ? extends Map<String, LatencyHistogram>> metric : MetricsRegistry.getHistograms().entrySet()) {
+            appendHeader(builder, metric.getKey(), "histogram");
+            
+            for (Entry<String, LatencyHistogram> series : metric.getValue().entrySet()) {
+                appendHistogram(builder, metric.getKey(), series.getKey(), series.getValue());
+            }
+        }
+        
+        for (Entry<String, ? extends Map<String, LongAdder>> metric : MetricsRegistry.getCounters().entrySet()) {
+            appendHeader(builder, metric.getKey(), "counter");
+            
+            for (Entry<String, LongAdder> series : metric.getValue().entrySet()) {
+                appendSample(builder, metric.getKey(), series.getKey(), Long.toString(series.getValue().sum()));
+            }
+        }
+        
+        for (Entry<String, LongSupplier> metric : MetricsRegistry.getGauges().entrySet()) {
+            appendHeader(builder, metric.getKey(), "gauge");
+            appendSample(builder, metric.getKey(), "", Long.toString(metric.getValue().getAsLong()));
+        }
+        
+        return Response.ok(builder.toString()).build();
+    }
+    
+    private static void appendHistogram(StringBuilder builder, String name, String labels, LatencyHistogram histogram) {
+        double[] bounds = histogram.getBounds();
+        long[] counts = histogram.getCumulativeCounts();
+        
+        for (int i = 0; i < counts.length; i++) {
+            String bound = i < bounds.length ? Double.toString(bounds[i]) : "+Inf";
+            
+            appendSample(builder, name + "_bucket", joinLabels(labels, MetricsRegistry.label("le", bound)),
+                    Long.toString(counts[i]));
+        }
+        
+        appendSample(builder, name + "_sum", labels, Double.toString(histogram.getSumSeconds()));
+        appendSample(builder, name + "_count", labels, Long.toString(histogram.getCount()));
+    }
+    
+    private static void appendHeader(StringBuilder builder, String name, String type) {
+        builder.append("# HELP ").append(name).append(' ').append(MetricsRegistry.getDescription(name)).append('\n');
+        builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+    
+    private static void appendSample(StringBuilder builder, String name, String labels, String value) {
+        builder.append(name);
+        
+        if (!labels.isEmpty()) {
+            builder.append('{').append(labels).append('}');
+        }
+        
+        builder.append(' ').append(value).append('\n');
+    }
+    
+    private static String joinLabels(String labels, String label) {
+        return labels.isEmpty() ? label : labels + "," + label;
+    }
+}
@@ -0,0 +1,27 @@
+package com.foo.bar.resource;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import com.foo.bar.init.ReadinessState;
+
+@Path("ready")
+public class ReadinessResource {
+    
+    private final ReadinessState readinessState;
+    
+    @Inject
+    public ReadinessResource(ReadinessState readinessState) {
+        this.readinessState = readinessState;
+    }
+    
+    @GET
+    public Response showReadiness() {
+        return Response.ok(readinessState.getPhase())
+                .status(readinessState.isReady() ? Status.OK : Status.SERVICE_UNAVAILABLE)
+                .build();
+    }
+}
@@ -0,0 +1,77 @@
+package com.foo.bar.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.startup.Tomcat;
+
+import com.foo.bar.init.JerseyApplication;
+
+/**
+ * A single embedded Tomcat hosting the web application, i.e. a single member of the cluster.
+ * The instance can either be started in the current JVM or run as a separate process via
+ * {@link #main(String[])}.
+ */
+public class EmbeddedTomcatInstance {
+    
+    private static final String JERSEY_SERVLET_CLASS = "org.glassfish.jersey.servlet.ServletContainer";
+    
+    private final Tomcat tomcat;
+    private final int port;
+    
+    public EmbeddedTomcatInstance(int port, Path baseDir) throws IOException {
+        Files.createDirectories(baseDir);
+        
+        this.port = port;
+        this.tomcat = new Tomcat();
+        this.tomcat.setPort(port);
+        this.tomcat.setBaseDir(baseDir.toAbsolutePath().toString());
+        
+        Context context = tomcat.addContext("", baseDir.toAbsolutePath().toString());
+        Wrapper servlet = Tomcat.addServlet(context, "jersey", JERSEY_SERVLET_CLASS);
+        servlet.addInitParameter("javax.ws.rs.Application", JerseyApplication.class.getName());
+        servlet.setLoadOnStartup(1);
+        context.addServletMappingDecoded("/*", "jersey");
+    }
+    
+    public void start() throws LifecycleException {
+        tomcat.start();
+    }
+    
+    public void stop() throws LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+    }
+    
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + port;
+    }
+    
+    /**
+     * Starts a single instance and blocks until the process gets terminated.
+     *
+     * @param args
+     *            the HTTP port and the base directory of the instance
+     *
+     * @throws Exception
+     *             if an error occurred
+     */
+    public static void main(String[] args) throws Exception {
+        EmbeddedTomcatInstance instance = new EmbeddedTomcatInstance(Integer.parseInt(args[0]), Paths.get(args[1]));
+        
+        // no shutdown port, the process is stopped by the harness
+        instance.tomcat.getServer().setPort(-1);
+        instance.start();
+        
+        System.out.println(String.format("Instance started [url=%s, baseDir=%s]", instance.getBaseUrl(),
+                new File(args[1]).getAbsolutePath()));
+        
+        instance.tomcat.getServer().await();
+    }
+}
@@ -0,0 +1,338 @@
+package com.foo.bar.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.h2.tools.Server;
+
+import com.foo.bar.LatencyRecorder;
+
+/**
+ * Starts {@code N} embedded Tomcat instances of the web application, all of them sharing a single
+ * local H2 database and forming a loopback JGroups cluster, then drives the HTTP endpoints and
+ * reports the throughput and latency percentiles per endpoint for each instance count.
+ *
+ * Available system properties:
+ * <ul>
+ *   <li>{@code load.instance.counts} - the instance counts to measure, defaults to {@code 1,2,3}</li>
+ *   <li>{@code load.mode} - {@code forked} to run every instance in its own JVM or {@code in-jvm}
+ *       to run all of them in this JVM, defaults to {@code forked}</li>
+ *   <li>{@code load.threads} - the number of concurrent clients, defaults to {@code 8}</li>
+ *   <li>{@code load.requests} - the number of requests per endpoint and instance count, defaults to {@code 100}</li>
+ *   <li>{@code load.base.port} - the HTTP port of the first instance, defaults to {@code 8180}</li>
+ *   <li>{@code load.h2.port} - the port of the shared H2 server, defaults to {@code 9123}</li>
+ * </ul>
+ *
+ * Note, that the bundled {@code test-jgroups.xml} allows up to {@code 6} members on the same host.
+ */
+public class LoadTestHarness {
+    
+    private static final List<Integer> INSTANCE_COUNTS = Arrays.stream(
+            System.getProperty("load.instance.counts", "1,2,3").split(","))
+            .map(String::trim)
+            .map(Integer::valueOf)
+            .collect(Collectors.toList());
+    
+    private static final boolean FORKED = !"in-jvm".equals(System.getProperty("load.mode", "forked"));
+    private static final int THREAD_COUNT = Integer.parseInt(System.getProperty("load.threads", "8"));
+    private static final int REQUEST_COUNT = Integer.parseInt(System.getProperty("load.requests", "100"));
+    private static final int BASE_PORT = Integer.parseInt(System.getProperty("load.base.port", "8180"));
+    private static final int H2_PORT = Integer.parseInt(System.getProperty("load.h2.port", "9123"));
+    
+    private static final Path WORK_DIR = Paths.get("target", "load");
+    private static final long READY_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final int READ_TIMEOUT_MILLIS = (int) TimeUnit.MINUTES.toMillis(2);
+    
+    private static final String REPORT_FORMAT = "%-10s %-22s %9s %7s %12s %10s %10s %10s %10s%n";
+    
+    public static void main(String[] args) throws Exception {
+        Server h2Server = Server.createTcpServer(
+                "-tcpPort", Integer.toString(H2_PORT),
+                "-baseDir", WORK_DIR.resolve("h2").toAbsolutePath().toString()).start();
+        
+        String dbUrl = String.format("jdbc:h2:tcp://localhost:%s/./load-test", H2_PORT);
+        List<String> report = new ArrayList<>();
+        
+        try {
+            for (int instanceCount : INSTANCE_COUNTS) {
+                List<ClusterInstance> instances = startInstances(instanceCount, dbUrl);
+                
+                try {
+                    for (Endpoint endpoint : Endpoint.values()) {
+                        report.add(runEndpoint(endpoint, instances));
+                    }
+                
+                } finally {
+                    for (ClusterInstance instance : instances) {
+                        instance.close();
+                    }
+                }
+            }
+        
+        } finally {
+            h2Server.stop();
+        }
+        
+        System.out.println();
+        System.out.printf(REPORT_FORMAT, "instances", "endpoint", "requests", "errors", "throughput/s",
+                "p50 ms", "p90 ms", "p99 ms", "max ms");
+        
+        report.forEach(System.out::print);
+        System.exit(0);
+    }
+    
+    private static List<ClusterInstance> startInstances(int instanceCount, String dbUrl) throws Exception {
+        List<ClusterInstance> instances = new ArrayList<>(instanceCount);
+        
+        for (int i = 0; i < instanceCount; i++) {
+            int port = BASE_PORT + i;
+            Path baseDir = WORK_DIR.resolve("tomcat-" + port);
+            
+            instances.add(FORKED
+                    ? new ForkedInstance(port, baseDir, dbUrl)
+                    : new InJvmInstance(port, baseDir, dbUrl));
+        }
+        
+        for (ClusterInstance instance : instances) {
+            waitUntilReady(instance.getBaseUrl());
+        }
+        
+        return instances;
+    }
+    
+    private static void waitUntilReady(String baseUrl) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + READY_TIMEOUT_MILLIS;
+        
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                if (send("GET", baseUrl + "/ready") == HttpURLConnection.HTTP_OK) {
+                    return;
+                }
+            
+            } catch (IOException e) {
+                // not listening yet
+            }
+            
+            Thread.sleep(500);
+        }
+        
+        throw new IllegalStateException(String.format("The instance did not become ready [url=%s]", baseUrl));
+    }
+    
+    private static String runEndpoint(Endpoint endpoint, List<ClusterInstance> instances) throws Exception {
+        LatencyRecorder recorder = new LatencyRecorder();
+        Map<Integer, AtomicInteger> statusCounts = new TreeMap<>();
+        AtomicInteger errorCount = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>(REQUEST_COUNT);
+        
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            String url = instances.get(i % instances.size()).getBaseUrl()
+                    + endpoint.getPath(String.format("load-%s-%s-%s", instances.size(), i, System.nanoTime()));
+            
+            tasks.add(() -> {
+                long start = System.nanoTime();
+                int status;
+                
+                try {
+                    status = send(endpoint.getMethod(), url);
+                
+                } catch (IOException e) {
+                    status = -1;
+                }
+                
+                recorder.record(System.nanoTime() - start);
+                
+                if (status < 200 || status >= 300) {
+                    errorCount.incrementAndGet();
+                }
+                
+                synchronized (statusCounts) {
+                    statusCounts.computeIfAbsent(status, key -> new AtomicInteger()).incrementAndGet();
+                }
+                
+                return null;
+            });
+        }
+        
+        ExecutorService executorService = Executors.newFixedThreadPool(THREAD_COUNT);
+        long start = System.nanoTime();
+        
+        try {
+            for (Future<Void> future : executorService.invokeAll(tasks)) {
+                future.get();
+            }
+        
+        } finally {
+            executorService.shutdownNow();
+        }
+        
+        long elapsed = System.nanoTime() - start;
+        
+        System.out.println(String.format("Completed [instances=%s, endpoint=%s, statusCounts=%s]",
+                instances.size(), endpoint, statusCounts));
+        
+        return String.format(REPORT_FORMAT,
+                instances.size(),
+                endpoint,
+                recorder.getCount(),
+                errorCount.get(),
+                String.format("%.2f", recorder.getThroughput(elapsed)),
+                String.format("%.1f", LatencyRecorder.toMillis(recorder.getPercentile(50))),
+                String.format("%.1f", LatencyRecorder.toMillis(recorder.getPercentile(90))),
+                String.format("%.1f", LatencyRecorder.toMillis(recorder.getPercentile(99))),
+                String.format("%.1f", LatencyRecorder.toMillis(recorder.getMax())));
+    }
+    
+    private static int send(String method, String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(READ_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        
+        if ("PUT".equals(method)) {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(0);
+            connection.getOutputStream().close();
+        }
+        
+        int status = connection.getResponseCode();
+        InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        
+        if (body != null) {
+            // drain the body, so the connection can be reused
+            try (InputStream stream = body) {
+                byte[] buffer = new byte[4096];
+                while (stream.read(buffer) != -1) {
+                    // discard
+                }
+            }
+        }
+        
+        return status;
+    }
+    
+    /**
+     * The endpoints being driven.
+     */
+    private enum Endpoint {
+        
+        ADD_NODE("PUT", "/add/%s"),
+        SHOW_REPOSITORY("GET", "/");
+        
+        private final String method;
+        private final String pathFormat;
+        
+        private Endpoint(String method, String pathFormat) {
+            this.method = method;
+            this.pathFormat = pathFormat;
+        }
+        
+        public String getMethod() {
+            return method;
+        }
+        
+        public String getPath(String nodeName) {
+            return String.format(pathFormat, nodeName);
+        }
+        
+        @Override
+        public String toString() {
+            return method + " " + String.format(pathFormat, "{nodeName}");
+        }
+    }
+    
+    /**
+     * A running member of the cluster.
+     */
+    private interface ClusterInstance {
+        
+        String getBaseUrl();
+        
+        void close() throws Exception;
+    }
+    
+    /**
+     * The instance hosted by this JVM. All such instances share the same class loader and,
+     * therefore, the system properties, the transaction manager and the JIT state.
+     */
+    private static class InJvmInstance implements ClusterInstance {
+        
+        private final EmbeddedTomcatInstance instance;
+        
+        InJvmInstance(int port, Path baseDir, String dbUrl) throws Exception {
+            System.setProperty("db.url", dbUrl);
+            
+            this.instance = new EmbeddedTomcatInstance(port, baseDir);
+            this.instance.start();
+        }
+        
+        @Override
+        public String getBaseUrl() {
+            return instance.getBaseUrl();
+        }
+        
+        @Override
+        public void close() throws Exception {
+            instance.stop();
+        }
+    }
+    
+    /**
+     * The instance running in a separate JVM, which uses the same class path as this one.
+     */
+    private static class ForkedInstance implements ClusterInstance {
+        
+        private final Process process;
+        private final String baseUrl;
+        
+        ForkedInstance(int port, Path baseDir, String dbUrl) throws IOException {
+            File logFile = WORK_DIR.resolve("instance-" + port + ".log").toFile();
+            logFile.getParentFile().mkdirs();
+            
+            this.process = new ProcessBuilder(
+                    Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-Ddb.url=" + dbUrl,
+                    "-Dtransaction.recovery.dir=" + baseDir.resolve("arjuna").toAbsolutePath(),
+                    "-cp", System.getProperty("java.class.path"),
+                    EmbeddedTomcatInstance.class.getName(),
+                    Integer.toString(port),
+                    baseDir.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(logFile)
+                    .start();
+            
+            this.baseUrl = "http://127.0.0.1:" + port;
+        }
+        
+        @Override
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+        
+        @Override
+        public void close() throws InterruptedException {
+            process.destroy();
+            
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+}